@@ -0,0 +1,89 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Exam;
+import service.LayoutCompiler;
+import service.WordExporter;
+
+/**
+ * Measures the Word export of synthetic exams. With {@code cached=false} the render and layout
+ * caches are emptied before every invocation, so the benchmark measures a first export; with
+ * {@code cached=true} it measures repeated exports of an unchanged exam. With {@code parallel=true}
+ * the top-level questions are rendered in parallel, which is meant for large exams.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExportBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int questions;
+
+    @Param({"0", "2"})
+    public int depth;
+
+    @Param({"mixed"})
+    public String mix;
+
+    @Param({"0", "256"})
+    public int imageSize;
+
+    @Param({"false"})
+    public boolean cached;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Exam exam;
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void createExam() throws IOException {
+        exam = SyntheticExams.create(questions, depth, mix, imageSize, 42);
+        output = Files.createTempFile("benchmark", ".docx");
+    }
+
+    @Setup(Level.Invocation)
+    public void clearCaches() {
+        if (!cached) {
+            WordExporter.getRenderCache().clear();
+            LayoutCompiler.clearCache();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteOutput() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public void export() throws IOException {
+        WordExporter.export(exam, output.toString(), parallel);
+    }
+
+    @Benchmark
+    public void exportWithSolutions() throws IOException {
+        WordExporter.exportWithSolutions(exam, output.toString(), parallel);
+    }
+}
@@ -0,0 +1,73 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Exam;
+import service.ExamFiles;
+
+/**
+ * Measures loading and saving exams as JSON with {@link ExamFiles}, the code path of the UI and
+ * the batch export. Image payloads dominate the file size, so they are a parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"10", "100"})
+    public int questions;
+
+    @Param({"1"})
+    public int depth;
+
+    @Param({"0", "256"})
+    public int imageSize;
+
+    private Exam exam;
+    private Path input;
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        exam = SyntheticExams.create(questions, depth, "mixed", imageSize, 42);
+        input = Files.createTempFile("benchmark", ".json");
+        output = Files.createTempFile("benchmark", ".json");
+        ExamFiles.save(exam, input.toFile());
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public Exam load() throws IOException {
+        return ExamFiles.load(input.toFile());
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        ExamFiles.save(exam, output.toFile());
+    }
+}
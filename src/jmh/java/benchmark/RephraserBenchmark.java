@@ -0,0 +1,46 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import utils.Rephraser;
+
+/**
+ * Measures {@link Rephraser#rephrase(String)} on generated German text. The thesaurus is loaded
+ * in the setup, so the benchmark measures the rephrasing only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RephraserBenchmark {
+
+    @Param({"1", "20", "200"})
+    public int sentences;
+
+    private String text;
+
+    @Setup
+    public void createText() {
+        text = SyntheticExams.text(sentences, 42);
+        Rephraser.rephrase("Warmup");
+    }
+
+    @Benchmark
+    public String rephrase() {
+        return Rephraser.rephrase(text);
+    }
+}
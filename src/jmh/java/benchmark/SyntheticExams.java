@@ -0,0 +1,133 @@
+package benchmark;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.SplittableRandom;
+
+import javax.imageio.ImageIO;
+
+import model.Exam;
+import model.Question;
+
+/**
+ * Generates reproducible exams for the benchmarks. The same parameters and seed always produce the same exam.
+ */
+public final class SyntheticExams {
+
+    /** Question types of the "mixed" question mix, used round robin. */
+    private static final String[] MIXED_TYPES = {"Offene Frage", "MCQ", "Lückentext", "Richtig/Falsch"};
+
+    private static final String[] WORDS = {
+            "Algorithmus", "berechnen", "Datenstruktur", "schnell", "Ergebnis", "erklären", "Beispiel",
+            "wichtig", "Speicher", "Methode", "einfach", "Laufzeit", "beschreiben", "Liste", "groß", "Aufgabe"};
+
+    private SyntheticExams() {
+    }
+
+    /**
+     * Creates a synthetic exam.
+     * @param questions The number of top-level questions.
+     * @param depth The nesting depth of sub-questions; every question with depth left gets two sub-questions.
+     * @param mix The question type mix: "mixed", "open", "mcq", "lueckentext" or "richtigfalsch".
+     * @param imageSize The edge length in pixels of a noise PNG attached to every top-level question, 0 for no images.
+     * @param seed The seed of the text generator.
+     * @return The generated exam.
+     */
+    public static Exam create(int questions, int depth, String mix, int imageSize, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Exam exam = new Exam("Benchmark", "Autor", "Modul", "WS 2026", "Informatik", "Hochschule", "Keine");
+        String image = imageSize > 0 ? noisePng(imageSize, random) : null;
+        for (int i = 0; i < questions; i++) {
+            Question question = createQuestion(i, depth, mix, random);
+            question.setImageBase64(image);
+            exam.addQuestion(question);
+        }
+        return exam;
+    }
+
+    /**
+     * Creates a plain text of German sentences, one per line, for the rephrasing benchmark.
+     * @param sentences The number of sentences.
+     * @param seed The seed of the text generator.
+     * @return The text.
+     */
+    public static String text(int sentences, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < sentences; i++) {
+            text.append(sentence(random)).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static Question createQuestion(int index, int depth, String mix, SplittableRandom random) {
+        String type = typeOf(index, mix);
+        Question question = new Question("Frage " + (index + 1), null, 2 + random.nextInt(8), type, 0);
+        switch (type) {
+            case "MCQ" -> {
+                question.setText("<p>" + sentence(random) + "</p><ol><li>" + sentence(random) + "</li><li>"
+                        + sentence(random) + "</li><li>" + sentence(random) + "</li><li>" + sentence(random) + "</li></ol>");
+                question.setMusterloesung("A, C");
+            }
+            case "Lückentext" -> {
+                question.setText("<p>" + sentence(random) + " ____ " + sentence(random) + " ____ .</p>");
+                question.setMusterloesung("erste; zweite");
+            }
+            case "Richtig/Falsch" -> question.setMusterloesung(random.nextBoolean() ? "Richtig" : "Falsch");
+            default -> {
+                question.setText("<p>" + sentence(random) + " <b>" + sentence(random) + "</b></p><ul><li>"
+                        + sentence(random) + "</li><li>" + sentence(random) + "</li></ul><pre>int x = 1;\n    return x;</pre>");
+                question.setMusterloesung(sentence(random));
+                question.setAnswerLines(5);
+            }
+        }
+        if (depth > 0) {
+            for (int i = 0; i < 2; i++) {
+                question.addSubQuestion(createQuestion(index + i + 1, depth - 1, mix, random));
+            }
+        }
+        return question;
+    }
+
+    private static String typeOf(int index, String mix) {
+        return switch (mix) {
+            case "open" -> "Offene Frage";
+            case "mcq" -> "MCQ";
+            case "lueckentext" -> "Lückentext";
+            case "richtigfalsch" -> "Richtig/Falsch";
+            default -> MIXED_TYPES[index % MIXED_TYPES.length];
+        };
+    }
+
+    private static String sentence(SplittableRandom random) {
+        int words = 6 + random.nextInt(8);
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sentence.append(' ');
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.append('.').toString();
+    }
+
+    /**
+     * Encodes a square PNG of random pixels, which does not compress, so the payload grows with the edge length.
+     */
+    private static String noisePng(int size, SplittableRandom random) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return Base64.getEncoder().encodeToString(out.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
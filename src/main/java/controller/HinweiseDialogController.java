@@ -17,7 +17,8 @@ import java.util.List;
 /**
  * Controller for the "Hinweise" (Instructions) dialog, which allows the user
  * to configure general exam instructions, allowed aids (Hilfsmittel) using
- * checkboxes and custom text, and the exam duration (Bearbeitungszeit).
+ * checkboxes and custom text, the exam duration (Bearbeitungszeit), and the
+ * glossary of protected terms that varied versions must not rephrase.
  * It updates the corresponding fields in the {@link model.Exam} object and
  * provides a live preview of the generated instructions.
  */
@@ -40,6 +41,8 @@ public class HinweiseDialogController {
     @FXML
     private Spinner<Integer> bearbeitungszeitSpinner;
     @FXML
+    private TextArea glossarArea;
+    @FXML
     private Label hinweisePreviewLabel;
     @FXML
     private Button okButton;
@@ -103,6 +106,7 @@ public class HinweiseDialogController {
             }
         }
         hinweisAndere.setText(otherAids.toString());
+        glossarArea.setText(String.join("\n", exam.getGlossar()));
         
         updatePreview();
     }
@@ -153,7 +157,7 @@ public class HinweiseDialogController {
     /**
      * Handles the action when the OK button is clicked.
      * It saves the currently displayed instructions, exam duration,
-     * and selected aids back into the {@link model.Exam} object.
+     * selected aids and protected terms back into the {@link model.Exam} object.
      * Sets {@code okClicked} to true and closes the dialog stage.
      */
     @FXML
@@ -173,6 +177,14 @@ public class HinweiseDialogController {
         }
         exam.setHilfsmittel(String.join(", ", selectedAids));
 
+        List<String> glossar = new ArrayList<>();
+        for (String term : glossarArea.getText().split("\n")) {
+            if (!term.trim().isEmpty()) {
+                glossar.add(term.trim());
+            }
+        }
+        exam.setGlossar(glossar);
+
         okClicked = true;
         dialogStage.close();
     }
@@ -6,11 +6,16 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Base64;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -19,10 +24,6 @@ import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-
 import de.jensd.fx.glyphs.fontawesome.FontAwesomeIcon;
 import de.jensd.fx.glyphs.fontawesome.FontAwesomeIconView;
 import javafx.beans.property.SimpleStringProperty;
@@ -45,6 +46,7 @@ import javafx.scene.control.SeparatorMenuItem;
 import javafx.scene.control.Spinner;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
+import javafx.scene.control.TextInputDialog;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.control.Tooltip;
@@ -64,10 +66,19 @@ import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import model.Exam;
+import model.ImageBlob;
 import model.Question;
+import model.VariantPool;
+import service.BlobStore;
+import service.EditJournal;
+import service.ExamContainer;
+import service.ExamFiles;
+import service.PdfExporter;
+import service.StartupService;
+import service.VariantEngine;
 import service.WordExporter;
 import utils.LoadingIndicator;
-import utils.Rephraser;
+import utils.StartupTimer;
 
 /**
  * Primary controller for the ExamBuilder application's main view.
@@ -167,8 +178,8 @@ public class MainController {
     private Exam exam;
     private ContextMenu tableContextMenu;
     private List<String> germanUniversities;
-    private String newQuestionImageBase64 = null;
-    private String newQuestionSolutionImageBase64 = null;
+    private ImageBlob newQuestionImage = null;
+    private ImageBlob newQuestionSolutionImage = null;
     private TreeItem<Question> parentForSubQuestion = null;
     private Stage hinweiseDialogStage;
     private HinweiseDialogController hinweiseDialogController;
@@ -177,6 +188,10 @@ public class MainController {
     private boolean isPopulatingUI = false;
     private ChangeListener<String> questionTypeChangeListener;
     private boolean isDirty = false;
+    private File currentFile; // The file the exam was loaded from or saved to, or null
+    private EditJournal journal; // Autosaves the edits to the current exam
+    private final Map<UUID, Long> journaledVersions = new HashMap<>(); // Tree versions of the questions as journaled
+    private long journaledMetadataVersion;
 
     // ButtonTypes for unsaved changes dialog
     private final ButtonType saveButton = new ButtonType("Änderungen speichern");
@@ -190,9 +205,12 @@ public class MainController {
      */
     @FXML
     public void initialize() {
+        long initializeStart = StartupTimer.now();
         questionsTable.setEditable(true);
 
+        long universitiesStart = StartupTimer.now();
         loadUniversities();
+        StartupTimer.record("loadUniversities", universitiesStart);
         TextFields.bindAutoCompletion(hochschuleField, germanUniversities);
 
         setupChangeListeners();
@@ -346,6 +364,7 @@ public class MainController {
                     if (questionToUpdate.getText() == null || !questionToUpdate.getText().equals(questionTextField.getHtmlText())) {
                         questionToUpdate.setText(questionTextField.getHtmlText());
                         isDirty = true;
+                        journalQuestion(selectedItem);
                         // Wenn der Fragetyp MCQ ist, aktualisieren wir die Lösungs-Checkboxes
                         if ("MCQ".equals(questionToUpdate.getType())) {
                             updateSolutionPane(questionToUpdate);
@@ -354,6 +373,7 @@ public class MainController {
                 }
             }
         });
+        StartupTimer.record("initialize", initializeStart);
     }
 
     /**
@@ -371,6 +391,16 @@ public class MainController {
         fachbereichField.textProperty().addListener(dirtyStringListener);
         hochschuleField.textProperty().addListener(dirtyStringListener);
 
+        // The metadata is journaled when a field is left, not on every keystroke
+        ChangeListener<Boolean> metadataJournalListener = (obs, wasFocused, isFocused) -> {
+            if (!isFocused) {
+                journalMetadata();
+            }
+        };
+        for (TextField field : List.of(examTitleField, moduleField, semesterField, fachbereichField, hochschuleField)) {
+            field.focusedProperty().addListener(metadataJournalListener);
+        }
+
         questionTitleField.textProperty().addListener(dirtyStringListener);
         questionPointsField.textProperty().addListener(dirtyStringListener);
         answerLinesField.valueProperty().addListener(dirtyNumberListener);
@@ -481,7 +511,7 @@ public class MainController {
      * Configures the row factory for the {@code questionsTable}.
      * This setup includes adding change listeners to the {@code selectedProperty},
      * {@code startOnNewPageProperty}, and {@code justifyProperty} of each {@link model.Question}
-     * to update the {@code isDirty} flag when these properties are modified.
+     * to update the {@code isDirty} flag and journal the question when these properties are modified.
      * It also applies a CSS style ("deselected-row") to rows that are not selected for export.
      */
     private void setupRowFactory() {
@@ -492,7 +522,10 @@ public class MainController {
                     super.updateItem(item, empty);
                     getStyleClass().remove("deselected-row");
                     if (item != null && !empty) {
-                        ChangeListener<Boolean> dirtyListener = (obs, was, is) -> isDirty = true;
+                        ChangeListener<Boolean> dirtyListener = (obs, was, is) -> {
+                            isDirty = true;
+                            journalQuestionContaining(item);
+                        };
                         item.selectedProperty().addListener(dirtyListener);
                         item.startOnNewPageProperty().addListener(dirtyListener);
                         item.justifyProperty().addListener(dirtyListener);
@@ -550,11 +583,161 @@ public class MainController {
     /**
      * Sets the primary stage for this controller and initializes the "Hinweise" (Instructions) dialog.
      * This method is called by the main application class after loading the FXML.
+     * The metadata is journaled and the autosave journal is written to disk when the stage is closed.
      * @param primaryStage The primary stage of the JavaFX application.
      */
     public void setPrimaryStage(Stage primaryStage) {
         this.primaryStage = primaryStage;
         createHinweiseDialog();
+        primaryStage.setOnHidden(e -> {
+            journalMetadata();
+            journal.close();
+        });
+    }
+
+    /**
+     * Offers to recover the edits of an exam that was never saved, if the application
+     * was closed or crashed before saving it. This method is called by the main
+     * application class once the window is shown.
+     */
+    public void recoverUnsavedExam() {
+        offerRecovery(new Exam(exam));
+    }
+
+    /**
+     * Asks the user whether the edits in the {@link EditJournal} of the current exam
+     * should be recovered. If so, the journal is replayed over the given exam, which
+     * becomes the current exam; otherwise the journal is discarded.
+     *
+     * @param base The exam as it was loaded, which the journal is replayed over.
+     */
+    private void offerRecovery(Exam base) {
+        if (!journal.hasEdits()) {
+            return;
+        }
+        ButtonType recoverBtn = new ButtonType("Wiederherstellen", ButtonBar.ButtonData.YES);
+        ButtonType discardBtn = new ButtonType("Verwerfen", ButtonBar.ButtonData.NO);
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Ungespeicherte Änderungen gefunden");
+        alert.setHeaderText("ExamBuilder wurde beendet, bevor die letzten Änderungen"
+                + (currentFile != null ? " an " + currentFile.getName() : "") + " gespeichert wurden.");
+        alert.setContentText("Möchten Sie diese Änderungen wiederherstellen?");
+        alert.getButtonTypes().setAll(recoverBtn, discardBtn);
+
+        Optional<ButtonType> result = alert.showAndWait();
+        if (result.isEmpty() || result.get() != recoverBtn) {
+            journal.discard();
+            return;
+        }
+        try {
+            exam = journal.recover(base);
+            markJournaled();
+            updateUIFromExam();
+            clearQuestionFields();
+            setEditMode(false);
+            originalQuestionState = null;
+            isDirty = true;
+            updateTotalPoints();
+        } catch (IOException e) {
+            e.printStackTrace();
+            showErrorAlert("Wiederherstellung fehlgeschlagen", "Die Änderungen konnten nicht wiederhergestellt werden:\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends a changed question to the {@link EditJournal}. Sub-questions are journaled
+     * with their top-level question.
+     *
+     * @param item The {@code TreeItem} of the changed question.
+     */
+    private void journalQuestion(TreeItem<Question> item) {
+        while (item.getParent() != null && item.getParent() != questionsTable.getRoot()) {
+            item = item.getParent();
+        }
+        journalQuestion(item.getValue());
+    }
+
+    /**
+     * Appends a changed top-level question to the {@link EditJournal} and compacts
+     * the journal once it has grown too long. A question whose version did not change
+     * since it was journaled is skipped.
+     *
+     * @param question The changed top-level question.
+     */
+    private void journalQuestion(Question question) {
+        int index = exam.getQuestions().indexOf(question);
+        Long journaledVersion = journaledVersions.put(question.getId(), question.getTreeVersion());
+        if (index >= 0 && (journaledVersion == null || journaledVersion != question.getTreeVersion())) {
+            journal.putQuestion(index, question);
+        }
+        if (journal.needsCompaction()) {
+            journal.snapshot(exam);
+        }
+    }
+
+    /**
+     * Appends the top-level question containing a changed question or sub-question to the
+     * {@link EditJournal}, e.g. after a property was changed in its row or in the solution pane.
+     *
+     * @param question The changed question; nothing is journaled if it is not part of the exam.
+     */
+    private void journalQuestionContaining(Question question) {
+        for (Question topLevel : exam.getQuestions()) {
+            if (containsQuestion(topLevel, question)) {
+                journalQuestion(topLevel);
+                return;
+            }
+        }
+    }
+
+    private static boolean containsQuestion(Question tree, Question question) {
+        if (tree == question) {
+            return true;
+        }
+        for (Question subQuestion : tree.getSubQuestions()) {
+            if (containsQuestion(subQuestion, question)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies the metadata fields to the exam and appends them to the {@link EditJournal}.
+     */
+    private void journalMetadata() {
+        updateExamMetadata();
+        if (exam.getMetadataVersion() != journaledMetadataVersion) {
+            journaledMetadataVersion = exam.getMetadataVersion();
+            journal.putMetadata(exam);
+        }
+    }
+
+    /**
+     * Remembers the versions of the current exam as journaled, e.g. after it was loaded,
+     * saved or recovered, so only later changes are appended to the {@link EditJournal}.
+     */
+    private void markJournaled() {
+        journaledVersions.clear();
+        for (Question question : exam.getQuestions()) {
+            journaledVersions.put(question.getId(), question.getTreeVersion());
+        }
+        journaledMetadataVersion = exam.getMetadataVersion();
+    }
+
+    /**
+     * Replaces the {@link EditJournal} of the current exam, e.g. after it was saved under
+     * a new name. The edits in the old journal were saved or rejected, so it is discarded.
+     *
+     * @param file The file of the exam from now on, or {@code null} for an unsaved exam.
+     */
+    private void switchJournal(File file) {
+        if (journal != null) {
+            journal.discard();
+        }
+        currentFile = file;
+        journal = EditJournal.forExam(file);
+        markJournaled();
     }
 
     /**
@@ -563,6 +746,7 @@ public class MainController {
      * This dialog allows users to edit general exam instructions and aids.
      */
     private void createHinweiseDialog() {
+        long start = StartupTimer.now();
         try {
             FXMLLoader loader = new FXMLLoader();
             loader.setLocation(getClass().getResource("/fxml/HinweiseDialog.fxml"));
@@ -580,6 +764,7 @@ public class MainController {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        StartupTimer.record("Hinweise-Dialog erstellen", start);
     }
 
     /**
@@ -595,6 +780,7 @@ public class MainController {
             hinweiseDialogStage.showAndWait();
             // After the dialog is closed, we assume changes might have been made.
             isDirty = true;
+            journalMetadata();
         } else {
             System.err.println("Hinweise Dialog could not be created.");
         }
@@ -740,7 +926,7 @@ public class MainController {
     /**
      * Populates the editing fields (title, text, solution, points, type, etc.)
      * with the details of the provided {@link model.Question} object.
-     * It also handles decoding and displaying question and solution images from Base64.
+     * It also handles displaying question and solution images.
      *
      * @param question The {@link model.Question} object whose details are to be displayed.
      */
@@ -761,10 +947,9 @@ public class MainController {
         answerLinesField.getValueFactory().setValue(question.getAnswerLines());
         largeAnswerBoxCheckBox.setSelected(question.isLargeAnswerBox());
 
-        newQuestionImageBase64 = question.getImageBase64();
-        if (newQuestionImageBase64 != null && !newQuestionImageBase64.isEmpty()) {
-            byte[] imageBytes = Base64.getDecoder().decode(newQuestionImageBase64);
-            questionImageView.setImage(new Image(new ByteArrayInputStream(imageBytes)));
+        newQuestionImage = question.getImage();
+        if (newQuestionImage != null && newQuestionImage.getData().length > 0) {
+            questionImageView.setImage(new Image(new ByteArrayInputStream(newQuestionImage.getData())));
         } else {
             questionImageView.setImage(null);
         }
@@ -892,9 +1077,11 @@ public class MainController {
 
         if (parentForSubQuestion != null) {
             parentForSubQuestion.getValue().addSubQuestion(newQuestion);
-            parentForSubQuestion = null; 
+            journalQuestion(parentForSubQuestion);
+            parentForSubQuestion = null;
         } else {
             exam.addQuestion(newQuestion);
+            journalQuestion(newQuestion);
         }
 
         isDirty = true;
@@ -961,12 +1148,13 @@ public class MainController {
                 questionToUpdate.setStartOnNewPage(itemToUpdate.getValue().isStartOnNewPage()); 
                 questionToUpdate.setJustify(itemToUpdate.getValue().isJustify());
                 questionToUpdate.setLargeAnswerBox(largeAnswerBoxCheckBox.isSelected());
-                if (newQuestionImageBase64 != null) {
-                    questionToUpdate.setImageBase64(newQuestionImageBase64);
+                if (newQuestionImage != null) {
+                    questionToUpdate.setImage(newQuestionImage);
                 }
                 // The musterloesung and musterloesungImage are now updated directly on the question object by the UI controls.
                 
                 isDirty = true;
+                journalQuestion(itemToUpdate);
                 questionsTable.refresh();
                 updateTotalPoints();
                 this.originalQuestionState = new Question(questionToUpdate);
@@ -999,9 +1187,12 @@ public class MainController {
                 if (response == ButtonType.OK) {
                     TreeItem<Question> parent = selectedItem.getParent();
                     if (parent != null && parent != questionsTable.getRoot()) {
-                        parent.getValue().getSubQuestions().remove(selectedItem.getValue());
+                        parent.getValue().removeSubQuestion(selectedItem.getValue());
+                        journalQuestion(parent);
                     } else {
                         exam.getQuestions().remove(selectedItem.getValue());
+                        journaledVersions.remove(selectedItem.getValue().getId());
+                        journal.deleteQuestion(selectedItem.getValue().getId());
                     }
                     isDirty = true;
                     refreshTreeTableView();
@@ -1016,7 +1207,7 @@ public class MainController {
     /**
      * Allows the user to select an image file from their file system and
      * attaches it to the currently active question. The image is converted
-     * to a Base64 string for storage and displayed in the UI.
+     * to an {@link model.ImageBlob} for storage and displayed in the UI.
      * This method is triggered when the "Bild hinzufügen" (Add Image) button is pressed.
      */
     @FXML
@@ -1039,8 +1230,7 @@ public class MainController {
         if (selectedFile != null) {
             try {
                 byte[] fileContent = Files.readAllBytes(selectedFile.toPath());
-                String base64String = Base64.getEncoder().encodeToString(fileContent);
-                newQuestionImageBase64 = base64String;
+                newQuestionImage = ImageBlob.of(fileContent);
                 questionImageView.setImage(new Image(new ByteArrayInputStream(fileContent)));
                 isDirty = true;
             } catch (IOException e) {
@@ -1051,11 +1241,11 @@ public class MainController {
 
     /**
      * Removes the image currently associated with the question being edited.
-     * Clears the image from display and resets its Base64 representation.
+     * Clears the image from display and resets its {@link model.ImageBlob}.
      */
     @FXML
     private void removeImage() {
-        newQuestionImageBase64 = null;
+        newQuestionImage = null;
         questionImageView.setImage(null);
         isDirty = true;
     }
@@ -1063,7 +1253,7 @@ public class MainController {
     /**
      * Allows the user to select an image file from their file system to be used
      * as a solution image for the currently active question. The image is converted
-     * to a Base64 string for storage and displayed in the UI.
+     * to an {@link model.ImageBlob} for storage and displayed in the UI.
      */
     @FXML
     private void addSolutionImage() {
@@ -1077,8 +1267,7 @@ public class MainController {
         if (selectedFile != null) {
             try {
                 byte[] fileContent = Files.readAllBytes(selectedFile.toPath());
-                String base64String = Base64.getEncoder().encodeToString(fileContent);
-                newQuestionSolutionImageBase64 = base64String;
+                newQuestionSolutionImage = ImageBlob.of(fileContent);
                 musterloesungImageView.setImage(new Image(new ByteArrayInputStream(fileContent)));
                 isDirty = true;
             } catch (IOException e) {
@@ -1089,11 +1278,11 @@ public class MainController {
 
     /**
      * Removes the solution image currently associated with the question being edited.
-     * Clears the solution image from display and resets its Base64 representation.
+     * Clears the solution image from display and resets its {@link model.ImageBlob}.
      */
     @FXML
     private void removeSolutionImage() {
-        newQuestionSolutionImageBase64 = null;
+        newQuestionSolutionImage = null;
         musterloesungImageView.setImage(null);
         isDirty = true;
     }
@@ -1141,8 +1330,8 @@ public class MainController {
         newQuestion.setJustify("Lückentext".equals(type));
         newQuestion.setLargeAnswerBox(largeAnswerBoxCheckBox.isSelected());
         
-        if (newQuestionImageBase64 != null) {
-            newQuestion.setImageBase64(newQuestionImageBase64);
+        if (newQuestionImage != null) {
+            newQuestion.setImage(newQuestionImage);
         }
         
         return newQuestion;
@@ -1229,6 +1418,7 @@ public class MainController {
             Task<Void> exportTask = new Task<>() {
                 @Override
                 protected Void call() throws Exception {
+                    StartupService.wordExportReady().join(); // Let a running warm-up finish instead of competing with it
                     WordExporter.export(examToExport, file.getAbsolutePath());
                     return null;
                 }
@@ -1273,6 +1463,7 @@ public class MainController {
             Task<Void> exportTask = new Task<>() {
                 @Override
                 protected Void call() throws Exception {
+                    StartupService.wordExportReady().join(); // Let a running warm-up finish instead of competing with it
                     WordExporter.exportWithSolutions(examToExport, file.getAbsolutePath());
                     return null;
                 }
@@ -1293,7 +1484,137 @@ public class MainController {
     }
 
     /**
-     * Saves the current exam data to a JSON file chosen by the user.
+     * Exports the current exam (or selected questions) to a PDF document.
+     * Works like {@link #exportToWord()}, but uses the {@link PdfExporter}.
+     */
+    @FXML
+    private void exportToPdf() {
+        updateExamMetadata();
+        List<Question> questionsToExport = getQuestionsForExport();
+        if (questionsToExport == null) return;
+
+        Exam examToExport = new Exam(exam);
+        examToExport.setQuestions(questionsToExport);
+
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Save Exam as PDF Document");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF Documents", "*.pdf"));
+        fileChooser.setInitialFileName(exam.getTitle() + ".pdf");
+        Stage stage = (Stage) mainPane.getScene().getWindow();
+        File file = fileChooser.showSaveDialog(stage);
+        if (file != null) {
+            Task<Void> exportTask = new Task<>() {
+                @Override
+                protected Void call() throws Exception {
+                    PdfExporter.export(examToExport, file.getAbsolutePath());
+                    return null;
+                }
+            };
+            exportTask.setOnSucceeded(e -> {
+                LoadingIndicator.hide();
+                showSuccessAlert("Export erfolgreich", "Die Prüfungsdatei wurde erfolgreich erstellt:\n" + file.getAbsolutePath());
+            });
+            exportTask.setOnFailed(e -> {
+                LoadingIndicator.hide();
+                Throwable ex = exportTask.getException();
+                ex.printStackTrace();
+                showErrorAlert("Export fehlgeschlagen", "Ein Fehler ist aufgetreten:\n" + ex.getMessage());
+            });
+            new Thread(exportTask).start();
+            LoadingIndicator.show();
+        }
+    }
+
+    /**
+     * Exports the answer key for the current exam (or selected questions) to a PDF document.
+     * Works like {@link #exportAnswerKey()}, but uses the {@link PdfExporter}.
+     */
+    @FXML
+    private void exportAnswerKeyToPdf() {
+        updateExamMetadata();
+        List<Question> questionsToExport = getQuestionsForExport();
+        if (questionsToExport == null) return;
+
+        Exam examToExport = new Exam(exam);
+        examToExport.setQuestions(questionsToExport);
+
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Save Answer Key as PDF Document");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF Documents", "*.pdf"));
+        fileChooser.setInitialFileName(exam.getTitle() + "_Lösungen.pdf");
+        Stage stage = (Stage) mainPane.getScene().getWindow();
+        File file = fileChooser.showSaveDialog(stage);
+        if (file != null) {
+            Task<Void> exportTask = new Task<>() {
+                @Override
+                protected Void call() throws Exception {
+                    PdfExporter.exportWithSolutions(examToExport, file.getAbsolutePath());
+                    return null;
+                }
+            };
+            exportTask.setOnSucceeded(e -> {
+                LoadingIndicator.hide();
+                showSuccessAlert("Export erfolgreich", "Das Lösungsblatt wurde erfolgreich erstellt:\n" + file.getAbsolutePath());
+            });
+            exportTask.setOnFailed(e -> {
+                LoadingIndicator.hide();
+                Throwable ex = exportTask.getException();
+                ex.printStackTrace();
+                showErrorAlert("Export fehlgeschlagen", "Ein Fehler ist aufgetreten:\n" + ex.getMessage());
+            });
+            new Thread(exportTask).start();
+            LoadingIndicator.show();
+        }
+    }
+
+    /**
+     * Exports the exam and its answer key in a single pass (see {@link WordExporter#exportBoth(Exam, String, String)}).
+     * The user chooses the location of the exam; the answer key is saved next to it
+     * with the suffix "_Lösungen", like the default name of {@link #exportAnswerKey()}.
+     */
+    @FXML
+    private void exportExamAndAnswerKey() {
+        updateExamMetadata();
+        List<Question> questionsToExport = getQuestionsForExport();
+        if (questionsToExport == null) return;
+
+        Exam examToExport = new Exam(exam);
+        examToExport.setQuestions(questionsToExport);
+
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Save Exam and Answer Key as Word Documents");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Word Documents", "*.docx"));
+        fileChooser.setInitialFileName(exam.getTitle() + ".docx");
+        Stage stage = (Stage) mainPane.getScene().getWindow();
+        File file = fileChooser.showSaveDialog(stage);
+        if (file != null) {
+            String baseName = file.getName().toLowerCase().endsWith(".docx") ? file.getName().substring(0, file.getName().length() - 5) : file.getName();
+            File answerKeyFile = new File(file.getParentFile(), baseName + "_Lösungen.docx");
+            Task<Void> exportTask = new Task<>() {
+                @Override
+                protected Void call() throws Exception {
+                    StartupService.wordExportReady().join(); // Let a running warm-up finish instead of competing with it
+                    WordExporter.exportBoth(examToExport, file.getAbsolutePath(), answerKeyFile.getAbsolutePath());
+                    return null;
+                }
+            };
+            exportTask.setOnSucceeded(e -> {
+                LoadingIndicator.hide();
+                showSuccessAlert("Export erfolgreich", "Die Prüfungsdatei und das Lösungsblatt wurden erfolgreich erstellt:\n" + file.getAbsolutePath() + "\n" + answerKeyFile.getAbsolutePath());
+            });
+            exportTask.setOnFailed(e -> {
+                LoadingIndicator.hide();
+                Throwable ex = exportTask.getException();
+                ex.printStackTrace();
+                showErrorAlert("Export fehlgeschlagen", "Ein Fehler ist aufgetreten:\n" + ex.getMessage());
+            });
+            new Thread(exportTask).start();
+            LoadingIndicator.show();
+        }
+    }
+
+    /**
+     * Saves the current exam data to a file chosen by the user.
      * This method calls {@link #saveExamToJsonWithResult()} to perform the actual save operation.
      */
     @FXML
@@ -1304,25 +1625,32 @@ public class MainController {
     /**
      * Updates the exam metadata from the UI fields, prompts the user for a file
      * save location, and then serializes the entire {@link model.Exam} object
-     * to a JSON file. The {@code isDirty} flag is reset upon successful save.
+     * to an exam container ({@link ExamContainer}) or a JSON file, depending on the chosen
+     * extension. A JSON file refers to its images in the folder next to it, unless the filter
+     * with embedded images is chosen. The {@code isDirty} flag is reset upon successful save.
      *
-     * @return {@code true} if the exam was successfully saved to a JSON file, {@code false} otherwise.
+     * @return {@code true} if the exam was successfully saved, {@code false} otherwise.
      */
     private boolean saveExamToJsonWithResult() {
         updateExamMetadata();
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.enable(SerializationFeature.INDENT_OUTPUT);
             FileChooser fileChooser = new FileChooser();
-            fileChooser.setTitle("Save Exam as JSON");
-            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON Files", "*.json"));
-            fileChooser.setInitialFileName(exam.getTitle() + ".json");
+            fileChooser.setTitle("Save Exam");
+            FileChooser.ExtensionFilter embeddedImagesFilter = new FileChooser.ExtensionFilter("JSON mit eingebetteten Bildern", "*.json");
+            fileChooser.getExtensionFilters().addAll(
+                    new FileChooser.ExtensionFilter("ExamBuilder-Prüfung", "*" + ExamContainer.EXTENSION),
+                    new FileChooser.ExtensionFilter("JSON Files", "*.json"),
+                    embeddedImagesFilter
+            );
+            fileChooser.setInitialFileName(exam.getTitle() + ExamContainer.EXTENSION);
             Stage stage = (Stage) mainPane.getScene().getWindow();
             File file = fileChooser.showSaveDialog(stage);
             if (file != null) {
-                mapper.writeValue(file, exam);
+                ExamFiles.save(exam, file, fileChooser.getSelectedExtensionFilter() == embeddedImagesFilter);
                 isDirty = false;
-                System.out.println("Exam saved to JSON: " + file.getAbsolutePath());
+                switchJournal(file);
+                journal.discard(); // Edits left over from an earlier session are saved over
+                System.out.println("Exam saved to: " + file.getAbsolutePath());
                 return true;
             } else {
                 return false; 
@@ -1334,10 +1662,13 @@ public class MainController {
     }
 
     /**
-     * Creates and exports a varied version of the exam. This involves
+     * Creates and exports a varied version of the exam with the {@link VariantEngine}. This involves
      * rephrasing question texts using the {@link utils.Rephraser} utility
      * and shuffling the order of sub-questions (if no page breaks are present).
-     * The user is prompted to save the varied exam as either a Word document or a JSON file.
+     * The variant is derived from a matriculation number entered by the user, so the same
+     * number always reproduces the same variant. Questions with a precomputed pool (see
+     * {@link #buildVariantPool()}) take one of its versions instead of being rephrased.
+     * The user is prompted to save the varied exam as either a Word document, an exam container or a JSON file.
      * The operation is performed in a background task with a loading indicator.
      */
     @FXML
@@ -1349,13 +1680,26 @@ public class MainController {
         Exam examToExport = new Exam(exam);
         examToExport.setQuestions(questionsToExport);
 
+        // The variant is derived from the matriculation number, so it can be regenerated at any time
+        TextInputDialog studentDialog = new TextInputDialog();
+        studentDialog.setTitle("Variierte Version");
+        studentDialog.setHeaderText("Für welche Matrikelnummer soll die Variante erstellt werden?\nDieselbe Matrikelnummer ergibt immer dieselbe Variante.");
+        studentDialog.setContentText("Matrikelnummer (leer für eine zufällige Variante):");
+        Optional<String> studentInput = studentDialog.showAndWait();
+        if (studentInput.isEmpty()) return;
+        String matriculationNumber = studentInput.get().trim();
+        long variantSeed = matriculationNumber.isEmpty()
+                ? new SplittableRandom().nextLong()
+                : VariantEngine.seedFor(VariantEngine.examId(examToExport), matriculationNumber);
+
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Save Varied Exam");
         fileChooser.getExtensionFilters().addAll(
                 new FileChooser.ExtensionFilter("Word Documents", "*.docx"),
+                new FileChooser.ExtensionFilter("ExamBuilder-Prüfung", "*" + ExamContainer.EXTENSION),
                 new FileChooser.ExtensionFilter("JSON Files", "*.json")
         );
-        fileChooser.setInitialFileName(exam.getTitle() + "_varied");
+        fileChooser.setInitialFileName(exam.getTitle() + "_varied" + (matriculationNumber.isEmpty() ? "" : "_" + matriculationNumber));
         Stage stage = (Stage) mainPane.getScene().getWindow();
         File file = fileChooser.showSaveDialog(stage);
 
@@ -1365,13 +1709,8 @@ public class MainController {
             Task<Exam> rephraseAndShuffleTask = new Task<>() {
                 @Override
                 protected Exam call() throws Exception {
-                    Exam variedExam = new Exam(examToExport);
-                    List<Question> processedQuestions = new ArrayList<>();
-                    for (Question originalQuestion : variedExam.getQuestions()) {
-                        processedQuestions.add(createVariedQuestionRecursive(originalQuestion));
-                    }
-                    variedExam.setQuestions(processedQuestions);
-                    return variedExam;
+                    StartupService.thesaurusReady().join(); // Let a running warm-up finish instead of competing with it
+                    return VariantEngine.createVariant(examToExport, variantSeed);
                 }
             };
 
@@ -1383,10 +1722,8 @@ public class MainController {
                         String fileName = file.getName();
                         if (fileName.endsWith(".docx")) {
                             WordExporter.export(variedExam, file.getAbsolutePath());
-                        } else if (fileName.endsWith(".json")) {
-                            ObjectMapper mapper = new ObjectMapper();
-                            mapper.enable(SerializationFeature.INDENT_OUTPUT);
-                            mapper.writeValue(file, variedExam);
+                        } else if (fileName.endsWith(".json") || ExamContainer.isContainer(file)) {
+                            ExamFiles.save(variedExam, file);
                         } else {
                             throw new IOException("Unsupported file type selected.");
                         }
@@ -1420,11 +1757,78 @@ public class MainController {
     }
 
     /**
-     * Imports exam data from a JSON file selected by the user.
+     * Precomputes a pool of varied versions for every question with the {@link VariantEngine}, so
+     * that later varied versions are assembled from the pool instead of being rephrased. The user
+     * chooses the number of versions per question, which becomes the variant count of the exam;
+     * since a different count changes the variants of all students, changing it must be confirmed.
+     * The pools are created in a background task from a copy of the exam and stored afterwards for
+     * all questions that have not been changed meanwhile; they are saved with the exam.
+     */
+    @FXML
+    private void buildVariantPool() {
+        updateExamMetadata();
+        TextInputDialog sizeDialog = new TextInputDialog(String.valueOf(exam.getVariantCount() > 0 ? exam.getVariantCount() : 8));
+        sizeDialog.setTitle("Variantenpool");
+        sizeDialog.setHeaderText("Wie viele Varianten sollen je Frage vorberechnet werden?\nVariierte Versionen werden danach ohne Umformulieren aus dem Pool zusammengestellt.");
+        sizeDialog.setContentText("Varianten je Frage:");
+        Optional<String> sizeInput = sizeDialog.showAndWait();
+        if (sizeInput.isEmpty()) return;
+        int size;
+        try {
+            size = Integer.parseInt(sizeInput.get().trim());
+        } catch (NumberFormatException e) {
+            size = 0;
+        }
+        if (size < 1 || size > 100) {
+            showErrorAlert("Ungültige Eingabe", "Bitte eine Zahl zwischen 1 und 100 eingeben.");
+            return;
+        }
+        if (size != exam.getVariantCount()) {
+            Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+            alert.setTitle("Variantenpool");
+            alert.setHeaderText(exam.getVariantCount() > 0
+                    ? "Die Prüfung hat bisher " + exam.getVariantCount() + " Varianten je Frage."
+                    : "Bisher erhält jede Matrikelnummer eine eigene Variante.");
+            alert.setContentText("Mit " + size + " Varianten je Frage ändern sich die Varianten aller Matrikelnummern; "
+                    + "bereits ausgegebene Varianten lassen sich danach nicht mehr erzeugen. Fortfahren?");
+            if (alert.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) return;
+            exam.setVariantCount(size);
+            isDirty = true;
+        }
+
+        Exam snapshot = new Exam(exam);
+        int poolSize = size;
+        Task<Map<UUID, VariantPool>> poolTask = new Task<>() {
+            @Override
+            protected Map<UUID, VariantPool> call() {
+                StartupService.thesaurusReady().join();
+                return VariantEngine.createPools(snapshot);
+            }
+        };
+        poolTask.setOnSucceeded(e -> {
+            LoadingIndicator.hide();
+            int applied = VariantEngine.applyPools(exam, poolTask.getValue());
+            isDirty = true;
+            journal.snapshot(exam); // Every question changed
+            showSuccessAlert("Variantenpool erstellt", applied + " Fragen haben jetzt je " + poolSize + " vorberechnete Varianten.");
+        });
+        poolTask.setOnFailed(e -> {
+            LoadingIndicator.hide();
+            Throwable ex = poolTask.getException();
+            ex.printStackTrace();
+            showErrorAlert("Variantenpool fehlgeschlagen", "Ein Fehler ist aufgetreten:\n" + ex.getMessage());
+        });
+        new Thread(poolTask).start();
+        LoadingIndicator.show();
+    }
+
+    /**
+     * Imports exam data from an exam container or a JSON file selected by the user.
      * Before importing, it checks for unsaved changes in the current exam
-     * and prompts the user to save or discard them. It also includes logic
-     * to process questions from older JSON formats to ensure compatibility
-     * with the {@code HTMLEditor}.
+     * and prompts the user to save or discard them. Files of older formats are
+     * migrated by the {@link service.ExamCodec} while they are loaded (e.g. plain
+     * text MCQ options become an HTML list for the {@code HTMLEditor}). The file
+     * is loaded in a background task that shows its progress in the {@link LoadingIndicator}.
      */
     @FXML
     private void importExamFromJson() {
@@ -1453,61 +1857,48 @@ public class MainController {
             }
         }
 
-        try {
-            FileChooser fileChooser = new FileChooser();
-            fileChooser.setTitle("Open Exam JSON File");
-            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON Files", "*.json"));
-            Stage stage = (Stage) mainPane.getScene().getWindow();
-            File file = fileChooser.showOpenDialog(stage);
-            if (file != null) {
-                ObjectMapper mapper = new ObjectMapper();
-                mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-                exam = mapper.readValue(file, Exam.class);
-
-                if (exam.getQuestions() != null) {
-                    for (Question q : exam.getQuestions()) {
-                        processQuestionForHtmlConversion(q);
-                    }
-                }
-
-                updateUIFromExam();
-                clearQuestionFields();
-                setEditMode(false);
-                originalQuestionState = null;
-                isDirty = true;
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Open Exam");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("ExamBuilder-Prüfungen", "*" + ExamContainer.EXTENSION, "*.json"),
+                new FileChooser.ExtensionFilter("ExamBuilder-Prüfung", "*" + ExamContainer.EXTENSION),
+                new FileChooser.ExtensionFilter("JSON Files", "*.json")
+        );
+        Stage stage = (Stage) mainPane.getScene().getWindow();
+        File file = fileChooser.showOpenDialog(stage);
+        if (file == null) {
+            return;
         }
-    }
 
-    /**
-     * Recursively processes a {@link model.Question} (and its sub-questions)
-     * to convert plain text MCQ options into an HTML list format.
-     * This ensures compatibility with the {@code HTMLEditor} and proper rendering
-     * in the exported Word document, especially for older JSON imports.
-     *
-     * @param question The {@link model.Question} object to process.
-     */
-    private void processQuestionForHtmlConversion(Question question) {
-        if ("MCQ".equals(question.getType()) && question.getText() != null && !question.getText().trim().isEmpty() && !question.getText().contains("<li>")) {
-            String plainText = question.getText();
-            String[] lines = plainText.split("\\s*\\n\\s*"); 
-            StringBuilder html = new StringBuilder("<ol>");
-            for (String line : lines) {
-                if (!line.trim().isEmpty()) {
-                    html.append("<li>").append(line.trim()).append("</li>");
-                }
+        Set<String> missingImages = new LinkedHashSet<>();
+        Task<Exam> loadTask = new Task<>() {
+            @Override
+            protected Exam call() throws IOException {
+                return ExamFiles.load(file, progress -> updateProgress(progress, 1.0), missingImages);
             }
-            html.append("</ol>");
-            question.setText(html.toString());
-        }
-    
-        if (question.getSubQuestions() != null) {
-            for (Question subQ : question.getSubQuestions()) {
-                processQuestionForHtmlConversion(subQ);
+        };
+        loadTask.setOnSucceeded(e -> {
+            LoadingIndicator.hide();
+            exam = loadTask.getValue();
+            updateUIFromExam();
+            clearQuestionFields();
+            setEditMode(false);
+            originalQuestionState = null;
+            isDirty = true;
+            switchJournal(file);
+            if (!missingImages.isEmpty()) {
+                showMissingImagesAlert(file, missingImages);
             }
-        }
+            offerRecovery(exam);
+        });
+        loadTask.setOnFailed(e -> {
+            LoadingIndicator.hide();
+            Throwable ex = loadTask.getException();
+            ex.printStackTrace();
+            showErrorAlert("Import fehlgeschlagen", "Die Datei konnte nicht geladen werden:\n" + ex.getMessage());
+        });
+        new Thread(loadTask).start();
+        LoadingIndicator.show(loadTask);
     }
 
     /**
@@ -1557,71 +1948,8 @@ public class MainController {
         answerLinesField.getValueFactory().setValue(0);
         largeAnswerBoxCheckBox.setSelected(false);
         questionImageView.setImage(null);
-        newQuestionImageBase64 = null;
-        newQuestionSolutionImageBase64 = null;
-    }
-
-    /**
-     * Recursively creates a varied version of a given {@link model.Question}.
-     * This involves rephrasing the question's title and text using the
-     * {@link utils.Rephraser} utility and optionally shuffling its sub-questions.
-     * Sub-questions are shuffled only if none of them are marked to start on a new page.
-     *
-     * @param originalQuestion The {@link model.Question} to create a varied copy of.
-     * @return A new {@link model.Question} object representing the varied version.
-     */
-    private Question createVariedQuestionRecursive(Question originalQuestion) {
-        Question copiedQuestion = new Question(originalQuestion);
-
-        // Rephrase title and text safely, ignoring code blocks in the text
-        String rephrasedTitle = Rephraser.rephrase(originalQuestion.getTitle());
-        String rephrasedText = rephraseHtmlSafely(originalQuestion.getText());
-        copiedQuestion.setTitle(rephrasedTitle);
-        copiedQuestion.setText(rephrasedText);
-
-        if (originalQuestion.getSubQuestions() != null && !originalQuestion.getSubQuestions().isEmpty()) {
-            List<Question> processedSubQuestions = new ArrayList<>();
-            boolean containsPageBreak = false;
-            for (Question originalSubQuestion : originalQuestion.getSubQuestions()) {
-                processedSubQuestions.add(createVariedQuestionRecursive(originalSubQuestion));
-                if (originalSubQuestion.isStartOnNewPage()) {
-                    containsPageBreak = true;
-                }
-            }
-
-            if (!containsPageBreak) {
-                Collections.shuffle(processedSubQuestions);
-            }
-
-            copiedQuestion.setSubQuestions(processedSubQuestions);
-        }
-        return copiedQuestion;
-    }
-
-    private String rephraseHtmlSafely(String html) {
-        if (html == null || html.isEmpty()) {
-            return html;
-        }
-        Document doc = Jsoup.parse(html);
-        // Select all elements to traverse them
-        for (Element element : doc.select("body").select("*")) {
-            // Find text nodes that are direct children of the current element
-            for (org.jsoup.nodes.TextNode tn : element.textNodes()) {
-                 boolean inCode = false;
-                 Element parent = (Element) tn.parent();
-                 while (parent != null && !parent.tagName().equals("body")) {
-                     if (parent.tagName().equals("code") || parent.tagName().equals("pre")) {
-                         inCode = true;
-                         break;
-                     }
-                     parent = parent.parent();
-                 }
-                 if (!inCode) {
-                     tn.text(Rephraser.rephrase(tn.text()));
-                 }
-            }
-        }
-        return doc.body().html();
+        newQuestionImage = null;
+        newQuestionSolutionImage = null;
     }
 
     /**
@@ -1664,8 +1992,9 @@ public class MainController {
         boolean pointsChanged = originalQuestionState.getPoints() != currentPoints;
         boolean typeChanged = !Objects.equals(originalQuestionState.getType(), questionTypeField.getValue());
         boolean answerLinesChanged = originalQuestionState.getAnswerLines() != answerLinesField.getValue();
-        boolean imageChanged = !Objects.equals(originalQuestionState.getImageBase64(), newQuestionImageBase64);
-        boolean solutionImageChanged = !Objects.equals(originalQuestionState.getMusterloesungImageBase64(), currentQuestion.getMusterloesungImageBase64());
+        // Images are compared by their hashes
+        boolean imageChanged = !Objects.equals(originalQuestionState.getImage(), newQuestionImage);
+        boolean solutionImageChanged = !Objects.equals(originalQuestionState.getMusterloesungImage(), currentQuestion.getMusterloesungImage());
 
         return titleChanged || textChanged || musterloesungChanged || pointsChanged || typeChanged || answerLinesChanged || imageChanged || solutionImageChanged;
     }
@@ -1790,7 +2119,8 @@ public class MainController {
      * Resets the application to a fresh, empty exam state.
      * This involves creating a new {@link model.Exam} object, updating the UI
      * to reflect the empty state, clearing all question editing fields,
-     * disabling edit mode, and resetting dirty flags.
+     * disabling edit mode, resetting dirty flags and switching to the
+     * {@link EditJournal} of an unsaved exam.
      */
     private void resetExam() {
         exam = new Exam("", "", "", "", "", "", "");
@@ -1800,6 +2130,7 @@ public class MainController {
         originalQuestionState = null;
         isDirty = false;
         updateTotalPoints();
+        switchJournal(null);
     }
 
     /**
@@ -1832,6 +2163,26 @@ public class MainController {
         });
     }
 
+    /**
+     * Warns once that images of a loaded exam were not found, e.g. because the exam file was
+     * copied without the folder of its images, and lists their hashes.
+     * @param file The loaded file.
+     * @param missingImages The hashes of the missing images.
+     */
+    private void showMissingImagesAlert(File file, Set<String> missingImages) {
+        javafx.application.Platform.runLater(() -> {
+            Alert alert = new Alert(Alert.AlertType.WARNING);
+            alert.setTitle("Bilder fehlen");
+            alert.setHeaderText(missingImages.size() + " Bild(er) wurden nicht gefunden. Die Fragen wurden ohne sie geladen.");
+            alert.setContentText("Die Bilder einer JSON-Datei liegen im Ordner \"" + BlobStore.DIRECTORY_NAME + "\" neben "
+                    + file.getName() + ". Um eine Prüfung als einzelne Datei weiterzugeben, speichern Sie sie als "
+                    + "ExamBuilder-Prüfung (" + ExamContainer.EXTENSION + ") oder als JSON mit eingebetteten Bildern.\n\n"
+                    + "Fehlende Bilder:\n" + String.join("\n", missingImages.stream().limit(10).toList())
+                    + (missingImages.size() > 10 ? "\n…" : ""));
+            alert.showAndWait();
+        });
+    }
+
     private void updateSolutionPane(Question question) {
         solutionInputContainer.getChildren().clear();
         String questionType = questionTypeField.getValue(); 
@@ -1861,6 +2212,7 @@ public class MainController {
                     } else {
                         question.setMusterloesung("");
                     }
+                    journalQuestionContaining(question);
                 });
 
                 solutionInputContainer.getChildren().addAll(new HBox(10, trueButton, falseButton));
@@ -1884,6 +2236,12 @@ public class MainController {
                     question.setMusterloesung(nao);
                     isDirty = true;
                 });
+                // Journaled when the field is left, not on every keystroke
+                musterloesungField.focusedProperty().addListener((obs, wasFocused, isFocused) -> {
+                    if (!isFocused) {
+                        journalQuestionContaining(question);
+                    }
+                });
 
                 addSolutionImageButton = new Button("Lösungsbild hinzufügen");
                 addSolutionImageButton.setOnAction(e -> addSolutionImage());
@@ -1904,10 +2262,9 @@ public class MainController {
                     }
                 });
 
-                newQuestionSolutionImageBase64 = question.getMusterloesungImageBase64();
-                if (newQuestionSolutionImageBase64 != null && !newQuestionSolutionImageBase64.isEmpty()) {
-                    byte[] imageBytes = Base64.getDecoder().decode(newQuestionSolutionImageBase64);
-                    musterloesungImageView.setImage(new Image(new ByteArrayInputStream(imageBytes)));
+                newQuestionSolutionImage = question.getMusterloesungImage();
+                if (newQuestionSolutionImage != null && newQuestionSolutionImage.getData().length > 0) {
+                    musterloesungImageView.setImage(new Image(new ByteArrayInputStream(newQuestionSolutionImage.getData())));
                 }
 
                 VBox textAndBtnBox = new VBox(5, musterloesungField, addSolutionImageButton);
@@ -1947,6 +2304,7 @@ public class MainController {
                     Collections.sort(correctAnswers);
                     question.setMusterloesung(String.join(", ", correctAnswers));
                     isDirty = true;
+                    journalQuestionContaining(question);
                 });
                 mcqSolutionBox.getChildren().add(cb);
             }
@@ -0,0 +1,391 @@
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import model.Exam;
+import service.ExamFiles;
+import service.PdfExporter;
+import service.StreamingWordExporter;
+import service.VariantEngine;
+import service.WordExporter;
+
+/**
+ * Headless entry point that exports a batch of exam files (JSON or {@code .exam} containers) without
+ * starting the JavaFX UI.
+ * <p>
+ * Usage: {@code BatchExport [options] <output-dir> <input>...}
+ * <ul>
+ *   <li>{@code <input>} is an exam file, a directory (all *.json and *.exam files in it) or a glob like {@code exams/**}{@code /*.json}.</li>
+ *   <li>{@code --threads N} sets the number of worker threads (default: number of processors).</li>
+ *   <li>{@code --solutions} exports the answer key, {@code --both} the exam and the answer key.</li>
+ *   <li>{@code --pdf} writes PDF documents instead of Word documents.</li>
+ *   <li>{@code --streaming} writes the Word documents with the {@link StreamingWordExporter}, which
+ *       streams them into the file instead of building them in memory, e.g. for very large exams
+ *       or many threads with little heap.</li>
+ *   <li>Word documents of large exams are rendered in parallel (see {@link WordExporter#shouldRenderInParallel})
+ *       when there are fewer exams than threads.</li>
+ *   <li>{@code --variants FILE} exports one varied version per matriculation number listed in the file
+ *       (one per line), see {@link VariantEngine}. The same number always gives the same variant.</li>
+ *   <li>{@code --pool K} limits every question to K varied versions ({@link model.Exam#getVariantCount()}),
+ *       precomputes them and saves them in the input files before exporting, so this and later
+ *       {@code --variants} runs assemble the variants from the pools instead of rephrasing. Setting
+ *       the count changes the variants of all students, so it is only done for exams without one;
+ *       an exam with another count is an error.</li>
+ * </ul>
+ * Every file is loaded once with {@link ExamFiles}; the exports (one per file, or one per file and
+ * student) run on a fixed size worker pool. The time of every export and the overall throughput are
+ * printed; the exit code is 1 if any export failed.
+ */
+public class BatchExport {
+
+    /**
+     * One export: an exam file, optionally varied for a student.
+     * @param input The exam JSON file.
+     * @param student The matriculation number of the variant, or {@code null} for the exam as it is.
+     */
+    private record Job(Path input, String student) {
+        @Override
+        public String toString() {
+            return student == null ? input.toString() : input + " [" + student + "]";
+        }
+    }
+
+    /**
+     * The outcome of one export.
+     * @param job The export.
+     * @param loadMillis The time to load (or wait for) the exam.
+     * @param exportMillis The time to write all documents of the exam.
+     * @param documents The number of documents written.
+     */
+    private record Result(Job job, long loadMillis, long exportMillis, int documents) {}
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean withExam = true;
+    private boolean withSolutions = false;
+    private boolean pdf = false;
+    private boolean streaming = false;
+    /** Whether a single exam may use more than one thread, i.e. there are fewer exams than threads. */
+    private boolean renderInParallel = false;
+    private Path studentsFile;
+    private int poolSize;
+    private Path outputDirectory;
+    private final List<String> inputs = new ArrayList<>();
+    private final Map<Path, Exam> exams = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the batch export.
+     * @param args Command line arguments, see the class description.
+     */
+    public static void main(String[] args) {
+        BatchExport batch = new BatchExport();
+        if (!batch.parseArguments(args)) {
+            printUsage();
+            System.exit(2);
+        }
+        try {
+            System.exit(batch.run());
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: BatchExport [--threads N] [--solutions | --both] [--pdf | --streaming] [--variants FILE] [--pool K] <output-dir> <input>...");
+        System.err.println("  <input>  JSON or .exam file, directory or glob pattern (e.g. \"exams/**/*.json\")");
+    }
+
+    /**
+     * Parses the command line.
+     * @param args The command line arguments.
+     * @return {@code false} if the arguments are invalid.
+     */
+    private boolean parseArguments(String[] args) {
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads" -> {
+                    if (i + 1 >= args.length) return false;
+                    try {
+                        threads = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                    if (threads < 1) return false;
+                }
+                case "--solutions" -> {
+                    withExam = false;
+                    withSolutions = true;
+                }
+                case "--both" -> {
+                    withExam = true;
+                    withSolutions = true;
+                }
+                case "--pdf" -> pdf = true;
+                case "--streaming" -> streaming = true;
+                case "--variants" -> {
+                    if (i + 1 >= args.length) return false;
+                    studentsFile = Paths.get(args[++i]);
+                }
+                case "--pool" -> {
+                    if (i + 1 >= args.length) return false;
+                    try {
+                        poolSize = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                    if (poolSize < 1) return false;
+                }
+                default -> {
+                    if (args[i].startsWith("--")) return false;
+                    positional.add(args[i]);
+                }
+            }
+        }
+        if (positional.size() < 2 || (pdf && streaming)) {
+            return false;
+        }
+        outputDirectory = Paths.get(positional.get(0));
+        inputs.addAll(positional.subList(1, positional.size()));
+        return true;
+    }
+
+    /**
+     * Exports all input files.
+     * @return The exit code: 0 if all files were exported, 1 otherwise.
+     * @throws IOException if the inputs cannot be listed or the output directory cannot be created.
+     */
+    private int run() throws IOException {
+        List<Path> files = resolveInputs(inputs);
+        if (files.isEmpty()) {
+            System.err.println("Keine Prüfungsdateien gefunden.");
+            return 1;
+        }
+        List<Job> jobs = new ArrayList<>();
+        List<String> students = studentsFile != null ? readStudents(studentsFile) : null;
+        for (Path file : files) {
+            if (students == null) {
+                jobs.add(new Job(file, null));
+            } else {
+                for (String student : students) {
+                    jobs.add(new Job(file, student));
+                }
+            }
+        }
+        Files.createDirectories(outputDirectory);
+        System.out.println("Exportiere " + jobs.size() + " Prüfungen mit " + threads + " Threads nach " + outputDirectory);
+
+        long start = System.nanoTime();
+        int failed = 0;
+        int documents = 0;
+        renderInParallel = jobs.size() < threads;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> results = new ArrayList<>(jobs.size());
+            for (Job job : jobs) {
+                results.add(pool.submit(() -> export(job)));
+            }
+            for (int i = 0; i < jobs.size(); i++) {
+                try {
+                    Result result = results.get(i).get();
+                    documents += result.documents();
+                    System.out.printf("OK     %s (laden %d ms, export %d ms)%n", result.job(), result.loadMillis(), result.exportMillis());
+                } catch (ExecutionException e) {
+                    failed++;
+                    System.err.println("FEHLER " + jobs.get(i) + ": " + e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return 1;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d von %d Prüfungen exportiert, %d Dokumente in %.2f s (%.1f Dokumente/s)%n",
+                jobs.size() - failed, jobs.size(), documents, seconds, seconds > 0 ? documents / seconds : 0.0);
+        return failed == 0 ? 0 : 1;
+    }
+
+    /**
+     * Reads the matriculation numbers for {@code --variants}, one per line. Empty lines and lines
+     * starting with "#" are skipped.
+     */
+    private static List<String> readStudents(Path file) throws IOException {
+        List<String> students = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            String student = line.trim();
+            if (!student.isEmpty() && !student.startsWith("#")) {
+                students.add(student);
+            }
+        }
+        return students;
+    }
+
+    /**
+     * Loads an exam file, or returns it if another export loaded it already. With {@code --pool}
+     * the variant pools are built and the file is saved right after loading. The exams are only
+     * read afterwards; variants are created as copies.
+     */
+    private Exam loadExam(Path input) throws IOException {
+        try {
+            return exams.computeIfAbsent(input, file -> {
+                try {
+                    Exam exam = ExamFiles.load(file.toFile());
+                    if (poolSize > 0) {
+                        if (exam.getVariantCount() == 0) {
+                            exam.setVariantCount(poolSize);
+                            System.out.printf("COUNT  %s (Varianten jetzt aus je %d Versionen)%n", file, poolSize);
+                        } else if (exam.getVariantCount() != poolSize) {
+                            throw new IOException("Die Prüfung hat schon " + exam.getVariantCount()
+                                    + " Varianten je Frage, nicht " + poolSize + ": " + file);
+                        }
+                        long start = System.nanoTime();
+                        int pooled = VariantEngine.applyPools(exam, VariantEngine.createPools(exam));
+                        ExamFiles.save(exam, file.toFile());
+                        System.out.printf("POOL   %s (%d Fragen mit je %d Varianten, %d ms)%n",
+                                file, pooled, poolSize, (System.nanoTime() - start) / 1_000_000);
+                    }
+                    return exam;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Performs one export. Runs on a worker thread.
+     * @param job The export.
+     * @return The timings of the export.
+     * @throws IOException if the file cannot be read or a document cannot be written.
+     */
+    private Result export(Job job) throws IOException {
+        long start = System.nanoTime();
+        Exam exam = loadExam(job.input());
+        long loaded = System.nanoTime();
+
+        String baseName = job.input().getFileName().toString().replaceFirst("\\.(json|exam)$", "");
+        if (job.student() != null) {
+            exam = VariantEngine.createVariant(exam, VariantEngine.seedFor(VariantEngine.examId(exam), job.student()));
+            baseName += "_" + job.student();
+        }
+        String extension = pdf ? ".pdf" : ".docx";
+        String examPath = outputDirectory.resolve(baseName + extension).toString();
+        String answerKeyPath = outputDirectory.resolve(baseName + "_Lösungen" + extension).toString();
+        int documents = 0;
+        if (pdf) {
+            if (withExam) {
+                PdfExporter.export(exam, examPath);
+                documents++;
+            }
+            if (withSolutions) {
+                PdfExporter.exportWithSolutions(exam, answerKeyPath);
+                documents++;
+            }
+        } else if (streaming) {
+            if (withExam) {
+                StreamingWordExporter.export(exam, examPath);
+                documents++;
+            }
+            if (withSolutions) {
+                StreamingWordExporter.exportWithSolutions(exam, answerKeyPath);
+                documents++;
+            }
+        } else {
+            // With at least as many exams as threads, the pool is busy already.
+            boolean parallel = renderInParallel && WordExporter.shouldRenderInParallel(exam);
+            if (withExam && withSolutions) {
+                WordExporter.exportBoth(exam, examPath, answerKeyPath, parallel);
+                documents += 2;
+            } else if (withSolutions) {
+                WordExporter.exportWithSolutions(exam, answerKeyPath, parallel);
+                documents++;
+            } else {
+                WordExporter.export(exam, examPath, parallel);
+                documents++;
+            }
+        }
+        long exported = System.nanoTime();
+        return new Result(job, (loaded - start) / 1_000_000, (exported - loaded) / 1_000_000, documents);
+    }
+
+    /**
+     * Resolves the input arguments to a sorted list of distinct files.
+     * @param patterns Files, directories or glob patterns.
+     * @return The matching files in argument order, each directory and glob sorted by path.
+     * @throws IOException if a directory cannot be listed.
+     */
+    private static List<Path> resolveInputs(List<String> patterns) throws IOException {
+        Set<Path> files = new LinkedHashSet<>();
+        for (String pattern : patterns) {
+            String glob = pattern.replace('\\', '/');
+            int wildcard = firstWildcard(glob);
+            if (wildcard < 0) {
+                Path file = Paths.get(pattern);
+                if (Files.isDirectory(file)) {
+                    files.addAll(walk(file, 1, FileSystems.getDefault().getPathMatcher("glob:**.{json,exam}")));
+                } else {
+                    files.add(file);
+                }
+                continue;
+            }
+            // Walk from the last directory before the first wildcard and match the full pattern
+            int slash = glob.lastIndexOf('/', wildcard);
+            Path base = slash < 0 ? Paths.get(".") : Paths.get(slash == 0 ? "/" : glob.substring(0, slash));
+            if (slash < 0) {
+                glob = "./" + glob;
+            }
+            String remainder = glob.substring(glob.lastIndexOf('/', firstWildcard(glob)) + 1);
+            int depth = remainder.contains("**") ? Integer.MAX_VALUE : (int) remainder.chars().filter(c -> c == '/').count() + 1;
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            if (glob.contains("**/")) {
+                // "**/" also matches no directory at all, like in shells with globstar
+                PathMatcher direct = FileSystems.getDefault().getPathMatcher("glob:" + glob.replace("**/", ""));
+                PathMatcher nested = matcher;
+                matcher = file -> nested.matches(file) || direct.matches(file);
+            }
+            files.addAll(walk(base, depth, matcher));
+        }
+        return new ArrayList<>(files);
+    }
+
+    private static int firstWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static List<Path> walk(Path base, int depth, PathMatcher matcher) throws IOException {
+        if (!Files.isDirectory(base)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.walk(base, depth)) {
+            return stream.filter(Files::isRegularFile).filter(matcher::matches).sorted().toList();
+        }
+    }
+}
@@ -1,16 +1,25 @@
 package main;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import service.StartupService;
+import utils.LoadingIndicator;
+import utils.StartupTimer;
 
 /**
  * Main entry point for the ExamBuilder JavaFX application.
  * This class extends {@link javafx.application.Application} and is
  * responsible for initializing the primary stage, loading the main
  * user interface from `MainView.fxml`, and setting up the core controller.
+ * Expensive one-time initializations are warmed up in the background once
+ * the main window is visible (see {@link StartupService}). The startup
+ * phases are timed with the {@link StartupTimer}. No fonts are bundled or
+ * downloaded: the style sheets ask for Roboto and fall back to the default
+ * sans-serif font where it is not installed.
  */
 public class ExamBuilder extends Application {
 
@@ -19,26 +28,43 @@ public class ExamBuilder extends Application {
      * This method is called after the application has been launched.
      * It sets up the primary stage, loads the main user interface from `MainView.fxml`,
      * links it with the {@link controller.MainController}, and displays the stage.
+     * Afterwards the {@link StartupService} and the {@link LoadingIndicator} are prepared,
+     * so they do not delay the first frame, and the edits of an unsaved exam are offered
+     * for recovery.
      * @param primaryStage The primary stage for this application, onto which the application scene can be set.
      * @throws Exception If an error occurs during FXML loading or stage setup.
      */
     @Override
     public void start(Stage primaryStage) throws Exception {
-        System.out.println("start method called");
+        StartupTimer.milestone("JavaFX gestartet");
+        long start = StartupTimer.now();
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/MainView.fxml"));
         Parent root = loader.load();
-        System.out.println("fxml loaded");
+        StartupTimer.record("FXML laden (mit initialize)", start);
 
         controller.MainController controller = loader.getController();
         controller.setPrimaryStage(primaryStage);
 
         primaryStage.setTitle("ExamBuilder");
         Scene scene = new Scene(root, 800, 600);
-        scene.getStylesheets().add("https://fonts.googleapis.com/css2?family=Roboto:wght@400;700&display=swap");
+        scene.addPostLayoutPulseListener(new Runnable() {
+            private boolean done;
+
+            @Override
+            public void run() {
+                if (!done) {
+                    done = true;
+                    StartupTimer.milestone("erster Frame");
+                    Platform.runLater(() -> scene.removePostLayoutPulseListener(this));
+                }
+            }
+        });
         primaryStage.setScene(scene);
-        System.out.println("showing stage");
         primaryStage.show();
-        System.out.println("stage shown");
+        StartupTimer.milestone("Fenster angezeigt");
+        StartupService.start();
+        Platform.runLater(LoadingIndicator::prepare);
+        Platform.runLater(controller::recoverUnsavedExam);
     }
 
     /**
@@ -46,6 +72,7 @@ public class ExamBuilder extends Application {
      * @param args Command line arguments.
      */
     public static void main(String[] args) {
+        StartupTimer.start();
         launch(args);
     }
 }
@@ -2,13 +2,24 @@ package model;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
  * Represents the data model for an entire exam, including its metadata
  * such as title, author, module, semester, department, university,
- * allowed aids, general instructions, exam duration, and a list of questions.
+ * allowed aids, general instructions, exam duration, the glossary of terms
+ * that varied versions must not rephrase, the number of varied versions per question that
+ * students draw from, and a list of questions.
+ * Like a {@link Question}, the exam gets a new version whenever a setter changes its metadata
+ * ({@link #getMetadataVersion()}).
  */
 public class Exam {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private long metadataVersion = VERSIONS.incrementAndGet();
     private String title;
     private String author;
     private String module;
@@ -18,9 +29,12 @@ public class Exam {
     private String hilfsmittel; // Allowed aids (checkboxes)
     private String allgemeineHinweise; // General instructions (textarea)
     private int bearbeitungszeit; // Exam duration in minutes
+    private List<String> glossar; // Protected terms, never rephrased in varied versions
+    private int variantCount; // Varied versions per question, 0 for a new one per student
     private List<Question> questions;
 
     public Exam() {
+        this.glossar = new ArrayList<>();
         this.questions = new ArrayList<>();
     }
 
@@ -32,6 +46,7 @@ public class Exam {
         this.fachbereich = fachbereich;
         this.hochschule = hochschule;
         this.hilfsmittel = hilfsmittel;
+        this.glossar = new ArrayList<>();
         this.questions = new ArrayList<>();
     }
 
@@ -46,18 +61,40 @@ public class Exam {
         this.hilfsmittel = other.hilfsmittel;
         this.allgemeineHinweise = other.allgemeineHinweise;
         this.bearbeitungszeit = other.bearbeitungszeit;
+        this.metadataVersion = other.metadataVersion;
+        this.glossar = new ArrayList<>(other.glossar);
+        this.variantCount = other.variantCount;
         this.questions = new ArrayList<>();
         for (Question q : other.questions) {
             this.questions.add(new Question(q)); // Deep copy of Question objects
         }
     }
 
+    /**
+     * @return The version of the metadata, i.e. of everything but the questions. It changes with
+     *         every change through a setter.
+     */
+    @JsonIgnore
+    public long getMetadataVersion() {
+        return metadataVersion;
+    }
+
+    /**
+     * Gives the metadata a new version if a value changed.
+     */
+    private void touch(Object oldValue, Object newValue) {
+        if (!Objects.equals(oldValue, newValue)) {
+            metadataVersion = VERSIONS.incrementAndGet();
+        }
+    }
+
     // Getter und Setter
     public String getTitle() {
         return title;
     }
 
     public void setTitle(String title) {
+        touch(this.title, title);
         this.title = title;
     }
 
@@ -66,6 +103,7 @@ public class Exam {
     }
 
     public void setAuthor(String author) {
+        touch(this.author, author);
         this.author = author;
     }
 
@@ -74,6 +112,7 @@ public class Exam {
     }
 
     public void setModule(String module) {
+        touch(this.module, module);
         this.module = module;
     }
 
@@ -82,6 +121,7 @@ public class Exam {
     }
 
     public void setSemester(String semester) {
+        touch(this.semester, semester);
         this.semester = semester;
     }
 
@@ -90,6 +130,7 @@ public class Exam {
     }
 
     public void setFachbereich(String fachbereich) {
+        touch(this.fachbereich, fachbereich);
         this.fachbereich = fachbereich;
     }
 
@@ -98,6 +139,7 @@ public class Exam {
     }
 
     public void setHochschule(String hochschule) {
+        touch(this.hochschule, hochschule);
         this.hochschule = hochschule;
     }
 
@@ -106,6 +148,7 @@ public class Exam {
     }
 
     public void setHilfsmittel(String hilfsmittel) {
+        touch(this.hilfsmittel, hilfsmittel);
         this.hilfsmittel = hilfsmittel;
     }
 
@@ -114,6 +157,7 @@ public class Exam {
     }
 
     public void setAllgemeineHinweise(String allgemeineHinweise) {
+        touch(this.allgemeineHinweise, allgemeineHinweise);
         this.allgemeineHinweise = allgemeineHinweise;
     }
 
@@ -122,9 +166,32 @@ public class Exam {
     }
 
     public void setBearbeitungszeit(int bearbeitungszeit) {
+        touch(this.bearbeitungszeit, bearbeitungszeit);
         this.bearbeitungszeit = bearbeitungszeit;
     }
 
+    public List<String> getGlossar() {
+        return glossar;
+    }
+
+    public void setGlossar(List<String> glossar) {
+        touch(this.glossar, glossar);
+        this.glossar = glossar != null ? glossar : new ArrayList<>();
+    }
+
+    /**
+     * @return The number of varied versions per question that the variants of students are drawn
+     *         from, or 0 if every student gets a version of its own (see {@code service.VariantEngine}).
+     */
+    public int getVariantCount() {
+        return variantCount;
+    }
+
+    public void setVariantCount(int variantCount) {
+        touch(this.variantCount, variantCount);
+        this.variantCount = variantCount;
+    }
+
     public List<Question> getQuestions() {
         return questions;
     }
@@ -0,0 +1,269 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * An image of a {@link Question}, identified by the SHA-256 hash of its bytes. Images are immutable,
+ * so copies of a question share them, and two images are compared by their hashes instead of their
+ * contents. The bytes are kept in one of several places:
+ * <ul>
+ *   <li>in memory, for an image that was just added ({@link #of(byte[])}),</li>
+ *   <li>in a file named after the hash, for an image that was saved to a blob store
+ *       ({@link #ofFile(String, Path)}),</li>
+ *   <li>in an entry of a zip file, for an image of an exam container
+ *       ({@link #ofZipEntry(String, Path, String)}), or</li>
+ *   <li>as Base64 text in a spill file, for an image loaded from an older exam file
+ *       ({@link #ofSpilled(SpilledText)}).</li>
+ * </ul>
+ * Images read from a file are cached with a soft reference, so the heap can reclaim them once they
+ * are no longer used. Base64 text that is not the canonical encoding of its bytes (e.g. with line
+ * breaks) is kept as it is and cannot be stored as a blob ({@link #isStorable()}).
+ */
+public final class ImageBlob {
+
+    /** The SHA-256 hash of no bytes. */
+    private static final String EMPTY_HASH = sha256(new byte[0]);
+
+    private volatile String hash; // Computed on demand for spilled images
+    private volatile Boolean storable; // Computed together with the hash
+    private final byte[] data;
+    private final Path file;
+    private final String entry; // The entry in the zip file, or null for a plain file
+    private final SpilledText spilled;
+    private final String text;
+    private volatile SoftReference<byte[]> cachedData = new SoftReference<>(null);
+    private volatile SoftReference<String> cachedBase64 = new SoftReference<>(null);
+
+    private ImageBlob(String hash, Boolean storable, byte[] data, Path file, String entry, SpilledText spilled, String text) {
+        this.hash = hash;
+        this.storable = storable;
+        this.data = data;
+        this.file = file;
+        this.entry = entry;
+        this.spilled = spilled;
+        this.text = text;
+    }
+
+    /**
+     * Creates an image that is kept in memory.
+     * @param data The bytes of the image; must not be modified afterwards.
+     * @return The image.
+     */
+    public static ImageBlob of(byte[] data) {
+        return new ImageBlob(sha256(data), true, data, null, null, null, null);
+    }
+
+    /**
+     * Creates an image from Base64 text.
+     * @param base64 The Base64 encoded image, or {@code null}.
+     * @return The image, or {@code null} for {@code null}.
+     */
+    public static ImageBlob ofBase64(String base64) {
+        if (base64 == null) {
+            return null;
+        }
+        byte[] data = decodeCanonical(base64);
+        if (data == null) {
+            return new ImageBlob(sha256(base64.getBytes(StandardCharsets.UTF_8)), false, null, null, null, null, base64);
+        }
+        ImageBlob image = of(data);
+        image.cachedBase64 = new SoftReference<>(base64);
+        return image;
+    }
+
+    /**
+     * Creates an image whose Base64 text is kept in a spill file. The text is only read to compute
+     * the hash or to return the image.
+     * @param spilled The Base64 encoded image in a spill file.
+     * @return The image.
+     */
+    public static ImageBlob ofSpilled(SpilledText spilled) {
+        return new ImageBlob(null, null, null, null, null, spilled, null);
+    }
+
+    /**
+     * Creates an image that is stored in a file. The file is only read when the image is needed.
+     * @param hash The SHA-256 hash of the image as lowercase hex, which is not verified.
+     * @param file The file containing the bytes of the image.
+     * @return The image.
+     */
+    public static ImageBlob ofFile(String hash, Path file) {
+        return new ImageBlob(hash, true, null, file, null, null, null);
+    }
+
+    /**
+     * Creates an image that is stored in an entry of a zip file. The entry is only read when the
+     * image is needed.
+     * @param hash The SHA-256 hash of the image as lowercase hex, which is not verified.
+     * @param zipFile The zip file.
+     * @param entry The name of the entry containing the bytes of the image.
+     * @return The image.
+     */
+    public static ImageBlob ofZipEntry(String hash, Path zipFile, String entry) {
+        return new ImageBlob(hash, true, null, zipFile, entry, null, null);
+    }
+
+    /**
+     * @return The SHA-256 hash of the image as lowercase hex. For text that is not canonical
+     *         Base64, the hash of the text.
+     */
+    public String getHash() {
+        if (hash == null) {
+            resolveSpilled();
+        }
+        return hash;
+    }
+
+    /**
+     * @return {@code true} if the image can be stored as a blob, i.e. its Base64 text is canonical.
+     */
+    public boolean isStorable() {
+        if (storable == null) {
+            resolveSpilled();
+        }
+        return storable;
+    }
+
+    /**
+     * @return The file the image is stored in, or {@code null} if it is not stored in a file or is
+     *         stored in a zip file.
+     */
+    public Path getFile() {
+        return entry == null ? file : null;
+    }
+
+    /**
+     * Returns the bytes of the image, reading them if necessary.
+     * @return The bytes of the image; must not be modified.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    public byte[] getData() {
+        if (data != null) {
+            return data;
+        }
+        byte[] result = cachedData.get();
+        if (result == null) {
+            if (file != null) {
+                try {
+                    result = entry == null ? Files.readAllBytes(file) : readZipEntry(file, entry);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                // Lenient like the exporters, which decoded the Base64 text themselves before
+                result = org.apache.commons.codec.binary.Base64.decodeBase64(getBase64());
+            }
+            cachedData = new SoftReference<>(result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the image as Base64 text, encoding it if necessary.
+     * @return The Base64 encoded image.
+     * @throws UncheckedIOException if the file cannot be read.
+     */
+    public String getBase64() {
+        if (text != null) {
+            return text;
+        }
+        if (spilled != null) {
+            return spilled.get();
+        }
+        String result = cachedBase64.get();
+        if (result == null) {
+            result = Base64.getEncoder().encodeToString(getData());
+            cachedBase64 = new SoftReference<>(result);
+        }
+        return result;
+    }
+
+    /**
+     * Checks if the image has no content without reading it: a file or zip entry is named after the
+     * hash of its bytes, so its hash tells whether it is empty.
+     * @return {@code true} if the image has no content, e.g. it was set from empty text.
+     */
+    public boolean isEmpty() {
+        if (data != null) {
+            return data.length == 0;
+        }
+        if (text != null) {
+            return text.isEmpty();
+        }
+        if (spilled != null) {
+            return spilled.isEmpty();
+        }
+        return EMPTY_HASH.equals(hash);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ImageBlob other = (ImageBlob) o;
+        return isStorable() == other.isStorable() && getHash().equals(other.getHash());
+    }
+
+    @Override
+    public int hashCode() {
+        return getHash().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ImageBlob[" + getHash() + "]";
+    }
+
+    private static byte[] readZipEntry(Path file, String name) throws IOException {
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            ZipEntry zipEntry = zip.getEntry(name);
+            if (zipEntry == null) {
+                throw new IOException("Missing entry " + name + " in " + file);
+            }
+            return zip.getInputStream(zipEntry).readAllBytes();
+        }
+    }
+
+    /**
+     * Computes the hash of a spilled image, decoding its text once.
+     */
+    private void resolveSpilled() {
+        String base64 = spilled.get();
+        byte[] decoded = decodeCanonical(base64);
+        if (decoded != null) {
+            cachedData = new SoftReference<>(decoded);
+            hash = sha256(decoded);
+            storable = true;
+        } else {
+            hash = sha256(base64.getBytes(StandardCharsets.UTF_8));
+            storable = false;
+        }
+    }
+
+    /**
+     * Decodes Base64 text if it is the canonical encoding of its bytes.
+     * @return The bytes, or {@code null} if the text is not canonical.
+     */
+    private static byte[] decodeCanonical(String base64) {
+        try {
+            byte[] decoded = Base64.getDecoder().decode(base64);
+            return Base64.getEncoder().encodeToString(decoded).equals(base64) ? decoded : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        return DigestUtils.sha256Hex(bytes);
+    }
+}
@@ -1,13 +1,17 @@
 package model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents the data model for a single question within an exam.
@@ -15,8 +19,23 @@ import java.util.UUID;
  * and can contain sub-questions, allowing for hierarchical structures.
  * It also includes properties for solutions, images, and various
  * display/export options like page breaks and justification.
+ * A question may carry a pool of precomputed varied versions ({@link VariantPool}).
+ * Images are held as {@link ImageBlob}s, which are identified by their hash, so copies share them
+ * and comparisons do not depend on the size of the images. In JSON, an image is written as the
+ * hash of a blob ({@code image}), which {@link service.ExamFiles} stores next to the exam file,
+ * or as Base64 text ({@code imageBase64}) if it cannot be stored as a blob.
+ * <p>
+ * Every change through a setter (or a JavaFX property) that actually changes a value gives the
+ * question a new version from a global counter ({@link #getVersion()}). Versions are never reused,
+ * so {@link #getTreeVersion()} identifies the content of a question with its sub-questions, and
+ * {@link service.ExamFiles} only serializes the questions whose tree version changed since the
+ * last save. The list of sub-questions is therefore read-only; sub-questions are added, removed
+ * and replaced through the question.
  */
 public class Question {
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private long version = VERSIONS.incrementAndGet(); // Copies share the version of their original
     private UUID id;
     private String title;
     private String text;
@@ -25,20 +44,24 @@ public class Question {
     private List<Question> subQuestions;
     private int answerLines;
     private String musterloesung = "";
-    private String imageBase64;
-    private String musterloesungImageBase64;
-    private final BooleanProperty startOnNewPage = new SimpleBooleanProperty(false); // New field for page break
-    private final BooleanProperty justify = new SimpleBooleanProperty(false); // New field for justification
-    private final BooleanProperty largeAnswerBox = new SimpleBooleanProperty(false); // New field for large answer box
-
-    private final BooleanProperty selected = new SimpleBooleanProperty(true);
+    private ImageBlob image;
+    private ImageBlob musterloesungImage;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private VariantPool variantPool; // Precomputed varied versions, shared by copies
+    // The flags are plain booleans until the UI asks for their JavaFX property, so exams loaded
+    // headless (e.g. by main.BatchExport) never create property objects.
+    private boolean startOnNewPageValue = false; // New field for page break
+    private boolean justifyValue = false; // New field for justification
+    private boolean largeAnswerBoxValue = false; // New field for large answer box
+    private boolean selectedValue = true;
+    private BooleanProperty startOnNewPage;
+    private BooleanProperty justify;
+    private BooleanProperty largeAnswerBox;
+    private BooleanProperty selected;
 
     public Question() {
         this.id = UUID.randomUUID();
         this.subQuestions = new ArrayList<>();
-        this.startOnNewPage.set(false); // Initialize new field
-        this.justify.set(false); // Initialize new field
-        this.largeAnswerBox.set(false);
     }
 
     public Question(String title, String text, int points, String type, int answerLines) {
@@ -49,25 +72,24 @@ public class Question {
         this.type = type;
         this.answerLines = answerLines;
         this.subQuestions = new ArrayList<>();
-        this.startOnNewPage.set(false); // Initialize new field
-        this.justify.set(false); // Initialize new field
-        this.largeAnswerBox.set(false);
     }
 
     public Question(Question other) {
         this.id = other.id; // Keep the same ID for comparison
+        this.version = other.version; // Same content, so same version
         this.title = other.title;
         this.text = other.text;
         this.points = other.points;
         this.type = other.type;
         this.answerLines = other.answerLines;
         this.musterloesung = other.musterloesung;
-        this.imageBase64 = other.imageBase64;
-        this.musterloesungImageBase64 = other.musterloesungImageBase64;
-        this.selected.set(other.selected.get()); // Copy the boolean property value
-        this.startOnNewPage.set(other.startOnNewPage.get()); // Copy new field
-        this.justify.set(other.justify.get()); // Copy new field
-        this.largeAnswerBox.set(other.largeAnswerBox.get());
+        this.image = other.image; // Images are immutable and can be shared
+        this.musterloesungImage = other.musterloesungImage;
+        this.variantPool = other.variantPool; // Pools are never modified, so copies can share them
+        this.selectedValue = other.isSelected(); // Copy the flag values, not the properties
+        this.startOnNewPageValue = other.isStartOnNewPage();
+        this.justifyValue = other.isJustify();
+        this.largeAnswerBoxValue = other.isLargeAnswerBox();
         // Deep copy subQuestions if they exist
         if (other.subQuestions != null) {
             this.subQuestions = new ArrayList<>();
@@ -92,12 +114,55 @@ public class Question {
         return Objects.hash(id);
     }
 
+    /**
+     * @return The version of the properties of this question, without its sub-questions.
+     */
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The highest version of this question and its sub-questions. It changes with every
+     *         change to one of them, and two questions with the same ID and tree version have the
+     *         same content.
+     */
+    @JsonIgnore
+    public long getTreeVersion() {
+        long treeVersion = version;
+        if (subQuestions != null) {
+            for (Question subQuestion : subQuestions) {
+                treeVersion = Math.max(treeVersion, subQuestion.getTreeVersion());
+            }
+        }
+        return treeVersion;
+    }
+
+    /**
+     * Gives the question a new version after a change.
+     */
+    private void touch() {
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Creates a JavaFX property for a flag whose changes give the question a new version.
+     */
+    private BooleanProperty versionedProperty(String name, boolean value) {
+        BooleanProperty property = new SimpleBooleanProperty(this, name, value);
+        property.addListener((obs, oldValue, newValue) -> touch());
+        return property;
+    }
+
     // --- ID Getter/Setter ---
     public UUID getId() {
         return id;
     }
 
     public void setId(UUID id) {
+        if (!Objects.equals(this.id, id)) {
+            touch();
+        }
         this.id = id;
     }
 
@@ -105,21 +170,29 @@ public class Question {
 
     @JsonIgnore
     public boolean isSelected() {
-        return selected.get();
+        return selected != null ? selected.get() : selectedValue;
     }
 
     public BooleanProperty selectedProperty() {
+        if (selected == null) {
+            selected = versionedProperty("selected", selectedValue);
+        }
         return selected;
     }
 
     // --- Standard Getters/Setters ---
 
     public boolean getSelected() {
-        return selected.get();
+        return isSelected();
     }
 
     public void setSelected(boolean selected) {
-        this.selected.set(selected);
+        if (this.selected != null) {
+            this.selected.set(selected);
+        } else if (this.selectedValue != selected) {
+            this.selectedValue = selected;
+            touch();
+        }
     }
 
     public int getAnswerLines() {
@@ -127,6 +200,9 @@ public class Question {
     }
 
     public void setAnswerLines(int answerLines) {
+        if (this.answerLines != answerLines) {
+            touch();
+        }
         this.answerLines = answerLines;
     }
     public String getTitle() {
@@ -134,6 +210,9 @@ public class Question {
     }
 
     public void setTitle(String title) {
+        if (!Objects.equals(this.title, title)) {
+            touch();
+        }
         this.title = title;
     }
 
@@ -142,6 +221,9 @@ public class Question {
     }
 
     public void setText(String text) {
+        if (!Objects.equals(this.text, text)) {
+            touch();
+        }
         this.text = text;
     }
 
@@ -153,6 +235,9 @@ public class Question {
     }
 
     public void setPoints(int points) {
+        if (this.points != points) {
+            touch();
+        }
         this.points = points;
     }
 
@@ -161,82 +246,195 @@ public class Question {
     }
 
     public void setType(String type) {
+        if (!Objects.equals(this.type, type)) {
+            touch();
+        }
         this.type = type;
     }
 
+    /**
+     * @return The sub-questions as a read-only view, or {@code null} if there are none.
+     */
     public List<Question> getSubQuestions() {
-        return subQuestions;
+        return subQuestions != null ? Collections.unmodifiableList(subQuestions) : null;
     }
 
+    /**
+     * Replaces the sub-questions with a copy of a list, so later changes to the list do not bypass
+     * the version of this question.
+     * @param subQuestions The new sub-questions, or {@code null}.
+     */
     public void setSubQuestions(List<Question> subQuestions) {
-        this.subQuestions = subQuestions;
+        touch();
+        this.subQuestions = subQuestions != null ? new ArrayList<>(subQuestions) : null;
     }
 
     public void addSubQuestion(Question subQuestion) {
+        touch();
+        if (this.subQuestions == null) {
+            this.subQuestions = new ArrayList<>();
+        }
         this.subQuestions.add(subQuestion);
     }
 
+    public void removeSubQuestion(Question subQuestion) {
+        if (this.subQuestions != null && this.subQuestions.remove(subQuestion)) {
+            touch();
+        }
+    }
+
     public String getMusterloesung() {
         return musterloesung;
     }
 
     public void setMusterloesung(String musterloesung) {
+        if (!Objects.equals(this.musterloesung, musterloesung)) {
+            touch();
+        }
         this.musterloesung = musterloesung;
     }
 
+    @JsonIgnore
     public String getImageBase64() {
-        return imageBase64;
+        return image != null ? image.getBase64() : null;
     }
 
     public void setImageBase64(String imageBase64) {
-        this.imageBase64 = imageBase64;
+        setImage(ImageBlob.ofBase64(imageBase64));
+    }
+
+    @JsonIgnore
+    public ImageBlob getImage() {
+        return image;
     }
 
+    @JsonIgnore
+    public void setImage(ImageBlob image) {
+        if (!Objects.equals(this.image, image)) {
+            touch(); // Not when a saved image is moved to another place
+        }
+        this.image = image;
+    }
+
+    @JsonIgnore
     public String getMusterloesungImageBase64() {
-        return musterloesungImageBase64;
+        return musterloesungImage != null ? musterloesungImage.getBase64() : null;
     }
 
     public void setMusterloesungImageBase64(String musterloesungImageBase64) {
-        this.musterloesungImageBase64 = musterloesungImageBase64;
+        setMusterloesungImage(ImageBlob.ofBase64(musterloesungImageBase64));
+    }
+
+    @JsonIgnore
+    public ImageBlob getMusterloesungImage() {
+        return musterloesungImage;
+    }
+
+    @JsonIgnore
+    public void setMusterloesungImage(ImageBlob musterloesungImage) {
+        if (!Objects.equals(this.musterloesungImage, musterloesungImage)) {
+            touch();
+        }
+        this.musterloesungImage = musterloesungImage;
+    }
+
+    // --- JSON representation of the images, read by service.ExamFiles ---
+    @JsonProperty(value = "image", access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String getImageHash() {
+        return image != null && image.isStorable() ? image.getHash() : null;
+    }
+
+    @JsonProperty(value = "imageBase64", access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String getInlineImageBase64() {
+        return image != null && !image.isStorable() ? image.getBase64() : null;
+    }
+
+    @JsonProperty(value = "musterloesungImage", access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String getMusterloesungImageHash() {
+        return musterloesungImage != null && musterloesungImage.isStorable() ? musterloesungImage.getHash() : null;
+    }
+
+    @JsonProperty(value = "musterloesungImageBase64", access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String getInlineMusterloesungImageBase64() {
+        return musterloesungImage != null && !musterloesungImage.isStorable() ? musterloesungImage.getBase64() : null;
+    }
+
+    public VariantPool getVariantPool() {
+        return variantPool;
+    }
+
+    public void setVariantPool(VariantPool variantPool) {
+        if (!Objects.equals(this.variantPool, variantPool)) {
+            touch();
+        }
+        this.variantPool = variantPool;
     }
 
     // --- New field getter/setter ---
     @JsonIgnore
     public boolean isStartOnNewPage() {
-        return startOnNewPage.get();
+        return startOnNewPage != null ? startOnNewPage.get() : startOnNewPageValue;
     }
 
     public BooleanProperty startOnNewPageProperty() {
+        if (startOnNewPage == null) {
+            startOnNewPage = versionedProperty("startOnNewPage", startOnNewPageValue);
+        }
         return startOnNewPage;
     }
 
     public void setStartOnNewPage(boolean startOnNewPage) {
-        this.startOnNewPage.set(startOnNewPage);
+        if (this.startOnNewPage != null) {
+            this.startOnNewPage.set(startOnNewPage);
+        } else if (this.startOnNewPageValue != startOnNewPage) {
+            this.startOnNewPageValue = startOnNewPage;
+            touch();
+        }
     }
 
     @JsonIgnore
     public boolean isJustify() {
-        return justify.get();
+        return justify != null ? justify.get() : justifyValue;
     }
 
     public BooleanProperty justifyProperty() {
+        if (justify == null) {
+            justify = versionedProperty("justify", justifyValue);
+        }
         return justify;
     }
 
     public void setJustify(boolean justify) {
-        this.justify.set(justify);
+        if (this.justify != null) {
+            this.justify.set(justify);
+        } else if (this.justifyValue != justify) {
+            this.justifyValue = justify;
+            touch();
+        }
     }
 
     @JsonIgnore
     public boolean isLargeAnswerBox() {
-        return largeAnswerBox.get();
+        return largeAnswerBox != null ? largeAnswerBox.get() : largeAnswerBoxValue;
     }
 
     public BooleanProperty largeAnswerBoxProperty() {
+        if (largeAnswerBox == null) {
+            largeAnswerBox = versionedProperty("largeAnswerBox", largeAnswerBoxValue);
+        }
         return largeAnswerBox;
     }
 
     public void setLargeAnswerBox(boolean largeAnswerBox) {
-        this.largeAnswerBox.set(largeAnswerBox);
+        if (this.largeAnswerBox != null) {
+            this.largeAnswerBox.set(largeAnswerBox);
+        } else if (this.largeAnswerBoxValue != largeAnswerBox) {
+            this.largeAnswerBoxValue = largeAnswerBox;
+            touch();
+        }
     }
 }
@@ -0,0 +1,59 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One precomputed varied version of a single question, stored in its {@link VariantPool}:
+ * the rephrased title and HTML text and the order of the sub-questions. The sub-questions
+ * themselves are varied with their own pools.
+ */
+public class QuestionVariant {
+    private long seed; // The variant seed this version was generated with
+    private String title;
+    private String text;
+    private List<Integer> subQuestionOrder; // Indexes of the original sub-questions in variant order; empty if they keep their order
+
+    public QuestionVariant() {
+        this.subQuestionOrder = new ArrayList<>();
+    }
+
+    public QuestionVariant(long seed, String title, String text, List<Integer> subQuestionOrder) {
+        this.seed = seed;
+        this.title = title;
+        this.text = text;
+        this.subQuestionOrder = subQuestionOrder != null ? subQuestionOrder : new ArrayList<>();
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public List<Integer> getSubQuestionOrder() {
+        return subQuestionOrder;
+    }
+
+    public void setSubQuestionOrder(List<Integer> subQuestionOrder) {
+        this.subQuestionOrder = subQuestionOrder != null ? subQuestionOrder : new ArrayList<>();
+    }
+}
@@ -0,0 +1,177 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A long text, e.g. a Base64 encoded image of a {@link Question}, that is kept in a temporary spill
+ * file instead of on the heap until it is needed. The text is stored as the raw contents of a JSON
+ * string, i.e. UTF-8 with JSON escapes, exactly as it was copied from an exam file, and is only
+ * decoded by {@link #get()}. The decoded text is cached with a soft reference, so the heap can
+ * reclaim it once it is no longer used.
+ * <p>
+ * All texts of one loaded exam share a {@link Store}. The spill file is deleted when the store is
+ * closed, or once neither the store nor any of its texts is reachable any more.
+ */
+public final class SpilledText {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Store store;
+    private final long offset;
+    private final int length;
+    private volatile SoftReference<String> cache = new SoftReference<>(null);
+
+    private SpilledText(Store store, long offset, int length) {
+        this.store = store;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Reads and decodes the text from the spill file.
+     * @return The text.
+     * @throws UncheckedIOException if the spill file cannot be read.
+     */
+    public String get() {
+        String text = cache.get();
+        if (text == null) {
+            text = decode(store.read(offset, length));
+            cache = new SoftReference<>(text);
+        }
+        return text;
+    }
+
+    /**
+     * @return {@code true} if the text is empty; the spill file is not read.
+     */
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Decodes the contents of a JSON string: UTF-8 with the escapes of RFC 8259.
+     * @param raw The bytes between the quotes.
+     * @return The decoded text.
+     */
+    public static String decode(byte[] raw) {
+        String text = new String(raw, StandardCharsets.UTF_8);
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\\' || i + 1 == text.length()) {
+                sb.append(c);
+                continue;
+            }
+            char escaped = text.charAt(++i);
+            switch (escaped) {
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    sb.append((char) Integer.parseInt(text.substring(i + 1, i + 5), 16));
+                    i += 4;
+                }
+                default -> sb.append(escaped); // \" \\ \/
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A temporary spill file holding the texts of one loaded exam.
+     */
+    public static final class Store implements Closeable {
+
+        private final FileChannel channel;
+        private final Cleaner.Cleanable cleanable;
+        private long size;
+
+        private Store(FileChannel channel) {
+            this.channel = channel;
+            this.cleanable = CLEANER.register(this, new Closer(channel));
+        }
+
+        /**
+         * Creates a store with a new temporary spill file.
+         * @return The store.
+         * @throws IOException if the file cannot be created.
+         */
+        public static Store create() throws IOException {
+            Path file = Files.createTempFile("exambuilder-", ".spill");
+            return new Store(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE));
+        }
+
+        /**
+         * Copies the raw contents of a JSON string from a file into the spill file.
+         * @param source The file containing the string.
+         * @param position The position of the first byte after the opening quote.
+         * @param count The number of bytes up to the closing quote.
+         * @return The spilled text.
+         * @throws IOException if the text cannot be copied.
+         */
+        public synchronized SpilledText append(FileChannel source, long position, int count) throws IOException {
+            long offset = size;
+            long copied = 0;
+            while (copied < count) {
+                long transferred = source.transferTo(position + copied, count - copied, channel.position(offset + copied));
+                if (transferred <= 0) {
+                    throw new IOException("Unexpected end of file while spilling a text");
+                }
+                copied += transferred;
+            }
+            size += count;
+            return new SpilledText(this, offset, count);
+        }
+
+        private byte[] read(long offset, int length) {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        throw new IOException("Unexpected end of the spill file");
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return buffer.array();
+        }
+
+        /**
+         * Closes and deletes the spill file. Texts of this store can no longer be read.
+         */
+        @Override
+        public void close() {
+            cleanable.clean();
+        }
+    }
+
+    /**
+     * Closes the spill file; must not reference the store, or the store could never be cleaned.
+     */
+    private record Closer(FileChannel channel) implements Runnable {
+        @Override
+        public void run() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
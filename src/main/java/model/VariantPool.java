@@ -0,0 +1,41 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The precomputed varied versions of a question, saved with the exam so that varied exams can be
+ * assembled from them without rephrasing anything (see {@code service.VariantEngine}).
+ * The fingerprint identifies the content the pool was generated from; once the question or the
+ * glossary of the exam changes, the pool no longer matches and is ignored. A pool is replaced as
+ * a whole and never modified, so copies of a question share it.
+ */
+public class VariantPool {
+    private String fingerprint;
+    private List<QuestionVariant> variants;
+
+    public VariantPool() {
+        this.variants = new ArrayList<>();
+    }
+
+    public VariantPool(String fingerprint, List<QuestionVariant> variants) {
+        this.fingerprint = fingerprint;
+        this.variants = variants != null ? variants : new ArrayList<>();
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public List<QuestionVariant> getVariants() {
+        return variants;
+    }
+
+    public void setVariants(List<QuestionVariant> variants) {
+        this.variants = variants != null ? variants : new ArrayList<>();
+    }
+}
@@ -0,0 +1,417 @@
+package service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A zip file that is changed by appending instead of being written anew. The entries that are kept
+ * stay where they are; new entries are written after the end of the file, followed by a new central
+ * directory that lists the kept and the new entries, and a new end record. Zip readers only follow
+ * the directory at the end of the file, so the entries that are no longer listed and the old
+ * directory are dead space. Once the new directory is on disk, the dead space is overwritten with
+ * zeros, so the file does not keep old versions of the entries.
+ * <p>
+ * Nothing before the old end of the file is changed until the new directory is complete, so a save
+ * torn by a crash only leaves bytes after the old end record. Readers can find the last complete
+ * save with {@link #completeLength(Path)} without changing the file; the next {@link #open(Path)}
+ * cuts the torn save off. New entries are stored uncompressed. Files with zip64 records, a comment
+ * or data before the first entry are not appended to, see {@link #open(Path)}.
+ */
+final class AppendableZip implements Closeable {
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int DIRECTORY_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int DIRECTORY_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int UTF8_NAMES = 0x0800;
+    private static final long MAX_OFFSET = 0xFFFFFFFFL; // Larger files need zip64 records
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    /**
+     * An entry of the central directory.
+     * @param name The name of the entry.
+     * @param method The compression method, {@link java.util.zip.ZipEntry#STORED} or {@link java.util.zip.ZipEntry#DEFLATED}.
+     * @param crc The CRC-32 of the uncompressed data.
+     * @param compressedSize The size of the data in the file.
+     * @param size The size of the uncompressed data.
+     * @param offset The position of the local header in the file.
+     * @param record The record of the entry in the central directory, copied as is when the entry is kept.
+     */
+    record Entry(String name, int method, long crc, long compressedSize, long size, long offset, byte[] record) {}
+
+    private final FileChannel channel;
+    private final long end; // The length of the file before appending
+    private final long directoryStart;
+    private final Map<String, Entry> entries;
+    private final List<byte[]> directory = new ArrayList<>(); // The records of the new directory
+    private final Map<String, Entry> kept = new LinkedHashMap<>();
+    private long position; // Where the next new entry is written
+    private boolean committed;
+
+    private AppendableZip(FileChannel channel, long end, long directoryStart, Map<String, Entry> entries) {
+        this.channel = channel;
+        this.end = end;
+        this.directoryStart = directoryStart;
+        this.entries = entries;
+        this.position = end;
+    }
+
+    /**
+     * Opens a zip file for appending. The end of a save that was torn by a crash is cut off first.
+     * @param file The zip file.
+     * @return The opened file, or {@code null} if the file does not exist or cannot be appended to,
+     *         e.g. because it is no zip file, is too large for zip files without zip64 records or has a
+     *         comment.
+     * @throws IOException if the file cannot be read or written.
+     */
+    static AppendableZip open(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        dropTornAppend(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long end = channel.size();
+            ByteBuffer record = read(channel, end - END_SIZE, END_SIZE);
+            if (record == null || !isEnd(record, channel, end - END_SIZE) || record.getShort(20) != 0) {
+                channel.close();
+                return null;
+            }
+            int count = Short.toUnsignedInt(record.getShort(10));
+            long directorySize = Integer.toUnsignedLong(record.getInt(12));
+            long directoryStart = Integer.toUnsignedLong(record.getInt(16));
+            Map<String, Entry> entries = readDirectory(channel, directoryStart, directorySize, count);
+            if (entries == null) {
+                channel.close();
+                return null;
+            }
+            return new AppendableZip(channel, end, directoryStart, entries);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the end of the last complete save in a file that a save torn by a crash left without an
+     * end record at its end. The file is only read.
+     * @param file The zip file.
+     * @return The length of the file up to the end record of the last complete save, or -1 if the
+     *         file ends with an end record or contains no complete one.
+     * @throws IOException if the file cannot be read.
+     */
+    static long completeLength(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < END_SIZE || endsWithEnd(channel, size)) {
+                return -1;
+            }
+            // Search backwards for the end record of the last complete save
+            ByteBuffer chunk = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            for (long chunkEnd = size; chunkEnd >= END_SIZE; chunkEnd -= chunk.capacity() - END_SIZE) {
+                long chunkStart = Math.max(0, chunkEnd - chunk.capacity());
+                ByteBuffer data = read(channel, chunkStart, (int) (chunkEnd - chunkStart));
+                for (int i = data.limit() - END_SIZE; i >= 0; i--) {
+                    if (data.getInt(i) == END_HEADER && isCompleteEnd(data.slice(i, END_SIZE).order(ByteOrder.LITTLE_ENDIAN), channel, chunkStart + i)) {
+                        return chunkStart + i + END_SIZE;
+                    }
+                }
+                if (chunkStart == 0) {
+                    break;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Cuts off the bytes that a torn save appended after the last complete end record.
+     */
+    private static void dropTornAppend(Path file) throws IOException {
+        long length = completeLength(file);
+        if (length < 0) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            System.err.println("Unvollständiges Speichern in " + file + " verworfen: " + (channel.size() - length) + " Bytes");
+            channel.truncate(length);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * @return The names of the entries of the current directory in order.
+     */
+    Collection<String> names() {
+        return entries.keySet();
+    }
+
+    /**
+     * @param name The name of an entry.
+     * @return The entry of the current directory, or {@code null} if there is none.
+     */
+    Entry get(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Tells whether the file would rather be written anew than appended to.
+     * @param names The names of the entries of the current directory that would be kept.
+     * @return {@code true} if more of the file would be unused than used by these entries.
+     */
+    boolean isMostlyUnusedWith(Collection<String> names) {
+        long used = 0;
+        for (String name : names) {
+            Entry entry = entries.get(name);
+            // The local header repeats the name and usually the extra field of the directory record
+            used += entry.record().length - DIRECTORY_HEADER_SIZE + LOCAL_HEADER_SIZE + entry.compressedSize();
+        }
+        return end - used > used;
+    }
+
+    /**
+     * Lists an entry of the current directory in the new directory, next after the ones added so far.
+     * @param name The name of the entry, which must exist.
+     */
+    void keep(String name) {
+        Entry entry = entries.get(name);
+        if (kept.putIfAbsent(name, entry) == null) {
+            directory.add(entry.record());
+        }
+    }
+
+    /**
+     * Appends a new uncompressed entry and lists it in the new directory, next after the ones added so far.
+     * @param name The name of the entry, which must not be listed in the new directory yet.
+     * @param data The data.
+     * @param crc The CRC-32 of the data.
+     * @return {@code false} if the file would need zip64 records; nothing is written then.
+     * @throws IOException if the entry cannot be written.
+     */
+    boolean add(String name, byte[] data, long crc) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (position + LOCAL_HEADER_SIZE + nameBytes.length + data.length > MAX_OFFSET || directory.size() >= MAX_ENTRIES) {
+            return false;
+        }
+        int dosTime = dosTime(LocalDateTime.now());
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCAL_HEADER).putShort((short) 10).putShort((short) UTF8_NAMES).putShort((short) 0)
+                .putInt(dosTime).putInt((int) crc).putInt(data.length).putInt(data.length)
+                .putShort((short) nameBytes.length).putShort((short) 0).put(nameBytes).flip();
+        ByteBuffer record = ByteBuffer.allocate(DIRECTORY_HEADER_SIZE + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(DIRECTORY_HEADER).putShort((short) 20).putShort((short) 10).putShort((short) UTF8_NAMES).putShort((short) 0)
+                .putInt(dosTime).putInt((int) crc).putInt(data.length).putInt(data.length)
+                .putShort((short) nameBytes.length).putShort((short) 0).putShort((short) 0)
+                .putShort((short) 0).putShort((short) 0).putInt(0).putInt((int) position).put(nameBytes);
+        write(header, position);
+        write(ByteBuffer.wrap(data), position + header.capacity());
+        position += header.capacity() + data.length;
+        directory.add(record.array());
+        return true;
+    }
+
+    /**
+     * Writes the new directory and the end record after the appended entries and forces them to
+     * disk, then overwrites the dead space with zeros. If nothing was appended and the directory lists
+     * the same entries in the same order, the file is left as is.
+     * @return {@code false} if the file would need zip64 records; nothing is committed then.
+     * @throws IOException if the file cannot be written.
+     */
+    boolean commit() throws IOException {
+        if (position == end && kept.size() == entries.size() && List.copyOf(kept.keySet()).equals(List.copyOf(entries.keySet()))) {
+            committed = true;
+            return true;
+        }
+        int directorySize = 0;
+        for (byte[] record : directory) {
+            directorySize += record.length;
+        }
+        if (position + directorySize + END_SIZE > MAX_OFFSET) {
+            return false;
+        }
+        ByteBuffer tail = ByteBuffer.allocate(directorySize + END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (byte[] record : directory) {
+            tail.put(record);
+        }
+        tail.putInt(END_HEADER).putShort((short) 0).putShort((short) 0)
+                .putShort((short) directory.size()).putShort((short) directory.size())
+                .putInt(directorySize).putInt((int) position).putShort((short) 0).flip();
+        write(tail, position);
+        channel.force(true);
+        committed = true;
+
+        for (Entry entry : entries.values()) {
+            if (!kept.containsKey(entry.name())) {
+                zero(entry.offset(), localSize(entry));
+            }
+        }
+        zero(directoryStart, end - directoryStart);
+        return true;
+    }
+
+    /**
+     * Closes the file. Entries appended without a {@link #commit()} are cut off again.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!committed && position > end) {
+                channel.truncate(end);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static Map<String, Entry> readDirectory(FileChannel channel, long start, long size, int count) throws IOException {
+        if (count == MAX_ENTRIES || start == MAX_OFFSET || size > Integer.MAX_VALUE) {
+            return null; // zip64
+        }
+        ByteBuffer data = read(channel, start, (int) size);
+        if (data == null) {
+            return null;
+        }
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        int i = 0;
+        for (int n = 0; n < count; n++) {
+            if (i + DIRECTORY_HEADER_SIZE > data.limit() || data.getInt(i) != DIRECTORY_HEADER) {
+                return null;
+            }
+            int nameLength = Short.toUnsignedInt(data.getShort(i + 28));
+            int recordLength = DIRECTORY_HEADER_SIZE + nameLength
+                    + Short.toUnsignedInt(data.getShort(i + 30)) + Short.toUnsignedInt(data.getShort(i + 32));
+            if (i + recordLength > data.limit()) {
+                return null;
+            }
+            long compressedSize = Integer.toUnsignedLong(data.getInt(i + 20));
+            long entrySize = Integer.toUnsignedLong(data.getInt(i + 24));
+            long offset = Integer.toUnsignedLong(data.getInt(i + 42));
+            if (compressedSize == MAX_OFFSET || entrySize == MAX_OFFSET || offset == MAX_OFFSET || offset >= start) {
+                return null;
+            }
+            byte[] record = new byte[recordLength];
+            data.get(i, record);
+            String name = new String(record, DIRECTORY_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+            entries.put(name, new Entry(name, Short.toUnsignedInt(data.getShort(i + 10)), Integer.toUnsignedLong(data.getInt(i + 16)),
+                    compressedSize, entrySize, offset, record));
+            i += recordLength;
+        }
+        return i == data.limit() ? entries : null;
+    }
+
+    private static boolean endsWithEnd(FileChannel channel, long size) throws IOException {
+        ByteBuffer record = read(channel, size - END_SIZE, END_SIZE);
+        if (record != null && isEnd(record, channel, size - END_SIZE)) {
+            return true;
+        }
+        // A comment follows the end record; such files are not appended to, but are no torn saves either
+        for (long position = size - END_SIZE - 1; position >= Math.max(0, size - END_SIZE - 0xFFFF); position--) {
+            record = read(channel, position, END_SIZE);
+            if (record.getInt(0) == END_HEADER && position + END_SIZE + Short.toUnsignedInt(record.getShort(20)) == size) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks that an end record found inside a file belongs to a complete directory, since the
+     * signature may just as well occur in the data of an entry.
+     */
+    private static boolean isCompleteEnd(ByteBuffer record, FileChannel channel, long position) throws IOException {
+        return isEnd(record, channel, position) && record.getShort(20) == 0
+                && readDirectory(channel, Integer.toUnsignedLong(record.getInt(16)), Integer.toUnsignedLong(record.getInt(12)),
+                        Short.toUnsignedInt(record.getShort(10))) != null;
+    }
+
+    /**
+     * Checks that an end record describes a single-disk zip file, and that the central directory it
+     * refers to ends right before it.
+     */
+    private static boolean isEnd(ByteBuffer record, FileChannel channel, long position) throws IOException {
+        if (record.getInt(0) != END_HEADER || record.getShort(4) != 0 || record.getShort(6) != 0
+                || record.getShort(8) != record.getShort(10)) {
+            return false;
+        }
+        long directorySize = Integer.toUnsignedLong(record.getInt(12));
+        long directoryStart = Integer.toUnsignedLong(record.getInt(16));
+        if (directoryStart + directorySize != position) {
+            return false;
+        }
+        if (directorySize == 0) {
+            return true;
+        }
+        ByteBuffer header = read(channel, directoryStart, 4);
+        return header != null && header.getInt(0) == DIRECTORY_HEADER;
+    }
+
+    /**
+     * @return The size of the local header and the data of an entry, which may have a data descriptor.
+     */
+    private long localSize(Entry entry) throws IOException {
+        ByteBuffer header = read(channel, entry.offset(), LOCAL_HEADER_SIZE);
+        if (header == null || header.getInt(0) != LOCAL_HEADER) {
+            return 0;
+        }
+        long size = LOCAL_HEADER_SIZE + Short.toUnsignedInt(header.getShort(26)) + Short.toUnsignedInt(header.getShort(28))
+                + entry.compressedSize();
+        if ((header.getShort(6) & 0x08) != 0) {
+            size += 16; // Data descriptor with signature, as written by ZipOutputStream
+        }
+        return size;
+    }
+
+    private void zero(long start, long length) throws IOException {
+        ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(length, 64 * 1024));
+        for (long done = 0; done < length; ) {
+            zeros.clear().limit((int) Math.min(zeros.capacity(), length - done));
+            done += channel.write(zeros, start + done);
+        }
+    }
+
+    private void write(ByteBuffer buffer, long at) throws IOException {
+        while (buffer.hasRemaining()) {
+            at += channel.write(buffer, at);
+        }
+    }
+
+    /**
+     * @return The bytes, or {@code null} if the range is outside the file.
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        if (position < 0 || position + length > channel.size()) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * @return The time and date in the MS-DOS format of zip files, time in the low half.
+     */
+    private static int dosTime(LocalDateTime time) {
+        int dosTime = time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+        int dosDate = (time.getYear() - 1980) << 9 | time.getMonthValue() << 5 | time.getDayOfMonth();
+        return dosDate << 16 | dosTime;
+    }
+}
@@ -0,0 +1,103 @@
+package service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.regex.Pattern;
+
+import model.ImageBlob;
+
+/**
+ * A content-addressed store for the images of exams: a directory with one file per image, named
+ * after the SHA-256 hash of its bytes. An image used by several questions or exams is stored once.
+ * <p>
+ * Exam files refer to their images by hash; the store of an exam file is the directory
+ * {@value #DIRECTORY_NAME} next to it ({@link #besides(File)}), so all exams in one directory share
+ * their images. Files are written to a temporary file first and then moved into place, so a file
+ * named after a hash is always complete. Images are never deleted, since other exams may still use
+ * them.
+ */
+public class BlobStore {
+
+    /** The name of the directory next to the exam files. */
+    public static final String DIRECTORY_NAME = "exam-images";
+
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path directory;
+
+    /**
+     * Creates a store in a directory, which is created when the first image is stored.
+     * @param directory The directory of the store.
+     */
+    public BlobStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param examFile An exam file.
+     * @return The store for the images of the exam file.
+     */
+    public static BlobStore besides(File examFile) {
+        return new BlobStore(examFile.toPath().toAbsolutePath().resolveSibling(DIRECTORY_NAME));
+    }
+
+    /**
+     * @return The directory of the store.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns a stored image. The file is checked to exist, but only read when the image is needed.
+     * A missing image is no error, since the directory may simply not have been copied with an
+     * exam file; the exam is then loaded without it.
+     * @param hash The SHA-256 hash of the image as lowercase hex.
+     * @return The image, or {@code null} if it is not in the store.
+     * @throws IOException if the hash is invalid.
+     */
+    public ImageBlob get(String hash) throws IOException {
+        Path file = file(hash);
+        return Files.isRegularFile(file) ? ImageBlob.ofFile(hash, file) : null;
+    }
+
+    /**
+     * Stores an image unless the store already contains it.
+     * @param image An image that is {@link ImageBlob#isStorable() storable}.
+     * @return The image backed by the file in this store, which can replace the given image.
+     * @throws IOException if the image cannot be read or written.
+     */
+    public ImageBlob put(ImageBlob image) throws IOException {
+        if (!image.isStorable()) {
+            throw new IllegalArgumentException("The image cannot be stored as a blob: " + image);
+        }
+        Path file = file(image.getHash());
+        if (file.equals(image.getFile())) {
+            return image;
+        }
+        if (!Files.isRegularFile(file)) {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, image.getHash(), ".tmp");
+            try {
+                Files.write(temp, image.getData());
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return ImageBlob.ofFile(image.getHash(), file);
+    }
+
+    private Path file(String hash) throws IOException {
+        if (!HASH.matcher(hash).matches()) {
+            throw new IOException("Ungültiger Bild-Hash: " + hash);
+        }
+        return directory.resolve(hash);
+    }
+}
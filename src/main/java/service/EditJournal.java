@@ -0,0 +1,449 @@
+package service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import model.Exam;
+import model.ImageBlob;
+import model.Question;
+
+/**
+ * An append-only autosave journal of the edits to an exam, so that a crash does not lose the edits
+ * since the last save. Writing the whole exam every few seconds would be too expensive, so each
+ * edit appends a compact delta instead:
+ * <ul>
+ *   <li>a top-level question with its sub-questions was added or changed ({@link #putQuestion(int, Question)}),</li>
+ *   <li>a top-level question was deleted ({@link #deleteQuestion(UUID)}), or</li>
+ *   <li>the exam properties were changed ({@link #putMetadata(Exam)}).</li>
+ * </ul>
+ * The journal of an exam file lives in the hidden directory {@code .<file name>.autosave} next to
+ * it ({@link #forExam(File)}), the journal of an exam that was never saved in the home directory.
+ * The directory holds the journal, the last snapshot ({@code snapshot}, an {@link ExamContainer})
+ * and the images the deltas refer to (a {@link BlobStore}).
+ * <p>
+ * The deltas are copied on the calling thread and written by a single background thread, which
+ * collects them for up to {@value #BATCH_DELAY_MILLIS} ms and forces them to disk once per batch.
+ * Each delta is framed with its length and CRC-32, so a delta torn by a crash is detected and
+ * dropped. After {@value #COMPACT_AFTER_RECORDS} deltas, the caller writes a new snapshot
+ * ({@link #needsCompaction()}, {@link #snapshot(Exam)}), and the journal starts over. Replaying a
+ * delta twice has no further effect, so a crash between writing the snapshot and truncating the
+ * journal is harmless.
+ * <p>
+ * {@link #recover(Exam)} replays the journal over the snapshot, or over the exam file if there is
+ * none. {@link #discard()} deletes the journal once the exam was saved. Except for these two, all
+ * methods return immediately; write errors are logged.
+ */
+public class EditJournal implements Closeable {
+
+    /** The number of deltas after which a new snapshot should be written. */
+    public static final int COMPACT_AFTER_RECORDS = 500;
+
+    /** The time the background thread waits for further deltas before forcing a batch to disk. */
+    static final long BATCH_DELAY_MILLIS = 200;
+
+    private static final byte[] MAGIC = "EXJ1".getBytes(StandardCharsets.US_ASCII);
+
+    private final Path directory;
+    private final Path journalFile;
+    private final Path snapshotFile;
+    private final BlobStore images;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private Thread writer; // Started with the first delta
+    private int records; // Deltas since the last snapshot
+
+    /** A queued delta or command for the background thread. */
+    private sealed interface Entry {}
+    private record Put(int index, Question question) implements Entry {}
+    private record Delete(UUID id) implements Entry {}
+    private record Metadata(JsonNode exam) implements Entry {}
+    private record Snapshot(Exam exam) implements Entry {}
+    private record Flush(CompletableFuture<Void> done) implements Entry {}
+    private record Stop(CompletableFuture<Void> done) implements Entry {}
+
+    /**
+     * Creates the journal in a directory, which is created with the first delta.
+     * @param directory The directory of the journal.
+     */
+    public EditJournal(Path directory) {
+        this.directory = directory;
+        this.journalFile = directory.resolve("journal");
+        this.snapshotFile = directory.resolve("snapshot"); // No .exam extension, so globs for exam files skip it
+        this.images = new BlobStore(directory.resolve("images"));
+    }
+
+    /**
+     * @param examFile The exam file, or {@code null} for an exam that was never saved.
+     * @return The journal of the exam.
+     */
+    public static EditJournal forExam(File examFile) {
+        if (examFile == null) {
+            return new EditJournal(Path.of(System.getProperty("user.home"), ".exambuilder", "unbenannt.autosave"));
+        }
+        Path file = examFile.toPath().toAbsolutePath();
+        return new EditJournal(file.resolveSibling("." + file.getFileName() + ".autosave"));
+    }
+
+    /**
+     * @return The directory of the journal.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return {@code true} if the journal holds edits that can be recovered.
+     */
+    public boolean hasEdits() {
+        try {
+            return Files.isRegularFile(snapshotFile)
+                    || (Files.isRegularFile(journalFile) && Files.size(journalFile) > MAGIC.length);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Appends a top-level question with its sub-questions, which was added or changed.
+     * @param index The position of the question in the exam.
+     * @param question The question; it is copied.
+     */
+    public void putQuestion(int index, Question question) {
+        submit(new Put(index, new Question(question)));
+    }
+
+    /**
+     * Appends the deletion of a top-level question.
+     * @param id The ID of the question.
+     */
+    public void deleteQuestion(UUID id) {
+        submit(new Delete(id));
+    }
+
+    /**
+     * Appends the properties of an exam, without its questions.
+     * @param exam The exam.
+     */
+    public void putMetadata(Exam exam) {
+        submit(new Metadata(ExamCodec.METADATA_MAPPER.valueToTree(exam)));
+    }
+
+    /**
+     * @return {@code true} if so many deltas were appended that a new snapshot should be written.
+     */
+    public boolean needsCompaction() {
+        return records >= COMPACT_AFTER_RECORDS;
+    }
+
+    /**
+     * Writes a snapshot of an exam and starts the journal over, e.g. after a change to all questions.
+     * @param exam The exam; it is copied.
+     */
+    public void snapshot(Exam exam) {
+        Exam copy = new Exam(exam);
+        records = 0;
+        submit(new Snapshot(copy));
+    }
+
+    /**
+     * Waits until all deltas appended so far are on disk.
+     */
+    public void flush() {
+        if (writer != null) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            queue.add(new Flush(done));
+            done.join();
+        }
+    }
+
+    /**
+     * Writes the pending deltas and stops the background thread. The journal is kept.
+     */
+    @Override
+    public void close() {
+        if (writer != null) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            queue.add(new Stop(done));
+            done.join();
+            writer = null;
+        }
+    }
+
+    /**
+     * Stops the journal and deletes it with the snapshot and its images, e.g. after the exam was saved.
+     */
+    public void discard() {
+        close();
+        records = 0;
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            System.err.println("The autosave journal " + directory + " could not be deleted.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Replays the journal over its snapshot, or over the given exam if there is no snapshot.
+     * A delta torn by a crash and everything after it are dropped from the journal.
+     * Must be called before the first delta is appended.
+     * @param base The exam as it was saved, or an empty exam.
+     * @return The recovered exam.
+     * @throws IOException if the snapshot or the journal cannot be read.
+     */
+    public Exam recover(Exam base) throws IOException {
+        Set<String> missingImages = new LinkedHashSet<>();
+        Exam exam = Files.isRegularFile(snapshotFile) ? ExamContainer.load(snapshotFile.toFile(), progress -> {}, missingImages) : base;
+        if (exam.getQuestions() == null) {
+            exam.setQuestions(new ArrayList<>());
+        }
+        if (!Files.isRegularFile(journalFile)) {
+            ExamFiles.warnMissingImages(directory, missingImages);
+            return exam;
+        }
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            List<byte[]> deltas = new ArrayList<>();
+            long valid = readRecords(channel, deltas);
+            if (valid < channel.size()) {
+                System.err.println("Dropping " + (channel.size() - valid) + " bytes of a torn delta from " + journalFile);
+                channel.truncate(valid);
+            }
+            for (byte[] delta : deltas) {
+                apply(exam, delta, missingImages);
+            }
+            records = deltas.size();
+        }
+        ExamFiles.warnMissingImages(directory, missingImages);
+        return exam;
+    }
+
+    private void apply(Exam exam, byte[] delta, Set<String> missingImages) throws IOException {
+        JsonNode node = ExamCodec.MAPPER.readTree(delta);
+        switch (node.path("op").asText()) {
+            case "put" -> {
+                Question question;
+                try (JsonParser parser = ExamCodec.MAPPER.getFactory().createParser(node.get("question").toString())) {
+                    parser.nextToken();
+                    ExamFiles.ImageLookup lookup = images::get;
+                    question = new ExamFiles.Loader(parser, null, progress -> {}, lookup.recordingMissing(missingImages), ExamCodec.SCHEMA_VERSION).readQuestion();
+                }
+                List<Question> questions = exam.getQuestions();
+                questions.removeIf(q -> q.getId().equals(question.getId()));
+                questions.add(Math.min(node.path("index").asInt(), questions.size()), question);
+            }
+            case "delete" -> {
+                UUID id = UUID.fromString(node.path("id").asText());
+                exam.getQuestions().removeIf(q -> q.getId().equals(id));
+            }
+            case "metadata" -> ExamCodec.updateExam(exam, node.get("exam"));
+            default -> System.err.println("Unknown delta in the journal: " + node.path("op").asText());
+        }
+    }
+
+    /**
+     * Reads the valid deltas of a journal.
+     * @return The length of the valid part of the journal.
+     */
+    private static long readRecords(FileChannel channel, List<byte[]> deltas) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+        channel.read(magic, 0);
+        if (magic.hasRemaining() || !magic.flip().equals(ByteBuffer.wrap(MAGIC))) {
+            return 0;
+        }
+        long position = MAGIC.length;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (true) {
+            header.clear();
+            channel.read(header, position);
+            if (header.hasRemaining()) {
+                return position;
+            }
+            int length = header.getInt(0);
+            int crc = header.getInt(4);
+            if (length < 0 || position + 8 + length > channel.size()) {
+                return position;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            while (payload.hasRemaining() && channel.read(payload, position + 8 + payload.position()) >= 0) {
+                // Read until the buffer is full
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(payload.array());
+            if ((int) checksum.getValue() != crc) {
+                return position;
+            }
+            deltas.add(payload.array());
+            position += 8 + length;
+        }
+    }
+
+    private void submit(Entry entry) {
+        if (writer == null) {
+            writer = new Thread(this::run, "edit-journal");
+            writer.setDaemon(true);
+            writer.start();
+        }
+        if (!(entry instanceof Snapshot)) {
+            records++;
+        }
+        queue.add(entry);
+    }
+
+    /**
+     * The loop of the background thread: collects a batch of entries, writes them and forces them
+     * to disk once.
+     */
+    private void run() {
+        FileChannel channel = null;
+        List<CompletableFuture<Void>> waiting = new ArrayList<>();
+        try {
+            while (true) {
+                List<Entry> batch = new ArrayList<>();
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_DELAY_MILLIS);
+                while (!(batch.get(batch.size() - 1) instanceof Flush || batch.get(batch.size() - 1) instanceof Stop)) {
+                    Entry next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                boolean stop = false;
+                for (Entry entry : batch) {
+                    try {
+                        if (channel == null && !(entry instanceof Flush || entry instanceof Stop)) {
+                            channel = openJournal();
+                        }
+                        if (entry instanceof Flush flush) {
+                            waiting.add(flush.done());
+                        } else if (entry instanceof Stop end) {
+                            waiting.add(end.done());
+                            stop = true;
+                        } else if (entry instanceof Snapshot snapshot) {
+                            writeSnapshot(channel, snapshot.exam());
+                        } else {
+                            append(channel, entry);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Writing the autosave journal " + journalFile + " failed.");
+                        e.printStackTrace();
+                    }
+                }
+                if (channel != null) {
+                    try {
+                        channel.force(false);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+                waiting.forEach(done -> done.complete(null));
+                waiting.clear();
+                if (stop) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the journal for appending, dropping a torn delta at its end.
+     */
+    private FileChannel openJournal() throws IOException {
+        Files.createDirectories(directory);
+        FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long valid = readRecords(channel, new ArrayList<>());
+        if (valid == 0) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(MAGIC), 0);
+            valid = MAGIC.length;
+        }
+        channel.truncate(valid);
+        channel.position(valid);
+        return channel;
+    }
+
+    private void append(FileChannel channel, Entry entry) throws IOException {
+        ObjectNode delta = ExamCodec.MAPPER.createObjectNode();
+        if (entry instanceof Put put) {
+            storeImages(put.question());
+            delta.put("op", "put");
+            delta.put("index", put.index());
+            delta.set("question", ExamCodec.MAPPER.valueToTree(put.question()));
+        } else if (entry instanceof Delete delete) {
+            delta.put("op", "delete");
+            delta.put("id", delete.id().toString());
+        } else if (entry instanceof Metadata metadata) {
+            delta.put("op", "metadata");
+            delta.set("exam", metadata.exam());
+        }
+        byte[] payload = ExamCodec.COMPACT_WRITER.writeValueAsBytes(delta);
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+        buffer.putInt(payload.length).putInt((int) checksum.getValue()).put(payload).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Stores the images of a question, so the delta can refer to them by hash.
+     */
+    private void storeImages(Question question) throws IOException {
+        for (ImageBlob image : new ImageBlob[] {question.getImage(), question.getMusterloesungImage()}) {
+            if (image != null && image.isStorable()) {
+                images.put(image);
+            }
+        }
+        if (question.getSubQuestions() != null) {
+            for (Question subQuestion : question.getSubQuestions()) {
+                storeImages(subQuestion);
+            }
+        }
+    }
+
+    private void writeSnapshot(FileChannel channel, Exam exam) throws IOException {
+        ExamContainer.save(exam, snapshotFile.toFile());
+        channel.force(false);
+        channel.truncate(MAGIC.length);
+        channel.position(MAGIC.length);
+    }
+}
@@ -0,0 +1,195 @@
+package service;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import model.Exam;
+import model.Question;
+
+/**
+ * The JSON representation of exams, shared by {@link ExamFiles}, {@link ExamContainer} and the
+ * {@link EditJournal}, and therefore by the UI and the headless batch export. The
+ * {@link ObjectMapper} is configured once, and the readers and writers for exams, questions and the
+ * exam properties are built once, so Jackson introspects the model classes and constructs their
+ * (de)serializers only for the first file.
+ * <p>
+ * Every file records the version of its schema ({@value #SCHEMA_VERSION_FIELD}, written before the
+ * questions). Files without it are from before the versioning ({@value #LEGACY_SCHEMA_VERSION}).
+ * The loader is streaming, so an older file is not mapped first and fixed afterwards: the
+ * {@link Migration}s are applied to the properties of the exam and of each question while they are
+ * read, just before they are mapped. A migration works on the properties of one object, without
+ * its sub-questions and images, so it may look at all of them (e.g. the type of a question when
+ * converting its text), which a transformation of single tokens could not.
+ */
+public class ExamCodec {
+
+    /** The version of the schema written by this class. */
+    public static final int SCHEMA_VERSION = 2;
+
+    /** The version of files that do not record their schema version. */
+    public static final int LEGACY_SCHEMA_VERSION = 1;
+
+    /** The property of the exam (or of the container manifest) holding the schema version. */
+    public static final String SCHEMA_VERSION_FIELD = "schemaVersion";
+
+    static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    /** Writes indented JSON, e.g. the parts of a container. */
+    static final ObjectWriter WRITER = MAPPER.writer();
+
+    /** Writes JSON without whitespace, e.g. the deltas of the journal. */
+    static final ObjectWriter COMPACT_WRITER = WRITER.without(SerializationFeature.INDENT_OUTPUT);
+
+    /** Writes the exam properties without the questions. */
+    static final ObjectMapper METADATA_MAPPER = MAPPER.copy().addMixIn(Exam.class, WithoutQuestions.class);
+
+    @JsonIgnoreProperties("questions")
+    private abstract static class WithoutQuestions {}
+
+    /*
+     * The images of a question are stored by hash or spilled, which only the ExamFiles.Loader can
+     * resolve; Jackson would drop them. So these readers are not exposed: the exam reader ignores
+     * questions altogether, and questions are only mapped by readQuestion for the Loader.
+     */
+    private static final ObjectReader EXAM_READER = METADATA_MAPPER.readerFor(Exam.class);
+    private static final ObjectReader QUESTION_READER = MAPPER.readerFor(Question.class);
+
+    /**
+     * Converts the properties of one version of the schema to the next.
+     */
+    public interface Migration {
+
+        /**
+         * @return The version this migration converts from, to the next one.
+         */
+        int fromVersion();
+
+        /**
+         * Converts the properties of the exam, without its questions.
+         * @param properties The properties, which are changed in place.
+         */
+        default void migrateExam(ObjectNode properties) {}
+
+        /**
+         * Converts the properties of a question or sub-question, without its sub-questions and
+         * images.
+         * @param properties The properties, which are changed in place.
+         */
+        default void migrateQuestion(ObjectNode properties) {}
+    }
+
+    /**
+     * Version 2: the options of multiple choice questions are an HTML list for the
+     * {@code HTMLEditor}. Before, they were plain text with one option per line.
+     */
+    static final class McqOptionsAsList implements Migration {
+
+        @Override
+        public int fromVersion() {
+            return 1;
+        }
+
+        @Override
+        public void migrateQuestion(ObjectNode properties) {
+            String text = properties.path("text").asText(null);
+            if (!"MCQ".equals(properties.path("type").asText(null)) || text == null || text.trim().isEmpty() || text.contains("<li>")) {
+                return;
+            }
+            StringBuilder html = new StringBuilder("<ol>");
+            for (String line : text.split("\\s*\\n\\s*")) {
+                if (!line.trim().isEmpty()) {
+                    html.append("<li>").append(line.trim()).append("</li>");
+                }
+            }
+            html.append("</ol>");
+            properties.put("text", html.toString());
+        }
+    }
+
+    /** The migrations in order, one per version before {@link #SCHEMA_VERSION}. */
+    private static final List<Migration> MIGRATIONS = List.of(new McqOptionsAsList());
+
+    static {
+        for (int i = 0; i < MIGRATIONS.size(); i++) {
+            if (MIGRATIONS.get(i).fromVersion() != LEGACY_SCHEMA_VERSION + i) {
+                throw new IllegalStateException("The migrations are not in order: " + MIGRATIONS.get(i));
+            }
+        }
+        if (LEGACY_SCHEMA_VERSION + MIGRATIONS.size() != SCHEMA_VERSION) {
+            throw new IllegalStateException("A migration to schema version " + SCHEMA_VERSION + " is missing.");
+        }
+    }
+
+    /**
+     * Reads a schema version from a file.
+     * @param value The value of {@value #SCHEMA_VERSION_FIELD}, or a missing node for a legacy file.
+     * @return The schema version.
+     * @throws IOException if the version is invalid or newer than this class can read.
+     */
+    static int schemaVersion(JsonNode value) throws IOException {
+        if (value == null || value.isMissingNode() || value.isNull()) {
+            return LEGACY_SCHEMA_VERSION;
+        }
+        int version = value.asInt(0);
+        if (version < LEGACY_SCHEMA_VERSION) {
+            throw new IOException("Ungültige Schemaversion: " + value);
+        }
+        if (version > SCHEMA_VERSION) {
+            throw new IOException("Die Datei wurde mit einer neueren Version von ExamBuilder erstellt (Schemaversion "
+                    + version + ", unterstützt bis " + SCHEMA_VERSION + ").");
+        }
+        return version;
+    }
+
+    /**
+     * Maps the properties of an exam, migrating them to the current schema first. Questions are
+     * ignored; they are read with their images by the {@link ExamFiles.Loader}.
+     * @param properties The properties without the questions; they may be changed.
+     * @param schemaVersion The schema version of the file.
+     * @return The exam.
+     * @throws IOException if the properties cannot be mapped.
+     */
+    static Exam readExam(ObjectNode properties, int schemaVersion) throws IOException {
+        for (int version = schemaVersion; version < SCHEMA_VERSION; version++) {
+            MIGRATIONS.get(version - LEGACY_SCHEMA_VERSION).migrateExam(properties);
+        }
+        return EXAM_READER.readValue(properties);
+    }
+
+    /**
+     * Applies exam properties of the current schema, e.g. from the {@link EditJournal}, to an exam.
+     * Its questions are kept.
+     * @param exam The exam to update.
+     * @param properties The exam properties written by {@link #METADATA_MAPPER}.
+     * @throws IOException if the properties cannot be mapped.
+     */
+    static void updateExam(Exam exam, JsonNode properties) throws IOException {
+        EXAM_READER.withValueToUpdate(exam).readValue(properties);
+    }
+
+    /**
+     * Maps the properties of a question, migrating them to the current schema first. Only called
+     * by the {@link ExamFiles.Loader}, which reads the sub-questions and images itself.
+     * @param properties The properties without the sub-questions and images; they may be changed.
+     * @param schemaVersion The schema version of the file.
+     * @return The question.
+     * @throws IOException if the properties cannot be mapped.
+     */
+    static Question readQuestion(ObjectNode properties, int schemaVersion) throws IOException {
+        for (int version = schemaVersion; version < SCHEMA_VERSION; version++) {
+            MIGRATIONS.get(version - LEGACY_SCHEMA_VERSION).migrateQuestion(properties);
+        }
+        return QUESTION_READER.readValue(properties);
+    }
+}
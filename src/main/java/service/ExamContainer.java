@@ -0,0 +1,474 @@
+package service;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.DoubleConsumer;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import model.Exam;
+import model.ImageBlob;
+import model.Question;
+
+/**
+ * Reads and writes exams as a single file with the extension {@value #EXTENSION}: a zip file with
+ * <ul>
+ *   <li>{@code manifest.json}, the first entry: the format version, the {@link ExamCodec} schema
+ *       version of the exam and its questions, the exam properties without
+ *       the questions, and for each top-level question its ID, title, part name and the SHA-256
+ *       hash of the part,</li>
+ *   <li>{@code questions/<hash>.json}: one part per distinct top-level question, including its
+ *       sub-questions, with the images referred to by hash like in {@link ExamFiles}, stored
+ *       uncompressed, and</li>
+ *   <li>{@code images/<hash>}: each image once, stored uncompressed, since images are compressed
+ *       already.</li>
+ * </ul>
+ * The central directory of the zip file gives random access to the entries, so the manifest
+ * ({@link #readManifest(File)}) and single questions ({@link #readQuestion(File, Part)}) can be read
+ * without reading the rest of the file. Images are only read from the container when they are
+ * needed (see {@link ImageBlob#ofZipEntry(String, Path, String)}).
+ * <p>
+ * Since parts and images are named by their content, {@link #save(Exam, File)} only has to write
+ * the entries that an existing container does not hold yet: it appends them together with a new
+ * manifest and central directory, and leaves the rest of the file as it is (see
+ * {@link AppendableZip}). Saving an unchanged exam does not touch the file at all. Replaced parts
+ * are overwritten with zeros, but images that are no longer used stay in the container, since
+ * images of loaded questions are read from it lazily. Once more than half of the file would be
+ * unused, and for new files, the container is written anew to a temporary file that is moved over
+ * the old one, which drops them. The parts of questions that did not change since
+ * the last save are taken from the {@link QuestionJsonCache} with their checksums, so they are
+ * neither serialized nor compared again.
+ */
+public class ExamContainer {
+
+    /** The extension of exam containers. */
+    public static final String EXTENSION = ".exam";
+
+    /** The version of the container format written by this class. */
+    public static final int FORMAT_VERSION = 1;
+
+    static final String MANIFEST = "manifest.json";
+    private static final String QUESTIONS = "questions/";
+    private static final String IMAGES = "images/";
+
+    /**
+     * The manifest of a container.
+     * @param formatVersion The version of the container format.
+     * @param schemaVersion The {@link ExamCodec} schema version of the exam and its questions.
+     * @param exam The exam properties; the questions are not read.
+     * @param questions The parts of the top-level questions in order.
+     */
+    public record Manifest(int formatVersion, int schemaVersion, Exam exam, List<Part> questions) {}
+
+    /**
+     * The entry of a top-level question in the manifest.
+     * @param id The ID of the question.
+     * @param title The title of the question, to list the questions without reading them.
+     * @param name The name of the zip entry containing the question.
+     * @param hash The SHA-256 hash of the entry as lowercase hex.
+     */
+    public record Part(UUID id, String title, String name, String hash) {}
+
+    /**
+     * @param file A file.
+     * @return {@code true} if the file is an exam container by its extension.
+     */
+    public static boolean isContainer(File file) {
+        return file.getName().toLowerCase().endsWith(EXTENSION);
+    }
+
+    /**
+     * Reads only the manifest of a container.
+     * @param file The container.
+     * @return The manifest.
+     * @throws IOException if the file cannot be read or is no exam container.
+     */
+    public static Manifest readManifest(File file) throws IOException {
+        try (Opened container = open(file)) {
+            return readManifest(container.zip());
+        }
+    }
+
+    /**
+     * Reads a single top-level question of a container. Missing images are left out and reported
+     * on {@code System.err}.
+     * @param file The container.
+     * @param part The part of the question, from the {@link #readManifest(File) manifest}.
+     * @return The question with its sub-questions.
+     * @throws IOException if the file cannot be read or the question is invalid.
+     */
+    public static Question readQuestion(File file, Part part) throws IOException {
+        try (Opened container = open(file)) {
+            Set<String> missingImages = new LinkedHashSet<>();
+            Question question = readQuestion(container.zip(), container.file(), part,
+                    readManifest(container.zip()).schemaVersion(), missingImages);
+            ExamFiles.warnMissingImages(file, missingImages);
+            return question;
+        }
+    }
+
+    /**
+     * Loads a complete exam from a container, reporting the progress. Images missing from the
+     * container, e.g. because it was written by another program, are left out of their questions.
+     * @param file The container.
+     * @param progress Receives the share of the questions read so far, from 0 to 1, after every top-level question.
+     * @param missingImages Receives the hashes of the missing images.
+     * @return The loaded {@link model.Exam}.
+     * @throws IOException if the file cannot be read or is no valid exam container.
+     */
+    public static Exam load(File file, DoubleConsumer progress, Set<String> missingImages) throws IOException {
+        try (Opened container = open(file)) {
+            Manifest manifest = readManifest(container.zip());
+            List<Question> questions = new ArrayList<>();
+            for (Part part : manifest.questions()) {
+                questions.add(readQuestion(container.zip(), container.file(), part, manifest.schemaVersion(), missingImages));
+                progress.accept((double) questions.size() / manifest.questions().size());
+            }
+            Exam exam = manifest.exam();
+            exam.setQuestions(questions);
+            progress.accept(1.0);
+            return exam;
+        }
+    }
+
+    /**
+     * Saves an exam as a container. An existing container is changed in place when that is worth it,
+     * otherwise it is replaced once the new one is complete. Afterwards the images of the exam refer
+     * to the container.
+     * @param exam The {@link model.Exam} to save.
+     * @param file The destination file.
+     * @throws IOException if the file cannot be written or an image cannot be read.
+     */
+    public static void save(Exam exam, File file) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        List<Question> questions = exam.getQuestions() != null ? exam.getQuestions() : List.of();
+
+        // The manifest comes first and lists the hashes of the parts, so serialize them first
+        List<Part> parts = new ArrayList<>();
+        Map<String, QuestionJsonCache.Entry> partData = new LinkedHashMap<>();
+        for (Question question : questions) {
+            QuestionJsonCache.Entry data = QuestionJsonCache.SHARED.get(question);
+            // Named by content rather than by ID, since copied questions may share their ID
+            String name = QUESTIONS + data.hash() + ".json";
+            parts.add(new Part(question.getId(), question.getTitle(), name, data.hash()));
+            partData.put(name, data);
+        }
+        ObjectNode manifest = ExamCodec.MAPPER.createObjectNode();
+        manifest.put("formatVersion", FORMAT_VERSION);
+        manifest.put(ExamCodec.SCHEMA_VERSION_FIELD, ExamCodec.SCHEMA_VERSION);
+        manifest.set("exam", ExamCodec.METADATA_MAPPER.valueToTree(exam));
+        manifest.set("questions", ExamCodec.MAPPER.valueToTree(parts));
+        byte[] manifestData = ExamCodec.WRITER.writeValueAsBytes(manifest);
+        Map<String, ImageBlob> images = new LinkedHashMap<>();
+        for (Question question : questions) {
+            collectImages(question, images);
+        }
+
+        if (!append(target, manifestData, partData, images)) {
+            rewrite(target, manifestData, partData, images);
+        }
+        for (Question question : questions) {
+            rebindImages(question, target);
+        }
+    }
+
+    /**
+     * Saves into an existing container by appending only the entries that it does not hold yet (see
+     * {@link AppendableZip}).
+     * @return {@code false} if the container does not exist, is no container written by this class
+     *         or would be mostly unused afterwards, so it is to be written anew.
+     */
+    private static boolean append(Path target, byte[] manifest, Map<String, QuestionJsonCache.Entry> parts,
+                                  Map<String, ImageBlob> images) throws IOException {
+        try (AppendableZip zip = AppendableZip.open(target)) {
+            if (zip == null || zip.get(MANIFEST) == null) {
+                return false;
+            }
+            CRC32 manifestCrc = new CRC32();
+            manifestCrc.update(manifest);
+            Set<String> kept = new HashSet<>();
+            if (holds(zip, MANIFEST, manifest.length, manifestCrc.getValue())) {
+                kept.add(MANIFEST);
+            }
+            for (Map.Entry<String, QuestionJsonCache.Entry> part : parts.entrySet()) {
+                if (holds(zip, part.getKey(), part.getValue().json().length, part.getValue().crc())) {
+                    kept.add(part.getKey());
+                }
+            }
+            for (String name : images.keySet()) {
+                // Named by the hash of the data, so an entry of the same name holds the same image
+                if (zip.get(name) != null) {
+                    kept.add(name);
+                }
+            }
+            if (zip.isMostlyUnusedWith(kept)) {
+                return false;
+            }
+
+            if (kept.contains(MANIFEST)) {
+                zip.keep(MANIFEST);
+            } else if (!zip.add(MANIFEST, manifest, manifestCrc.getValue())) {
+                return false;
+            }
+            for (Map.Entry<String, QuestionJsonCache.Entry> part : parts.entrySet()) {
+                if (kept.contains(part.getKey())) {
+                    zip.keep(part.getKey());
+                } else if (!zip.add(part.getKey(), part.getValue().json(), part.getValue().crc())) {
+                    return false;
+                }
+            }
+            for (Map.Entry<String, ImageBlob> image : images.entrySet()) {
+                if (kept.contains(image.getKey())) {
+                    zip.keep(image.getKey());
+                    continue;
+                }
+                byte[] data = imageData(image.getValue());
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                if (!zip.add(image.getKey(), data, crc.getValue())) {
+                    return false;
+                }
+            }
+            // Loaded questions, e.g. in the undo history, may still read images that are no longer used
+            for (String name : List.copyOf(zip.names())) {
+                if (name.startsWith(IMAGES)) {
+                    zip.keep(name);
+                }
+            }
+            return zip.commit();
+        }
+    }
+
+    private static boolean holds(AppendableZip zip, String name, long size, long crc) {
+        AppendableZip.Entry entry = zip.get(name);
+        return entry != null && entry.size() == size && entry.crc() == crc;
+    }
+
+    /**
+     * Writes a new container to a temporary file and moves it over the old one. Images that the old
+     * container holds already are copied entry by entry instead of being read into memory.
+     */
+    private static void rewrite(Path target, byte[] manifest, Map<String, QuestionJsonCache.Entry> parts,
+                                Map<String, ImageBlob> images) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (ZipFile old = Files.isRegularFile(target) ? openOld(target) : null;
+                 ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(temp))) {
+                writeEntry(zip, MANIFEST, manifest);
+                for (Map.Entry<String, QuestionJsonCache.Entry> part : parts.entrySet()) {
+                    writeStoredEntry(zip, part.getKey(), part.getValue().json(), part.getValue().crc());
+                }
+                for (Map.Entry<String, ImageBlob> image : images.entrySet()) {
+                    writeImage(zip, old, image.getKey(), image.getValue());
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Manifest readManifest(ZipFile zip) throws IOException {
+        ZipEntry entry = zip.getEntry(MANIFEST);
+        if (entry == null) {
+            throw new IOException("Die Datei ist kein Prüfungscontainer: " + zip.getName());
+        }
+        JsonNode manifest;
+        try (InputStream in = zip.getInputStream(entry)) {
+            manifest = ExamCodec.MAPPER.readTree(in);
+        }
+        int formatVersion = manifest.path("formatVersion").asInt(0);
+        if (formatVersion < 1 || formatVersion > FORMAT_VERSION) {
+            throw new IOException("Nicht unterstützte Version " + formatVersion + " des Prüfungscontainers: " + zip.getName());
+        }
+        int schemaVersion = ExamCodec.schemaVersion(manifest.path(ExamCodec.SCHEMA_VERSION_FIELD));
+        ObjectNode properties = manifest.path("exam").isObject() ? (ObjectNode) manifest.get("exam") : ExamCodec.MAPPER.createObjectNode();
+        Exam exam = ExamCodec.readExam(properties, schemaVersion);
+        List<Part> parts = ExamCodec.MAPPER.convertValue(manifest.path("questions"), new TypeReference<List<Part>>() {});
+        return new Manifest(formatVersion, schemaVersion, exam, parts != null ? parts : List.of());
+    }
+
+    private static Question readQuestion(ZipFile zip, Path file, Part part, int schemaVersion, Set<String> missingImages) throws IOException {
+        ZipEntry entry = zip.getEntry(part.name());
+        if (entry == null) {
+            throw new IOException("Die Frage " + part.name() + " fehlt in " + file);
+        }
+        ExamFiles.ImageLookup images = hash -> {
+            String name = IMAGES + hash;
+            return zip.getEntry(name) != null ? ImageBlob.ofZipEntry(hash, file, name) : null;
+        };
+        try (InputStream in = zip.getInputStream(entry);
+             JsonParser parser = ExamCodec.MAPPER.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Ungültige Frage " + part.name() + " in " + file);
+            }
+            return new ExamFiles.Loader(parser, null, progress -> {}, images.recordingMissing(missingImages), schemaVersion).readQuestion();
+        }
+    }
+
+    /**
+     * A container opened for reading.
+     * @param zip The zip file.
+     * @param file The file that the zip file and the images of the container are read from.
+     */
+    private record Opened(ZipFile zip, Path file) implements Closeable {
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+
+    /**
+     * Opens a container for reading. If it cannot be read because a save was torn by a crash, the
+     * container as it was before that save is read from a temporary copy instead. The file itself
+     * is not changed; the next {@link #save(Exam, File)} cuts the torn save off.
+     */
+    private static Opened open(File file) throws IOException {
+        try {
+            return new Opened(new ZipFile(file), file.toPath());
+        } catch (ZipException e) {
+            long length;
+            try {
+                length = file.isFile() ? AppendableZip.completeLength(file.toPath()) : -1;
+            } catch (IOException searchFailed) {
+                e.addSuppressed(searchFailed);
+                throw e;
+            }
+            if (length < 0) {
+                throw e;
+            }
+            // The copy holds the images of the loaded exam until it is saved
+            Path copy = Files.createTempFile("exambuilder", EXTENSION);
+            copy.toFile().deleteOnExit();
+            try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+                for (long done = 0; done < length; ) {
+                    done += in.transferTo(done, length - done, out);
+                }
+            }
+            System.err.println("Unvollständiges Speichern am Ende von " + file + " ignoriert ("
+                    + (file.length() - length) + " Bytes); es wird beim nächsten Speichern verworfen.");
+            return new Opened(new ZipFile(copy.toFile()), copy);
+        }
+    }
+
+    /**
+     * Opens the container that is replaced, to copy its images. A file that is no zip file is
+     * simply replaced.
+     */
+    private static ZipFile openOld(Path file) {
+        try {
+            return new ZipFile(file.toFile());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Collects the storable images of a question and its sub-questions by entry name.
+     */
+    private static void collectImages(Question question, Map<String, ImageBlob> images) {
+        for (ImageBlob image : new ImageBlob[] {question.getImage(), question.getMusterloesungImage()}) {
+            if (image != null && image.isStorable()) {
+                images.putIfAbsent(IMAGES + image.getHash(), image);
+            }
+        }
+        if (question.getSubQuestions() != null) {
+            for (Question subQuestion : question.getSubQuestions()) {
+                collectImages(subQuestion, images);
+            }
+        }
+    }
+
+    private static void writeImage(ZipOutputStream zip, ZipFile old, String name, ImageBlob image) throws IOException {
+        ZipEntry oldEntry = old != null ? old.getEntry(name) : null;
+        if (oldEntry != null && oldEntry.getMethod() == ZipEntry.STORED) {
+            zip.putNextEntry(storedEntry(name, oldEntry.getSize(), oldEntry.getCrc()));
+            try (InputStream in = old.getInputStream(oldEntry)) {
+                in.transferTo(zip);
+            }
+            zip.closeEntry();
+            return;
+        }
+        byte[] data = imageData(image);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        writeStoredEntry(zip, name, data, crc.getValue());
+    }
+
+    private static byte[] imageData(ImageBlob image) throws IOException {
+        try {
+            return image.getData();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeEntry(ZipOutputStream zip, String name, byte[] data) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    private static void writeStoredEntry(ZipOutputStream zip, String name, byte[] data, long crc) throws IOException {
+        zip.putNextEntry(storedEntry(name, data.length, crc));
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    /**
+     * Creates an uncompressed entry, whose size and checksum must be known in advance.
+     */
+    private static ZipEntry storedEntry(String name, long size, long crc) {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entry.setCrc(crc);
+        return entry;
+    }
+
+    /**
+     * Lets the images of a saved question refer to the new container, so images held in memory can
+     * be released and images of the replaced container are no longer read.
+     */
+    private static void rebindImages(Question question, Path file) {
+        if (question.getImage() != null && question.getImage().isStorable()) {
+            question.setImage(ImageBlob.ofZipEntry(question.getImage().getHash(), file, IMAGES + question.getImage().getHash()));
+        }
+        ImageBlob solutionImage = question.getMusterloesungImage();
+        if (solutionImage != null && solutionImage.isStorable()) {
+            question.setMusterloesungImage(ImageBlob.ofZipEntry(solutionImage.getHash(), file, IMAGES + solutionImage.getHash()));
+        }
+        if (question.getSubQuestions() != null) {
+            for (Question subQuestion : question.getSubQuestions()) {
+                rebindImages(subQuestion, file);
+            }
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.DoubleConsumer;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import model.Exam;
+import model.ImageBlob;
+import model.Question;
+import model.SpilledText;
+
+/**
+ * Reads and writes {@link model.Exam} objects as JSON files. Used by the UI and by the headless
+ * batch export, so both accept the same files. The JSON mapping, the schema version and the
+ * migrations of older files are defined by the {@link ExamCodec}.
+ * <p>
+ * Exam files with many images are large (the images are embedded as Base64), so they are read
+ * with a streaming {@link JsonParser} instead of being mapped in one piece. The question tree is
+ * built question by question, and the progress is reported as the share of the file read so far.
+ * The parser skips embedded image strings without decoding them; an image of at least
+ * {@value #SPILL_THRESHOLD} bytes is copied from the exam file into a temporary spill file as it
+ * is and only decoded when the question needs it (see {@link SpilledText}). All other properties
+ * are migrated and mapped by the {@link ExamCodec} as each question is completed.
+ * <p>
+ * The images of an exam are saved in the {@link BlobStore} next to the exam file, and the file
+ * only contains their hashes. Images from older files, which embed them as Base64, are moved into
+ * the store the next time the exam is saved. If the store was not copied with the file, the exam is
+ * loaded without the missing images, which are reported once. An exam that is passed on as a single
+ * file is therefore better saved as an {@link ExamContainer} or with embedded images
+ * ({@link #save(Exam, File, boolean)}).
+ * <p>
+ * Saving writes the exam properties and then the questions. The JSON of a question that did not
+ * change since it was last saved ({@link Question#getTreeVersion()}) is taken from the
+ * {@link QuestionJsonCache}, so saving a large exam after editing one question only serializes
+ * that question.
+ */
+public class ExamFiles {
+
+    /** Images with fewer bytes are read into the question right away. */
+    static final int SPILL_THRESHOLD = 16 * 1024;
+
+    /**
+     * Loads an exam from a JSON file. Unknown properties are ignored, so files written by
+     * other versions of ExamBuilder can still be read.
+     * @param file The JSON file.
+     * @return The loaded {@link model.Exam}.
+     * @throws IOException if the file cannot be read or is no valid exam.
+     */
+    public static Exam load(File file) throws IOException {
+        return load(file, progress -> {});
+    }
+
+    /**
+     * Loads an exam from a JSON file like {@link #load(File)}, reporting the progress. Missing
+     * images are left out and reported on {@code System.err}.
+     * @param file The JSON file.
+     * @param progress Receives the share of the file read so far, from 0 to 1, after every question.
+     * @return The loaded {@link model.Exam}.
+     * @throws IOException if the file cannot be read or is no valid exam.
+     */
+    public static Exam load(File file, DoubleConsumer progress) throws IOException {
+        Set<String> missingImages = new LinkedHashSet<>();
+        Exam exam = load(file, progress, missingImages);
+        warnMissingImages(file, missingImages);
+        return exam;
+    }
+
+    /**
+     * Loads an exam from a JSON file like {@link #load(File, DoubleConsumer)}. Images that are
+     * neither in the {@link BlobStore} next to the file nor in the container are left out of their
+     * questions, so the rest of the exam can still be edited and exported.
+     * @param file The JSON file.
+     * @param progress Receives the share of the file read so far, from 0 to 1, after every question.
+     * @param missingImages Receives the hashes of the missing images.
+     * @return The loaded {@link model.Exam}.
+     * @throws IOException if the file cannot be read or is no valid exam.
+     */
+    public static Exam load(File file, DoubleConsumer progress, Set<String> missingImages) throws IOException {
+        if (ExamContainer.isContainer(file)) {
+            return ExamContainer.load(file, progress, missingImages);
+        }
+        ImageLookup images = BlobStore.besides(file)::get;
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             JsonParser parser = ExamCodec.MAPPER.getFactory().createParser(file)) {
+            return new Loader(parser, source, progress, images.recordingMissing(missingImages), ExamCodec.LEGACY_SCHEMA_VERSION).readExam();
+        }
+    }
+
+    /**
+     * Prints one warning for all images that were missing when a file was loaded.
+     * @param source The file that was loaded.
+     * @param missingImages The hashes of the missing images.
+     */
+    static void warnMissingImages(Object source, Set<String> missingImages) {
+        if (!missingImages.isEmpty()) {
+            System.err.println("Warnung: " + missingImages.size() + " Bild(er) von " + source
+                    + " fehlen und wurden nicht geladen: " + String.join(", ", missingImages));
+        }
+    }
+
+    /**
+     * Saves an exam as an indented JSON file. Its images are stored in the {@link BlobStore} next
+     * to the file first, and the questions then refer to the stored images. Files with the
+     * extension {@value ExamContainer#EXTENSION} are saved as an {@link ExamContainer} instead.
+     * @param exam The {@link model.Exam} to save.
+     * @param file The destination file.
+     * @throws IOException if the file or an image cannot be written.
+     */
+    public static void save(Exam exam, File file) throws IOException {
+        save(exam, file, false);
+    }
+
+    /**
+     * Saves an exam as an indented JSON file like {@link #save(Exam, File)}, or as a self-contained
+     * JSON file with the images embedded as Base64 like in older files. Such a file needs no
+     * {@link BlobStore}, so it can be passed on alone, but it is about a third larger than the images
+     * and every question is serialized again on every save. Files with the extension
+     * {@value ExamContainer#EXTENSION} are always self-contained.
+     * @param exam The {@link model.Exam} to save.
+     * @param file The destination file.
+     * @param embedImages {@code true} to embed the images instead of storing them next to the file.
+     * @throws IOException if the file or an image cannot be written.
+     */
+    public static void save(Exam exam, File file, boolean embedImages) throws IOException {
+        if (ExamContainer.isContainer(file)) {
+            ExamContainer.save(exam, file);
+            return;
+        }
+        if (exam.getQuestions() != null && !embedImages) {
+            BlobStore store = BlobStore.besides(file);
+            for (Question question : exam.getQuestions()) {
+                storeImages(question, store);
+            }
+        }
+        try (JsonGenerator generator = ExamCodec.MAPPER.getFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            generator.writeNumberField(ExamCodec.SCHEMA_VERSION_FIELD, ExamCodec.SCHEMA_VERSION);
+            ObjectNode properties = ExamCodec.METADATA_MAPPER.valueToTree(exam);
+            Iterator<Map.Entry<String, JsonNode>> fields = properties.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                generator.writeFieldName(field.getKey());
+                generator.writeTree(field.getValue());
+            }
+            generator.writeArrayFieldStart("questions");
+            if (exam.getQuestions() != null) {
+                for (Question question : exam.getQuestions()) {
+                    if (embedImages) {
+                        generator.writeTree(embedImages(ExamCodec.MAPPER.valueToTree(question), question));
+                        continue;
+                    }
+                    // The cached JSON is indented as a document of its own, the questions one level deeper
+                    String json = new String(QuestionJsonCache.SHARED.get(question).json(), StandardCharsets.UTF_8);
+                    generator.writeRawValue(json.replace("\n", "\n  "));
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Replaces the image hashes of a serialized question and its sub-questions by the embedded images.
+     * @param json The serialized question.
+     * @param question The question.
+     * @return The changed JSON.
+     */
+    private static ObjectNode embedImages(ObjectNode json, Question question) {
+        if (json.remove("image") != null) {
+            json.put("imageBase64", question.getImage().getBase64());
+        }
+        if (json.remove("musterloesungImage") != null) {
+            json.put("musterloesungImageBase64", question.getMusterloesungImage().getBase64());
+        }
+        JsonNode subQuestions = json.path("subQuestions");
+        for (int i = 0; i < subQuestions.size(); i++) {
+            embedImages((ObjectNode) subQuestions.get(i), question.getSubQuestions().get(i));
+        }
+        return json;
+    }
+
+    private static void storeImages(Question question, BlobStore store) throws IOException {
+        if (question.getImage() != null && question.getImage().isStorable()) {
+            question.setImage(store.put(question.getImage()));
+        }
+        if (question.getMusterloesungImage() != null && question.getMusterloesungImage().isStorable()) {
+            question.setMusterloesungImage(store.put(question.getMusterloesungImage()));
+        }
+        if (question.getSubQuestions() != null) {
+            for (Question subQuestion : question.getSubQuestions()) {
+                storeImages(subQuestion, store);
+            }
+        }
+    }
+
+    /**
+     * Looks up a stored image by its hash.
+     */
+    @FunctionalInterface
+    interface ImageLookup {
+        /**
+         * @param hash The SHA-256 hash of the image as lowercase hex.
+         * @return The image, or {@code null} if it does not exist.
+         * @throws IOException if the hash is invalid or the image cannot be looked up.
+         */
+        ImageBlob get(String hash) throws IOException;
+
+        /**
+         * @param missingImages Receives the hashes of the images that do not exist.
+         * @return A lookup that records the missing images.
+         */
+        default ImageLookup recordingMissing(Set<String> missingImages) {
+            return hash -> {
+                ImageBlob image = get(hash);
+                if (image == null) {
+                    missingImages.add(hash);
+                }
+                return image;
+            };
+        }
+    }
+
+    /**
+     * The state of loading one file. Also reads the question parts of an {@link ExamContainer}
+     * and the questions of the {@link EditJournal}.
+     */
+    static final class Loader {
+
+        private final JsonParser parser;
+        private final FileChannel source; // null if the parser does not read a file
+        private final DoubleConsumer progress;
+        private final long fileSize;
+        private final ImageLookup images;
+        private int schemaVersion;
+        private SpilledText.Store store; // Created for the first large image
+
+        /**
+         * @param parser The parser.
+         * @param source The file the parser reads, to spill embedded images, or {@code null} to
+         *               read them with the parser.
+         * @param progress Receives the share of the file read after every question.
+         * @param images Looks up the images the questions refer to.
+         * @param schemaVersion The schema version of the questions, or of the exam unless the
+         *                      exam records its own.
+         */
+        Loader(JsonParser parser, FileChannel source, DoubleConsumer progress, ImageLookup images, int schemaVersion) throws IOException {
+            this.parser = parser;
+            this.source = source;
+            this.progress = progress;
+            this.images = images;
+            this.schemaVersion = schemaVersion;
+            this.fileSize = source != null ? Math.max(1, source.size()) : 1;
+        }
+
+        Exam readExam() throws IOException {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Die Datei enthält keine Prüfung.");
+            }
+            ObjectNode properties = ExamCodec.MAPPER.createObjectNode();
+            List<Question> questions = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (name.equals("questions") && value == JsonToken.START_ARRAY) {
+                    questions = readQuestions();
+                } else if (name.equals(ExamCodec.SCHEMA_VERSION_FIELD)) {
+                    // Written before the questions, so they are migrated from the right version
+                    schemaVersion = ExamCodec.schemaVersion(parser.readValueAsTree());
+                } else {
+                    properties.set(name, parser.readValueAsTree());
+                }
+            }
+            Exam exam = ExamCodec.readExam(properties, schemaVersion);
+            if (questions != null) {
+                exam.setQuestions(questions);
+            }
+            progress.accept(1.0);
+            return exam;
+        }
+
+        /**
+         * Reads an array of questions; the parser is at its start.
+         */
+        private List<Question> readQuestions() throws IOException {
+            List<Question> questions = new ArrayList<>();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == JsonToken.START_OBJECT) {
+                    questions.add(readQuestion());
+                } else if (token != JsonToken.VALUE_NULL) {
+                    throw new IOException("Ungültige Frage bei Byte " + parser.getTokenLocation().getByteOffset());
+                }
+            }
+            return questions;
+        }
+
+        /**
+         * Reads a question; the parser is at its start. Sub-questions are read recursively and
+         * images are looked up in the blob store or spilled, everything else is collected,
+         * migrated and mapped at the end. A missing image is left out.
+         */
+        Question readQuestion() throws IOException {
+            ObjectNode properties = ExamCodec.MAPPER.createObjectNode();
+            List<Question> subQuestions = null;
+            String imageField = null; // An embedded image whose end is known at the next token
+            long imageStart = 0;
+            ImageBlob image = null;
+            ImageBlob solutionImage = null;
+            while (true) {
+                JsonToken token = parser.nextToken();
+                if (imageField != null) {
+                    Object value = readString(imageStart, parser.getTokenLocation().getByteOffset());
+                    ImageBlob embedded = value instanceof SpilledText spilled
+                            ? ImageBlob.ofSpilled(spilled) : ImageBlob.ofBase64((String) value);
+                    if (imageField.equals("imageBase64")) {
+                        image = embedded;
+                    } else {
+                        solutionImage = embedded;
+                    }
+                    imageField = null;
+                }
+                if (token != JsonToken.FIELD_NAME) {
+                    break;
+                }
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (name.equals("subQuestions") && value == JsonToken.START_ARRAY) {
+                    subQuestions = readQuestions();
+                } else if ((name.equals("imageBase64") || name.equals("musterloesungImageBase64")) && value == JsonToken.VALUE_STRING) {
+                    if (source != null) {
+                        // Leave the string unread: the parser skips it with the next token
+                        imageField = name;
+                        imageStart = parser.getTokenLocation().getByteOffset() + 1;
+                    } else if (name.equals("imageBase64")) {
+                        image = ImageBlob.ofBase64(parser.getText());
+                    } else {
+                        solutionImage = ImageBlob.ofBase64(parser.getText());
+                    }
+                } else if (name.equals("image") && value == JsonToken.VALUE_STRING) {
+                    image = images.get(parser.getText());
+                } else if (name.equals("musterloesungImage") && value == JsonToken.VALUE_STRING) {
+                    solutionImage = images.get(parser.getText());
+                } else {
+                    properties.set(name, parser.readValueAsTree());
+                }
+            }
+            Question question = ExamCodec.readQuestion(properties, schemaVersion);
+            if (subQuestions != null) {
+                question.setSubQuestions(subQuestions);
+            }
+            question.setImage(image);
+            question.setMusterloesungImage(solutionImage);
+            if (source != null) {
+                progress.accept((double) parser.getCurrentLocation().getByteOffset() / fileSize);
+            }
+            return question;
+        }
+
+        /**
+         * Reads a string value between its opening quote and the next token, without the parser.
+         * @param start The position after the opening quote.
+         * @param next The position of the next token.
+         * @return A {@link SpilledText} for a large string, otherwise the decoded {@link String}.
+         */
+        private Object readString(long start, long next) throws IOException {
+            // Between the closing quote and the next token there are only whitespace and a comma
+            byte[] tail = new byte[(int) Math.min(256, next - start)];
+            source.read(ByteBuffer.wrap(tail), next - tail.length);
+            int i = tail.length - 1;
+            while (i >= 0 && (tail[i] == ',' || tail[i] == ' ' || tail[i] == '\n' || tail[i] == '\r' || tail[i] == '\t')) {
+                i--;
+            }
+            if (i < 0 || tail[i] != '"') {
+                throw new IOException("Unerwartetes Ende eines Bildes bei Byte " + next);
+            }
+            long end = next - tail.length + i;
+            int length = Math.toIntExact(end - start);
+            if (length < SPILL_THRESHOLD) {
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                while (buffer.hasRemaining() && source.read(buffer, start + buffer.position()) >= 0) {
+                    // Read until the buffer is full
+                }
+                return SpilledText.decode(buffer.array());
+            }
+            if (store == null) {
+                store = SpilledText.Store.create();
+            }
+            return store.append(source, start, length);
+        }
+    }
+}
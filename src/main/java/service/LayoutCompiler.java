@@ -0,0 +1,425 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+
+import model.ImageBlob;
+import model.Question;
+import service.QuestionLayout.Block;
+import service.QuestionLayout.Blank;
+import service.QuestionLayout.CodeBlock;
+import service.QuestionLayout.Inline;
+import service.QuestionLayout.Kind;
+import service.QuestionLayout.LineBreak;
+import service.QuestionLayout.ListStyle;
+import service.QuestionLayout.Option;
+import service.QuestionLayout.Picture;
+import service.QuestionLayout.Style;
+import service.QuestionLayout.Text;
+
+/**
+ * Compiles {@link model.Question} objects into their {@link QuestionLayout}.
+ * The HTML of a question is parsed and interpreted exactly once per question version: compiled
+ * layouts are cached by the content hash of the question (see {@link QuestionRenderCache#contentHash(Question)})
+ * and its number, and shared by all exports and output backends.
+ */
+public class LayoutCompiler {
+
+    private static final int MAX_CACHED_LAYOUTS = 256;
+    private static final Pattern BLANK = Pattern.compile("_{3,}"); // A blank is 3 or more underscores
+    private static final String CODE_FONT = "Courier New";
+
+    private static final Map<String, QuestionLayout> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QuestionLayout> eldest) {
+            return size() > MAX_CACHED_LAYOUTS;
+        }
+    };
+
+    /**
+     * Returns the layout of a top-level question, compiling it only if the question changed since
+     * it was last compiled under the same number.
+     * @param question The question, including its sub-questions.
+     * @param questionNumber The number of the question in the exam (part of the heading).
+     * @return The compiled layout.
+     */
+    public static QuestionLayout compile(Question question, String questionNumber) {
+        String key = QuestionRenderCache.contentHash(question) + "#" + questionNumber;
+        synchronized (cache) {
+            QuestionLayout layout = cache.get(key);
+            if (layout != null) {
+                return layout;
+            }
+        }
+        // Compiled outside the lock, so that parallel exports do not wait for each other
+        QuestionLayout layout = compileQuestion(question, questionNumber);
+        synchronized (cache) {
+            cache.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Removes all compiled layouts from the cache.
+     */
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return The number of layouts currently cached.
+     */
+    public static int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Compiles a question and, recursively, its sub-questions without consulting the cache.
+     * @param question The question to compile.
+     * @param questionNumber The formatted number of the question (e.g., "1", "1.a").
+     * @return The compiled layout.
+     */
+    static QuestionLayout compileQuestion(Question question, String questionNumber) {
+        Kind kind = kindOf(question.getType());
+        boolean hasSubQuestions = question.getSubQuestions() != null && !question.getSubQuestions().isEmpty();
+        String titleText = question.getTitle() != null && !question.getTitle().isEmpty() ? question.getTitle() + " " : "";
+
+        // Richtig/Falsch questions only show their title row with the checkboxes.
+        boolean isStatement = kind == Kind.RICHTIG_FALSCH;
+        Picture image = !isStatement && isPresent(question.getImage())
+                ? new Picture(question.getImage(), "question_image.png") : null;
+        List<Block> content = !isStatement && isPresent(question.getText())
+                ? new HtmlCompiler(kind, correctOptions(question), blankSolutions(question)).compile(question.getText())
+                : List.of();
+
+        String correctStatement = null;
+        if (isStatement && !hasSubQuestions) {
+            if ("Richtig".equalsIgnoreCase(question.getMusterloesung())) {
+                correctStatement = "Richtig";
+            } else if ("Falsch".equalsIgnoreCase(question.getMusterloesung())) {
+                correctStatement = "Falsch";
+            }
+        }
+        boolean missingBlankSolutions = kind == Kind.LUECKENTEXT
+                && (question.getMusterloesung() == null || question.getMusterloesung().trim().isEmpty());
+
+        // MCQ and Lückentext show their solution inline, all other types get a solution text or answer area.
+        boolean hasAnswerArea = !isStatement || hasSubQuestions;
+        boolean showsOwnAnswer = hasAnswerArea && kind != Kind.MCQ && kind != Kind.LUECKENTEXT;
+        String solutionText = showsOwnAnswer && isPresent(question.getMusterloesung()) ? question.getMusterloesung() : null;
+        Picture solutionImage = hasAnswerArea && isPresent(question.getMusterloesungImage())
+                ? new Picture(question.getMusterloesungImage(), "solution_image.png") : null;
+        int answerLines = showsOwnAnswer ? Math.max(question.getAnswerLines(), 0) : 0;
+
+        List<QuestionLayout> subQuestions = new ArrayList<>();
+        if (hasSubQuestions) {
+            for (int i = 0; i < question.getSubQuestions().size(); i++) {
+                subQuestions.add(compileQuestion(question.getSubQuestions().get(i), questionNumber + "." + (char) ('a' + i)));
+            }
+        }
+
+        return new QuestionLayout(kind, titlePrefix(questionNumber) + titleText, pointsText(question, questionNumber),
+                question.isJustify(), question.isStartOnNewPage(), image, content, correctStatement, missingBlankSolutions,
+                solutionText, solutionImage, answerLines, question.isLargeAnswerBox(), List.copyOf(subQuestions));
+    }
+
+    /**
+     * Maps the type name of a question to its layout kind.
+     * @param type The type as stored in {@link model.Question#getType()}.
+     * @return The kind, {@link Kind#OFFENE_FRAGE} for unknown types.
+     */
+    static Kind kindOf(String type) {
+        if ("MCQ".equals(type)) {
+            return Kind.MCQ;
+        } else if ("Lückentext".equals(type)) {
+            return Kind.LUECKENTEXT;
+        } else if ("Richtig/Falsch".equals(type)) {
+            return Kind.RICHTIG_FALSCH;
+        }
+        return Kind.OFFENE_FRAGE;
+    }
+
+    /**
+     * Builds the numbering prefix of a question title, e.g. "1. " for question "1" and "a. " for sub-question "1.a".
+     * @param questionNumber The formatted number of the question (e.g., "1", "1.a").
+     * @return The prefix including the trailing dot and space.
+     */
+    static String titlePrefix(String questionNumber) {
+        if (questionNumber.contains(".")) {
+            return questionNumber.substring(questionNumber.lastIndexOf('.') + 1) + ". ";
+        }
+        return questionNumber + ". ";
+    }
+
+    /**
+     * Builds the points annotation of a question title. Main questions with sub-questions
+     * show the individual points of their sub-questions, e.g. "(5 + 5 = 10 Punkte)".
+     * @param question The question whose points are displayed.
+     * @param questionNumber The formatted number of the question (e.g., "1", "1.a").
+     * @return The points text in parentheses.
+     */
+    static String pointsText(Question question, String questionNumber) {
+        if (!questionNumber.contains(".") && question.getSubQuestions() != null && !question.getSubQuestions().isEmpty()) {
+            String pointsDetail = question.getSubQuestions().stream()
+                    .map(q -> String.valueOf(q.getPoints()))
+                    .collect(Collectors.joining(" + "));
+            return "(" + pointsDetail + " = " + question.getPoints() + " Punkte)";
+        }
+        return "(" + question.getPoints() + " Punkte)";
+    }
+
+    /**
+     * Parses the correct option letters of an MCQ from its {@code musterloesung} (e.g. "A, C").
+     * @param question The question to inspect.
+     * @return The upper-case option letters, empty if the question is no MCQ or has no solution.
+     */
+    static List<String> correctOptions(Question question) {
+        if (!"MCQ".equals(question.getType()) || !isPresent(question.getMusterloesung())) {
+            return List.of();
+        }
+        return Arrays.stream(question.getMusterloesung().toUpperCase().split("[,\\s]+"))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Splits the semicolon separated solutions of a "Lückentext".
+     * @param question The question to inspect.
+     * @return The solutions in blank order, or {@code null} if the question is no Lückentext or has no solution.
+     */
+    private static String[] blankSolutions(Question question) {
+        if (!"Lückentext".equals(question.getType()) || question.getMusterloesung() == null || question.getMusterloesung().trim().isEmpty()) {
+            return null;
+        }
+        return question.getMusterloesung().split("\\s*;\\s*");
+    }
+
+    /**
+     * Helper method to extract the option letter (e.g., "A", "B") from the beginning of an option text string.
+     * This is typically used in MCQ processing to identify the option for solution matching.
+     *
+     * @param optionText The full text of the MCQ option.
+     * @return The extracted option letter (e.g., "A"), or an empty string if no letter is found.
+     */
+    static String extractOptionLetter(String optionText) {
+        if (optionText == null || optionText.isEmpty()) {
+            return "";
+        }
+        // Regex to find patterns like "A)", "B.", "C " at the beginning of the string
+        Matcher matcher = Pattern.compile("^\\s*([A-Z])\\s*[). ]").matcher(optionText);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+        return "";
+    }
+
+    private static boolean isPresent(String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    private static boolean isPresent(ImageBlob image) {
+        return image != null && !image.isEmpty();
+    }
+
+    /**
+     * A paragraph that is still being filled while the HTML is traversed.
+     */
+    private static final class ParagraphBuilder {
+        final List<Inline> inlines = new ArrayList<>();
+        boolean justify;
+        ListStyle listStyle = ListStyle.NONE;
+
+        ParagraphBuilder(boolean justify) {
+            this.justify = justify;
+        }
+
+        /**
+         * @return {@code true} if any paragraph property is set.
+         */
+        boolean hasProperties() {
+            return justify || listStyle != ListStyle.NONE;
+        }
+    }
+
+    /**
+     * Interprets the HTML of one question. Block elements open a new paragraph, inline elements
+     * accumulate style flags, {@code <pre>} becomes a code block and MCQ list items become options.
+     * The blocks are collected in document order; paragraphs stay modifiable until the end, because
+     * text may still be appended to a paragraph after later blocks were created.
+     */
+    private static final class HtmlCompiler {
+        private final Kind kind;
+        private final List<String> correctOptions;
+        private final String[] solutions;
+        private final List<Object> blocks = new ArrayList<>();
+        private int solutionIndex;
+
+        HtmlCompiler(Kind kind, List<String> correctOptions, String[] solutions) {
+            this.kind = kind;
+            this.correctOptions = correctOptions;
+            this.solutions = solutions;
+        }
+
+        List<Block> compile(String html) {
+            ParagraphBuilder first = newParagraph(kind == Kind.LUECKENTEXT);
+            process(Jsoup.parse(html).body(), first, Style.PLAIN, ListStyle.NONE);
+
+            // MCQ options are separate blocks, which leaves the first paragraph empty. It would only add a gap.
+            if (kind == Kind.MCQ && first.inlines.isEmpty()) {
+                blocks.remove(first);
+            }
+
+            List<Block> compiled = new ArrayList<>(blocks.size());
+            for (Object block : blocks) {
+                if (block instanceof ParagraphBuilder paragraph) {
+                    compiled.add(new QuestionLayout.Paragraph(List.copyOf(paragraph.inlines), paragraph.justify, paragraph.listStyle));
+                } else {
+                    compiled.add((Block) block);
+                }
+            }
+            return List.copyOf(compiled);
+        }
+
+        private ParagraphBuilder newParagraph(boolean justify) {
+            ParagraphBuilder paragraph = new ParagraphBuilder(justify);
+            blocks.add(paragraph);
+            return paragraph;
+        }
+
+        /**
+         * Recursively interprets an HTML node.
+         * @return The paragraph that subsequent content is appended to.
+         */
+        private ParagraphBuilder process(Node node, ParagraphBuilder paragraph, Style style, ListStyle listStyle) {
+            if (node instanceof TextNode) {
+                String text = ((TextNode) node).text();
+                if (!text.trim().isEmpty() || text.equals(" ")) {
+                    appendText(paragraph, text, style);
+                }
+            } else if (node instanceof Element) {
+                Element element = (Element) node;
+                String tagName = element.tagName().toLowerCase();
+                String css = element.attr("style").toLowerCase();
+
+                String color = style.color();
+                if (tagName.equals("font") && element.hasAttr("color")) {
+                    color = element.attr("color").replace("#", "");
+                }
+                Style newStyle = new Style(
+                        style.bold() || tagName.equals("b") || tagName.equals("strong") || css.contains("font-weight: bold"),
+                        style.italic() || tagName.equals("i") || tagName.equals("em") || css.contains("font-style: italic"),
+                        style.underline() || tagName.equals("u") || css.contains("text-decoration: underline"),
+                        style.strikethrough() || tagName.equals("strike") || css.contains("text-decoration: line-through"),
+                        color,
+                        tagName.equals("code") || tagName.equals("pre") ? CODE_FONT : style.fontFamily());
+                ListStyle newListStyle = listStyle;
+
+                if (tagName.equals("pre")) {
+                    String[] lines = element.wholeText().split("\r?\n");
+                    List<String> codeLines = new ArrayList<>(lines.length);
+                    for (int i = 0; i < lines.length; i++) {
+                        if (lines[i].isEmpty() && i == lines.length - 1) {
+                            continue; // Skip trailing empty line
+                        }
+                        codeLines.add(lines[i]);
+                    }
+                    blocks.add(new CodeBlock(List.copyOf(codeLines)));
+                    return newParagraph(false);
+                }
+
+                if (tagName.equals("p") || tagName.equals("div") || tagName.equals("ul") || tagName.equals("ol")) {
+                    if (!paragraph.inlines.isEmpty() || paragraph.hasProperties()) {
+                        paragraph = newParagraph(kind == Kind.LUECKENTEXT);
+                    }
+                }
+
+                if (tagName.equals("ul")) {
+                    newListStyle = ListStyle.BULLET;
+                } else if (tagName.equals("ol")) {
+                    newListStyle = ListStyle.NUMBER;
+                }
+
+                if (tagName.equals("li")) {
+                    if (kind == Kind.MCQ) {
+                        String firstOptionText = element.ownText().trim();
+                        if (!firstOptionText.isEmpty()) {
+                            addOption(firstOptionText, newStyle);
+                        }
+                        for (Element div : element.select("div")) {
+                            addOption(div.text().trim(), newStyle);
+                        }
+                        return paragraph;
+                    }
+                    if (!paragraph.inlines.isEmpty()) {
+                        paragraph = newParagraph(false);
+                    }
+                    if (listStyle != ListStyle.NONE) {
+                        paragraph.listStyle = listStyle;
+                    }
+                }
+
+                for (Node childNode : element.childNodes()) {
+                    paragraph = process(childNode, paragraph, newStyle, newListStyle);
+                }
+
+                if (tagName.equals("br")) {
+                    paragraph.inlines.add(new LineBreak());
+                }
+            }
+            return paragraph;
+        }
+
+        private void addOption(String optionText, Style style) {
+            blocks.add(new Option(optionText, style, correctOptions.contains(extractOptionLetter(optionText))));
+        }
+
+        /**
+         * Appends text to a paragraph. In a "Lückentext", every blank is split off and paired
+         * with its solution; the solutions are assigned in the order of the blanks.
+         */
+        private void appendText(ParagraphBuilder paragraph, String text, Style style) {
+            if (kind != Kind.LUECKENTEXT) {
+                paragraph.inlines.add(new Text(text, style));
+                return;
+            }
+            Matcher matcher = BLANK.matcher(text);
+            int last = 0;
+            while (matcher.find()) {
+                if (matcher.start() > last) {
+                    paragraph.inlines.add(new Text(text.substring(last, matcher.start()), style));
+                }
+                boolean spaceBefore = matcher.start() == 0 || !Character.isWhitespace(text.charAt(matcher.start() - 1));
+                boolean spaceAfter = matcher.end() == text.length() || !Character.isWhitespace(text.charAt(matcher.end()));
+                paragraph.inlines.add(new Blank(matcher.group(), nextSolution(), style, spaceBefore, spaceAfter));
+                last = matcher.end();
+            }
+            if (last < text.length()) {
+                paragraph.inlines.add(new Text(text.substring(last), style));
+            }
+        }
+
+        private String nextSolution() {
+            if (solutions == null || solutionIndex >= solutions.length) {
+                // More blanks than solutions: the rest stays empty
+                return "";
+            }
+            return solutions[solutionIndex++].trim();
+        }
+    }
+}
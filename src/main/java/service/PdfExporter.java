@@ -0,0 +1,698 @@
+package service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.kernel.colors.Color;
+import com.itextpdf.kernel.colors.DeviceRgb;
+import com.itextpdf.kernel.events.Event;
+import com.itextpdf.kernel.events.IEventHandler;
+import com.itextpdf.kernel.events.PdfDocumentEvent;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import com.itextpdf.layout.Canvas;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.borders.Border;
+import com.itextpdf.layout.borders.SolidBorder;
+import com.itextpdf.layout.element.AreaBreak;
+import com.itextpdf.layout.element.Cell;
+import com.itextpdf.layout.element.Image;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Table;
+import com.itextpdf.layout.element.Text;
+import com.itextpdf.layout.properties.AreaBreakType;
+import com.itextpdf.layout.properties.TextAlignment;
+import com.itextpdf.layout.properties.UnitValue;
+import com.itextpdf.layout.properties.VerticalAlignment;
+
+import model.Exam;
+import utils.ImageInfo;
+
+/**
+ * Service class responsible for exporting an {@link model.Exam} object directly to a PDF document
+ * using iText. The layout follows {@link WordExporter}: cover page, a header with fields for the
+ * matriculation number and name on all pages but the first, page numbering "Seite X / Y",
+ * MCQ and true/false checkboxes and answer tables. The questions are rendered from their
+ * compiled {@link QuestionLayout} (see {@link LayoutCompiler}).
+ * <p>
+ * The PDF is written in streaming mode: every finished page is flushed to the file while the
+ * next one is laid out, and the total page count in the footer is filled in at the end through
+ * a placeholder. Text is set in an embedded TrueType font if one is found (see {@link #FONT_DIRECTORY_PROPERTY}),
+ * only the glyphs in use are embedded. The parsed font programs are cached and shared by all
+ * documents, so exporting many copies only pays for the subsetting. Without a TrueType font the
+ * standard PDF fonts Helvetica and Courier are used.
+ */
+public class PdfExporter {
+
+    /** System property naming a directory with the TrueType fonts to embed. */
+    public static final String FONT_DIRECTORY_PROPERTY = "exambuilder.pdf.fontDir";
+
+    private static final float MAX_IMAGE_WIDTH = 400; // Max width in points, like in WordExporter
+    private static final float FONT_SIZE = 11;
+    private static final float PAGE_MARGIN = 72;
+    private static final float ANSWER_LINE_HEIGHT = 20;
+    private static final float CHECKBOX_SIZE = 8;
+    private static final Color SOLUTION_COLOR = new DeviceRgb(0x00, 0x00, 0xFF);
+    private static final Color ERROR_COLOR = new DeviceRgb(0xFF, 0x00, 0x00);
+    private static final Color SHADING_COLOR = new DeviceRgb(0xF0, 0xF0, 0xF0);
+
+    /**
+     * The file names of a font family. Only the regular font is required.
+     */
+    private record FontFiles(String regular, String bold, String italic, String boldItalic, String mono) {}
+
+    /**
+     * Font families that are looked for, in order of preference.
+     */
+    private static final List<FontFiles> FONT_CANDIDATES = List.of(
+            new FontFiles("DejaVuSans.ttf", "DejaVuSans-Bold.ttf", "DejaVuSans-Oblique.ttf", "DejaVuSans-BoldOblique.ttf", "DejaVuSansMono.ttf"),
+            new FontFiles("LiberationSans-Regular.ttf", "LiberationSans-Bold.ttf", "LiberationSans-Italic.ttf", "LiberationSans-BoldItalic.ttf", "LiberationMono-Regular.ttf"),
+            new FontFiles("arial.ttf", "arialbd.ttf", "ariali.ttf", "arialbi.ttf", "cour.ttf"),
+            new FontFiles("Arial.ttf", "Arial Bold.ttf", "Arial Italic.ttf", "Arial Bold Italic.ttf", "Courier New.ttf"));
+
+    /**
+     * Directories that are searched for the font candidates after the configured one.
+     */
+    private static final List<String> FONT_DIRECTORIES = List.of(
+            "/usr/share/fonts/truetype/dejavu",
+            "/usr/share/fonts/dejavu",
+            "/usr/share/fonts/truetype/liberation",
+            "/usr/share/fonts/liberation",
+            "C:/Windows/Fonts",
+            "/Library/Fonts",
+            "/System/Library/Fonts/Supplemental");
+
+    /**
+     * The parsed font programs of the embedded font family. A variant is {@code null} if its file was not found.
+     */
+    private record FontFamily(FontProgram regular, FontProgram bold, FontProgram italic, FontProgram boldItalic, FontProgram mono) {}
+
+    /**
+     * Lazily resolved on the first export. {@code FAMILY} is {@code null} if no TrueType font was found.
+     */
+    private static final class EmbeddedFonts {
+        private static final FontFamily FAMILY = resolveFontFamily();
+    }
+
+    /**
+     * Exports the given {@link model.Exam} object to a PDF document.
+     * This method generates the exam paper without including the solutions.
+     * @param exam The {@link model.Exam} object to export.
+     * @param filePath The full path where the .pdf file will be saved.
+     * @throws IOException if an I/O error occurs during the file writing process.
+     */
+    public static void export(Exam exam, String filePath) throws IOException {
+        exportDoc(exam, filePath, false);
+    }
+
+    /**
+     * Exports the given {@link model.Exam} object to a PDF document,
+     * including the solutions for each question.
+     * @param exam The {@link model.Exam} object to export.
+     * @param filePath The full path where the .pdf file will be saved.
+     * @throws IOException if an I/O error occurs during the file writing process.
+     */
+    public static void exportWithSolutions(Exam exam, String filePath) throws IOException {
+        exportDoc(exam, filePath, true);
+    }
+
+    /**
+     * Core method for generating the PDF document. It lays out the cover page and the questions;
+     * headers and page numbers are added by a {@link PageDecorator} as each page is finished.
+     * @param exam The {@link model.Exam} object containing all exam data.
+     * @param filePath The destination path for the generated .pdf file.
+     * @param withSolutions {@code true} to include solutions in the document, {@code false} otherwise.
+     * @throws IOException if an I/O error occurs during the file writing process.
+     */
+    private static void exportDoc(Exam exam, String filePath, boolean withSolutions) throws IOException {
+        List<QuestionLayout> layouts = new ArrayList<>(exam.getQuestions().size());
+        for (int i = 0; i < exam.getQuestions().size(); i++) {
+            layouts.add(LayoutCompiler.compile(exam.getQuestions().get(i), String.valueOf(i + 1)));
+        }
+
+        PdfDocument pdf = new PdfDocument(new PdfWriter(filePath, new WriterProperties().setFullCompressionMode(true)));
+        try (Document document = new Document(pdf, PageSize.A4)) {
+            Fonts fonts = Fonts.forDocument();
+            PageDecorator decorator = new PageDecorator(pdf, fonts);
+            pdf.addEventHandler(PdfDocumentEvent.END_PAGE, decorator);
+            document.setMargins(PAGE_MARGIN, PAGE_MARGIN, PAGE_MARGIN, PAGE_MARGIN);
+            document.setFont(fonts.regular).setFontSize(FONT_SIZE);
+
+            QuestionWriter writer = new QuestionWriter(document, pdf, fonts, withSolutions);
+            createCoverPage(document, exam, fonts);
+
+            for (int i = 0; i < layouts.size(); i++) {
+                QuestionLayout layout = layouts.get(i);
+                // Each main question starts on a new page, "Neue Seite" adds an extra blank page (see WordExporter).
+                document.add(new AreaBreak(AreaBreakType.NEXT_PAGE));
+                if (layout.startOnNewPage()) {
+                    document.add(new AreaBreak(AreaBreakType.NEXT_PAGE));
+                }
+                writer.writeQuestion(layout);
+            }
+            decorator.writeTotalPages();
+        }
+        System.out.println("Export erfolgreich!");
+    }
+
+    /**
+     * Generates the cover page with the same content as {@link WordExporter}: exam metadata,
+     * instructions, fields for the student information and the grading table.
+     * @param document The document to which the cover page is added.
+     * @param exam The {@link model.Exam} object containing the exam's metadata and instructions.
+     * @param fonts The fonts of the document.
+     */
+    private static void createCoverPage(Document document, Exam exam, Fonts fonts) {
+        Table metaTable = fullWidthTable(1);
+        Cell metaCell = new Cell().setVerticalAlignment(VerticalAlignment.MIDDLE).setTextAlignment(TextAlignment.CENTER);
+        metaCell.add(new Paragraph(exam.getHochschule() + " | " + exam.getFachbereich()).setFont(fonts.bold).setFontSize(12));
+        metaCell.add(new Paragraph(exam.getTitle() + " - " + exam.getModule() + " | " + exam.getSemester()).setFont(fonts.bold).setFontSize(12));
+        metaTable.addCell(metaCell);
+        document.add(metaTable);
+
+        document.add(new Paragraph("\u00A0")); // Keep a paragraph for spacing
+
+        Table instructionTable = fullWidthTable(1);
+        instructionTable.addCell(centeredCell(new Paragraph("Bitte lesen Sie die folgenden Hinweise aufmerksam durch!").setFont(fonts.bold)));
+        document.add(instructionTable);
+
+        String instructionsContent = exam.getAllgemeineHinweise();
+        if (instructionsContent == null || instructionsContent.isEmpty()) {
+            instructionsContent = WordExporter.getStandardHinweise();
+        }
+        for (String line : instructionsContent.split("\n")) {
+            if (line.trim().isEmpty()) continue;
+            document.add(new Paragraph(line).setFont(fonts.bold).setFontSize(10).setTextAlignment(TextAlignment.JUSTIFIED));
+        }
+
+        document.add(new Paragraph("Abschnitt: Von dem/der Studierenden auszufüllen").setFont(fonts.bold).setFontSize(10).setMarginTop(10));
+        Table studentInfoTable = new Table(UnitValue.createPercentArray(new float[] {33, 67})).useAllAvailableWidth();
+        for (String label : new String[] {"Name", "Vorname", "Matrikelnummer", "Unterschrift"}) {
+            studentInfoTable.addCell(centeredCell(new Paragraph(label)).setMinHeight(ANSWER_LINE_HEIGHT));
+            studentInfoTable.addCell(centeredCell(new Paragraph("")).setMinHeight(ANSWER_LINE_HEIGHT));
+        }
+        document.add(studentInfoTable);
+
+        document.add(new Paragraph("Abschnitt: Von dem/der Prüfenden auszufüllen").setFont(fonts.bold).setFontSize(10).setMarginTop(10));
+        int numQuestions = exam.getQuestions().size();
+        Table gradingTable = fullWidthTable(numQuestions + 1);
+        for (int i = 0; i < numQuestions; i++) {
+            gradingTable.addCell(centeredCell(new Paragraph("A" + (i + 1)).setFont(fonts.bold)));
+        }
+        gradingTable.addCell(centeredCell(new Paragraph("Gesamt").setFont(fonts.bold)));
+        for (int i = 0; i < numQuestions; i++) {
+            gradingTable.addCell(centeredCell(new Paragraph(String.valueOf(exam.getQuestions().get(i).getPoints())).setFont(fonts.bold)));
+        }
+        gradingTable.addCell(centeredCell(new Paragraph(String.valueOf(exam.getTotalPoints())).setFont(fonts.bold)));
+        for (int i = 0; i <= numQuestions; i++) {
+            gradingTable.addCell(centeredCell(new Paragraph("")).setMinHeight(ANSWER_LINE_HEIGHT * 1.5f));
+        }
+        document.add(gradingTable);
+    }
+
+    /**
+     * Creates a table with equal columns over the full page width.
+     * @param columns The number of columns.
+     * @return The new table.
+     */
+    private static Table fullWidthTable(int columns) {
+        return new Table(UnitValue.createPercentArray(columns)).useAllAvailableWidth();
+    }
+
+    /**
+     * Creates a cell with centered content.
+     * @param paragraph The content of the cell.
+     * @return The new cell.
+     */
+    private static Cell centeredCell(Paragraph paragraph) {
+        return new Cell().add(paragraph).setVerticalAlignment(VerticalAlignment.MIDDLE).setTextAlignment(TextAlignment.CENTER);
+    }
+
+    /**
+     * Looks for a TrueType font family in the configured directory and the usual system font directories.
+     * @return The parsed font family, or {@code null} if none was found.
+     */
+    private static FontFamily resolveFontFamily() {
+        List<String> directories = new ArrayList<>();
+        String configured = System.getProperty(FONT_DIRECTORY_PROPERTY);
+        if (configured != null && !configured.isBlank()) {
+            directories.add(configured);
+        }
+        directories.addAll(FONT_DIRECTORIES);
+
+        for (String directory : directories) {
+            for (FontFiles files : FONT_CANDIDATES) {
+                Path regular = Paths.get(directory, files.regular());
+                if (!Files.isRegularFile(regular)) {
+                    continue;
+                }
+                try {
+                    return new FontFamily(loadFont(regular), loadFont(Paths.get(directory, files.bold())),
+                            loadFont(Paths.get(directory, files.italic())), loadFont(Paths.get(directory, files.boldItalic())),
+                            loadFont(Paths.get(directory, files.mono())));
+                } catch (IOException e) {
+                    System.err.println("Font " + regular + " could not be read: " + e.getMessage());
+                }
+            }
+        }
+        System.err.println("No TrueType font found, the PDF export uses the standard PDF fonts.");
+        return null;
+    }
+
+    /**
+     * Parses a font file. The program is kept in iText's font cache and shared by all documents.
+     * @param file The font file.
+     * @return The font program, or {@code null} if the file does not exist.
+     * @throws IOException if the file cannot be parsed.
+     */
+    private static FontProgram loadFont(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        return FontProgramFactory.createFont(file.toString(), true);
+    }
+
+    /**
+     * The fonts of one document. A {@link PdfFont} belongs to a single document, but is created from
+     * the shared font programs. Missing variants fall back to the regular font with simulated styles.
+     */
+    private static final class Fonts {
+        final PdfFont regular;
+        final PdfFont bold;
+        final PdfFont italic;
+        final PdfFont boldItalic;
+        final PdfFont mono;
+
+        private Fonts(PdfFont regular, PdfFont bold, PdfFont italic, PdfFont boldItalic, PdfFont mono) {
+            this.regular = regular;
+            this.bold = bold;
+            this.italic = italic;
+            this.boldItalic = boldItalic;
+            this.mono = mono;
+        }
+
+        static Fonts forDocument() throws IOException {
+            FontFamily family = EmbeddedFonts.FAMILY;
+            if (family == null) {
+                return new Fonts(PdfFontFactory.createFont(StandardFonts.HELVETICA), PdfFontFactory.createFont(StandardFonts.HELVETICA_BOLD),
+                        PdfFontFactory.createFont(StandardFonts.HELVETICA_OBLIQUE), PdfFontFactory.createFont(StandardFonts.HELVETICA_BOLDOBLIQUE),
+                        PdfFontFactory.createFont(StandardFonts.COURIER));
+            }
+            PdfFont mono = family.mono() != null ? embed(family.mono()) : PdfFontFactory.createFont(StandardFonts.COURIER);
+            return new Fonts(embed(family.regular()), embed(family.bold()), embed(family.italic()), embed(family.boldItalic()), mono);
+        }
+
+        /**
+         * Creates an embedded font. TrueType fonts with Identity-H encoding are subset: only the used glyphs are written.
+         */
+        private static PdfFont embed(FontProgram program) {
+            if (program == null) {
+                return null;
+            }
+            return PdfFontFactory.createFont(program, PdfEncodings.IDENTITY_H, PdfFontFactory.EmbeddingStrategy.PREFER_EMBEDDED);
+        }
+
+        /**
+         * Applies the font for the given style to a text, simulating bold or italic if the variant is missing.
+         */
+        Text style(Text text, boolean isBold, boolean isItalic, boolean isMono) {
+            if (isMono) {
+                text.setFont(mono);
+                if (isBold) {
+                    text.setBold();
+                }
+                if (isItalic) {
+                    text.setItalic();
+                }
+                return text;
+            }
+            PdfFont font = isBold && isItalic ? boldItalic : isBold ? bold : isItalic ? italic : regular;
+            if (font != null) {
+                return text.setFont(font);
+            }
+            text.setFont(regular);
+            if (isBold) {
+                text.setBold();
+            }
+            if (isItalic) {
+                text.setItalic();
+            }
+            return text;
+        }
+    }
+
+    /**
+     * Writes the compiled questions into the document.
+     */
+    private static final class QuestionWriter {
+        private final Document document;
+        private final PdfDocument pdf;
+        private final Fonts fonts;
+        private final boolean withSolutions;
+        private final Map<String, PdfImageXObject> images = new HashMap<>();
+        private PdfFormXObject checkedBox;
+        private PdfFormXObject uncheckedBox;
+
+        QuestionWriter(Document document, PdfDocument pdf, Fonts fonts, boolean withSolutions) {
+            this.document = document;
+            this.pdf = pdf;
+            this.fonts = fonts;
+            this.withSolutions = withSolutions;
+        }
+
+        /**
+         * Writes a question (and recursively its sub-questions) with the same rules as
+         * {@link WordExporter}'s {@code writeQuestion}.
+         * @param question The compiled {@link QuestionLayout} of the question.
+         */
+        void writeQuestion(QuestionLayout question) {
+            if (question.kind() == QuestionLayout.Kind.RICHTIG_FALSCH) {
+                Table titleTable = new Table(UnitValue.createPercentArray(3)).useAllAvailableWidth();
+                titleTable.addCell(borderlessCell(new Paragraph(question.heading()).setFont(fonts.bold), TextAlignment.LEFT));
+                titleTable.addCell(borderlessCell(new Paragraph(question.points()).setFont(fonts.bold), TextAlignment.RIGHT));
+                Paragraph checkboxes = new Paragraph();
+                if (!question.hasSubQuestions()) {
+                    checkboxes.add(checkbox(withSolutions && "Richtig".equals(question.correctStatement()))).add(new Text(" Richtig    "));
+                    checkboxes.add(checkbox(withSolutions && "Falsch".equals(question.correctStatement()))).add(new Text(" Falsch"));
+                }
+                titleTable.addCell(borderlessCell(checkboxes, TextAlignment.RIGHT));
+                document.add(titleTable);
+            } else {
+                Paragraph title = new Paragraph(question.heading() + question.points()).setFont(fonts.bold).setKeepWithNext(true);
+                if (question.justify()) {
+                    title.setTextAlignment(TextAlignment.JUSTIFIED);
+                }
+                if (question.kind() == QuestionLayout.Kind.MCQ) {
+                    title.setMarginBottom(0);
+                }
+                document.add(title);
+
+                if (question.image() != null) {
+                    addPicture(question.image());
+                }
+
+                boolean fillBlanks = withSolutions && !question.missingBlankSolutions();
+                appendContent(question.content(), fillBlanks);
+                if (question.kind() == QuestionLayout.Kind.LUECKENTEXT && withSolutions && question.missingBlankSolutions()) {
+                    document.add(new Paragraph("FEHLER: Für diesen Lückentext wurde keine Musterlösung angegeben.")
+                            .setFont(fonts.italic != null ? fonts.italic : fonts.regular).setFontColor(ERROR_COLOR));
+                }
+            }
+
+            if (question.kind() == QuestionLayout.Kind.MCQ || (question.kind() == QuestionLayout.Kind.RICHTIG_FALSCH && !question.hasSubQuestions())) {
+                document.add(new Paragraph("\u00A0").setMarginBottom(0));
+            }
+
+            if (withSolutions) {
+                if (question.solutionText() != null) {
+                    Text solution = fonts.style(new Text("Lösung: " + question.solutionText()), false, true, false);
+                    document.add(new Paragraph(solution).setFontColor(SOLUTION_COLOR).setMarginTop(FONT_SIZE));
+                }
+                if (question.solutionImage() != null) {
+                    addPicture(question.solutionImage());
+                }
+            } else if (question.answerLines() > 0) {
+                Table answerTable = fullWidthTable(1);
+                for (int i = 0; i < question.answerLines(); i++) {
+                    Cell cell = new Cell().setMinHeight(ANSWER_LINE_HEIGHT);
+                    if (question.largeAnswerBox()) {
+                        // For a large answer box, remove the inner horizontal lines
+                        if (i > 0) {
+                            cell.setBorderTop(Border.NO_BORDER);
+                        }
+                        if (i < question.answerLines() - 1) {
+                            cell.setBorderBottom(Border.NO_BORDER);
+                        }
+                    }
+                    answerTable.addCell(cell);
+                }
+                document.add(answerTable);
+            }
+
+            for (QuestionLayout subQuestion : question.subQuestions()) {
+                writeQuestion(subQuestion);
+
+                if (subQuestion.startOnNewPage()) {
+                    Text continueText = fonts.style(new Text("Die Aufgabe folgt auf der nächsten Seite bzw. Rückseite."), false, true, false);
+                    document.add(new Paragraph(continueText).setFontSize(9).setTextAlignment(TextAlignment.RIGHT));
+                    document.add(new AreaBreak(AreaBreakType.NEXT_PAGE));
+                }
+            }
+        }
+
+        /**
+         * Adds the compiled text of a question: paragraphs with their runs, code blocks as shaded
+         * monospaced lines and MCQ options with checkboxes. List items get a bullet or their number.
+         */
+        private void appendContent(List<QuestionLayout.Block> content, boolean fillBlanks) {
+            int itemNumber = 0;
+            for (QuestionLayout.Block block : content) {
+                if (block instanceof QuestionLayout.Paragraph paragraph) {
+                    Paragraph pdfParagraph = new Paragraph().setMarginTop(0);
+                    if (paragraph.justify()) {
+                        pdfParagraph.setTextAlignment(TextAlignment.JUSTIFIED);
+                    }
+                    itemNumber = paragraph.listStyle() == QuestionLayout.ListStyle.NUMBER ? itemNumber + 1 : 0;
+                    if (paragraph.listStyle() == QuestionLayout.ListStyle.BULLET) {
+                        pdfParagraph.setMarginLeft(18).add(new Text("\u2022 "));
+                    } else if (paragraph.listStyle() == QuestionLayout.ListStyle.NUMBER) {
+                        pdfParagraph.setMarginLeft(18).add(new Text(itemNumber + ". "));
+                    }
+                    for (QuestionLayout.Inline inline : paragraph.inlines()) {
+                        appendInline(pdfParagraph, inline, fillBlanks);
+                    }
+                    if (paragraph.inlines().isEmpty()) {
+                        pdfParagraph.add("\u00A0"); // An empty paragraph keeps its line, like in Word
+                    }
+                    document.add(pdfParagraph);
+                } else if (block instanceof QuestionLayout.CodeBlock code) {
+                    itemNumber = 0;
+                    for (String line : code.lines()) {
+                        document.add(new Paragraph(preserveIndentation(line)).setFont(fonts.mono)
+                                .setBackgroundColor(SHADING_COLOR).setMargin(0));
+                    }
+                } else if (block instanceof QuestionLayout.Option option) {
+                    itemNumber = 0;
+                    Paragraph optionParagraph = new Paragraph().setMarginTop(0).setMarginBottom(0).setMultipliedLeading(1.0f);
+                    optionParagraph.add(checkbox(withSolutions && option.correct())).add(new Text(" "));
+                    optionParagraph.add(styledText(option.text(), option.style()));
+                    document.add(optionParagraph);
+                }
+            }
+        }
+
+        /**
+         * Appends an inline element of the layout, like {@link WordExporter} does.
+         */
+        private void appendInline(Paragraph paragraph, QuestionLayout.Inline inline, boolean fillBlanks) {
+            if (inline instanceof QuestionLayout.Text text) {
+                paragraph.add(styledText(text.text(), text.style()));
+            } else if (inline instanceof QuestionLayout.Blank blank) {
+                if (!fillBlanks) {
+                    paragraph.add(styledText(blank.placeholder(), blank.style()));
+                    return;
+                }
+                if (blank.spaceBefore()) {
+                    paragraph.add(styledText(" ", blank.style()));
+                }
+                if (!blank.solution().isEmpty()) {
+                    paragraph.add(styledText(blank.solution(), WordExporter.solutionStyle(blank.style())));
+                }
+                if (blank.spaceAfter()) {
+                    paragraph.add(styledText(" ", blank.style()));
+                }
+            } else if (inline instanceof QuestionLayout.LineBreak) {
+                paragraph.add(new Text("\n"));
+            }
+        }
+
+        private Text styledText(String value, QuestionLayout.Style style) {
+            Text text = fonts.style(new Text(value), style.bold(), style.italic(), style.fontFamily() != null);
+            if (style.underline()) {
+                text.setUnderline();
+            }
+            if (style.strikethrough()) {
+                text.setLineThrough();
+            }
+            if (style.color() != null) {
+                Color color = parseColor(style.color());
+                if (color != null) {
+                    text.setFontColor(color);
+                }
+            }
+            return text;
+        }
+
+        private Cell borderlessCell(Paragraph paragraph, TextAlignment alignment) {
+            return new Cell().add(paragraph).setBorder(Border.NO_BORDER)
+                    .setVerticalAlignment(VerticalAlignment.MIDDLE).setTextAlignment(alignment);
+        }
+
+        /**
+         * Draws a checkbox as vector graphics, so it does not depend on a font with ballot box glyphs.
+         * Both variants are created once per document and reused by every checkbox.
+         */
+        private Image checkbox(boolean checked) {
+            if (uncheckedBox == null) {
+                uncheckedBox = createCheckbox(false);
+                checkedBox = createCheckbox(true);
+            }
+            return new Image(checked ? checkedBox : uncheckedBox);
+        }
+
+        private PdfFormXObject createCheckbox(boolean checked) {
+            PdfFormXObject box = new PdfFormXObject(new Rectangle(0, 0, CHECKBOX_SIZE, CHECKBOX_SIZE));
+            PdfCanvas canvas = new PdfCanvas(box, pdf);
+            canvas.setLineWidth(0.6f).rectangle(0.3, 0.3, CHECKBOX_SIZE - 0.6, CHECKBOX_SIZE - 0.6).stroke();
+            if (checked) {
+                canvas.setLineWidth(1f)
+                        .moveTo(1.6, 4.2).lineTo(3.3, 2.0).lineTo(6.6, 6.6)
+                        .stroke();
+            }
+            canvas.release();
+            return box;
+        }
+
+        /**
+         * Adds an image scaled down to {@code MAX_IMAGE_WIDTH}. Identical payloads are embedded once
+         * per document. Images that cannot be read are skipped.
+         */
+        private void addPicture(QuestionLayout.Picture picture) {
+            byte[] data = picture.image().getData();
+            try {
+                ImageInfo info = ImageInfo.probe(data);
+                if (info == null) {
+                    System.err.println("Image " + picture.fileName() + " could not be read and is skipped.");
+                    return;
+                }
+                PdfImageXObject xObject = images.get(ImageInfo.contentHash(data));
+                if (xObject == null) {
+                    xObject = new PdfImageXObject(ImageDataFactory.create(data));
+                    images.put(ImageInfo.contentHash(data), xObject);
+                }
+                float width = info.getWidth();
+                float height = info.getHeight();
+                float scale = width > MAX_IMAGE_WIDTH ? MAX_IMAGE_WIDTH / width : 1f;
+                document.add(new Paragraph().add(new Image(xObject).scaleAbsolute(width * scale, height * scale)));
+            } catch (IOException | com.itextpdf.io.exceptions.IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Replaces leading spaces and tabs of a code line with non-breaking spaces, so the indentation survives line layout.
+     */
+    private static String preserveIndentation(String line) {
+        StringBuilder result = new StringBuilder(line.length());
+        int i = 0;
+        for (; i < line.length() && (line.charAt(i) == ' ' || line.charAt(i) == '\t'); i++) {
+            result.append(line.charAt(i) == '\t' ? "\u00A0\u00A0\u00A0\u00A0" : "\u00A0");
+        }
+        result.append(line, i, line.length());
+        return result.length() > 0 ? result.toString() : "\u00A0";
+    }
+
+    /**
+     * Parses a hex color like "0000FF".
+     * @return The color, or {@code null} if the value is no valid hex color.
+     */
+    private static Color parseColor(String hex) {
+        if (hex.length() != 6) {
+            return null;
+        }
+        try {
+            int rgb = Integer.parseInt(hex, 16);
+            return new DeviceRgb((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Adds the header and the page number to every finished page. The header with the fields for the
+     * matriculation number and name is left out on the cover page, like the first-page header in Word.
+     * The total page count is not known while pages are flushed, so the footer references a placeholder
+     * that is filled in by {@link #writeTotalPages()} before the document is closed.
+     */
+    private static final class PageDecorator implements IEventHandler {
+        private static final float FOOTER_FONT_SIZE = 10;
+        private static final float PLACEHOLDER_WIDTH = 24;
+        private static final float DESCENT = 3;
+
+        private final PdfDocument pdf;
+        private final Fonts fonts;
+        private final PdfFormXObject totalPages;
+
+        PageDecorator(PdfDocument pdf, Fonts fonts) {
+            this.pdf = pdf;
+            this.fonts = fonts;
+            this.totalPages = new PdfFormXObject(new Rectangle(0, -DESCENT, PLACEHOLDER_WIDTH, FOOTER_FONT_SIZE + DESCENT));
+        }
+
+        @Override
+        public void handleEvent(Event event) {
+            PdfDocumentEvent documentEvent = (PdfDocumentEvent) event;
+            PdfPage page = documentEvent.getPage();
+            int pageNumber = pdf.getPageNumber(page);
+            Rectangle pageSize = page.getPageSize();
+            PdfCanvas pdfCanvas = new PdfCanvas(page.newContentStreamAfter(), page.getResources(), pdf);
+
+            if (pageNumber > 1) {
+                Rectangle headerArea = new Rectangle(PAGE_MARGIN, pageSize.getTop() - PAGE_MARGIN + 12,
+                        pageSize.getWidth() - 2 * PAGE_MARGIN, PAGE_MARGIN - 24);
+                try (Canvas header = new Canvas(pdfCanvas, headerArea)) {
+                    header.add(createHeaderTable());
+                }
+            }
+
+            String pageText = "Seite " + pageNumber + " / ";
+            float textWidth = fonts.regular.getWidth(pageText, FOOTER_FONT_SIZE);
+            float x = pageSize.getWidth() / 2 - (textWidth + PLACEHOLDER_WIDTH / 2) / 2;
+            float y = PAGE_MARGIN / 2;
+            pdfCanvas.beginText().setFontAndSize(fonts.regular, FOOTER_FONT_SIZE).moveText(x, y).showText(pageText).endText();
+            pdfCanvas.addXObjectAt(totalPages, x + textWidth, y - DESCENT);
+            pdfCanvas.release();
+        }
+
+        private Table createHeaderTable() {
+            Table table = new Table(UnitValue.createPercentArray(new float[] {22, 30, 10, 38})).useAllAvailableWidth();
+            table.addCell(new Cell().add(new Paragraph("Matrikelnummer: ")).setBorder(Border.NO_BORDER));
+            table.addCell(new Cell().setBorder(Border.NO_BORDER).setBorderBottom(new SolidBorder(0.5f)).setBackgroundColor(SHADING_COLOR));
+            table.addCell(new Cell().add(new Paragraph("Name: ")).setBorder(Border.NO_BORDER));
+            table.addCell(new Cell().setBorder(Border.NO_BORDER).setBorderBottom(new SolidBorder(0.5f)).setBackgroundColor(SHADING_COLOR));
+            return table.setFont(fonts.regular).setFontSize(FONT_SIZE);
+        }
+
+        /**
+         * Writes the total page count into the placeholder referenced by every footer.
+         */
+        void writeTotalPages() {
+            PdfCanvas canvas = new PdfCanvas(totalPages, pdf);
+            canvas.beginText().setFontAndSize(fonts.regular, FOOTER_FONT_SIZE).moveText(0, 0)
+                    .showText(String.valueOf(pdf.getNumberOfPages())).endText();
+            canvas.release();
+        }
+    }
+}
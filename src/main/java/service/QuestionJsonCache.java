@@ -0,0 +1,105 @@
+package service;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import model.Question;
+
+/**
+ * Cache of serialized top-level questions used when saving an exam. An entry is keyed by the ID
+ * of the question and only used while the question has the same {@link Question#getTreeVersion()},
+ * so saving an exam after editing one question serializes just that question; the JSON of all
+ * other questions is reused as it is. The entries also hold the SHA-256 hash and the CRC-32 of the
+ * JSON, which an {@link ExamContainer} needs for its parts.
+ * <p>
+ * The least recently used entries are evicted once the configured size budget is exceeded.
+ */
+class QuestionJsonCache {
+
+    private static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    /** The cache shared by {@link ExamFiles} and {@link ExamContainer}. */
+    static final QuestionJsonCache SHARED = new QuestionJsonCache(DEFAULT_MAX_BYTES);
+
+    /**
+     * A question serialized as indented JSON by {@link ExamCodec#WRITER}.
+     * @param treeVersion The tree version of the question when it was serialized.
+     * @param json The JSON; must not be modified.
+     * @param hash The SHA-256 hash of the JSON as lowercase hex.
+     * @param crc The CRC-32 of the JSON.
+     */
+    record Entry(long treeVersion, byte[] json, String hash, long crc) {}
+
+    private final long maxBytes;
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+    private long misses;
+
+    /**
+     * Creates a cache with the given memory budget.
+     * @param maxBytes The approximate maximum number of bytes of JSON kept.
+     */
+    QuestionJsonCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a question serialized as JSON, serializing it only if it changed since it was cached.
+     * @param question The top-level question, including its sub-questions.
+     * @return The serialized question.
+     * @throws IOException if the question cannot be serialized.
+     */
+    Entry get(Question question) throws IOException {
+        long treeVersion = question.getTreeVersion();
+        synchronized (this) {
+            Entry entry = entries.get(question.getId());
+            if (entry != null && entry.treeVersion() == treeVersion) {
+                return entry;
+            }
+            misses++;
+        }
+        byte[] json = ExamCodec.WRITER.writeValueAsBytes(question);
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        Entry entry = new Entry(treeVersion, json, DigestUtils.sha256Hex(json), crc.getValue());
+        store(question.getId(), entry);
+        return entry;
+    }
+
+    /**
+     * @return The number of questions that had to be serialized so far.
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    private synchronized void store(UUID id, Entry entry) {
+        if (entry.json().length > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(id, entry);
+        if (previous != null) {
+            currentBytes -= previous.json().length;
+        }
+        currentBytes += entry.json().length;
+        Iterator<Map.Entry<UUID, Entry>> eldest = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            currentBytes -= eldest.next().getValue().json().length;
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package service;
+
+import java.util.List;
+
+import model.ImageBlob;
+
+/**
+ * Compiled, immutable layout of a question and its sub-questions, produced by {@link LayoutCompiler}.
+ * <p>
+ * The layout is the intermediate form between the {@link model.Question} model and the output
+ * backends: the HTML text is already interpreted into paragraphs, styled runs, MCQ options,
+ * blanks and code blocks, and the rules for which image, solution or answer area a question
+ * type shows are already applied. A backend only walks the layout and decides, based on its
+ * {@code withSolutions} mode, whether to show the solution parts or the student parts. The same
+ * layout therefore serves the student exam and the answer key.
+ *
+ * @param kind The question type.
+ * @param heading The numbering prefix and the title, e.g. "1. Title " or "a. ".
+ * @param points The points annotation, e.g. "(4 Punkte)".
+ * @param justify {@code true} if the title is justified.
+ * @param startOnNewPage {@code true} if the question starts on a new page.
+ * @param image The question image, or {@code null}.
+ * @param content The compiled question text.
+ * @param correctStatement For {@link Kind#RICHTIG_FALSCH}: "Richtig" or "Falsch" as given in the solution, otherwise {@code null}.
+ * @param missingBlankSolutions For {@link Kind#LUECKENTEXT}: {@code true} if no solution was provided for the blanks.
+ * @param solutionText The solution text shown in the answer key, or {@code null}.
+ * @param solutionImage The solution image shown in the answer key, or {@code null}.
+ * @param answerLines The number of answer lines shown in the student exam, 0 for none.
+ * @param largeAnswerBox {@code true} if the answer lines form one large box.
+ * @param subQuestions The compiled sub-questions in order.
+ */
+public record QuestionLayout(Kind kind, String heading, String points, boolean justify, boolean startOnNewPage,
+                             Picture image, List<Block> content, String correctStatement, boolean missingBlankSolutions,
+                             String solutionText, Picture solutionImage, int answerLines, boolean largeAnswerBox,
+                             List<QuestionLayout> subQuestions) {
+
+    /**
+     * The question types with a distinct layout. Unknown types are laid out like open questions.
+     */
+    public enum Kind {
+        OFFENE_FRAGE, MCQ, LUECKENTEXT, RICHTIG_FALSCH
+    }
+
+    /**
+     * The list a paragraph belongs to.
+     */
+    public enum ListStyle {
+        NONE, BULLET, NUMBER
+    }
+
+    /**
+     * @return {@code true} if the question has sub-questions.
+     */
+    public boolean hasSubQuestions() {
+        return !subQuestions.isEmpty();
+    }
+
+    /**
+     * Character formatting of a run.
+     * @param bold {@code true} for bold text.
+     * @param italic {@code true} for italic text.
+     * @param underline {@code true} for underlined text.
+     * @param strikethrough {@code true} for struck through text.
+     * @param color The hex color (e.g. "FF0000"), or {@code null} for the default color.
+     * @param fontFamily The font family, or {@code null} for the default font.
+     */
+    public record Style(boolean bold, boolean italic, boolean underline, boolean strikethrough, String color, String fontFamily) {
+
+        /** Unformatted text. */
+        public static final Style PLAIN = new Style(false, false, false, false, null, null);
+
+        /**
+         * @return {@code true} if any formatting is set.
+         */
+        public boolean isFormatted() {
+            return bold || italic || underline || strikethrough || color != null || fontFamily != null;
+        }
+    }
+
+    /**
+     * A block level element of the question text.
+     */
+    public sealed interface Block permits Paragraph, CodeBlock, Option {}
+
+    /**
+     * A paragraph of inline content. Empty paragraphs are kept, they produce vertical space.
+     * @param inlines The runs, blanks and line breaks of the paragraph.
+     * @param justify {@code true} if the paragraph is justified.
+     * @param listStyle The list the paragraph is an item of.
+     */
+    public record Paragraph(List<Inline> inlines, boolean justify, ListStyle listStyle) implements Block {}
+
+    /**
+     * A preformatted code block, shown line by line in a monospaced font on a shaded background.
+     * @param lines The lines of code, without the trailing empty line.
+     */
+    public record CodeBlock(List<String> lines) implements Block {}
+
+    /**
+     * An MCQ option shown with a checkbox. The box is ticked in the answer key if the option is correct.
+     * @param text The option text, including its letter (e.g. "A) Yes").
+     * @param style The formatting of the option text.
+     * @param correct {@code true} if the option is listed in the solution.
+     */
+    public record Option(String text, Style style, boolean correct) implements Block {}
+
+    /**
+     * An inline element of a paragraph.
+     */
+    public sealed interface Inline permits Text, Blank, LineBreak {}
+
+    /**
+     * A run of uniformly formatted text.
+     * @param text The text.
+     * @param style The formatting.
+     */
+    public record Text(String text, Style style) implements Inline {}
+
+    /**
+     * A blank of a "Lückentext". The student exam shows the placeholder as typed by the teacher,
+     * the answer key shows the solution in bold blue instead.
+     * @param placeholder The underscores of the blank.
+     * @param solution The solution of the blank, empty if more blanks than solutions exist.
+     * @param style The formatting of the surrounding text.
+     * @param spaceBefore {@code true} if the filled-in solution needs a separating space before it.
+     * @param spaceAfter {@code true} if the filled-in solution needs a separating space after it.
+     */
+    public record Blank(String placeholder, String solution, Style style, boolean spaceBefore, boolean spaceAfter) implements Inline {}
+
+    /**
+     * A line break within a paragraph.
+     */
+    public record LineBreak() implements Inline {}
+
+    /**
+     * An image embedded in the document.
+     * @param image The image.
+     * @param fileName The file name shown for the picture.
+     */
+    public record Picture(ImageBlob image, String fileName) {}
+}
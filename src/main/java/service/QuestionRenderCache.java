@@ -0,0 +1,223 @@
+package service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import model.Question;
+
+/**
+ * Cache of rendered question fragments used by {@link WordExporter}.
+ * Fragments are keyed by a SHA-256 hash over everything that influences the output of a
+ * top-level question: its content (recursively including sub-questions and images),
+ * its number in the exam, the {@code withSolutions} mode and {@link WordExporter#EXPORTER_VERSION}.
+ * An unchanged question is therefore spliced into the next export without re-parsing its HTML.
+ * <p>
+ * Entries are kept in memory (least recently used entries are evicted once the configured
+ * size budget is exceeded) and, if a directory is configured, also on disk so that they
+ * survive application restarts. The on-disk directory can be set with the system property
+ * {@code exambuilder.renderCache.dir}.
+ */
+public class QuestionRenderCache {
+
+    /** System property naming the directory for the persistent cache. */
+    public static final String DISK_DIRECTORY_PROPERTY = "exambuilder.renderCache.dir";
+
+    private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private static final String FILE_SUFFIX = ".frag";
+
+    private final long maxBytes;
+    private final Path diskDirectory;
+    private final LinkedHashMap<String, RenderedFragment> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    /**
+     * Creates a cache with the given memory budget and optional disk directory.
+     * @param maxBytes The approximate maximum number of bytes kept in memory.
+     * @param diskDirectory The directory for persistent entries, or {@code null} for a memory-only cache.
+     */
+    public QuestionRenderCache(long maxBytes, Path diskDirectory) {
+        this.maxBytes = maxBytes;
+        this.diskDirectory = diskDirectory;
+    }
+
+    /**
+     * Creates the default cache used by {@link WordExporter}: 64 MB in memory, persisted to the
+     * directory named by {@link #DISK_DIRECTORY_PROPERTY} if that property is set.
+     * @return A new cache instance.
+     */
+    static QuestionRenderCache createDefault() {
+        String directory = System.getProperty(DISK_DIRECTORY_PROPERTY);
+        return new QuestionRenderCache(DEFAULT_MAX_BYTES, directory != null && !directory.isBlank() ? Paths.get(directory) : null);
+    }
+
+    /**
+     * Looks up a fragment, first in memory and then on disk.
+     * @param key The key computed by {@link #keyFor(Question, String, boolean)}.
+     * @return The cached fragment, or {@code null} on a miss.
+     */
+    RenderedFragment get(String key) {
+        synchronized (this) {
+            RenderedFragment fragment = entries.get(key);
+            if (fragment != null) {
+                return fragment;
+            }
+        }
+        RenderedFragment fragment = readFromDisk(key);
+        if (fragment != null) {
+            storeInMemory(key, fragment);
+        }
+        return fragment;
+    }
+
+    /**
+     * Stores a fragment in memory and, if configured, on disk.
+     * @param key The key computed by {@link #keyFor(Question, String, boolean)}.
+     * @param fragment The rendered fragment.
+     */
+    void put(String key, RenderedFragment fragment) {
+        storeInMemory(key, fragment);
+        writeToDisk(key, fragment);
+    }
+
+    /**
+     * Removes all entries from memory. Persistent entries on disk are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * @return The number of fragments currently held in memory.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void storeInMemory(String key, RenderedFragment fragment) {
+        if (fragment.getWeight() > maxBytes) {
+            return;
+        }
+        RenderedFragment previous = entries.put(key, fragment);
+        if (previous != null) {
+            currentBytes -= previous.getWeight();
+        }
+        currentBytes += fragment.getWeight();
+        Iterator<Map.Entry<String, RenderedFragment>> eldest = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            currentBytes -= eldest.next().getValue().getWeight();
+            eldest.remove();
+        }
+    }
+
+    private RenderedFragment readFromDisk(String key) {
+        if (diskDirectory == null) {
+            return null;
+        }
+        Path file = diskDirectory.resolve(key + FILE_SUFFIX);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (InputStream is = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+            return RenderedFragment.readFrom(in);
+        } catch (IOException e) {
+            System.err.println("Failed to read cached question fragment " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, RenderedFragment fragment) {
+        if (diskDirectory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(diskDirectory);
+            // Write to a temporary file first so that concurrent readers never see a partial entry.
+            Path tempFile = Files.createTempFile(diskDirectory, key, ".tmp");
+            try (OutputStream os = Files.newOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+                fragment.writeTo(out);
+            }
+            Files.move(tempFile, diskDirectory.resolve(key + FILE_SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to persist question fragment: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Computes the cache key for a top-level question.
+     * @param question The question, including its sub-questions.
+     * @param questionNumber The number under which the question is exported (part of the rendered title).
+     * @param withSolutions {@code true} if the fragment is rendered for the answer key.
+     * @return A hex encoded SHA-256 hash.
+     */
+    public static String keyFor(Question question, String questionNumber, boolean withSolutions) {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        update(digest, String.valueOf(WordExporter.EXPORTER_VERSION));
+        update(digest, questionNumber);
+        update(digest, String.valueOf(withSolutions));
+        updateQuestion(digest, question);
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * Computes a hash over the exported content of a question and, recursively, its sub-questions.
+     * Properties that do not influence the output (ID, selection state) are not part of the hash.
+     * @param question The question to hash.
+     * @return A hex encoded SHA-256 hash.
+     */
+    public static String contentHash(Question question) {
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        updateQuestion(digest, question);
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private static void updateQuestion(MessageDigest digest, Question question) {
+        update(digest, question.getTitle());
+        update(digest, question.getText());
+        update(digest, question.getType());
+        update(digest, String.valueOf(question.getPoints()));
+        update(digest, String.valueOf(question.getAnswerLines()));
+        update(digest, question.getMusterloesung());
+        update(digest, question.getImage() != null ? question.getImage().getHash() : null);
+        update(digest, question.getMusterloesungImage() != null ? question.getMusterloesungImage().getHash() : null);
+        update(digest, question.isStartOnNewPage() + "," + question.isJustify() + "," + question.isLargeAnswerBox());
+        int subQuestionCount = question.getSubQuestions() != null ? question.getSubQuestions().size() : 0;
+        update(digest, String.valueOf(subQuestionCount));
+        for (int i = 0; i < subQuestionCount; i++) {
+            updateQuestion(digest, question.getSubQuestions().get(i));
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        if (value == null) {
+            digest.update((byte) 0);
+            return;
+        }
+        digest.update((byte) 1);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+}
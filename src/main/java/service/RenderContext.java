@@ -0,0 +1,52 @@
+package service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import model.ImageBlob;
+import utils.ImageInfo;
+
+/**
+ * Memoizes the decoded images of an export, which do not depend on the output mode. When
+ * {@link WordExporter#exportBoth(model.Exam, String, String)} renders a question for the student
+ * exam and the answer key, the second rendering reuses the images of the first one. The HTML
+ * is not parsed while rendering at all, it is compiled once by {@link LayoutCompiler}.
+ * <p>
+ * A context is confined to one thread. Its entries are only read while rendering, never modified.
+ */
+final class RenderContext {
+
+    /**
+     * The bytes of an image together with its header information.
+     * @param data The image bytes.
+     * @param info The dimensions and format, or {@code null} if the format is not supported.
+     */
+    record DecodedImage(byte[] data, ImageInfo info) {}
+
+    private final Map<ImageBlob, DecodedImage> decodedImages = new HashMap<>();
+
+    /**
+     * Reads the header of an image, or returns the image read before with the same hash.
+     * @param imageBlob The image.
+     * @return The decoded image.
+     * @throws IOException if the image header cannot be read.
+     */
+    DecodedImage image(ImageBlob imageBlob) throws IOException {
+        DecodedImage image = decodedImages.get(imageBlob);
+        if (image == null) {
+            byte[] data = imageBlob.getData();
+            image = new DecodedImage(data, ImageInfo.probe(data));
+            decodedImages.put(imageBlob, image);
+        }
+        return image;
+    }
+
+    /**
+     * Drops all memoized entries. Called after each main question, so the memory held by the
+     * context is bounded by the largest question instead of the whole exam.
+     */
+    void clear() {
+        decodedImages.clear();
+    }
+}
@@ -0,0 +1,239 @@
+package service;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFPicture;
+import org.apache.poi.xwpf.usermodel.XWPFPictureData;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlOptions;
+import org.openxmlformats.schemas.drawingml.x2006.main.CTPositiveSize2D;
+import org.openxmlformats.schemas.drawingml.x2006.picture.CTPicture;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTP;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTTbl;
+
+/**
+ * An immutable, document-independent snapshot of the body elements that
+ * {@link WordExporter} produced for one question. Paragraphs and tables are kept
+ * as their OOXML text; paragraphs that only hold a picture are kept as the raw
+ * image bytes and extent, so that splicing them into another document re-creates
+ * the picture part and its relation through POI instead of copying relation ids.
+ */
+final class RenderedFragment {
+
+    private static final int MAGIC = 0x45424652; // "EBFR"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte KIND_PARAGRAPH = 'P';
+    private static final byte KIND_TABLE = 'T';
+    private static final byte KIND_IMAGE = 'I';
+
+    /**
+     * Saves captured elements with the prefixes Word uses, so spliced elements serialize exactly
+     * like freshly rendered ones instead of carrying generated {@code xmlns:main} declarations.
+     */
+    private static final XmlOptions SAVE_OPTIONS = new XmlOptions().setSaveSuggestedPrefixes(Map.of(
+            "http://schemas.openxmlformats.org/wordprocessingml/2006/main", "w",
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships", "r"));
+
+    /**
+     * A single captured body element. For paragraphs and tables only {@code xml} is set,
+     * for picture paragraphs the image fields are set instead.
+     */
+    private record Element(byte kind, String xml, byte[] imageData, int pictureType, long widthEmu, long heightEmu, String imageName) {
+
+        long weight() {
+            return xml != null ? xml.length() * 2L : imageData.length;
+        }
+    }
+
+    private final List<Element> elements;
+    private final long weight;
+
+    private RenderedFragment(List<Element> elements) {
+        this.elements = Collections.unmodifiableList(elements);
+        this.weight = elements.stream().mapToLong(Element::weight).sum();
+    }
+
+    /**
+     * Approximate heap footprint of this fragment in bytes, used by {@link QuestionRenderCache}
+     * to bound its memory usage.
+     * @return The approximate size in bytes.
+     */
+    long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Captures all body elements of the document starting at the given position.
+     * @param document The document that was just rendered into.
+     * @param fromIndex The index of the first body element belonging to the fragment.
+     * @return The captured fragment, or {@code null} if the elements contain content that cannot be replayed
+     *         (e.g. pictures mixed with text in one paragraph).
+     */
+    static RenderedFragment capture(XWPFDocument document, int fromIndex) {
+        List<IBodyElement> bodyElements = document.getBodyElements();
+        List<Element> captured = new ArrayList<>(bodyElements.size() - fromIndex);
+        for (int i = fromIndex; i < bodyElements.size(); i++) {
+            IBodyElement bodyElement = bodyElements.get(i);
+            if (bodyElement instanceof XWPFParagraph) {
+                XWPFParagraph paragraph = (XWPFParagraph) bodyElement;
+                List<XWPFPicture> pictures = new ArrayList<>();
+                for (XWPFRun run : paragraph.getRuns()) {
+                    pictures.addAll(run.getEmbeddedPictures());
+                }
+                if (pictures.isEmpty()) {
+                    captured.add(new Element(KIND_PARAGRAPH, paragraph.getCTP().xmlText(SAVE_OPTIONS), null, 0, 0, 0, null));
+                } else {
+                    Element image = captureImageParagraph(paragraph, pictures);
+                    if (image == null) {
+                        return null;
+                    }
+                    captured.add(image);
+                }
+            } else if (bodyElement instanceof XWPFTable) {
+                captured.add(new Element(KIND_TABLE, ((XWPFTable) bodyElement).getCTTbl().xmlText(SAVE_OPTIONS), null, 0, 0, 0, null));
+            } else {
+                return null;
+            }
+        }
+        return new RenderedFragment(captured);
+    }
+
+    /**
+     * Captures a paragraph created by {@code addScaledPicture}: exactly one run holding one picture
+     * and no paragraph properties.
+     */
+    private static Element captureImageParagraph(XWPFParagraph paragraph, List<XWPFPicture> pictures) {
+        if (pictures.size() != 1 || paragraph.getRuns().size() != 1 || paragraph.getCTP().getPPr() != null) {
+            return null;
+        }
+        XWPFPicture picture = pictures.get(0);
+        XWPFPictureData data = picture.getPictureData();
+        CTPicture ctPicture = picture.getCTPicture();
+        if (data == null || ctPicture == null || ctPicture.getSpPr() == null || ctPicture.getSpPr().getXfrm() == null) {
+            return null;
+        }
+        CTPositiveSize2D extent = ctPicture.getSpPr().getXfrm().getExt();
+        String name = ctPicture.getNvPicPr().getCNvPr().getDescr();
+        return new Element(KIND_IMAGE, null, data.getData(), data.getPictureType(), extent.getCx(), extent.getCy(), name);
+    }
+
+    /**
+     * Appends copies of the captured elements to the end of the given document.
+     * All XML is parsed before anything is appended, so a corrupt fragment leaves the document untouched.
+     * @param document The target document.
+     * @return {@code true} if the fragment was appended, {@code false} if it could not be parsed.
+     */
+    boolean appendTo(XWPFDocument document) {
+        List<Object> parsed = new ArrayList<>(elements.size());
+        try {
+            for (Element element : elements) {
+                if (element.kind() == KIND_PARAGRAPH) {
+                    parsed.add(CTP.Factory.parse(element.xml()));
+                } else if (element.kind() == KIND_TABLE) {
+                    parsed.add(CTTbl.Factory.parse(element.xml()));
+                } else {
+                    parsed.add(element);
+                }
+            }
+        } catch (XmlException e) {
+            System.err.println("Cached question fragment could not be parsed, rendering again: " + e.getMessage());
+            return false;
+        }
+
+        for (Object part : parsed) {
+            if (part instanceof CTP) {
+                document.createParagraph().getCTP().set((CTP) part);
+            } else if (part instanceof CTTbl) {
+                document.createTable().getCTTbl().set((CTTbl) part);
+            } else {
+                Element image = (Element) part;
+                XWPFRun imageRun = document.createParagraph().createRun();
+                try {
+                    imageRun.addPicture(new ByteArrayInputStream(image.imageData()), image.pictureType(), image.imageName(),
+                            (int) image.widthEmu(), (int) image.heightEmu());
+                } catch (IOException | InvalidFormatException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serializes this fragment for the on-disk cache.
+     * @param out The stream to write to.
+     * @throws IOException if writing fails.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(elements.size());
+        for (Element element : elements) {
+            out.writeByte(element.kind());
+            if (element.kind() == KIND_IMAGE) {
+                out.writeInt(element.pictureType());
+                out.writeLong(element.widthEmu());
+                out.writeLong(element.heightEmu());
+                writeBytes(out, element.imageName() != null ? element.imageName().getBytes(StandardCharsets.UTF_8) : new byte[0]);
+                writeBytes(out, element.imageData());
+            } else {
+                writeBytes(out, element.xml().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Reads a fragment previously written with {@link #writeTo(DataOutputStream)}.
+     * @param in The stream to read from.
+     * @return The fragment, or {@code null} if the data was written by an incompatible format version.
+     * @throws IOException if reading fails.
+     */
+    static RenderedFragment readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        int count = in.readInt();
+        List<Element> elements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte kind = in.readByte();
+            if (kind == KIND_IMAGE) {
+                int pictureType = in.readInt();
+                long width = in.readLong();
+                long height = in.readLong();
+                String name = new String(readBytes(in), StandardCharsets.UTF_8);
+                elements.add(new Element(kind, null, readBytes(in), pictureType, width, height, name));
+            } else if (kind == KIND_PARAGRAPH || kind == KIND_TABLE) {
+                elements.add(new Element(kind, new String(readBytes(in), StandardCharsets.UTF_8), null, 0, 0, 0, null));
+            } else {
+                return null;
+            }
+        }
+        return new RenderedFragment(elements);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,76 @@
+package service;
+
+import java.util.concurrent.CompletableFuture;
+
+import utils.Rephraser;
+
+/**
+ * Warms up the expensive one-time initializations of ExamBuilder in the background, so that the
+ * first variant generation and the first Word export after startup run at their usual speed.
+ * <p>
+ * {@link #start()} is called once the main window is shown. A single daemon thread with the lowest
+ * priority then loads the thesaurus of the {@link Rephraser} and exports a small sample exam into
+ * memory with the {@link WordExporter}, which loads the classes of POI and XMLBeans. Each step
+ * completes a readiness future that background tasks can wait for instead of repeating the work.
+ * A failed step is logged and its future completed anyway; the real call then fails or retries on
+ * its own. Without {@link #start()} (e.g. in {@link main.BatchExport} or in tests) the futures are
+ * complete from the beginning, so waiting for them never blocks.
+ */
+public class StartupService {
+
+    private static final CompletableFuture<Void> thesaurus = new CompletableFuture<>();
+    private static final CompletableFuture<Void> wordExport = new CompletableFuture<>();
+    private static boolean started = false;
+
+    /**
+     * Starts the warm-up thread. Further calls have no effect.
+     */
+    public static synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        Thread thread = new Thread(StartupService::warmUp, "warm-up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * @return A future that is complete once the thesaurus of the {@link Rephraser} is loaded.
+     */
+    public static synchronized CompletableFuture<Void> thesaurusReady() {
+        return started ? thesaurus : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * @return A future that is complete once the {@link WordExporter} has been warmed up.
+     */
+    public static synchronized CompletableFuture<Void> wordExportReady() {
+        return started ? wordExport : CompletableFuture.completedFuture(null);
+    }
+
+    private static void warmUp() {
+        long start = System.nanoTime();
+        try {
+            Rephraser.warmUp();
+        } catch (RuntimeException e) {
+            System.err.println("Warm-up of the thesaurus failed.");
+            e.printStackTrace();
+        } finally {
+            thesaurus.complete(null);
+        }
+        long thesaurusLoaded = System.nanoTime();
+        try {
+            WordExporter.warmUp();
+        } catch (Exception e) {
+            System.err.println("Warm-up of the Word export failed.");
+            e.printStackTrace();
+        } finally {
+            wordExport.complete(null);
+        }
+        long end = System.nanoTime();
+        System.out.println("Warm-up finished: thesaurus " + (thesaurusLoaded - start) / 1_000_000
+                + " ms, Word export " + (end - thesaurusLoaded) / 1_000_000 + " ms.");
+    }
+}
@@ -0,0 +1,1056 @@
+package service;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.poi.util.Units;
+
+import model.Exam;
+import utils.ImageInfo;
+
+/**
+ * Low-memory alternative to {@link WordExporter} that writes the .docx package directly
+ * into a {@link ZipOutputStream} instead of building an {@code XWPFDocument} in memory.
+ * <p>
+ * The export runs in two passes over the {@link model.Exam}: the first pass compiles every
+ * question into its {@link QuestionLayout} (see {@link LayoutCompiler}), decodes the images
+ * one at a time and streams them into {@code word/media}, keeping only their relation ids
+ * and extents. The second pass compiles each question again and writes {@code word/document.xml}
+ * with a StAX {@link XMLStreamWriter}. Only the body elements of the question currently being
+ * written are buffered. The layouts are not kept between the passes, so apart from one relation
+ * per distinct image, the export itself holds the layout of one question at a time. The
+ * {@link LayoutCompiler} keeps its own bounded cache of recently compiled layouts, which usually
+ * answers the second compilation; that cache is shared by all exports and does not grow with
+ * the exam.
+ * <p>
+ * The generated document has the same layout as the one produced by {@link WordExporter}
+ * (cover page, headers, page numbering, question formatting).
+ */
+public class StreamingWordExporter {
+
+    private static final String W = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final String R = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    private static final String WP = "http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing";
+    private static final String A = "http://schemas.openxmlformats.org/drawingml/2006/main";
+    private static final String PIC = "http://schemas.openxmlformats.org/drawingml/2006/picture";
+    private static final String PACKAGE_RELATIONSHIPS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String CONTENT_TYPES = "http://schemas.openxmlformats.org/package/2006/content-types";
+
+    private static final String FIRST_HEADER_ID = "rId1";
+    private static final String DEFAULT_HEADER_ID = "rId2";
+    private static final String FOOTER_ID = "rId3";
+    private static final int FIXED_RELATIONS = 3;
+
+    private static final int MAX_WIDTH_POINTS = 400; // Max width in points (1/72 of an inch)
+
+    private static final XMLOutputFactory XML_OUTPUT = XMLOutputFactory.newInstance();
+
+    /**
+     * Writes the content of one package part.
+     */
+    @FunctionalInterface
+    private interface PartWriter {
+        void write(XMLStreamWriter xml) throws XMLStreamException;
+    }
+
+    /**
+     * An image part that was already written to the package.
+     */
+    private record ImageRef(String relationId, String target, String fileName, long widthEmu, long heightEmu) {}
+
+    /**
+     * The image parts of an export, looked up by the question they belong to.
+     * Identical payloads are written once and referenced by every picture showing them.
+     */
+    private static final class ImageParts {
+        final Map<QuestionLayout.Picture, ImageRef> pictures = new HashMap<>();
+        final Map<String, ImageRef> byContentHash = new HashMap<>();
+        final List<ImageRef> parts = new ArrayList<>();
+        final Set<String> extensions = new TreeSet<>();
+    }
+
+    /**
+     * Exports the given {@link model.Exam} object to a Microsoft Word (.docx) document
+     * without solutions, streaming the document instead of building it in memory.
+     * @param exam The {@link model.Exam} object to export.
+     * @param filePath The full path where the .docx file will be saved.
+     * @throws IOException if an I/O error occurs during the file writing process.
+     */
+    public static void export(Exam exam, String filePath) throws IOException {
+        exportDoc(exam, filePath, false);
+    }
+
+    /**
+     * Exports the given {@link model.Exam} object to a Microsoft Word (.docx) document
+     * including the solutions, streaming the document instead of building it in memory.
+     * @param exam The {@link model.Exam} object to export.
+     * @param filePath The full path where the .docx file will be saved.
+     * @throws IOException if an I/O error occurs during the file writing process.
+     */
+    public static void exportWithSolutions(Exam exam, String filePath) throws IOException {
+        exportDoc(exam, filePath, true);
+    }
+
+    /**
+     * Writes all parts of the .docx package. Image parts come first, so that {@code word/document.xml}
+     * can reference them while it is being streamed.
+     * @param exam The {@link model.Exam} object containing all exam data.
+     * @param filePath The destination path for the generated .docx file.
+     * @param withSolutions {@code true} to include solutions in the document, {@code false} otherwise.
+     * @throws IOException if an I/O error occurs during the file writing process.
+     */
+    private static void exportDoc(Exam exam, String filePath, boolean withSolutions) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+            ImageParts images = new ImageParts();
+            for (int i = 0; i < exam.getQuestions().size(); i++) {
+                writeImageParts(zip, LayoutCompiler.compile(exam.getQuestions().get(i), String.valueOf(i + 1)), withSolutions, images);
+            }
+
+            writePart(zip, "word/document.xml", xml -> writeDocument(xml, exam, withSolutions, images));
+            writePart(zip, "word/header1.xml", StreamingWordExporter::writeFirstHeader);
+            writePart(zip, "word/header2.xml", StreamingWordExporter::writeDefaultHeader);
+            writePart(zip, "word/footer1.xml", StreamingWordExporter::writeFooter);
+            writePart(zip, "word/_rels/document.xml.rels", xml -> writeDocumentRelationships(xml, images));
+            writePart(zip, "_rels/.rels", StreamingWordExporter::writePackageRelationships);
+            writePart(zip, "[Content_Types].xml", xml -> writeContentTypes(xml, images));
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to write the document XML", e);
+        }
+        System.out.println("Export erfolgreich!");
+    }
+
+    /**
+     * Writes one XML part as a new entry of the package.
+     * @param zip The package being written.
+     * @param name The part name within the package.
+     * @param content Writes the root element of the part.
+     * @throws IOException if writing to the package fails.
+     * @throws XMLStreamException if the XML cannot be written.
+     */
+    private static void writePart(ZipOutputStream zip, String name, PartWriter content) throws IOException, XMLStreamException {
+        zip.putNextEntry(new ZipEntry(name));
+        XMLStreamWriter xml = XML_OUTPUT.createXMLStreamWriter(zip, "UTF-8");
+        xml.writeStartDocument("UTF-8", "1.0");
+        content.write(xml);
+        xml.writeEndDocument();
+        xml.flush();
+        xml.close(); // Does not close the underlying zip stream
+        zip.closeEntry();
+    }
+
+    /**
+     * First pass: decodes the images of a compiled question (and recursively its sub-questions) one at a time
+     * and streams them into the package. The layout only holds the images that are shown; solution
+     * images are only written for the answer key.
+     * @param zip The package being written.
+     * @param question The compiled question whose images are written.
+     * @param withSolutions {@code true} if solution images are shown.
+     * @param images Collects the written image parts.
+     * @throws IOException if writing to the package fails.
+     */
+    private static void writeImageParts(ZipOutputStream zip, QuestionLayout question, boolean withSolutions, ImageParts images) throws IOException {
+        writeImagePart(zip, question.image(), images);
+        if (withSolutions) {
+            writeImagePart(zip, question.solutionImage(), images);
+        }
+        for (QuestionLayout subQuestion : question.subQuestions()) {
+            writeImageParts(zip, subQuestion, withSolutions, images);
+        }
+    }
+
+    /**
+     * Writes the image part of a picture unless it is absent or was written before.
+     * @param zip The package being written.
+     * @param picture The picture of the layout, or {@code null}.
+     * @param images The image parts written so far.
+     * @throws IOException if writing to the package fails.
+     */
+    private static void writeImagePart(ZipOutputStream zip, QuestionLayout.Picture picture, ImageParts images) throws IOException {
+        if (picture == null || images.pictures.containsKey(picture)) {
+            return;
+        }
+        ImageRef ref = writeImagePart(zip, picture.image().getData(), picture.fileName(), images);
+        if (ref != null) {
+            images.pictures.put(picture, ref);
+        }
+    }
+
+    /**
+     * Reads the dimensions of one image from the image header and writes it as a media part.
+     * Images wider than {@code MAX_WIDTH_POINTS} are scaled down like in {@link WordExporter}. A payload
+     * that was already written (same SHA-256 hash) is not written again; its part is referenced instead.
+     * @param zip The package being written.
+     * @param imageBytes The bytes of the image.
+     * @param fileName The file name shown for the picture.
+     * @param images The image parts written so far.
+     * @return The image reference, or {@code null} if the image could not be read.
+     * @throws IOException if writing to the package fails.
+     */
+    private static ImageRef writeImagePart(ZipOutputStream zip, byte[] imageBytes, String fileName, ImageParts images) throws IOException {
+        String contentHash = ImageInfo.contentHash(imageBytes);
+        ImageRef existing = images.byContentHash.get(contentHash);
+        if (existing != null) {
+            return new ImageRef(existing.relationId(), existing.target(), fileName, existing.widthEmu(), existing.heightEmu());
+        }
+
+        ImageInfo info = ImageInfo.probe(imageBytes);
+        if (info == null) {
+            System.err.println("Image " + fileName + " could not be read and is skipped.");
+            return null;
+        }
+        double width = info.getWidth();
+        double height = info.getHeight();
+
+        double scale = 1.0;
+        if (width > MAX_WIDTH_POINTS) {
+            scale = MAX_WIDTH_POINTS / width;
+        }
+        long widthEmu = (long) (width * scale * Units.EMU_PER_POINT);
+        long heightEmu = (long) (height * scale * Units.EMU_PER_POINT);
+
+        int index = images.parts.size() + 1;
+        String extension = "jpg".equals(info.getFormat()) ? "jpeg" : info.getFormat();
+        String target = "media/image" + index + "." + extension;
+        zip.putNextEntry(new ZipEntry("word/" + target));
+        zip.write(imageBytes);
+        zip.closeEntry();
+
+        ImageRef ref = new ImageRef("rId" + (FIXED_RELATIONS + index), target, fileName, widthEmu, heightEmu);
+        images.byContentHash.put(contentHash, ref);
+        images.parts.add(ref);
+        images.extensions.add(extension);
+        return ref;
+    }
+
+    /**
+     * Second pass: streams {@code word/document.xml}. Each main question is compiled again (its
+     * pictures are equal to those of the first pass), buffered while it is being laid out and
+     * written as soon as it is complete.
+     */
+    private static void writeDocument(XMLStreamWriter xml, Exam exam, boolean withSolutions, ImageParts images) throws XMLStreamException {
+        xml.writeStartElement("w", "document", W);
+        xml.writeNamespace("w", W);
+        xml.writeNamespace("r", R);
+        xml.writeNamespace("wp", WP);
+        xml.writeNamespace("a", A);
+        xml.writeNamespace("pic", PIC);
+        xml.writeStartElement("w", "body", W);
+
+        Body body = new Body(xml, images);
+        createCoverPage(body, exam);
+        body.addParagraph().pageBreakBefore = true;
+        body.flush();
+
+        for (int i = 0; i < exam.getQuestions().size(); i++) {
+            QuestionLayout layout = LayoutCompiler.compile(exam.getQuestions().get(i), String.valueOf(i + 1));
+            // Each main question starts on a new page, "Neue Seite" adds an extra blank page (see WordExporter).
+            if (i > 0) {
+                body.addParagraph().pageBreakBefore = true;
+            }
+            if (layout.startOnNewPage()) {
+                body.addParagraph().pageBreakBefore = true;
+            }
+            writeQuestion(body, layout, withSolutions);
+            body.flush();
+        }
+
+        xml.writeStartElement("w", "sectPr", W);
+        writeHeaderFooterReference(xml, "headerReference", "first", FIRST_HEADER_ID);
+        writeHeaderFooterReference(xml, "headerReference", "default", DEFAULT_HEADER_ID);
+        writeHeaderFooterReference(xml, "footerReference", "default", FOOTER_ID);
+        xml.writeEmptyElement("w", "titlePg", W);
+        xml.writeEndElement(); // sectPr
+
+        xml.writeEndElement(); // body
+        xml.writeEndElement(); // document
+    }
+
+    private static void writeHeaderFooterReference(XMLStreamWriter xml, String element, String type, String relationId) throws XMLStreamException {
+        xml.writeEmptyElement("w", element, W);
+        xml.writeAttribute("w", W, "type", type);
+        xml.writeAttribute("r", R, "id", relationId);
+    }
+
+    /**
+     * Lays out the cover page with the same content as {@link WordExporter}: exam metadata,
+     * instructions, the student information table and the grading table.
+     * @param body The body the cover page is added to.
+     * @param exam The {@link model.Exam} object containing the exam's metadata and instructions.
+     */
+    private static void createCoverPage(Body body, Exam exam) {
+        Table metaTable = body.addTable(1, 1);
+        metaTable.thinOuterBorders = true;
+        Cell metaCell = metaTable.cell(0, 0);
+        metaCell.centerVertically = true;
+
+        Paragraph metaParagraph1 = metaCell.paragraphs.get(0);
+        metaParagraph1.alignment = "center";
+        Run metaRun1 = metaParagraph1.addRun(exam.getHochschule() + " | " + exam.getFachbereich());
+        metaRun1.bold = true;
+        metaRun1.fontSize = 12;
+
+        Paragraph metaParagraph2 = metaCell.addParagraph();
+        metaParagraph2.alignment = "center";
+        Run metaRun2 = metaParagraph2.addRun(exam.getTitle() + " - " + exam.getModule() + " | " + exam.getSemester());
+        metaRun2.bold = true;
+        metaRun2.fontSize = 12;
+
+        body.addParagraph(); // Keep a paragraph for spacing
+
+        Table specificInstructionTable = body.addTable(1, 1);
+        Cell instructionCell = specificInstructionTable.cell(0, 0);
+        instructionCell.centerVertically = true;
+        instructionCell.paragraphs.get(0).alignment = "center";
+        instructionCell.paragraphs.get(0).addRun("\nBitte lesen Sie die folgenden Hinweise aufmerksam durch!").bold = true;
+
+        String instructionsContent = exam.getAllgemeineHinweise();
+        if (instructionsContent == null || instructionsContent.isEmpty()) {
+            instructionsContent = WordExporter.getStandardHinweise();
+        }
+        for (String line : instructionsContent.split("\n")) {
+            if (line.trim().isEmpty()) continue;
+            Paragraph instructionParagraph = body.addParagraph();
+            instructionParagraph.alignment = "both";
+            Run instructionRun = instructionParagraph.addRun(line);
+            instructionRun.bold = true;
+            instructionRun.fontSize = 10;
+        }
+
+        Paragraph studentInfoHeader = body.addParagraph();
+        studentInfoHeader.spacingBefore = 200;
+        Run studentInfoHeaderRun = studentInfoHeader.addRun("\nAbschnitt: Von dem/der Studierenden auszufüllen");
+        studentInfoHeaderRun.fontSize = 10;
+        studentInfoHeaderRun.bold = true;
+
+        Table studentInfoTable = body.addTable(4, 2);
+        studentInfoTable.thinOuterBorders = true;
+        studentInfoTable.thinInsideBorders = true;
+        String[] labels = {"Name", "Vorname", "Matrikelnummer", "Unterschrift"};
+        for (int i = 0; i < labels.length; i++) {
+            Cell labelCell = studentInfoTable.cell(i, 0);
+            labelCell.width = 1650; // 33%
+            labelCell.centerVertically = true;
+            labelCell.paragraphs.get(0).alignment = "center";
+            labelCell.paragraphs.get(0).addRun(labels[i]);
+
+            Cell inputCell = studentInfoTable.cell(i, 1);
+            inputCell.width = 3350; // 67%
+            inputCell.centerVertically = true;
+            inputCell.paragraphs.get(0).alignment = "center";
+        }
+
+        Paragraph gradingInfo = body.addParagraph();
+        gradingInfo.spacingBefore = 200;
+        Run gradingInfoRun = gradingInfo.addRun("\nAbschnitt: Von dem/der Prüfenden auszufüllen");
+        gradingInfoRun.fontSize = 10;
+        gradingInfoRun.bold = true;
+
+        int numQuestions = exam.getQuestions().size();
+        Table gradingTable = body.addTable(3, numQuestions + 1);
+        for (int i = 0; i <= numQuestions; i++) {
+            String header = i < numQuestions ? "A" + (i + 1) : "Gesamt";
+            String maxPoints = String.valueOf(i < numQuestions ? exam.getQuestions().get(i).getPoints() : exam.getTotalPoints());
+            gradingTable.centeredCell(0, i).addRun(header).bold = true;
+            gradingTable.centeredCell(1, i).addRun(maxPoints).bold = true;
+            gradingTable.centeredCell(2, i);
+        }
+    }
+
+    /**
+     * Lays out the compiled question (and recursively its sub-questions) with the same rules as
+     * {@link WordExporter}'s {@code writeQuestion}.
+     * @param body The body the question is added to.
+     * @param question The compiled {@link QuestionLayout} of the question to write.
+     * @param withSolutions {@code true} to include solutions, {@code false} otherwise.
+     */
+    private static void writeQuestion(Body body, QuestionLayout question, boolean withSolutions) {
+        if (question.kind() == QuestionLayout.Kind.RICHTIG_FALSCH) {
+            Table questionTitleTable = body.addTable(1, 3);
+            questionTitleTable.borders = false;
+
+            Paragraph statement = questionTitleTable.alignedCell(0, 0, "left");
+            statement.addRun(question.heading()).bold = true;
+
+            Paragraph points = questionTitleTable.alignedCell(0, 1, "right");
+            points.addRun(question.points()).bold = true;
+
+            Paragraph checkboxes = questionTitleTable.alignedCell(0, 2, "right");
+            if (!question.hasSubQuestions()) {
+                boolean isRichtigCorrect = withSolutions && "Richtig".equals(question.correctStatement());
+                boolean isFalschCorrect = withSolutions && "Falsch".equals(question.correctStatement());
+                checkboxes.addRun((isRichtigCorrect ? "☑" : "☐") + " Richtig").tab = true;
+                checkboxes.addRun((isFalschCorrect ? "☑" : "☐") + " Falsch");
+            }
+        } else {
+            Paragraph questionTitle = body.addParagraph();
+            if (question.justify()) {
+                questionTitle.alignment = "both";
+            }
+            questionTitle.keepLines = true;
+            questionTitle.keepNext = true;
+            questionTitle.addRun(question.heading() + question.points()).bold = true;
+            if (question.kind() == QuestionLayout.Kind.MCQ) {
+                questionTitle.spacingAfter = 0;
+            }
+
+            if (question.image() != null) {
+                body.addParagraph().image = body.images.pictures.get(question.image());
+            }
+
+            boolean fillBlanks = withSolutions && !question.missingBlankSolutions();
+            appendContent(body, question.content(), withSolutions, fillBlanks);
+            if (question.kind() == QuestionLayout.Kind.LUECKENTEXT && withSolutions && question.missingBlankSolutions()) {
+                Run run = body.addParagraph().addRun("FEHLER: Für diesen Lückentext wurde keine Musterlösung angegeben.");
+                run.color = "FF0000";
+                run.italic = true;
+            }
+        }
+
+        if (question.kind() == QuestionLayout.Kind.MCQ || (question.kind() == QuestionLayout.Kind.RICHTIG_FALSCH && !question.hasSubQuestions())) {
+            body.addParagraph().spacingAfter = 0;
+        }
+
+        if (withSolutions) {
+            if (question.solutionText() != null) {
+                Run solutionRun = body.addParagraph().addRun("\nLösung: " + question.solutionText());
+                solutionRun.color = "0000FF";
+                solutionRun.italic = true;
+            }
+            if (question.solutionImage() != null) {
+                body.addParagraph().image = body.images.pictures.get(question.solutionImage());
+            }
+        } else if (question.answerLines() > 0) {
+            Table answerTable = body.addTable(question.answerLines(), 1);
+            answerTable.insideHorizontal = !question.largeAnswerBox();
+            for (int i = 0; i < question.answerLines(); i++) {
+                // A single space ensures the cell height is respected
+                answerTable.centeredCell(i, 0).addRun(" ");
+            }
+        }
+
+        for (QuestionLayout subQuestion : question.subQuestions()) {
+            writeQuestion(body, subQuestion, withSolutions);
+
+            if (subQuestion.startOnNewPage()) {
+                Paragraph continueMessage = body.addParagraph();
+                continueMessage.alignment = "right";
+                Run continueRun = continueMessage.addRun("Die Aufgabe folgt auf der nächsten Seite bzw. Rückseite.");
+                continueRun.italic = true;
+                continueRun.fontSize = 9;
+                body.addParagraph().pageBreakBefore = true;
+            }
+        }
+    }
+
+    /**
+     * Lays out the compiled text of a question: paragraphs with their runs, code blocks as shaded
+     * monospaced lines and MCQ options with checkboxes.
+     * @param body The body the content is added to.
+     * @param content The blocks of the {@link QuestionLayout}.
+     * @param withSolutions {@code true} if the correct MCQ options are ticked.
+     * @param fillBlanks {@code true} if the blanks of a Lückentext show their solutions instead of the placeholders.
+     */
+    private static void appendContent(Body body, List<QuestionLayout.Block> content, boolean withSolutions, boolean fillBlanks) {
+        for (QuestionLayout.Block block : content) {
+            if (block instanceof QuestionLayout.Paragraph paragraph) {
+                Paragraph bodyParagraph = body.addParagraph();
+                if (paragraph.justify()) {
+                    bodyParagraph.alignment = "both";
+                }
+                if (paragraph.listStyle() == QuestionLayout.ListStyle.BULLET) {
+                    bodyParagraph.numId = 1;
+                } else if (paragraph.listStyle() == QuestionLayout.ListStyle.NUMBER) {
+                    bodyParagraph.numId = 2;
+                }
+                for (QuestionLayout.Inline inline : paragraph.inlines()) {
+                    appendInline(bodyParagraph, inline, fillBlanks);
+                }
+            } else if (block instanceof QuestionLayout.CodeBlock code) {
+                for (String line : code.lines()) {
+                    Paragraph codeParagraph = body.addParagraph();
+                    codeParagraph.shading = "F0F0F0";
+                    codeParagraph.addRun(line).fontFamily = "Courier New";
+                }
+            } else if (block instanceof QuestionLayout.Option option) {
+                Paragraph optionParagraph = body.addParagraph();
+                optionParagraph.spacingAfter = 0;
+                optionParagraph.spacingBefore = 0;
+                optionParagraph.singleLineSpacing = true;
+                optionParagraph.addRun(withSolutions && option.correct() ? "☑ " : "☐ ");
+                optionParagraph.addStyledRun(option.text(), option.style());
+            }
+        }
+    }
+
+    /**
+     * Appends an inline element of the layout to a paragraph, like {@link WordExporter} does.
+     */
+    private static void appendInline(Paragraph paragraph, QuestionLayout.Inline inline, boolean fillBlanks) {
+        if (inline instanceof QuestionLayout.Text text) {
+            paragraph.addStyledRun(text.text(), text.style());
+        } else if (inline instanceof QuestionLayout.Blank blank) {
+            if (!fillBlanks) {
+                paragraph.addStyledRun(blank.placeholder(), blank.style());
+                return;
+            }
+            if (blank.spaceBefore()) {
+                paragraph.addStyledRun(" ", blank.style());
+            }
+            if (!blank.solution().isEmpty()) {
+                paragraph.addStyledRun(blank.solution(), WordExporter.solutionStyle(blank.style()));
+            }
+            if (blank.spaceAfter()) {
+                paragraph.addStyledRun(" ", blank.style());
+            }
+        } else if (inline instanceof QuestionLayout.LineBreak) {
+            paragraph.addBreak();
+        }
+    }
+
+    /**
+     * Writes the (empty) header of the cover page.
+     */
+    private static void writeFirstHeader(XMLStreamWriter xml) throws XMLStreamException {
+        xml.writeStartElement("w", "hdr", W);
+        xml.writeNamespace("w", W);
+        xml.writeEmptyElement("w", "p", W);
+        xml.writeEndElement();
+    }
+
+    /**
+     * Writes the header of all other pages with fields for the student's matriculation number and name.
+     */
+    private static void writeDefaultHeader(XMLStreamWriter xml) throws XMLStreamException {
+        xml.writeStartElement("w", "hdr", W);
+        xml.writeNamespace("w", W);
+        xml.writeNamespace("r", R);
+
+        Table table = new Table(1, 4);
+        table.borders = false;
+        Paragraph matrikelLabel = table.cell(0, 0).paragraphs.get(0);
+        matrikelLabel.alignment = "left";
+        matrikelLabel.addRun("Matrikelnummer: ");
+        table.cell(0, 1).shading = "F0F0F0";
+        table.cell(0, 1).paragraphs.get(0).addRun(" ".repeat(20)).underline = true; // Spaces to be underlined
+        Paragraph nameLabel = table.cell(0, 2).paragraphs.get(0);
+        nameLabel.alignment = "left";
+        nameLabel.addRun("Name: ");
+        table.cell(0, 3).shading = "F0F0F0";
+        table.cell(0, 3).paragraphs.get(0).addRun(" ".repeat(30)).underline = true;
+        writeTable(xml, table, null);
+
+        xml.writeEndElement();
+    }
+
+    /**
+     * Writes the footer with the page numbering in the format "Seite X / Y".
+     */
+    private static void writeFooter(XMLStreamWriter xml) throws XMLStreamException {
+        xml.writeStartElement("w", "ftr", W);
+        xml.writeNamespace("w", W);
+        xml.writeStartElement("w", "p", W);
+        xml.writeStartElement("w", "pPr", W);
+        writeValue(xml, "jc", "center");
+        xml.writeEndElement();
+        writeTextRun(xml, "Seite ");
+        writeField(xml, "PAGE");
+        writeTextRun(xml, " / ");
+        writeField(xml, "NUMPAGES");
+        xml.writeEndElement(); // p
+        xml.writeEndElement(); // ftr
+    }
+
+    private static void writeTextRun(XMLStreamWriter xml, String text) throws XMLStreamException {
+        xml.writeStartElement("w", "r", W);
+        writeText(xml, text);
+        xml.writeEndElement();
+    }
+
+    private static void writeField(XMLStreamWriter xml, String instruction) throws XMLStreamException {
+        xml.writeStartElement("w", "r", W);
+        xml.writeEmptyElement("w", "fldChar", W);
+        xml.writeAttribute("w", W, "fldCharType", "begin");
+        xml.writeEndElement();
+        xml.writeStartElement("w", "r", W);
+        xml.writeStartElement("w", "instrText", W);
+        xml.writeCharacters(instruction);
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeStartElement("w", "r", W);
+        xml.writeEmptyElement("w", "fldChar", W);
+        xml.writeAttribute("w", W, "fldCharType", "end");
+        xml.writeEndElement();
+    }
+
+    private static void writeDocumentRelationships(XMLStreamWriter xml, ImageParts images) throws XMLStreamException {
+        xml.writeStartElement("Relationships");
+        xml.writeDefaultNamespace(PACKAGE_RELATIONSHIPS);
+        writeRelationship(xml, FIRST_HEADER_ID, R + "/header", "header1.xml");
+        writeRelationship(xml, DEFAULT_HEADER_ID, R + "/header", "header2.xml");
+        writeRelationship(xml, FOOTER_ID, R + "/footer", "footer1.xml");
+        for (ImageRef image : images.parts) {
+            writeRelationship(xml, image.relationId(), R + "/image", image.target());
+        }
+        xml.writeEndElement();
+    }
+
+    private static void writePackageRelationships(XMLStreamWriter xml) throws XMLStreamException {
+        xml.writeStartElement("Relationships");
+        xml.writeDefaultNamespace(PACKAGE_RELATIONSHIPS);
+        writeRelationship(xml, "rId1", R + "/officeDocument", "word/document.xml");
+        xml.writeEndElement();
+    }
+
+    private static void writeRelationship(XMLStreamWriter xml, String id, String type, String target) throws XMLStreamException {
+        xml.writeEmptyElement("Relationship");
+        xml.writeAttribute("Id", id);
+        xml.writeAttribute("Type", type);
+        xml.writeAttribute("Target", target);
+    }
+
+    private static void writeContentTypes(XMLStreamWriter xml, ImageParts images) throws XMLStreamException {
+        xml.writeStartElement("Types");
+        xml.writeDefaultNamespace(CONTENT_TYPES);
+        writeContentType(xml, "Default", "Extension", "rels", "application/vnd.openxmlformats-package.relationships+xml");
+        writeContentType(xml, "Default", "Extension", "xml", "application/xml");
+        for (String extension : images.extensions) {
+            writeContentType(xml, "Default", "Extension", extension, "image/" + extension);
+        }
+        writeContentType(xml, "Override", "PartName", "/word/document.xml", "application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml");
+        writeContentType(xml, "Override", "PartName", "/word/header1.xml", "application/vnd.openxmlformats-officedocument.wordprocessingml.header+xml");
+        writeContentType(xml, "Override", "PartName", "/word/header2.xml", "application/vnd.openxmlformats-officedocument.wordprocessingml.header+xml");
+        writeContentType(xml, "Override", "PartName", "/word/footer1.xml", "application/vnd.openxmlformats-officedocument.wordprocessingml.footer+xml");
+        xml.writeEndElement();
+    }
+
+    private static void writeContentType(XMLStreamWriter xml, String element, String keyAttribute, String key, String contentType) throws XMLStreamException {
+        xml.writeEmptyElement(element);
+        xml.writeAttribute(keyAttribute, key);
+        xml.writeAttribute("ContentType", contentType);
+    }
+
+    /**
+     * The body elements of the question currently being laid out. Paragraphs stay modifiable until
+     * {@link #flush()} writes them, because the HTML conversion may still append to (or remove) a
+     * paragraph after later paragraphs were created.
+     */
+    private static final class Body {
+        final XMLStreamWriter xml;
+        final ImageParts images;
+        final List<Object> pending = new ArrayList<>();
+        int drawingId;
+
+        Body(XMLStreamWriter xml, ImageParts images) {
+            this.xml = xml;
+            this.images = images;
+        }
+
+        Paragraph addParagraph() {
+            Paragraph paragraph = new Paragraph();
+            pending.add(paragraph);
+            return paragraph;
+        }
+
+        Table addTable(int rows, int columns) {
+            Table table = new Table(rows, columns);
+            pending.add(table);
+            return table;
+        }
+
+        void remove(Paragraph paragraph) {
+            pending.remove(paragraph);
+        }
+
+        void flush() throws XMLStreamException {
+            for (Object element : pending) {
+                if (element instanceof Paragraph) {
+                    writeParagraph(xml, (Paragraph) element, this);
+                } else {
+                    writeTable(xml, (Table) element, this);
+                }
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     * A paragraph that has not been written yet.
+     */
+    private static final class Paragraph {
+        String alignment;
+        boolean keepNext;
+        boolean keepLines;
+        boolean pageBreakBefore;
+        boolean singleLineSpacing;
+        Integer spacingBefore;
+        Integer spacingAfter;
+        String shading;
+        Integer numId;
+        ImageRef image;
+        final List<Run> runs = new ArrayList<>();
+
+        /**
+         * @return {@code true} if any paragraph property is set (the equivalent of an existing {@code pPr}).
+         */
+        boolean hasProperties() {
+            return alignment != null || keepNext || keepLines || pageBreakBefore || singleLineSpacing
+                    || spacingBefore != null || spacingAfter != null || shading != null || numId != null;
+        }
+
+        Run addRun(String text) {
+            Run run = new Run(text);
+            runs.add(run);
+            return run;
+        }
+
+        void addStyledRun(String text, QuestionLayout.Style style) {
+            Run run = addRun(text);
+            run.bold = style.bold();
+            run.italic = style.italic();
+            run.underline = style.underline();
+            run.strikethrough = style.strikethrough();
+            run.color = style.color();
+            run.fontFamily = style.fontFamily();
+        }
+
+        void addBreak() {
+            addRun(null).lineBreak = true;
+        }
+    }
+
+    /**
+     * A run of uniformly formatted text.
+     */
+    private static final class Run {
+        final String text;
+        boolean bold;
+        boolean italic;
+        boolean underline;
+        boolean strikethrough;
+        boolean tab;
+        boolean lineBreak;
+        String color;
+        String fontFamily;
+        int fontSize;
+
+        Run(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * A table that has not been written yet. Tables are 100% wide and bordered unless configured otherwise.
+     */
+    private static final class Table {
+        boolean borders = true;
+        boolean thinOuterBorders;
+        boolean thinInsideBorders;
+        boolean insideHorizontal = true;
+        final List<List<Cell>> rows = new ArrayList<>();
+
+        Table(int rowCount, int columnCount) {
+            for (int r = 0; r < rowCount; r++) {
+                List<Cell> row = new ArrayList<>(columnCount);
+                for (int c = 0; c < columnCount; c++) {
+                    row.add(new Cell());
+                }
+                rows.add(row);
+            }
+        }
+
+        Cell cell(int row, int column) {
+            return rows.get(row).get(column);
+        }
+
+        /**
+         * Aligns a cell vertically centered with the given horizontal alignment.
+         * @return The first paragraph of the cell.
+         */
+        Paragraph alignedCell(int row, int column, String alignment) {
+            Cell cell = cell(row, column);
+            cell.centerVertically = true;
+            Paragraph paragraph = cell.paragraphs.get(0);
+            paragraph.alignment = alignment;
+            return paragraph;
+        }
+
+        Paragraph centeredCell(int row, int column) {
+            return alignedCell(row, column, "center");
+        }
+    }
+
+    /**
+     * A table cell holding at least one paragraph.
+     */
+    private static final class Cell {
+        int width; // In fiftieths of a percent, 0 for automatic width
+        boolean centerVertically;
+        String shading;
+        final List<Paragraph> paragraphs = new ArrayList<>(List.of(new Paragraph()));
+
+        Paragraph addParagraph() {
+            Paragraph paragraph = new Paragraph();
+            paragraphs.add(paragraph);
+            return paragraph;
+        }
+    }
+
+    private static void writeTable(XMLStreamWriter xml, Table table, Body body) throws XMLStreamException {
+        xml.writeStartElement("w", "tbl", W);
+        xml.writeStartElement("w", "tblPr", W);
+        xml.writeEmptyElement("w", "tblW", W);
+        xml.writeAttribute("w", W, "w", "5000");
+        xml.writeAttribute("w", W, "type", "pct");
+        if (table.borders) {
+            xml.writeStartElement("w", "tblBorders", W);
+            for (String side : new String[] {"top", "left", "bottom", "right"}) {
+                writeBorder(xml, side, "single", table.thinOuterBorders);
+            }
+            writeBorder(xml, "insideH", table.insideHorizontal ? "single" : "none", table.thinInsideBorders);
+            writeBorder(xml, "insideV", "single", table.thinInsideBorders);
+            xml.writeEndElement();
+        }
+        xml.writeEndElement(); // tblPr
+
+        for (List<Cell> row : table.rows) {
+            xml.writeStartElement("w", "tr", W);
+            for (Cell cell : row) {
+                xml.writeStartElement("w", "tc", W);
+                if (cell.width > 0 || cell.centerVertically || cell.shading != null) {
+                    xml.writeStartElement("w", "tcPr", W);
+                    if (cell.width > 0) {
+                        xml.writeEmptyElement("w", "tcW", W);
+                        xml.writeAttribute("w", W, "w", String.valueOf(cell.width));
+                        xml.writeAttribute("w", W, "type", "pct");
+                    }
+                    if (cell.shading != null) {
+                        writeShading(xml, cell.shading);
+                    }
+                    if (cell.centerVertically) {
+                        writeValue(xml, "vAlign", "center");
+                    }
+                    xml.writeEndElement();
+                }
+                for (Paragraph paragraph : cell.paragraphs) {
+                    writeParagraph(xml, paragraph, body);
+                }
+                xml.writeEndElement(); // tc
+            }
+            xml.writeEndElement(); // tr
+        }
+        xml.writeEndElement(); // tbl
+    }
+
+    private static void writeBorder(XMLStreamWriter xml, String side, String value, boolean thin) throws XMLStreamException {
+        xml.writeEmptyElement("w", side, W);
+        xml.writeAttribute("w", W, "val", value);
+        if ("none".equals(value)) {
+            xml.writeAttribute("w", W, "sz", "0");
+            xml.writeAttribute("w", W, "space", "0");
+            xml.writeAttribute("w", W, "color", "FFFFFF");
+        } else if (thin) {
+            xml.writeAttribute("w", W, "sz", "1");
+            xml.writeAttribute("w", W, "space", "0");
+            xml.writeAttribute("w", W, "color", "000000");
+        }
+    }
+
+    private static void writeParagraph(XMLStreamWriter xml, Paragraph paragraph, Body body) throws XMLStreamException {
+        xml.writeStartElement("w", "p", W);
+        if (paragraph.hasProperties()) {
+            // Elements follow the sequence required by CT_PPr
+            xml.writeStartElement("w", "pPr", W);
+            if (paragraph.keepNext) {
+                writeOn(xml, "keepNext");
+            }
+            if (paragraph.keepLines) {
+                writeOn(xml, "keepLines");
+            }
+            if (paragraph.pageBreakBefore) {
+                writeOn(xml, "pageBreakBefore");
+            }
+            if (paragraph.numId != null) {
+                xml.writeStartElement("w", "numPr", W);
+                writeValue(xml, "numId", String.valueOf(paragraph.numId));
+                xml.writeEndElement();
+            }
+            if (paragraph.shading != null) {
+                writeShading(xml, paragraph.shading);
+            }
+            if (paragraph.spacingBefore != null || paragraph.spacingAfter != null || paragraph.singleLineSpacing) {
+                xml.writeEmptyElement("w", "spacing", W);
+                if (paragraph.spacingAfter != null) {
+                    xml.writeAttribute("w", W, "after", String.valueOf(paragraph.spacingAfter));
+                }
+                if (paragraph.spacingBefore != null) {
+                    xml.writeAttribute("w", W, "before", String.valueOf(paragraph.spacingBefore));
+                }
+                if (paragraph.singleLineSpacing) {
+                    xml.writeAttribute("w", W, "line", "240");
+                    xml.writeAttribute("w", W, "lineRule", "auto");
+                }
+            }
+            if (paragraph.alignment != null) {
+                writeValue(xml, "jc", paragraph.alignment);
+            }
+            xml.writeEndElement();
+        }
+        for (Run run : paragraph.runs) {
+            writeRun(xml, run);
+        }
+        if (paragraph.image != null && body != null) {
+            writeDrawing(xml, paragraph.image, ++body.drawingId);
+        }
+        xml.writeEndElement();
+    }
+
+    private static void writeRun(XMLStreamWriter xml, Run run) throws XMLStreamException {
+        xml.writeStartElement("w", "r", W);
+        if (run.bold || run.italic || run.underline || run.strikethrough || run.color != null || run.fontFamily != null || run.fontSize > 0) {
+            // Elements follow the sequence required by CT_RPr
+            xml.writeStartElement("w", "rPr", W);
+            if (run.fontFamily != null) {
+                xml.writeEmptyElement("w", "rFonts", W);
+                xml.writeAttribute("w", W, "ascii", run.fontFamily);
+                xml.writeAttribute("w", W, "hAnsi", run.fontFamily);
+                xml.writeAttribute("w", W, "cs", run.fontFamily);
+            }
+            if (run.bold) {
+                writeOn(xml, "b");
+            }
+            if (run.italic) {
+                writeOn(xml, "i");
+            }
+            if (run.strikethrough) {
+                writeOn(xml, "strike");
+            }
+            if (run.color != null) {
+                writeValue(xml, "color", run.color);
+            }
+            if (run.fontSize > 0) {
+                writeValue(xml, "sz", String.valueOf(run.fontSize * 2));
+            }
+            if (run.underline) {
+                writeValue(xml, "u", "single");
+            }
+            xml.writeEndElement();
+        }
+        if (run.lineBreak) {
+            xml.writeEmptyElement("w", "br", W);
+        } else {
+            writeText(xml, run.text);
+        }
+        if (run.tab) {
+            xml.writeEmptyElement("w", "tab", W);
+        }
+        xml.writeEndElement();
+    }
+
+    private static void writeText(XMLStreamWriter xml, String text) throws XMLStreamException {
+        xml.writeStartElement("w", "t", W);
+        if (!text.isEmpty() && (Character.isWhitespace(text.charAt(0)) || Character.isWhitespace(text.charAt(text.length() - 1)))) {
+            xml.writeAttribute("xml", XMLConstants.XML_NS_URI, "space", "preserve");
+        }
+        xml.writeCharacters(text);
+        xml.writeEndElement();
+    }
+
+    private static void writeShading(XMLStreamWriter xml, String fill) throws XMLStreamException {
+        xml.writeEmptyElement("w", "shd", W);
+        xml.writeAttribute("w", W, "val", "clear");
+        xml.writeAttribute("w", W, "color", "auto");
+        xml.writeAttribute("w", W, "fill", fill);
+    }
+
+    /**
+     * Writes a switched-on toggle property. The value is written explicitly because some readers,
+     * including POI, treat a toggle without {@code w:val} as off.
+     */
+    private static void writeOn(XMLStreamWriter xml, String element) throws XMLStreamException {
+        writeValue(xml, element, "true");
+    }
+
+    private static void writeValue(XMLStreamWriter xml, String element, String value) throws XMLStreamException {
+        xml.writeEmptyElement("w", element, W);
+        xml.writeAttribute("w", W, "val", value);
+    }
+
+    /**
+     * Writes an inline picture run referencing an image part written in the first pass.
+     */
+    private static void writeDrawing(XMLStreamWriter xml, ImageRef image, int id) throws XMLStreamException {
+        String cx = String.valueOf(image.widthEmu());
+        String cy = String.valueOf(image.heightEmu());
+
+        xml.writeStartElement("w", "r", W);
+        xml.writeStartElement("w", "drawing", W);
+        xml.writeStartElement("wp", "inline", WP);
+        for (String distance : new String[] {"distT", "distB", "distL", "distR"}) {
+            xml.writeAttribute(distance, "0");
+        }
+        xml.writeEmptyElement("wp", "extent", WP);
+        xml.writeAttribute("cx", cx);
+        xml.writeAttribute("cy", cy);
+        xml.writeEmptyElement("wp", "docPr", WP);
+        xml.writeAttribute("id", String.valueOf(id));
+        xml.writeAttribute("name", "Drawing " + id);
+        xml.writeAttribute("descr", image.fileName());
+
+        xml.writeStartElement("a", "graphic", A);
+        xml.writeStartElement("a", "graphicData", A);
+        xml.writeAttribute("uri", PIC);
+        xml.writeStartElement("pic", "pic", PIC);
+
+        xml.writeStartElement("pic", "nvPicPr", PIC);
+        xml.writeEmptyElement("pic", "cNvPr", PIC);
+        xml.writeAttribute("id", "0");
+        xml.writeAttribute("name", image.fileName());
+        xml.writeEmptyElement("pic", "cNvPicPr", PIC);
+        xml.writeEndElement(); // nvPicPr
+
+        xml.writeStartElement("pic", "blipFill", PIC);
+        xml.writeEmptyElement("a", "blip", A);
+        xml.writeAttribute("r", R, "embed", image.relationId());
+        xml.writeStartElement("a", "stretch", A);
+        xml.writeEmptyElement("a", "fillRect", A);
+        xml.writeEndElement(); // stretch
+        xml.writeEndElement(); // blipFill
+
+        xml.writeStartElement("pic", "spPr", PIC);
+        xml.writeStartElement("a", "xfrm", A);
+        xml.writeEmptyElement("a", "off", A);
+        xml.writeAttribute("x", "0");
+        xml.writeAttribute("y", "0");
+        xml.writeEmptyElement("a", "ext", A);
+        xml.writeAttribute("cx", cx);
+        xml.writeAttribute("cy", cy);
+        xml.writeEndElement(); // xfrm
+        xml.writeStartElement("a", "prstGeom", A);
+        xml.writeAttribute("prst", "rect");
+        xml.writeEmptyElement("a", "avLst", A);
+        xml.writeEndElement(); // prstGeom
+        xml.writeEndElement(); // spPr
+
+        xml.writeEndElement(); // pic
+        xml.writeEndElement(); // graphicData
+        xml.writeEndElement(); // graphic
+        xml.writeEndElement(); // inline
+        xml.writeEndElement(); // drawing
+        xml.writeEndElement(); // r
+    }
+}
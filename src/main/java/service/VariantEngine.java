@@ -0,0 +1,320 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.random.RandomGenerator;
+
+import model.Exam;
+import model.Question;
+import model.QuestionVariant;
+import model.VariantPool;
+import utils.Glossary;
+import utils.HtmlRephraser;
+import utils.Rephraser;
+
+/**
+ * Creates reproducible varied versions of an exam: titles are rephrased with the {@link Rephraser},
+ * HTML texts with the {@link HtmlRephraser}, and sub-questions are shuffled (unless one of them starts on a new page).
+ * The terms of the exam's glossary ({@link Exam#getGlossar()}) are never rephrased.
+ * <p>
+ * All randomness is derived from a variant seed, e.g. from the exam and the matriculation number
+ * of a student (see {@link #seedFor(String, String)}). Every question draws from its own
+ * {@link SplittableRandom} whose seed depends only on the variant seed and the question's ID, so
+ * the same seed always gives the same variant, regardless of the order in which questions or
+ * variants are processed, of which other questions are exported, and of the thread doing it.
+ * The engine keeps no state and can be used by many threads at once.
+ * <p>
+ * By default every seed rephrases every question on its own. An exam with a variant count K
+ * ({@link Exam#getVariantCount()}) limits each question to K varied versions instead, those of the
+ * variant seeds 0 to K - 1: the random number generator of the question only draws which of them
+ * the variant gets. The count is saved with the exam and is part of what the seed determines, so
+ * changing it changes the variants of all students.
+ * <p>
+ * Rephrasing is the expensive part. {@link #createPools(Exam)} therefore precomputes the K versions
+ * of every question, which are saved with the exam. A question whose pool matches its current
+ * content takes the drawn version from its pool, so varied exams are assembled without any
+ * rephrasing; other questions rephrase the drawn version as before. Since the pool only holds what
+ * would be rephrased anyway, the same seed gives the same variant with or without a pool.
+ */
+public class VariantEngine {
+
+    /**
+     * Derives the variant seed of a student.
+     * @param examId The ID of the exam, e.g. from {@link #examId(Exam)}.
+     * @param matriculationNumber The matriculation number of the student.
+     * @return The variant seed.
+     */
+    public static long seedFor(String examId, String matriculationNumber) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(examId).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(matriculationNumber).trim().getBytes(StandardCharsets.UTF_8));
+            byte[] hash = digest.digest();
+            long seed = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                seed = (seed << 8) | (hash[i] & 0xFF);
+            }
+            return seed;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Builds the ID of an exam for {@link #seedFor(String, String)} from its title, module and semester,
+     * which identify an exam in ExamBuilder.
+     * @param exam The exam.
+     * @return The exam ID.
+     */
+    public static String examId(Exam exam) {
+        return exam.getTitle() + "|" + exam.getModule() + "|" + exam.getSemester();
+    }
+
+    /**
+     * Creates the varied version of an exam for a variant seed. The given exam is not modified.
+     * @param exam The exam to vary.
+     * @param seed The variant seed.
+     * @return A new {@link model.Exam} with varied copies of the questions, in the original order.
+     */
+    public static Exam createVariant(Exam exam, long seed) {
+        Exam variedExam = new Exam(exam);
+        Glossary glossary = Glossary.of(exam.getGlossar());
+        List<Question> processedQuestions = new ArrayList<>();
+        for (Question originalQuestion : exam.getQuestions()) {
+            processedQuestions.add(createVariant(originalQuestion, seed, glossary, exam.getVariantCount()));
+        }
+        variedExam.setQuestions(processedQuestions);
+        return variedExam;
+    }
+
+    /**
+     * Recursively creates a varied version of a given {@link model.Question}.
+     * This involves rephrasing the question's title and text using the
+     * {@link utils.Rephraser} utility and optionally shuffling its sub-questions.
+     * Sub-questions are shuffled only if none of them are marked to start on a new page.
+     *
+     * @param originalQuestion The {@link model.Question} to create a varied copy of.
+     * @param seed The variant seed.
+     * @return A new {@link model.Question} object representing the varied version.
+     */
+    public static Question createVariant(Question originalQuestion, long seed) {
+        return createVariant(originalQuestion, seed, Glossary.EMPTY, 0);
+    }
+
+    /**
+     * Creates a varied version of a question like {@link #createVariant(Question, long)}, leaving the
+     * terms of a glossary unchanged. With a variant count, the version is drawn from the versions of
+     * the variant seeds 0 to {@code variantCount - 1}, taken from the question's {@link VariantPool}
+     * if it is current.
+     * @param originalQuestion The {@link model.Question} to create a varied copy of.
+     * @param seed The variant seed.
+     * @param glossary The protected terms.
+     * @param variantCount The variant count of the exam, or 0 to rephrase with the variant seed itself.
+     * @return A new {@link model.Question} object representing the varied version.
+     */
+    public static Question createVariant(Question originalQuestion, long seed, Glossary glossary, int variantCount) {
+        QuestionVariant variant;
+        if (variantCount > 0) {
+            SplittableRandom random = new SplittableRandom(questionSeed(seed, originalQuestion.getId()));
+            int drawnSeed = random.nextInt(variantCount);
+            variant = pooledVariant(originalQuestion, drawnSeed, glossary);
+            if (variant == null) {
+                variant = rephrase(originalQuestion, drawnSeed, glossary);
+            }
+        } else {
+            variant = rephrase(originalQuestion, seed, glossary);
+        }
+
+        Question copiedQuestion = new Question(originalQuestion);
+        copiedQuestion.setVariantPool(null); // A variant is handed out as it is and never varied again
+        copiedQuestion.setTitle(variant.getTitle());
+        copiedQuestion.setText(variant.getText());
+
+        if (originalQuestion.getSubQuestions() != null && !originalQuestion.getSubQuestions().isEmpty()) {
+            List<Question> processedSubQuestions = new ArrayList<>();
+            for (Question originalSubQuestion : originalQuestion.getSubQuestions()) {
+                processedSubQuestions.add(createVariant(originalSubQuestion, seed, glossary, variantCount));
+            }
+            if (!variant.getSubQuestionOrder().isEmpty()) {
+                List<Question> orderedSubQuestions = new ArrayList<>();
+                for (int index : variant.getSubQuestionOrder()) {
+                    orderedSubQuestions.add(processedSubQuestions.get(index));
+                }
+                processedSubQuestions = orderedSubQuestions;
+            }
+            copiedQuestion.setSubQuestions(processedSubQuestions);
+        }
+        return copiedQuestion;
+    }
+
+    /**
+     * Rephrases the title and text of a single question (ignoring code blocks in the text) and
+     * shuffles the order of its sub-questions, unless one of them starts on a new page. The
+     * sub-questions themselves are not varied.
+     * @param question The question.
+     * @param seed The variant seed.
+     * @param glossary The protected terms.
+     * @return The varied version.
+     */
+    static QuestionVariant rephrase(Question question, long seed, Glossary glossary) {
+        SplittableRandom random = new SplittableRandom(questionSeed(seed, question.getId()));
+        String title = Rephraser.rephrase(question.getTitle(), random, glossary);
+        String text = HtmlRephraser.rephrase(question.getText(), random, glossary);
+        List<Integer> subQuestionOrder = new ArrayList<>();
+        List<Question> subQuestions = question.getSubQuestions();
+        if (subQuestions != null && !subQuestions.isEmpty()
+                && subQuestions.stream().noneMatch(Question::isStartOnNewPage)) {
+            for (int i = 0; i < subQuestions.size(); i++) {
+                subQuestionOrder.add(i);
+            }
+            shuffle(subQuestionOrder, random);
+        }
+        return new QuestionVariant(seed, title, text, subQuestionOrder);
+    }
+
+    /**
+     * @return The version of a variant seed from the current pool of a question, or {@code null}
+     *         if the pool is missing, stale or does not reach that far.
+     */
+    private static QuestionVariant pooledVariant(Question question, int seed, Glossary glossary) {
+        if (!isPoolCurrent(question, glossary)) {
+            return null;
+        }
+        List<QuestionVariant> pooledVariants = question.getVariantPool().getVariants();
+        QuestionVariant variant = seed < pooledVariants.size() ? pooledVariants.get(seed) : null;
+        return variant != null && variant.getSeed() == seed ? variant : null;
+    }
+
+    /**
+     * Precomputes a {@link VariantPool} for every question and sub-question of an exam: the
+     * versions of the variant seeds 0 to {@link Exam#getVariantCount()} - 1. The pools are
+     * generated in parallel and returned rather than stored, so the exam can be edited meanwhile;
+     * {@link #applyPools(Exam, Map)} stores those that still match.
+     * @param exam The exam; it is only read.
+     * @return The pools by question ID.
+     * @throws IllegalArgumentException if the exam has no variant count.
+     */
+    public static Map<UUID, VariantPool> createPools(Exam exam) {
+        int size = exam.getVariantCount();
+        if (size < 1) {
+            throw new IllegalArgumentException("The exam has no variant count");
+        }
+        Glossary glossary = Glossary.of(exam.getGlossar());
+        List<Question> questions = new ArrayList<>();
+        collectQuestions(exam.getQuestions(), questions);
+        Map<UUID, VariantPool> pools = new ConcurrentHashMap<>();
+        questions.parallelStream().forEach(question -> {
+            List<QuestionVariant> variants = new ArrayList<>(size);
+            for (int seed = 0; seed < size; seed++) {
+                variants.add(rephrase(question, seed, glossary));
+            }
+            pools.put(question.getId(), new VariantPool(fingerprint(question, glossary), variants));
+        });
+        return pools;
+    }
+
+    /**
+     * Stores pools created by {@link #createPools(Exam)} in the questions of an exam. Pools of
+     * questions that have been changed or removed since are skipped.
+     * @param exam The exam.
+     * @param pools The pools by question ID.
+     * @return The number of questions whose pool was stored.
+     */
+    public static int applyPools(Exam exam, Map<UUID, VariantPool> pools) {
+        Glossary glossary = Glossary.of(exam.getGlossar());
+        List<Question> questions = new ArrayList<>();
+        collectQuestions(exam.getQuestions(), questions);
+        int applied = 0;
+        for (Question question : questions) {
+            VariantPool pool = pools.get(question.getId());
+            if (pool != null && pool.getFingerprint().equals(fingerprint(question, glossary))) {
+                question.setVariantPool(pool);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * @param question A question.
+     * @param glossary The protected terms of its exam.
+     * @return {@code true} if the question has a non-empty pool generated from its current content.
+     */
+    static boolean isPoolCurrent(Question question, Glossary glossary) {
+        VariantPool pool = question.getVariantPool();
+        return pool != null && !pool.getVariants().isEmpty()
+                && fingerprint(question, glossary).equals(pool.getFingerprint());
+    }
+
+    /**
+     * Hashes everything a pooled version depends on: title, text, the sub-questions and their page
+     * breaks, and the glossary.
+     */
+    static String fingerprint(Question question, Glossary glossary) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(question.getTitle()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(question.getText()).getBytes(StandardCharsets.UTF_8));
+            if (question.getSubQuestions() != null) {
+                for (Question subQuestion : question.getSubQuestions()) {
+                    digest.update((byte) 0);
+                    digest.update((subQuestion.getId() + (subQuestion.isStartOnNewPage() ? "|p" : "")).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            for (String term : glossary.getTerms()) {
+                digest.update((byte) 1);
+                digest.update(term.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void collectQuestions(List<Question> questions, List<Question> result) {
+        if (questions == null) {
+            return;
+        }
+        for (Question question : questions) {
+            result.add(question);
+            collectQuestions(question.getSubQuestions(), result);
+        }
+    }
+
+    /**
+     * Shuffles a list in place with the Fisher-Yates algorithm, like {@link java.util.Collections#shuffle(List, java.util.Random)}.
+     */
+    static <T> void shuffle(List<T> list, RandomGenerator random) {
+        for (int i = list.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            T swapped = list.get(i);
+            list.set(i, list.get(j));
+            list.set(j, swapped);
+        }
+    }
+
+    /**
+     * Derives the seed of a question's substream from the variant seed and the question ID.
+     * The mixing function is the finalizer of SplitMix64, so similar inputs give unrelated streams.
+     */
+    static long questionSeed(long seed, UUID questionId) {
+        long id = questionId != null ? mix(questionId.getMostSignificantBits()) ^ questionId.getLeastSignificantBits() : 0;
+        return mix(seed ^ mix(id));
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
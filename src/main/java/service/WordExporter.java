@@ -1,16 +1,14 @@
 package service;
 
-import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
-import javax.imageio.ImageIO;
-
-import org.apache.commons.codec.binary.Base64;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.util.Units;
 import org.apache.poi.wp.usermodel.HeaderFooterType;
@@ -23,17 +21,13 @@ import org.apache.poi.xwpf.usermodel.XWPFRun;
 import org.apache.poi.xwpf.usermodel.XWPFTable;
 import org.apache.poi.xwpf.usermodel.XWPFTableCell;
 import org.apache.poi.xwpf.usermodel.XWPFTableRow;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.nodes.Node;
-import org.jsoup.nodes.TextNode;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.STFldCharType;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.STShd;
 import org.openxmlformats.schemas.wordprocessingml.x2006.main.STVerticalJc;
 
 import model.Exam;
 import model.Question;
+import utils.ImageInfo;
 
 /**
  * Service class responsible for exporting an {@link model.Exam} object
@@ -41,9 +35,40 @@ import model.Question;
  * It handles the generation of exam papers, answer keys, and various
  * formatting requirements including HTML content conversion, image embedding,
  * and specific handling for different question types (MCQ, fill-in-the-blank, true/false).
+ * The questions are rendered from their compiled {@link QuestionLayout} (see {@link LayoutCompiler}).
  */
 public class WordExporter {
 
+    /**
+     * Version of the rendering logic. It is part of every {@link QuestionRenderCache} key,
+     * so it must be increased whenever a change to this class alters the generated document.
+     */
+    public static final int EXPORTER_VERSION = 4;
+
+    private static final QuestionRenderCache renderCache = QuestionRenderCache.createDefault();
+
+    /** Exams with at least this many top-level questions are rendered in parallel by default. */
+    public static final int PARALLEL_MIN_QUESTIONS = 50;
+
+    /**
+     * Parallel rendering does about three times the work of a sequential export (every question is
+     * rendered into a scratch document and its XML parsed again when it is appended), so it only
+     * pays off with at least this many processors.
+     */
+    public static final int PARALLEL_MIN_PROCESSORS = 4;
+
+    /**
+     * Lazily created pool for parallel question rendering, sized to the number of available processors.
+     */
+    private static final class RenderPool {
+        private static final ForkJoinPool INSTANCE = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * A document being exported together with its output mode.
+     */
+    private record Target(XWPFDocument document, boolean withSolutions) {}
+
     private static final String STANDARD_HINWEISE = "\nHinweise:\n" +
             "\u2022 Erg\u00e4nzen Sie bitte auf diesem Deckblatt die untenstehenden Angaben und unterschreiben Sie. Der Klausurbogen enth\u00e4lt ein Zusatzblatt; weitere erhalten Sie bei Bedarf von der Aufsicht. Tragen Sie auf allen Zusatzbl\u00e4ttern sofort Ihren Nachnamen, Matrikelnummer und die Aufgabenummer ein.\n" +
             "\u2022 Verwenden Sie einen dokumentenechten Schreibstift (d. h. kein Bleistift). Verwenden Sie keinen Stift mit roter oder gr\u00fcner Farbe.\n" +
@@ -61,25 +86,120 @@ public class WordExporter {
         return STANDARD_HINWEISE;
     }
 
+    /**
+     * Provides the cache of rendered question fragments shared by all exports.
+     * @return The {@link QuestionRenderCache} used by this exporter.
+     */
+    public static QuestionRenderCache getRenderCache() {
+        return renderCache;
+    }
+
+    /**
+     * Decides whether an exam is rendered in parallel by default. Rendering in parallel means that
+     * every top-level question is rendered into its own detached fragment on a {@link ForkJoinPool},
+     * and the fragments are assembled in exam order afterwards. The resulting document is identical
+     * to a sequential export, but the detour only pays off for large exams on enough processors.
+     * @param exam The exam to export.
+     * @return {@code true} if the exam has at least {@value #PARALLEL_MIN_QUESTIONS} top-level questions
+     *         and at least {@value #PARALLEL_MIN_PROCESSORS} processors are available.
+     */
+    public static boolean shouldRenderInParallel(Exam exam) {
+        return exam.getQuestions().size() >= PARALLEL_MIN_QUESTIONS
+                && Runtime.getRuntime().availableProcessors() >= PARALLEL_MIN_PROCESSORS;
+    }
+
     /**
      * Exports the given {@link model.Exam} object to a Microsoft Word (.docx) document.
      * This method generates the exam paper without including the solutions.
+     * Large exams are rendered in parallel (see {@link #shouldRenderInParallel(Exam)}).
      * @param exam The {@link model.Exam} object to export.
      * @param filePath The full path where the .docx file will be saved.
      */
     public static void export(Exam exam, String filePath) throws IOException {
-        exportDoc(exam, filePath, false);
+        export(exam, filePath, shouldRenderInParallel(exam));
+    }
+
+    /**
+     * Exports the given {@link model.Exam} object to a Microsoft Word (.docx) document without the solutions.
+     * @param exam The {@link model.Exam} object to export.
+     * @param filePath The full path where the .docx file will be saved.
+     * @param parallel {@code true} to render the top-level questions in parallel (see {@link #shouldRenderInParallel(Exam)}).
+     * @throws IOException if an I/O error occurs during the file writing process.
+     */
+    public static void export(Exam exam, String filePath, boolean parallel) throws IOException {
+        exportDoc(exam, filePath, false, parallel);
     }
 
     /**
      * Exports the given {@link model.Exam} object to a Microsoft Word (.docx) document,
      * including the solutions for each question.
+     * Large exams are rendered in parallel (see {@link #shouldRenderInParallel(Exam)}).
      * @param exam The {@link model.Exam} object to export.
      * @param filePath The full path where the .docx file will be saved.
      * @throws IOException if an I/O error occurs during the file writing process.
      */
     public static void exportWithSolutions(Exam exam, String filePath) throws IOException {
-        exportDoc(exam, filePath, true);
+        exportWithSolutions(exam, filePath, shouldRenderInParallel(exam));
+    }
+
+    /**
+     * Exports the given {@link model.Exam} object to a Microsoft Word (.docx) document including the solutions.
+     * @param exam The {@link model.Exam} object to export.
+     * @param filePath The full path where the .docx file will be saved.
+     * @param parallel {@code true} to render the top-level questions in parallel (see {@link #shouldRenderInParallel(Exam)}).
+     * @throws IOException if an I/O error occurs during the file writing process.
+     */
+    public static void exportWithSolutions(Exam exam, String filePath, boolean parallel) throws IOException {
+        exportDoc(exam, filePath, true, parallel);
+    }
+
+    /**
+     * Exports the student exam and the answer key in one pass over the {@link model.Exam}.
+     * Both documents are built side by side: the cover page is built once and copied,
+     * and every question is compiled and its images decoded only once for both documents.
+     * Only the parts that depend on {@code withSolutions} are rendered separately.
+     * Large exams are rendered in parallel (see {@link #shouldRenderInParallel(Exam)}).
+     * @param exam The {@link model.Exam} object to export.
+     * @param studentFilePath The full path of the exam without solutions.
+     * @param answerKeyFilePath The full path of the exam with solutions.
+     * @throws IOException if an I/O error occurs during the file writing process.
+     */
+    public static void exportBoth(Exam exam, String studentFilePath, String answerKeyFilePath) throws IOException {
+        exportBoth(exam, studentFilePath, answerKeyFilePath, shouldRenderInParallel(exam));
+    }
+
+    /**
+     * Exports the student exam and the answer key in one pass like {@link #exportBoth(Exam, String, String)}.
+     * @param exam The {@link model.Exam} object to export.
+     * @param studentFilePath The full path of the exam without solutions.
+     * @param answerKeyFilePath The full path of the exam with solutions.
+     * @param parallel {@code true} to render the top-level questions in parallel (see {@link #shouldRenderInParallel(Exam)}).
+     * @throws IOException if an I/O error occurs during the file writing process.
+     */
+    public static void exportBoth(Exam exam, String studentFilePath, String answerKeyFilePath, boolean parallel) throws IOException {
+        try (XWPFDocument student = createDocument();
+             XWPFDocument answerKey = createDocument()) {
+            createCoverPage(student, exam);
+            // The cover page does not depend on the solutions, so the answer key gets a copy.
+            RenderedFragment coverPage = RenderedFragment.capture(student, 0);
+            if (coverPage == null || !coverPage.appendTo(answerKey)) {
+                createCoverPage(answerKey, exam);
+            }
+            student.createParagraph().setPageBreak(true);
+            answerKey.createParagraph().setPageBreak(true);
+
+            createQuestionsPage(exam, List.of(new Target(student, false), new Target(answerKey, true)), parallel);
+            createPageNumbering(student);
+            createPageNumbering(answerKey);
+
+            try (FileOutputStream out = new FileOutputStream(studentFilePath)) {
+                student.write(out);
+            }
+            try (FileOutputStream out = new FileOutputStream(answerKeyFilePath)) {
+                answerKey.write(out);
+            }
+            System.out.println("Export erfolgreich!");
+        }
     }
 
     /**
@@ -89,23 +209,11 @@ public class WordExporter {
      * @param exam The {@link model.Exam} object containing all exam data.
      * @param filePath The destination path for the generated .docx file.
      * @param withSolutions {@code true} to include solutions in the document, {@code false} otherwise.
+     * @param parallel {@code true} to render the top-level questions in parallel.
      * @throws IOException if an I/O error occurs during the file writing process.
      */
-    private static void exportDoc(Exam exam, String filePath, boolean withSolutions) throws IOException {
-        try (XWPFDocument document = new XWPFDocument()) {
-            document.getDocument().getBody().addNewSectPr().addNewTitlePg();
-            
-            // Create a blank header for the first page
-            document.createHeader(HeaderFooterType.FIRST);
-
-            // Create the default header for all other pages
-            createDefaultHeader(document);
-
-            createCoverPage(document, exam);
-            document.createParagraph().setPageBreak(true);
-            createQuestionsPage(document, exam, withSolutions);
-            createPageNumbering(document);
-
+    private static void exportDoc(Exam exam, String filePath, boolean withSolutions, boolean parallel) throws IOException {
+        try (XWPFDocument document = buildDocument(exam, withSolutions, parallel)) {
             try (FileOutputStream out = new FileOutputStream(filePath)) {
                 document.write(out);
             }
@@ -113,6 +221,56 @@ public class WordExporter {
         }
     }
 
+    /**
+     * Builds the complete document of an exam in memory.
+     * @param exam The {@link model.Exam} object containing all exam data.
+     * @param withSolutions {@code true} to include solutions in the document, {@code false} otherwise.
+     * @param parallel {@code true} to render the top-level questions in parallel.
+     * @return The document; the caller closes it.
+     */
+    private static XWPFDocument buildDocument(Exam exam, boolean withSolutions, boolean parallel) {
+        XWPFDocument document = createDocument();
+        createCoverPage(document, exam);
+        document.createParagraph().setPageBreak(true);
+        createQuestionsPage(exam, List.of(new Target(document, withSolutions)), parallel);
+        createPageNumbering(document);
+        return document;
+    }
+
+    /**
+     * Exports a small sample exam with solutions into memory, so that the classes of POI and XMLBeans
+     * are loaded and the export code is compiled before the first real export. Meant for a background
+     * thread at startup. The sample question is rendered like any other, so its fragment ends up in
+     * the render cache.
+     * @throws IOException if the sample cannot be written.
+     */
+    public static void warmUp() throws IOException {
+        Exam sample = new Exam("Probeklausur", "ExamBuilder", "Modul", "Semester", "Fachbereich", "Hochschule", "Keine");
+        Question question = new Question("Aufgabe", "<p>Ein <b>kurzer</b> Text mit <i>Formatierung</i>.</p><ul><li>Punkt</li></ul>", 5, "Offene Frage", 2);
+        question.setMusterloesung("Lösung");
+        sample.addQuestion(question);
+        try (XWPFDocument document = buildDocument(sample, true, false)) {
+            document.write(OutputStream.nullOutputStream());
+        }
+    }
+
+    /**
+     * Creates an empty document with a title page section, a blank first-page header
+     * and the default header for all other pages.
+     * @return The new document.
+     */
+    private static XWPFDocument createDocument() {
+        XWPFDocument document = new XWPFDocument();
+        document.getDocument().getBody().addNewSectPr().addNewTitlePg();
+
+        // Create a blank header for the first page
+        document.createHeader(HeaderFooterType.FIRST);
+
+        // Create the default header for all other pages
+        createDefaultHeader(document);
+        return document;
+    }
+
     /**
      * Creates a default header for all pages in the Word document, except the first page.
      * The header includes placeholders for student's matriculation number and name.
@@ -341,74 +499,140 @@ public class WordExporter {
     }
 
     /**
-     * Iterates through the main questions of an {@link model.Exam} and writes each to the document.
+     * Iterates through the main questions of an {@link model.Exam} and writes each to the target documents.
      * This method implements the logic for default page breaks: each main question
      * (except the first) starts on a new page. An additional page break is inserted
      * if the question's {@code startOnNewPage} property is true, effectively creating a blank page.
-     * @param document The {@link org.apache.poi.xwpf.usermodel.XWPFDocument} to which questions are added.
+     * Questions that were rendered before with identical content, number and mode are
+     * taken from the {@link QuestionRenderCache} instead of being rendered again.
+     * In parallel mode (see {@link #shouldRenderInParallel(Exam)}) all questions are rendered
+     * concurrently while this method appends the finished fragments in order.
+     * <p>
+     * All targets are written in lockstep, one main question at a time, so that the compiled layout and
+     * the decoded images of a question are shared by all targets.
      * @param exam The {@link model.Exam} object containing the questions.
-     * @param withSolutions {@code true} to include solutions for questions, {@code false} otherwise.
+     * @param targets The documents to write to, each with its own {@code withSolutions} mode.
+     * @param parallel {@code true} to render the questions on the {@link RenderPool}.
      */
-    private static void createQuestionsPage(XWPFDocument document, Exam exam, boolean withSolutions) {
+    private static void createQuestionsPage(Exam exam, List<Target> targets, boolean parallel) {
+        List<ForkJoinTask<RenderedFragment[]>> detachedFragments = parallel ? renderDetached(exam.getQuestions(), targets) : null;
+        RenderContext context = new RenderContext();
+
         for (int i = 0; i < exam.getQuestions().size(); i++) {
             Question q = exam.getQuestions().get(i);
+            String questionNumber = String.valueOf(i + 1);
+            RenderedFragment[] detached = detachedFragments != null ? detachedFragments.get(i).join() : null;
 
-            // Default behavior: Each main question starts on a new page.
-            // A page break is added BEFORE the question, but not for the very first one (i=0)
-            // as it already follows the cover page's page break.
-            if (i > 0) {
-                document.createParagraph().setPageBreak(true);
-            }
+            for (int t = 0; t < targets.size(); t++) {
+                XWPFDocument document = targets.get(t).document();
+                boolean withSolutions = targets.get(t).withSolutions();
 
-            // "Neue Seite" checkbox logic: If checked, add an EXTRA page break to create a blank page.
-            if (q.isStartOnNewPage()) {
-                document.createParagraph().setPageBreak(true);
+                // Default behavior: Each main question starts on a new page.
+                // A page break is added BEFORE the question, but not for the very first one (i=0)
+                // as it already follows the cover page's page break.
+                if (i > 0) {
+                    document.createParagraph().setPageBreak(true);
+                }
+
+                // "Neue Seite" checkbox logic: If checked, add an EXTRA page break to create a blank page.
+                if (q.isStartOnNewPage()) {
+                    document.createParagraph().setPageBreak(true);
+                }
+
+                if (detached != null) {
+                    if (detached[t] != null && detached[t].appendTo(document)) {
+                        continue;
+                    }
+                    // Fragments that cannot be replayed are rendered directly into the document.
+                    writeQuestion(document, LayoutCompiler.compile(q, questionNumber), withSolutions, context);
+                    continue;
+                }
+
+                String cacheKey = QuestionRenderCache.keyFor(q, questionNumber, withSolutions);
+                RenderedFragment cached = renderCache.get(cacheKey);
+                if (cached != null && cached.appendTo(document)) {
+                    continue;
+                }
+
+                int firstElement = document.getBodyElements().size();
+                writeQuestion(document, LayoutCompiler.compile(q, questionNumber), withSolutions, context);
+                RenderedFragment rendered = RenderedFragment.capture(document, firstElement);
+                if (rendered != null) {
+                    renderCache.put(cacheKey, rendered);
+                }
             }
+            context.clear();
+        }
+    }
 
-            writeQuestion(document, q, String.valueOf(i + 1), withSolutions, false);
+    /**
+     * Submits every top-level question for rendering on the {@link RenderPool}.
+     * @param questions The top-level questions in exam order.
+     * @param targets The target documents; each task renders one fragment per target mode.
+     * @return One task per question, in the same order. A task yields one fragment per target,
+     *         {@code null} for a fragment that cannot be replayed.
+     */
+    private static List<ForkJoinTask<RenderedFragment[]>> renderDetached(List<Question> questions, List<Target> targets) {
+        boolean[] modes = new boolean[targets.size()];
+        for (int t = 0; t < modes.length; t++) {
+            modes[t] = targets.get(t).withSolutions();
+        }
+        List<ForkJoinTask<RenderedFragment[]>> tasks = new ArrayList<>(questions.size());
+        for (int i = 0; i < questions.size(); i++) {
+            Question question = questions.get(i);
+            String questionNumber = String.valueOf(i + 1);
+            tasks.add(RenderPool.INSTANCE.submit(() -> {
+                RenderContext context = new RenderContext();
+                RenderedFragment[] fragments = new RenderedFragment[modes.length];
+                for (int t = 0; t < modes.length; t++) {
+                    fragments[t] = renderDetachedQuestion(question, questionNumber, modes[t], context);
+                }
+                return fragments;
+            }));
         }
+        return tasks;
     }
 
     /**
-     * Writes a single {@link model.Question} (and recursively its sub-questions) to the Word document.
-     * This method formats the question title, includes points, embeds images,
-     * converts HTML content to Word formatting, and applies specific logic
-     * for different question types (MCQ, Lückentext, Richtig/Falsch).
-     * It also manages answer areas and page breaks for sub-questions.
-     *
-     * @param document The {@link org.apache.poi.xwpf.usermodel.XWPFDocument} to which the question is added.
-     * @param question The {@link model.Question} object to write.
-     * @param questionNumber The formatted number of the question (e.g., "1", "1.a").
+     * Renders a single top-level question into a scratch document and captures it as a fragment.
+     * Cached fragments are returned without rendering.
+     * @param question The question to render.
+     * @param questionNumber The number of the question in the exam.
      * @param withSolutions {@code true} to include solutions, {@code false} otherwise.
-     * @param isSubQuestion {@code true} if the current question is a sub-question, {@code false} otherwise.
+     * @param context The context shared by the renderings of this question.
+     * @return The rendered fragment, or {@code null} if it cannot be replayed into another document.
+     * @throws IOException if the scratch document cannot be closed.
      */
-    private static void writeQuestion(XWPFDocument document, Question question, String questionNumber, boolean withSolutions, boolean isSubQuestion) {
-        // Prepare title components
-        String titlePrefix;
-        if (questionNumber.contains(".")) {
-            titlePrefix = questionNumber.substring(questionNumber.lastIndexOf('.') + 1) + ". ";
-        } else {
-            titlePrefix = questionNumber + ". ";
+    private static RenderedFragment renderDetachedQuestion(Question question, String questionNumber, boolean withSolutions, RenderContext context) throws IOException {
+        String cacheKey = QuestionRenderCache.keyFor(question, questionNumber, withSolutions);
+        RenderedFragment cached = renderCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
         }
-
-        String titleText = question.getTitle() != null && !question.getTitle().isEmpty() ? question.getTitle() + " " : "";
-        
-        String pointsText;
-        if (questionNumber.contains(".")) {
-            pointsText = "(" + question.getPoints() + " Punkte)";
-        } else {
-            if (question.getSubQuestions() != null && !question.getSubQuestions().isEmpty()) {
-                String pointsDetail = question.getSubQuestions().stream()
-                        .map(q -> String.valueOf(q.getPoints()))
-                        .collect(Collectors.joining(" + "));
-                pointsText = "(" + pointsDetail + " = " + question.getPoints() + " Punkte)";
-            } else {
-                pointsText = "(" + question.getPoints() + " Punkte)";
+        try (XWPFDocument scratch = new XWPFDocument()) {
+            writeQuestion(scratch, LayoutCompiler.compile(question, questionNumber), withSolutions, context);
+            RenderedFragment fragment = RenderedFragment.capture(scratch, 0);
+            if (fragment != null) {
+                renderCache.put(cacheKey, fragment);
             }
+            return fragment;
         }
+    }
 
+    /**
+     * Writes the layout of a {@link model.Question} (and recursively its sub-questions) to the Word document.
+     * This method formats the question title with its points, embeds images, writes the compiled
+     * question text and either the solution or the answer area, depending on {@code withSolutions}.
+     * It also manages the page breaks for sub-questions.
+     *
+     * @param document The {@link org.apache.poi.xwpf.usermodel.XWPFDocument} to which the question is added.
+     * @param question The compiled {@link QuestionLayout} of the question to write.
+     * @param withSolutions {@code true} to include solutions, {@code false} otherwise.
+     * @param context The context providing decoded images.
+     */
+    private static void writeQuestion(XWPFDocument document, QuestionLayout question, boolean withSolutions, RenderContext context) {
         // Decide if we need a table for Richtig/Falsch questions or a simple paragraph for others
-        if ("Richtig/Falsch".equals(question.getType())) {
+        if (question.kind() == QuestionLayout.Kind.RICHTIG_FALSCH) {
             XWPFTable questionTitleTable = document.createTable(1, 3);
             questionTitleTable.setWidth("100%");
             questionTitleTable.getCTTbl().getTblPr().unsetTblBorders(); // No borders for a clean look
@@ -419,38 +643,37 @@ public class WordExporter {
             XWPFTableCell statementCell = row.getCell(0);
             setCellAlignment(statementCell, ParagraphAlignment.LEFT, STVerticalJc.CENTER);
             XWPFRun statementRun = statementCell.getParagraphs().get(0).createRun();
-            statementRun.setText(titlePrefix + titleText);
+            statementRun.setText(question.heading());
             statementRun.setBold(true);
 
             // Cell 2: Points (Right Aligned, but in middle column for spacing)
             XWPFTableCell pointsCell = row.getCell(1);
             setCellAlignment(pointsCell, ParagraphAlignment.RIGHT, STVerticalJc.CENTER);
             XWPFRun pointsRun = pointsCell.getParagraphs().get(0).createRun();
-            pointsRun.setText(pointsText);
+            pointsRun.setText(question.points());
             pointsRun.setBold(true);
 
             // Cell 3: Checkboxes (Right Aligned), only if no sub-questions
             XWPFTableCell checkboxesCell = row.getCell(2);
             setCellAlignment(checkboxesCell, ParagraphAlignment.RIGHT, STVerticalJc.CENTER);
-            
+
             // Only add checkboxes if the question has no sub-questions
-            if (question.getSubQuestions() == null || question.getSubQuestions().isEmpty()) {
-                String musterloesung = question.getMusterloesung();
-                boolean isRichtigCorrect = withSolutions && "Richtig".equalsIgnoreCase(musterloesung);
-                boolean isFalschCorrect = withSolutions && "Falsch".equalsIgnoreCase(musterloesung);
+            if (!question.hasSubQuestions()) {
+                boolean isRichtigCorrect = withSolutions && "Richtig".equals(question.correctStatement());
+                boolean isFalschCorrect = withSolutions && "Falsch".equals(question.correctStatement());
 
                 XWPFRun richtigRun = checkboxesCell.getParagraphs().get(0).createRun();
                 richtigRun.setText((isRichtigCorrect ? "☑" : "☐") + " Richtig");
-                richtigRun.addTab(); 
+                richtigRun.addTab();
                 XWPFRun falschRun = checkboxesCell.getParagraphs().get(0).createRun();
                 falschRun.setText((isFalschCorrect ? "☑" : "☐") + " Falsch");
             }
-            // For Richtig/Falsch questions, no further HTML content or answer area for the main question.
+            // For Richtig/Falsch questions, no further content or answer area for the main question.
             // Sub-questions will be handled recursively.
 
-        } else { // Original logic for all other question types
+        } else {
             XWPFParagraph questionTitle = document.createParagraph();
-            if (question.isJustify()) {
+            if (question.justify()) {
                 questionTitle.setAlignment(ParagraphAlignment.BOTH);
             }
             // Fix for NullPointerException: Ensure the paragraph properties object exists.
@@ -460,385 +683,209 @@ public class WordExporter {
             questionTitle.getCTP().getPPr().addNewKeepLines().setVal(true); // Prevents the title itself from splitting
             questionTitle.setKeepNext(true);  // Keeps the title with the next paragraph
             XWPFRun questionTitleRun = questionTitle.createRun();
-            
-            questionTitleRun.setText(titlePrefix + titleText + pointsText);
+
+            questionTitleRun.setText(question.heading() + question.points());
             questionTitleRun.setBold(true);
 
             // Reduce space after the question title for MCQ type questions
-            if ("MCQ".equals(question.getType())) {
+            if (question.kind() == QuestionLayout.Kind.MCQ) {
                 questionTitle.setSpacingAfter(0);
             }
 
-            // Handle question image
-            if (question.getImageBase64() != null && !question.getImageBase64().isEmpty()) {
-                try {
-                    byte[] imageBytes = Base64.decodeBase64(question.getImageBase64());
-                    XWPFParagraph imageParagraph = document.createParagraph();
-                    addScaledPicture(imageParagraph, imageBytes, XWPFDocument.PICTURE_TYPE_PNG, "question_image.png");
-                } catch (IOException | InvalidFormatException e) {
-                    e.printStackTrace();
-                }
-            }
-
-            List<String> correctOptions = null;
-            if (withSolutions && "MCQ".equals(question.getType()) && question.getMusterloesung() != null && !question.getMusterloesung().isEmpty()) {
-                correctOptions = Arrays.stream(question.getMusterloesung().toUpperCase().split("[,\\s]+"))
-                                     .map(String::trim)
-                                     .filter(s -> !s.isEmpty())
-                                     .collect(Collectors.toList());
+            if (question.image() != null) {
+                addPicture(document, question.image(), context);
             }
 
-            if ("Lückentext".equals(question.getType()) && withSolutions) {
-                handleLueckentextSolution(document, question);
-            } else if (question.getText() != null && !question.getText().isEmpty()) {
-                appendHtml(document, question, withSolutions, correctOptions, null);
+            // A Lückentext without solution shows its blanks in the answer key, followed by an error message.
+            boolean fillBlanks = withSolutions && !question.missingBlankSolutions();
+            appendContent(document, question.content(), withSolutions, fillBlanks);
+            if (question.kind() == QuestionLayout.Kind.LUECKENTEXT && withSolutions && question.missingBlankSolutions()) {
+                XWPFParagraph p = document.createParagraph();
+                XWPFRun run = p.createRun();
+                run.setText("FEHLER: Für diesen Lückentext wurde keine Musterlösung angegeben.");
+                run.setColor("FF0000");
+                run.setItalic(true);
             }
-        } // End of else block for non-"Richtig/Falsch" questions
-
+        }
 
         // This is the common spacing after MCQs and Richtig/Falsch questions without sub-questions.
-        // It needs to be placed outside the if/else that defines the question content itself.
-        if ("MCQ".equals(question.getType()) || ("Richtig/Falsch".equals(question.getType()) && (question.getSubQuestions() == null || question.getSubQuestions().isEmpty()))) {
+        if (question.kind() == QuestionLayout.Kind.MCQ || (question.kind() == QuestionLayout.Kind.RICHTIG_FALSCH && !question.hasSubQuestions())) {
             XWPFParagraph spacingParagraph = document.createParagraph();
             spacingParagraph.setSpacingAfter(0); // Standard line space
         }
 
-        // Common logic for solution display or answer area
-        // This block needs to be outside the if/else for Richtig/Falsch, but ensure it's
-        // only for questions that actually need it.
-        if (!"Richtig/Falsch".equals(question.getType()) || (question.getSubQuestions() != null && !question.getSubQuestions().isEmpty())) {
-            if (withSolutions) {
-                // For non-MCQ and non-Lückentext questions, print the musterloesung text field.
-                if (!"MCQ".equals(question.getType()) && !"Lückentext".equals(question.getType()) && question.getMusterloesung() != null && !question.getMusterloesung().isEmpty()) {
-                    XWPFParagraph solutionParagraph = document.createParagraph();
-                    XWPFRun solutionRun = solutionParagraph.createRun();
-                    solutionRun.setText("\nLösung: " + question.getMusterloesung());
-                    solutionRun.setColor("0000FF"); // Blue color for the solution
-                    solutionRun.setItalic(true);
-                }
-
-                // Handle solution image
-                if (withSolutions && question.getMusterloesungImageBase64() != null && !question.getMusterloesungImageBase64().isEmpty()) {
-                    try {
-                        byte[] imageBytes = Base64.decodeBase64(question.getMusterloesungImageBase64());
-                        XWPFParagraph imageParagraph = document.createParagraph();
-                        addScaledPicture(imageParagraph, imageBytes, XWPFDocument.PICTURE_TYPE_PNG, "solution_image.png");
-                    } catch (IOException | InvalidFormatException e) {
-                        e.printStackTrace();
-                    }
-                }
-            } else {
-                // Logic for creating the answer area
-                if (!"MCQ".equals(question.getType()) && !"Lückentext".equals(question.getType()) && question.getAnswerLines() > 0) {
-                    XWPFTable answerTable = document.createTable(question.getAnswerLines(), 1);
-                    answerTable.setWidth("100%");
-
-                    if (question.isLargeAnswerBox()) {
-                        // For a large answer box, remove the inner horizontal lines
-                        answerTable.setInsideHBorder(XWPFTable.XWPFBorderType.NONE, 0, 0, "FFFFFF");
-                    }
-
-                    // Create the rows and cells as before; the number of lines still determines the height
-                    for (int i = 0; i < question.getAnswerLines(); i++) {
-                        XWPFTableRow row = answerTable.getRow(i);
-                        XWPFTableCell cell = row.getCell(0);
-                        setCellAlignment(cell, ParagraphAlignment.CENTER, STVerticalJc.CENTER);
-                        // Add a paragraph with a single space to ensure cell height is respected
-                        cell.setText(" ");
-                    }
-                }
+        // The layout only contains a solution and answer area for question types that show them.
+        if (withSolutions) {
+            if (question.solutionText() != null) {
+                XWPFParagraph solutionParagraph = document.createParagraph();
+                XWPFRun solutionRun = solutionParagraph.createRun();
+                solutionRun.setText("\nLösung: " + question.solutionText());
+                solutionRun.setColor("0000FF"); // Blue color for the solution
+                solutionRun.setItalic(true);
             }
-        }
-        // Sub-question recursion logic remains unchanged
-        if (question.getSubQuestions() != null && !question.getSubQuestions().isEmpty()) {
-            for (int i = 0; i < question.getSubQuestions().size(); i++) {
-                Question subQuestion = question.getSubQuestions().get(i);
-                
-                // Write the sub-question first.
-                writeQuestion(document, subQuestion, questionNumber + "." + (char)('a' + i), withSolutions, true);
-
-                // Insert page break AFTER the question if the sub-question is marked to start on a new page
-                if (subQuestion.isStartOnNewPage()) {
-                    // Add continuation message to the previous page
-                    XWPFParagraph continueMessage = document.createParagraph();
-                    continueMessage.setAlignment(ParagraphAlignment.RIGHT);
-                    XWPFRun continueRun = continueMessage.createRun();
-                    continueRun.setText("Die Aufgabe folgt auf der nächsten Seite bzw. Rückseite.");
-                    continueRun.setItalic(true);
-                    continueRun.setFontSize(9);
-                    
-                    // Insert page break
-                    document.createParagraph().setPageBreak(true);
-                }
+            if (question.solutionImage() != null) {
+                addPicture(document, question.solutionImage(), context);
             }
-        }
-    }
+        } else if (question.answerLines() > 0) {
+            XWPFTable answerTable = document.createTable(question.answerLines(), 1);
+            answerTable.setWidth("100%");
 
-    /**
-     * Handles the display of solutions for "Lückentext" (fill-in-the-blank) questions.
-     * It replaces the blank placeholders (three or more underscores) in the question text
-     * with the corresponding solutions from the {@code musterloesung} field,
-     * formatting them in blue and bold. Includes error handling if no solution is provided.
-     *
-     * @param document The {@link org.apache.poi.xwpf.usermodel.XWPFDocument} to which the content is added.
-     * @param question The {@link model.Question} object of type "Lückentext".
-     */
-    private static void handleLueckentextSolution(XWPFDocument document, Question question) {
-        String htmlText = question.getText();
-        String musterloesung = question.getMusterloesung();
-
-        if (musterloesung == null || musterloesung.trim().isEmpty()) {
-            appendHtml(document, question, false, null, null); // Show blanks, preserving teacher's underscores
-            XWPFParagraph p = document.createParagraph();
-            XWPFRun run = p.createRun();
-            run.setText("FEHLER: Für diesen Lückentext wurde keine Musterlösung angegeben.");
-            run.setColor("FF0000");
-            run.setItalic(true);
-            return;
-        }
+            if (question.largeAnswerBox()) {
+                // For a large answer box, remove the inner horizontal lines
+                answerTable.setInsideHBorder(XWPFTable.XWPFBorderType.NONE, 0, 0, "FFFFFF");
+            }
 
-        String[] solutions = musterloesung.split("\\s*;\\s*");
-        int solutionIndex = 0;
-        String placeholderRegex = "_{3,}"; // A blank is 3 or more underscores
-
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(placeholderRegex);
-        java.util.regex.Matcher matcher = pattern.matcher(htmlText);
-        StringBuffer sb = new StringBuffer();
-
-        while (matcher.find()) {
-            String replacement;
-            if (solutionIndex < solutions.length) {
-                String solution = solutions[solutionIndex].trim();
-                replacement = " <font color=\"0000FF\"><b>" + solution + "</b></font> ";
-                solutionIndex++;
-            } else {
-                // If there are more blanks than solutions, fill the rest with empty styled blanks.
-                replacement = " <font color=\"0000FF\"><b></b></font> ";
+            // The number of lines determines the height of the answer area
+            for (int i = 0; i < question.answerLines(); i++) {
+                XWPFTableRow row = answerTable.getRow(i);
+                XWPFTableCell cell = row.getCell(0);
+                setCellAlignment(cell, ParagraphAlignment.CENTER, STVerticalJc.CENTER);
+                // Add a paragraph with a single space to ensure cell height is respected
+                cell.setText(" ");
             }
-            matcher.appendReplacement(sb, java.util.regex.Matcher.quoteReplacement(replacement));
         }
-        matcher.appendTail(sb);
-        String filledText = sb.toString();
 
-        // Now parse the modified HTML and append it
-        appendHtml(document, question, true, null, filledText);
-
-    }
-    /**
-     * Parses an HTML string (from {@link model.Question#getText()} or {@code htmlContent})
-     * and appends its formatted content to the Word document. This method uses
-     * {@link #processNode(Node, XWPFParagraph, XWPFDocument, Question, boolean, List, boolean, boolean, boolean, boolean, String, String, String)}
-     * to recursively handle HTML elements and their styling, with specific logic
-     * for MCQ options.
-     *
-     * @param document The {@link org.apache.poi.xwpf.usermodel.XWPFDocument} to which the HTML content is appended.
-     * @param question The {@link model.Question} object from which HTML content is taken.
-     * @param withSolutions {@code true} if solutions are to be displayed (influences MCQ checkbox appearance).
-     * @param correctOptions A list of correct MCQ option letters, used when {@code withSolutions} is true.
-     * @param htmlContent An optional HTML string to use instead of {@code question.getText()}.
-     */
-    private static void appendHtml(XWPFDocument document, Question question, boolean withSolutions, List<String> correctOptions, String htmlContent) {
-        String contentToParse = (htmlContent != null && !htmlContent.isEmpty()) ? htmlContent : question.getText();
-        // For Lückentext in student exams, we now preserve the underscores as typed by the teacher.
-        // The fixed placeholder '___' is no longer enforced or replaced with a fixed-length line.
-        Document parsedHtml = Jsoup.parse(contentToParse);
-        // Start with a new paragraph for the HTML content
-        XWPFParagraph paragraph = document.createParagraph();
-        if ("Lückentext".equals(question.getType())) {
-            paragraph.setAlignment(ParagraphAlignment.BOTH);
-        }
-        processNode(parsedHtml.body(), paragraph, document, question, withSolutions, correctOptions, false, false, false, false, null, null, null);
-
-        // For MCQs, processNode creates new paragraphs for each option, leaving this one empty.
-        // This empty paragraph causes a large vertical gap, so we remove it.
-        if ("MCQ".equals(question.getType()) && paragraph.getRuns().isEmpty()) {
-            int pos = document.getPosOfParagraph(paragraph);
-            if (pos != -1) {
-                document.removeBodyElement(pos);
+        for (QuestionLayout subQuestion : question.subQuestions()) {
+            // Write the sub-question first.
+            writeQuestion(document, subQuestion, withSolutions, context);
+
+            // Insert page break AFTER the question if the sub-question is marked to start on a new page
+            if (subQuestion.startOnNewPage()) {
+                // Add continuation message to the previous page
+                XWPFParagraph continueMessage = document.createParagraph();
+                continueMessage.setAlignment(ParagraphAlignment.RIGHT);
+                XWPFRun continueRun = continueMessage.createRun();
+                continueRun.setText("Die Aufgabe folgt auf der nächsten Seite bzw. Rückseite.");
+                continueRun.setItalic(true);
+                continueRun.setFontSize(9);
+
+                // Insert page break
+                document.createParagraph().setPageBreak(true);
             }
         }
     }
 
     /**
-     * Appends styled text to a given {@link org.apache.poi.xwpf.usermodel.XWPFParagraph}.
-     * It creates a new {@link org.apache.poi.xwpf.usermodel.XWPFRun} and applies
-     * the specified formatting (bold, italic, underline, strikethrough, color, font family).
-     *
-     * @param paragraph The {@link org.apache.poi.xwpf.usermodel.XWPFParagraph} to which text is appended.
-     * @param text The string content to append.
-     * @param bold {@code true} for bold text.
-     * @param italic {@code true} for italic text.
-     * @param underline {@code true} for underlined text.
-     * @param strikethrough {@code true} for strikethrough text.
-     * @param color The hex color string (e.g., "FF0000" for red), or {@code null} for default.
-     * @param fontFamily The font family name (e.g., "Courier New"), or {@code null} for default.
-     */
-    private static void appendStyledText(XWPFParagraph paragraph, String text, boolean bold, boolean italic, boolean strikethrough, boolean underline, String color, String fontFamily) {
-        XWPFRun run = paragraph.createRun();
-        run.setText(text);
-        run.setBold(bold);
-        run.setItalic(italic);
-        run.setUnderline(underline ? org.apache.poi.xwpf.usermodel.UnderlinePatterns.SINGLE : org.apache.poi.xwpf.usermodel.UnderlinePatterns.NONE);
-        run.setStrikeThrough(strikethrough);
-        if (color != null) {
-            run.setColor(color);
-        }
-        if (fontFamily != null) {
-            run.setFontFamily(fontFamily);
+     * Adds an image in its own paragraph. Images that cannot be read are skipped.
+     * @param document The {@link org.apache.poi.xwpf.usermodel.XWPFDocument} to which the image is added.
+     * @param picture The image of the layout.
+     * @param context The context providing decoded images.
+     */
+    private static void addPicture(XWPFDocument document, QuestionLayout.Picture picture, RenderContext context) {
+        try {
+            RenderContext.DecodedImage image = context.image(picture.image());
+            XWPFParagraph imageParagraph = document.createParagraph();
+            addScaledPicture(imageParagraph, image, picture.fileName());
+        } catch (IOException | InvalidFormatException e) {
+            e.printStackTrace();
         }
     }
 
     /**
-     * Recursively traverses an HTML DOM tree (parsed by Jsoup) and converts each
-     * HTML node into corresponding Apache POI Word content. It applies styles
-     * (bold, italic, underline, color, font), handles various HTML tags
-     * (paragraphs, lists, code blocks), and includes specific logic for
-     * formatting MCQ options with checkboxes.
+     * Appends the compiled text of a question to the Word document: paragraphs with their runs,
+     * code blocks as shaded monospaced lines and MCQ options with checkboxes.
      *
-     * @param node The current {@link org.jsoup.nodes.Node} being processed.
-     * @param paragraph The current {@link org.apache.poi.xwpf.usermodel.XWPFParagraph} to which content is being added.
-     * @param document The overall {@link org.apache.poi.xwpf.usermodel.XWPFDocument}.
-     * @param question The {@link model.Question} context for type-specific handling.
-     * @param withSolutions {@code true} if solutions are included (influences MCQ checkbox appearance).
-     * @param correctOptions A list of correct MCQ option letters, used when {@code withSolutions} is true.
-     * @param bold Current bold state inherited from parent nodes.
-     * @param italic Current italic state inherited from parent nodes.
-     * @param underline Current underline state inherited from parent nodes.
-     * @param strikethrough Current strikethrough state inherited from parent nodes.
-     * @param color Current color inherited from parent nodes.
-     * @param listStyle Current list style ("bullet" or "number") inherited from parent nodes.
-     * @param fontFamily Current font family inherited from parent nodes.
-     * @return The updated {@link org.apache.poi.xwpf.usermodel.XWPFParagraph} after processing the node.
-     */
-    private static XWPFParagraph processNode(Node node, XWPFParagraph paragraph, XWPFDocument document, Question question, boolean withSolutions, List<String> correctOptions, boolean bold, boolean italic, boolean underline, boolean strikethrough, String color, String listStyle, String fontFamily) {
-        if (node instanceof TextNode) {
-            String text = ((TextNode) node).text();
-            if (!text.trim().isEmpty() || text.equals(" ")) {
-                 appendStyledText(paragraph, text, bold, italic, underline, strikethrough, color, fontFamily);
-            }
-        } else if (node instanceof Element) {
-            Element element = (Element) node;
-            String tagName = element.tagName().toLowerCase();
-            String style = element.attr("style").toLowerCase();
-
-            boolean newBold = bold || tagName.equals("b") || tagName.equals("strong") || style.contains("font-weight: bold");
-            boolean newItalic = italic || tagName.equals("i") || tagName.equals("em") || style.contains("font-style: italic");
-            boolean newUnderline = underline || tagName.equals("u") || style.contains("text-decoration: underline");
-            boolean newStrikethrough = strikethrough || tagName.equals("strike") || style.contains("text-decoration: line-through");
-            String newColor = color;
-            String newListStyle = listStyle;
-            String newFontFamily = fontFamily;
-
-            if (tagName.equals("font") && element.hasAttr("color")) {
-                newColor = element.attr("color").replace("#", "");
-            }
-             if (tagName.equals("code") || tagName.equals("pre")) {
-                newFontFamily = "Courier New";
-            }
-
-            if (tagName.equals("pre")) {
-                String preText = element.wholeText();
-                String[] lines = preText.split("\r?\n");
-                for (int i = 0; i < lines.length; i++) {
-                    String line = lines[i];
-                    if (line.isEmpty() && i == lines.length - 1) {
-                        continue; // Skip trailing empty line
-                    }
+     * @param document The {@link org.apache.poi.xwpf.usermodel.XWPFDocument} to which the content is appended.
+     * @param content The blocks of the {@link QuestionLayout}.
+     * @param withSolutions {@code true} if the correct MCQ options are ticked.
+     * @param fillBlanks {@code true} if the blanks of a Lückentext show their solutions instead of the placeholders.
+     */
+    private static void appendContent(XWPFDocument document, List<QuestionLayout.Block> content, boolean withSolutions, boolean fillBlanks) {
+        for (QuestionLayout.Block block : content) {
+            if (block instanceof QuestionLayout.Paragraph paragraph) {
+                XWPFParagraph docParagraph = document.createParagraph();
+                if (paragraph.justify()) {
+                    docParagraph.setAlignment(ParagraphAlignment.BOTH);
+                }
+                if (paragraph.listStyle() == QuestionLayout.ListStyle.BULLET) {
+                    docParagraph.setNumID(java.math.BigInteger.ONE);
+                } else if (paragraph.listStyle() == QuestionLayout.ListStyle.NUMBER) {
+                    docParagraph.setNumID(java.math.BigInteger.valueOf(2));
+                }
+                for (QuestionLayout.Inline inline : paragraph.inlines()) {
+                    appendInline(docParagraph, inline, fillBlanks);
+                }
+            } else if (block instanceof QuestionLayout.CodeBlock code) {
+                for (String line : code.lines()) {
                     XWPFParagraph codeParagraph = document.createParagraph();
                     setParagraphShading(codeParagraph, "F0F0F0");
                     XWPFRun codeRun = codeParagraph.createRun();
                     codeRun.setFontFamily("Courier New");
                     codeRun.setText(line);
                 }
-                return document.createParagraph();
-            }
-            
-            if (tagName.equals("p") || tagName.equals("div") || tagName.equals("ul") || tagName.equals("ol")) {
-                if (!paragraph.getRuns().isEmpty() || paragraph.getCTP().getPPr() != null) {
-                    paragraph = document.createParagraph();
-                    if ("Lückentext".equals(question.getType())) {
-                        paragraph.setAlignment(ParagraphAlignment.BOTH);
-                    }
-                }
-            }
-            
-            if (tagName.equals("ul")) {
-                newListStyle = "bullet";
-            } else if (tagName.equals("ol")) {
-                newListStyle = "number";
+            } else if (block instanceof QuestionLayout.Option option) {
+                XWPFParagraph optionParagraph = document.createParagraph();
+                optionParagraph.setSpacingAfter(0);
+                optionParagraph.setSpacingBefore(0);
+                optionParagraph.setSpacingBetween(1.0);
+                XWPFRun checkboxRun = optionParagraph.createRun();
+                checkboxRun.setText(withSolutions && option.correct() ? "☑ " : "☐ ");
+                appendStyledText(optionParagraph, option.text(), option.style());
             }
+        }
+    }
 
-            if (tagName.equals("li")) {
-                if ("MCQ".equals(question.getType())) {
-                    Document innerDoc = Jsoup.parse(element.html());
-                    Element body = innerDoc.body();
-                    String firstOptionText = body.ownText().trim();
-                    if (!firstOptionText.isEmpty()) {
-                        XWPFParagraph optionParagraph = document.createParagraph();
-                        optionParagraph.setSpacingAfter(0);
-                        optionParagraph.setSpacingBefore(0);
-                        optionParagraph.setSpacingBetween(1.0);
-                        XWPFRun checkboxRun = optionParagraph.createRun();
-                        
-                        String optionLetter = extractOptionLetter(firstOptionText);
-                        boolean isCorrect = withSolutions && correctOptions != null && correctOptions.contains(optionLetter);
-                        checkboxRun.setText(isCorrect ? "☑ " : "☐ ");
-                        appendStyledText(optionParagraph, firstOptionText, newBold, newItalic, newUnderline, newStrikethrough, newColor, newFontFamily);
-                    }
-                    for (Element div : body.select("div")) {
-                        XWPFParagraph optionParagraph = document.createParagraph();
-                        optionParagraph.setSpacingAfter(0);
-                        optionParagraph.setSpacingBefore(0);
-                        optionParagraph.setSpacingBetween(1.0);
-                        XWPFRun checkboxRun = optionParagraph.createRun();
-                        String optionText = div.text().trim();
-                        String optionLetter = extractOptionLetter(optionText);
-                        boolean isCorrect = withSolutions && correctOptions != null && correctOptions.contains(optionLetter);
-                        checkboxRun.setText(isCorrect ? "☑ " : "☐ ");
-                        appendStyledText(optionParagraph, optionText, newBold, newItalic, newUnderline, newStrikethrough, newColor, newFontFamily);
-                    }
-                    return paragraph; 
-                } else {
-                    if (!paragraph.getRuns().isEmpty()) {
-                         paragraph = document.createParagraph();
-                    }
-                    if ("bullet".equals(listStyle)) {
-                        paragraph.setNumID(java.math.BigInteger.ONE);
-                    } else if ("number".equals(listStyle)) {
-                        paragraph.setNumID(java.math.BigInteger.valueOf(2));
-                    }
-                }
+    /**
+     * Appends an inline element of the layout to a paragraph. A filled blank is shown as its
+     * solution in bold blue, separated from the surrounding text by spaces.
+     *
+     * @param paragraph The {@link org.apache.poi.xwpf.usermodel.XWPFParagraph} to which the element is appended.
+     * @param inline The text, blank or line break.
+     * @param fillBlanks {@code true} if blanks show their solutions.
+     */
+    private static void appendInline(XWPFParagraph paragraph, QuestionLayout.Inline inline, boolean fillBlanks) {
+        if (inline instanceof QuestionLayout.Text text) {
+            appendStyledText(paragraph, text.text(), text.style());
+        } else if (inline instanceof QuestionLayout.Blank blank) {
+            if (!fillBlanks) {
+                appendStyledText(paragraph, blank.placeholder(), blank.style());
+                return;
             }
-
-            for (Node childNode : element.childNodes()) {
-                paragraph = processNode(childNode, paragraph, document, question, withSolutions, correctOptions, newBold, newItalic, newUnderline, newStrikethrough, newColor, newListStyle, newFontFamily);
+            if (blank.spaceBefore()) {
+                appendStyledText(paragraph, " ", blank.style());
             }
-
-            if (tagName.equals("br")) {
-                paragraph.createRun().addBreak();
+            if (!blank.solution().isEmpty()) {
+                appendStyledText(paragraph, blank.solution(), solutionStyle(blank.style()));
+            }
+            if (blank.spaceAfter()) {
+                appendStyledText(paragraph, " ", blank.style());
             }
+        } else if (inline instanceof QuestionLayout.LineBreak) {
+            paragraph.createRun().addBreak();
         }
-        return paragraph;
     }
 
-    // Helper method to extract the option letter (e.g., "A", "B") from the option text
     /**
-     * Helper method to extract the option letter (e.g., "A", "B") from the beginning of an option text string.
-     * This is typically used in MCQ processing to identify the option for solution matching.
+     * Derives the style of a filled-in blank: bold and blue on top of the surrounding formatting.
+     * @param style The formatting of the text around the blank.
+     * @return The style of the solution text.
+     */
+    static QuestionLayout.Style solutionStyle(QuestionLayout.Style style) {
+        return new QuestionLayout.Style(true, style.italic(), style.underline(), style.strikethrough(), "0000FF", style.fontFamily());
+    }
+
+    /**
+     * Appends styled text to a given {@link org.apache.poi.xwpf.usermodel.XWPFParagraph}.
+     * It creates a new {@link org.apache.poi.xwpf.usermodel.XWPFRun} and applies
+     * the formatting of the style (bold, italic, underline, strikethrough, color, font family).
      *
-     * @param optionText The full text of the MCQ option.
-     * @return The extracted option letter (e.g., "A"), or an empty string if no letter is found.
+     * @param paragraph The {@link org.apache.poi.xwpf.usermodel.XWPFParagraph} to which text is appended.
+     * @param text The string content to append.
+     * @param style The formatting of the text.
      */
-    private static String extractOptionLetter(String optionText) {
-        if (optionText == null || optionText.isEmpty()) {
-            return "";
+    private static void appendStyledText(XWPFParagraph paragraph, String text, QuestionLayout.Style style) {
+        XWPFRun run = paragraph.createRun();
+        run.setText(text);
+        run.setBold(style.bold());
+        run.setItalic(style.italic());
+        run.setUnderline(style.underline() ? org.apache.poi.xwpf.usermodel.UnderlinePatterns.SINGLE : org.apache.poi.xwpf.usermodel.UnderlinePatterns.NONE);
+        run.setStrikeThrough(style.strikethrough());
+        if (style.color() != null) {
+            run.setColor(style.color());
         }
-        // Regex to find patterns like "A)", "B.", "C " at the beginning of the string
-        java.util.regex.Matcher matcher = java.util.regex.Pattern.compile("^\\s*([A-Z])\\s*[). ]").matcher(optionText);
-        if (matcher.find()) {
-            return matcher.group(1);
+        if (style.fontFamily() != null) {
+            run.setFontFamily(style.fontFamily());
         }
-        return "";
     }
 
     /**
@@ -877,22 +924,25 @@ public class WordExporter {
     /**
      * Adds an image to an {@link org.apache.poi.xwpf.usermodel.XWPFParagraph},
      * scaling it down if its width exceeds a defined maximum threshold
-     * ({@code MAX_WIDTH_POINTS}).
+     * ({@code MAX_WIDTH_POINTS}). The dimensions and format are read from the image
+     * header, the pixels are never decoded. Identical images share one package part,
+     * since {@link XWPFDocument#addPictureData(byte[], int)} reuses a part with the same checksum.
      *
      * @param paragraph The {@link org.apache.poi.xwpf.usermodel.XWPFParagraph} to which the picture is added.
-     * @param imageBytes The byte array of the image.
-     * @param type The picture type (e.g., {@link org.apache.poi.xwpf.usermodel.XWPFDocument#PICTURE_TYPE_PNG}).
+     * @param image The decoded image with its header information.
      * @param filename The suggested filename for the image within the document.
      * @throws InvalidFormatException If the image format is invalid.
-     * @throws IOException If an I/O error occurs during image processing.
+     * @throws IOException If an I/O error occurs during image processing or the format is not supported.
      */
-    private static void addScaledPicture(XWPFParagraph paragraph, byte[] imageBytes, int type, String filename) throws InvalidFormatException, IOException {
+    private static void addScaledPicture(XWPFParagraph paragraph, RenderContext.DecodedImage image, String filename) throws InvalidFormatException, IOException {
         final int MAX_WIDTH_POINTS = 400; // Max width in points (1/72 of an inch)
 
-        ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes);
-        BufferedImage bimg = ImageIO.read(bis);
-        double width = bimg.getWidth();
-        double height = bimg.getHeight();
+        ImageInfo info = image.info();
+        if (info == null) {
+            throw new IOException("Unsupported image format: " + filename);
+        }
+        double width = info.getWidth();
+        double height = info.getHeight();
 
         double scale = 1.0;
         if (width > MAX_WIDTH_POINTS) {
@@ -903,6 +953,28 @@ public class WordExporter {
         long finalHeightEMU = (long) (height * scale * Units.EMU_PER_POINT);
 
         XWPFRun imageRun = paragraph.createRun();
-        imageRun.addPicture(new ByteArrayInputStream(imageBytes), type, filename, (int)finalWidthEMU, (int)finalHeightEMU);
+        imageRun.addPicture(new ByteArrayInputStream(image.data()), pictureType(info.getFormat()), filename, (int)finalWidthEMU, (int)finalHeightEMU);
+    }
+
+    /**
+     * Maps an image format name to the corresponding POI picture type.
+     * @param format The lower-case format name reported by {@link ImageInfo#getFormat()}.
+     * @return The picture type, {@link XWPFDocument#PICTURE_TYPE_PNG} for unknown formats.
+     */
+    static int pictureType(String format) {
+        switch (format) {
+            case "jpeg":
+            case "jpg":
+                return XWPFDocument.PICTURE_TYPE_JPEG;
+            case "gif":
+                return XWPFDocument.PICTURE_TYPE_GIF;
+            case "bmp":
+                return XWPFDocument.PICTURE_TYPE_BMP;
+            case "tif":
+            case "tiff":
+                return XWPFDocument.PICTURE_TYPE_TIFF;
+            default:
+                return XWPFDocument.PICTURE_TYPE_PNG;
+        }
     }
 }
@@ -0,0 +1,68 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable list of protected terms, e.g. the technical terms of an exam ("Kritischer Pfad",
+ * "Earned Value"), which the {@link Rephraser} must not change. A term is protected wherever it
+ * occurs as whole words, ignoring case and the kind and number of spaces between its words; no
+ * word or phrase overlapping it is replaced.
+ * <p>
+ * The terms are compiled into a {@link PhraseMatcher}, so a line is checked for all terms in a
+ * single pass, together with the phrases of the thesaurus. A glossary can be shared by many threads.
+ */
+public final class Glossary {
+
+    /** A glossary without terms. */
+    public static final Glossary EMPTY = new Glossary(List.of());
+
+    private final List<String> terms;
+    private final PhraseMatcher matcher;
+
+    private Glossary(List<String> terms) {
+        this.terms = terms;
+        int[] values = new int[terms.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        this.matcher = terms.isEmpty() ? PhraseMatcher.EMPTY : PhraseMatcher.build(terms.toArray(new String[0]), values);
+    }
+
+    /**
+     * Creates a glossary. Blank terms and {@code null} are ignored.
+     * @param terms The protected terms.
+     * @return The glossary.
+     */
+    public static Glossary of(Collection<String> terms) {
+        if (terms == null) {
+            return EMPTY;
+        }
+        List<String> cleanTerms = new ArrayList<>();
+        for (String term : terms) {
+            if (term != null && !term.trim().isEmpty()) {
+                cleanTerms.add(term.trim());
+            }
+        }
+        return cleanTerms.isEmpty() ? EMPTY : new Glossary(List.copyOf(cleanTerms));
+    }
+
+    /**
+     * @return The protected terms, trimmed.
+     */
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    /**
+     * @return {@code true} if the glossary protects no terms.
+     */
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    PhraseMatcher matcher() {
+        return matcher;
+    }
+}
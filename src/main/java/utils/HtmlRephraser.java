@@ -0,0 +1,91 @@
+package utils;
+
+import java.util.random.RandomGenerator;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+/**
+ * Utility class for rephrasing the text of an HTML fragment, e.g. the text of a question, with the
+ * {@link Rephraser}. Text inside {@code code} and {@code pre} elements is left unchanged, so code
+ * examples stay valid.
+ * <p>
+ * The body is walked once, depth first, with a {@link NodeTraversor}. The visitor counts the
+ * enclosing code elements on the way down and up, so every text node knows whether it is inside
+ * code without looking at its ancestors, and is rephrased in place. Text nodes are rephrased in
+ * document order. The class keeps no state and needs no UI, so it can be used by batch jobs on
+ * many threads at once.
+ */
+public class HtmlRephraser {
+
+    /**
+     * Rephrases the text of an HTML fragment, drawing the synonyms from the given generator.
+     * @param html The HTML text.
+     * @param random The random number generator of this call, e.g. a {@link java.util.SplittableRandom}.
+     * @return The rephrased HTML body, or the original text if it is {@code null} or empty.
+     */
+    public static String rephrase(String html, RandomGenerator random) {
+        return rephrase(html, random, Glossary.EMPTY);
+    }
+
+    /**
+     * Rephrases the text of an HTML fragment like {@link #rephrase(String, RandomGenerator)}, but
+     * leaves the terms of a glossary unchanged.
+     * @param html The HTML text.
+     * @param random The random number generator of this call, e.g. a {@link java.util.SplittableRandom}.
+     * @param glossary The protected terms, e.g. of the exam.
+     * @return The rephrased HTML body, or the original text if it is {@code null} or empty.
+     */
+    public static String rephrase(String html, RandomGenerator random, Glossary glossary) {
+        if (html == null || html.isEmpty()) {
+            return html;
+        }
+        Document doc = Jsoup.parse(html);
+        NodeTraversor.traverse(new RephrasingVisitor(random, glossary), doc.body());
+        return doc.body().html();
+    }
+
+    /**
+     * @param node A node.
+     * @return {@code true} if the node is an element whose text must not be rephrased.
+     */
+    private static boolean isCode(Node node) {
+        return node instanceof Element element && (element.normalName().equals("code") || element.normalName().equals("pre"));
+    }
+
+    /**
+     * Rephrases the text nodes outside of code elements during one traversal.
+     */
+    private static final class RephrasingVisitor implements NodeVisitor {
+
+        private final RandomGenerator random;
+        private final Glossary glossary;
+        private int codeDepth; // Number of enclosing code and pre elements
+
+        RephrasingVisitor(RandomGenerator random, Glossary glossary) {
+            this.random = random;
+            this.glossary = glossary;
+        }
+
+        @Override
+        public void head(Node node, int depth) {
+            if (isCode(node)) {
+                codeDepth++;
+            } else if (codeDepth == 0 && node instanceof TextNode textNode && !textNode.isBlank()) {
+                textNode.text(Rephraser.rephrase(textNode.text(), random, glossary));
+            }
+        }
+
+        @Override
+        public void tail(Node node, int depth) {
+            if (isCode(node)) {
+                codeDepth--;
+            }
+        }
+    }
+}
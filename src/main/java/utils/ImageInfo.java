@@ -0,0 +1,87 @@
+package utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Utility class for inspecting image payloads without decoding their pixels.
+ * The width, height and format are read from the image header with an
+ * {@link ImageReader}, which is much cheaper than {@link ImageIO#read} for
+ * large screenshots.
+ */
+public class ImageInfo {
+
+    private final int width;
+    private final int height;
+    private final String format;
+
+    private ImageInfo(int width, int height, String format) {
+        this.width = width;
+        this.height = height;
+        this.format = format;
+    }
+
+    /**
+     * Reads the dimensions and format of an image from its header.
+     * @param imageBytes The encoded image (PNG, JPEG, GIF, BMP, ...).
+     * @return The image information, or {@code null} if no installed reader understands the data.
+     * @throws IOException if the image header cannot be read.
+     */
+    public static ImageInfo probe(byte[] imageBytes) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageBytes))) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                // Seek forward only and ignore metadata: only the header is parsed
+                reader.setInput(input, true, true);
+                return new ImageInfo(reader.getWidth(0), reader.getHeight(0), reader.getFormatName().toLowerCase(Locale.ROOT));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Computes the content hash used to recognize identical image payloads.
+     * @param imageBytes The encoded image.
+     * @return The hex encoded SHA-256 hash of the bytes.
+     */
+    public static String contentHash(byte[] imageBytes) {
+        return DigestUtils.sha256Hex(imageBytes);
+    }
+
+    /**
+     * @return The width of the image in pixels.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height of the image in pixels.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The lower-case format name reported by the image reader, e.g. "png", "jpeg" or "gif".
+     */
+    public String getFormat() {
+        return format;
+    }
+}
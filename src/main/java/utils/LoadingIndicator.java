@@ -1,5 +1,6 @@
 package utils;
 
+import javafx.concurrent.Worker;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Label;
@@ -14,17 +15,31 @@ import javafx.stage.StageStyle;
  * This indicator consists of a {@link javafx.scene.control.ProgressIndicator}
  * and a "Loading..." label, shown in an undecorated, application-modal stage.
  * It is used to provide visual feedback during long-running operations (e.g., export).
+ * Operations that know their progress, e.g. loading a large exam, can show it with {@link #show(Worker)}.
+ * The stage is created on first use, or earlier by {@link #prepare()}, rather than when the class
+ * is loaded, so that building it does not delay the startup of the application.
+ * All methods must be called on the JavaFX application thread.
  */
 public class LoadingIndicator {
 
-    private static final Stage dialog = new Stage();
+    private static Stage dialog; // Created by prepare()
+    private static ProgressIndicator indicator;
 
-    static {
+    /**
+     * Creates the dialog if it does not exist yet. Called by {@link #show()}; the application calls
+     * it after showing the main window, so the first {@link #show()} finds the dialog ready.
+     */
+    public static void prepare() {
+        if (dialog != null) {
+            return;
+        }
+        dialog = new Stage();
         dialog.initModality(Modality.APPLICATION_MODAL);
         dialog.initStyle(StageStyle.UNDECORATED);
         VBox vbox = new VBox(20);
         vbox.setAlignment(Pos.CENTER);
-        vbox.getChildren().add(new ProgressIndicator());
+        indicator = new ProgressIndicator();
+        vbox.getChildren().add(indicator);
         vbox.getChildren().add(new Label("Loading..."));
         Scene scene = new Scene(vbox, 200, 100);
         dialog.setScene(scene);
@@ -34,6 +49,18 @@ public class LoadingIndicator {
      * Makes the loading indicator dialog visible.
      */
     public static void show() {
+        prepare();
+        dialog.show();
+    }
+
+    /**
+     * Makes the loading indicator dialog visible and shows the progress of a background task.
+     * The indicator spins while the task does not know its progress.
+     * @param worker The task whose progress is shown.
+     */
+    public static void show(Worker<?> worker) {
+        prepare();
+        indicator.progressProperty().bind(worker.progressProperty());
         dialog.show();
     }
 
@@ -41,6 +68,10 @@ public class LoadingIndicator {
      * Makes the loading indicator dialog invisible.
      */
     public static void hide() {
-        dialog.hide();
+        if (dialog != null) {
+            dialog.hide();
+            indicator.progressProperty().unbind();
+            indicator.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+        }
     }
 }
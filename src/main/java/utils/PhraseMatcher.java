@@ -0,0 +1,406 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable Aho-Corasick automaton that finds all occurrences of a set of phrases in a text in one
+ * pass, in time linear in the length of the text plus the number of matches.
+ * <p>
+ * Phrases and text are compared after {@link #fold(char) folding}: chars are compared in lower case
+ * and every whitespace char counts as a single space. A phrase is only found where it starts a word,
+ * i.e. at the start of the text or after a char that is no letter or digit; whether it also ends a
+ * word is checked by the caller with {@link #endsWord(CharSequence, int)}. The caller feeds the text
+ * char by char into {@link #step(int, CharSequence, int)} and, after every char, walks the phrases
+ * ending there with {@link #match(int)} and {@link #nextMatch(int)}. Every phrase carries an int
+ * value, e.g. the key id of a thesaurus entry.
+ * <p>
+ * Word starts are part of the alphabet: a {@link #WORD_START} marker precedes every word start, in
+ * the phrases when the trie is built and in the text while scanning. So all states stand for text
+ * that begins at a word start, and inside a word that cannot start a phrase the automaton stays at
+ * the root.
+ * <p>
+ * The trie is stored as a double array. The folded chars of the phrases get dense codes, the most
+ * frequent char first, and the child of the node in slot {@code s} for code {@code c} is in slot
+ * {@code t = base[s] + c} if {@code check[t] == s}. A transition is two array reads without any
+ * search, which matters because a scan follows a transition for almost every char. Every slot also stores its failure link and its output link (the nearest node on its
+ * failure chain, itself included, at which a phrase ends). The values and lengths of the phrases are
+ * only stored for the end nodes, in arrays sorted by slot. The codes of the chars up to U+00FF are
+ * kept in a direct table.
+ */
+final class PhraseMatcher {
+
+    /** The marker fed before every word start; text chars are never folded to it. */
+    static final char WORD_START = '\u0000';
+
+    /** A matcher without phrases. */
+    static final PhraseMatcher EMPTY = build(new String[0], new int[0]);
+
+    private static final int FREE = -1;
+
+    private final char[] alphabet;  // sorted folded chars of the phrases
+    private final int[] codes;      // code of every char of the alphabet, from 1
+    private final int[] base;
+    private final int[] check;      // slot → parent slot, or FREE; the root in slot 0 is its own parent
+    private final int[] fail;
+    private final int[] output;     // slot → nearest end node on the failure chain, or -1
+    private final int[] endNode;    // sorted end nodes
+    private final int[] endValue;
+    private final int[] endLength;
+    private final int[] latin1Codes = new int[256]; // folded char → code, 0 if it occurs in no phrase
+
+    private PhraseMatcher(char[] alphabet, int[] codes, int[] base, int[] check, int[] fail, int[] output,
+                          int[] endNode, int[] endValue, int[] endLength) {
+        this.alphabet = alphabet;
+        this.codes = codes;
+        this.base = base;
+        this.check = check;
+        this.fail = fail;
+        this.output = output;
+        this.endNode = endNode;
+        this.endValue = endValue;
+        this.endLength = endLength;
+        for (int i = 0; i < alphabet.length && alphabet[i] < latin1Codes.length; i++) {
+            latin1Codes[alphabet[i]] = codes[i];
+        }
+    }
+
+    /**
+     * Folds a char for matching: lower case, and every whitespace char (including the no-break space) as a space.
+     * @param c The char.
+     * @return The folded char.
+     */
+    static char fold(char c) {
+        if (c < 128) { // ASCII fast path
+            if (c >= 'A' && c <= 'Z') {
+                return (char) (c + ('a' - 'A'));
+            }
+            return c <= ' ' && (c == WORD_START || Character.isWhitespace(c)) ? ' ' : c;
+        }
+        if (c == ' ' || Character.isWhitespace(c)) {
+            return ' ';
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Builds the automaton. Phrases are trimmed and runs of whitespace are collapsed to one space;
+     * empty phrases are skipped. If several phrases fold to the same string, the first one is kept.
+     * @param phrases The phrases.
+     * @param values The value of every phrase.
+     * @return The matcher.
+     */
+    static PhraseMatcher build(String[] phrases, int[] values) {
+        // Pointer trie with sibling lists, placed into the double array below
+        int[] child = new int[64];
+        int[] sibling = new int[64];
+        char[] chars = new char[64];
+        int[] value = new int[64];
+        Arrays.fill(value, -1);
+        int[] phraseLength = new int[phrases.length];
+        int nodes = 1;
+        child[0] = -1;
+        sibling[0] = -1;
+        for (int p = 0; p < phrases.length; p++) {
+            String phrase = normalize(phrases[p]);
+            if (phrase.isEmpty()) {
+                continue;
+            }
+            phraseLength[p] = phrase.length();
+            int node = 0;
+            for (int i = 0; i < 2 * phrase.length(); i++) {
+                int index = i >> 1;
+                char c;
+                if ((i & 1) == 0) {
+                    if (!isWordStart(phrase, index)) { // Same rule as for the text in step()
+                        continue;
+                    }
+                    c = WORD_START;
+                } else {
+                    c = fold(phrase.charAt(index));
+                }
+                int next = child[node];
+                while (next >= 0 && chars[next] != c) {
+                    next = sibling[next];
+                }
+                if (next < 0) {
+                    if (nodes == child.length) {
+                        int capacity = nodes * 2;
+                        child = Arrays.copyOf(child, capacity);
+                        sibling = Arrays.copyOf(sibling, capacity);
+                        chars = Arrays.copyOf(chars, capacity);
+                        value = Arrays.copyOf(value, capacity);
+                        Arrays.fill(value, nodes, capacity, -1);
+                    }
+                    next = nodes++;
+                    chars[next] = c;
+                    child[next] = -1;
+                    sibling[next] = child[node];
+                    child[node] = next;
+                }
+                node = next;
+            }
+            if (value[node] < 0) {
+                value[node] = p;
+            }
+        }
+
+        // Dense codes, the most frequent chars first
+        int[] frequency = new int[Character.MAX_VALUE + 1];
+        for (int node = 1; node < nodes; node++) {
+            frequency[chars[node]]++;
+        }
+        int[] byFrequency = IntStream.range(0, frequency.length).filter(c -> frequency[c] > 0).boxed()
+                .sorted((a, b) -> frequency[b] != frequency[a] ? frequency[b] - frequency[a] : a - b)
+                .mapToInt(Integer::intValue).toArray();
+        int[] codeOf = new int[Character.MAX_VALUE + 1];
+        for (int i = 0; i < byFrequency.length; i++) {
+            codeOf[byFrequency[i]] = i + 1;
+        }
+        char[] alphabet = new char[byFrequency.length];
+        int[] codes = new int[byFrequency.length];
+        int letters = 0;
+        for (int c = 0; c < frequency.length; c++) {
+            if (frequency[c] > 0) {
+                alphabet[letters] = (char) c;
+                codes[letters++] = codeOf[c];
+            }
+        }
+
+        // Breadth-first placement: every node gets the first base at which all its child slots are free
+        int[] base = new int[nodes + byFrequency.length + 1];
+        int[] check = new int[base.length];
+        int[] nextFree = new int[base.length]; // slot → a slot at most as far as the next free one, itself if free
+        Arrays.fill(check, FREE);
+        Arrays.setAll(nextFree, i -> i);
+        check[0] = 0;
+        nextFree[0] = 1;
+        int[] slotOf = new int[nodes];
+        int[] queue = new int[nodes];
+        int[] slotOrder = new int[nodes];
+        int[] children = new int[16];
+        int[] childCodes = new int[16];
+        int head = 0;
+        int tail = 1;
+        int length = 1;
+        while (head < tail) {
+            int node = queue[head];
+            int slot = slotOf[node];
+            slotOrder[head++] = slot;
+            int count = 0;
+            int minCode = Integer.MAX_VALUE;
+            int maxCode = 0;
+            for (int c = child[node]; c >= 0; c = sibling[c]) {
+                if (count == children.length) {
+                    children = Arrays.copyOf(children, count * 2);
+                    childCodes = Arrays.copyOf(childCodes, count * 2);
+                }
+                children[count] = c;
+                childCodes[count] = codeOf[chars[c]];
+                minCode = Math.min(minCode, childCodes[count]);
+                maxCode = Math.max(maxCode, childCodes[count]);
+                count++;
+            }
+            if (count == 0) {
+                continue;
+            }
+            // Only bases that put the first child into a free slot are tried
+            int free = freeSlot(nextFree, minCode + 1);
+            while (true) {
+                int b = free - minCode;
+                if (b + maxCode >= check.length) {
+                    int oldCapacity = check.length;
+                    int capacity = Math.max(oldCapacity * 2, b + maxCode + 1);
+                    base = Arrays.copyOf(base, capacity);
+                    check = Arrays.copyOf(check, capacity);
+                    nextFree = Arrays.copyOf(nextFree, capacity);
+                    Arrays.fill(check, oldCapacity, capacity, FREE);
+                    for (int i = oldCapacity; i < capacity; i++) {
+                        nextFree[i] = i;
+                    }
+                }
+                boolean fits = true;
+                for (int i = 0; i < count && fits; i++) {
+                    fits = check[b + childCodes[i]] == FREE;
+                }
+                if (fits) {
+                    break;
+                }
+                free = freeSlot(nextFree, free + 1);
+            }
+            int b = free - minCode;
+            base[slot] = b;
+            for (int i = 0; i < count; i++) {
+                int t = b + childCodes[i];
+                check[t] = slot;
+                nextFree[t] = t + 1;
+                slotOf[children[i]] = t;
+                queue[tail++] = children[i];
+            }
+            // Every transition of this node stays inside the arrays
+            length = Math.max(length, b + byFrequency.length + 1);
+        }
+        base = Arrays.copyOf(base, length);
+        int oldCapacity = check.length;
+        check = Arrays.copyOf(check, length);
+        if (length > oldCapacity) {
+            Arrays.fill(check, oldCapacity, length, FREE);
+        }
+
+        int ends = 0;
+        long[] sortedEnds = new long[nodes];
+        for (int node = 0; node < nodes; node++) {
+            if (value[node] >= 0) {
+                sortedEnds[ends++] = ((long) slotOf[node] << 32) | value[node];
+            }
+        }
+        Arrays.sort(sortedEnds, 0, ends);
+        int[] endNode = new int[ends];
+        int[] endValue = new int[ends];
+        int[] endLength = new int[ends];
+        for (int i = 0; i < ends; i++) {
+            int p = (int) sortedEnds[i];
+            endNode[i] = (int) (sortedEnds[i] >>> 32);
+            endValue[i] = values[p];
+            endLength[i] = phraseLength[p];
+        }
+
+        // Failure and output links; breadth-first order visits every failure target first
+        int[] fail = new int[length];
+        int[] output = new int[length];
+        Arrays.fill(output, -1);
+        PhraseMatcher matcher = new PhraseMatcher(alphabet, codes, base, check, fail, output, endNode, endValue, endLength);
+        for (int i = 1; i < nodes; i++) {
+            int slot = slotOrder[i];
+            int parent = check[slot];
+            int f = parent == 0 ? 0 : matcher.next(fail[parent], slot - base[parent]);
+            fail[slot] = f;
+            output[slot] = Arrays.binarySearch(endNode, slot) >= 0 ? slot : output[f];
+        }
+        return matcher;
+    }
+
+    /**
+     * Finds the first free slot from a slot on and shortens the path to it.
+     */
+    private static int freeSlot(int[] nextFree, int slot) {
+        while (slot < nextFree.length && nextFree[slot] != slot) {
+            int next = nextFree[slot];
+            if (next < nextFree.length) {
+                nextFree[slot] = nextFree[next];
+            }
+            slot = next;
+        }
+        return slot;
+    }
+
+    private static String normalize(String phrase) {
+        return phrase == null ? "" : phrase.trim().replaceAll("[\\s\\u00A0]+", " ");
+    }
+
+    /**
+     * @return The number of distinct phrases.
+     */
+    int size() {
+        return endNode.length;
+    }
+
+    /**
+     * @param text A text.
+     * @param index An index in the text.
+     * @return {@code true} if a word starts at the index: it is 0 or follows a char that is no letter or digit.
+     */
+    static boolean isWordStart(CharSequence text, int index) {
+        return index == 0 || !isLetterOrDigit(text.charAt(index - 1));
+    }
+
+    /**
+     * @param text A text.
+     * @param end The index after a match.
+     * @return {@code true} if the match ends a word: it ends the text or is followed by a char that is no letter or digit.
+     */
+    static boolean endsWord(CharSequence text, int end) {
+        return end == text.length() || !isLetterOrDigit(text.charAt(end));
+    }
+
+    /**
+     * @param c A char.
+     * @return {@code true} if the char is a letter or digit, i.e. part of a word.
+     */
+    static boolean isLetterOrDigit(char c) {
+        if (c < 128) { // ASCII fast path
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+        }
+        return Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * Advances the automaton by one char of the text, and before it by the {@link #WORD_START}
+     * marker if a word starts there.
+     * @param state The state after the previous char; 0 at the start of the text.
+     * @param text The text.
+     * @param index The index of the next char.
+     * @return The new state.
+     */
+    int step(int state, CharSequence text, int index) {
+        if (isWordStart(text, index)) {
+            state = next(state, code(WORD_START));
+        }
+        return next(state, code(fold(text.charAt(index))));
+    }
+
+    private int code(char folded) {
+        if (folded < latin1Codes.length) {
+            return latin1Codes[folded];
+        }
+        int i = Arrays.binarySearch(alphabet, folded);
+        return i >= 0 ? codes[i] : 0;
+    }
+
+    private int next(int state, int code) {
+        if (code == 0) {
+            return 0; // The char occurs in no phrase
+        }
+        while (true) {
+            int t = base[state] + code;
+            if (check[t] == state) {
+                return t;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fail[state];
+        }
+    }
+
+    /**
+     * @param state The state after a char.
+     * @return The longest phrase ending at this char, or -1 if none ends here.
+     */
+    int match(int state) {
+        return output[state];
+    }
+
+    /**
+     * @param match A match returned by {@link #match(int)} or this method.
+     * @return The next shorter phrase ending at the same char, or -1.
+     */
+    int nextMatch(int match) {
+        return output[fail[match]];
+    }
+
+    /**
+     * @param match A match.
+     * @return The value of the matched phrase.
+     */
+    int value(int match) {
+        return endValue[Arrays.binarySearch(endNode, match)];
+    }
+
+    /**
+     * @param match A match.
+     * @return The length of the matched phrase in chars, so it starts {@code length} chars before the end.
+     */
+    int length(int match) {
+        return endLength[Arrays.binarySearch(endNode, match)];
+    }}
@@ -3,91 +3,169 @@ package utils;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Random;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * Utility class for rephrasing text without using AI. It replaces words
  * with synonyms from a thesaurus, prioritizing longer words and avoiding
  * common English loanwords to better preserve sentence meaning.
+ * <p>
+ * Phrases of several words that are in the thesaurus ("gute Arbeit leisten") are replaced as a whole,
+ * and the terms of a {@link Glossary} are never touched.
+ * <p>
+ * The class is thread-safe: the thesaurus is loaded once and never modified, and every call
+ * uses its own random number generator, so exams can be rephrased on many threads at once.
  */
 public class Rephraser {
 
-    private static final Map<String, List<String>> thesaurus = new HashMap<>();
-    private static final Set<String> englishBlocklist = new HashSet<>();
-    private static boolean isLoaded = false;
-    private static final Random random = new Random();
+    /** {@link PhraseMatcher#fold(char)} and {@link PhraseMatcher#isLetterOrDigit(char)} of the Latin-1 chars, for the scan of a line. */
+    private static final char[] LATIN1_FOLDED = new char[256];
+    private static final boolean[] LATIN1_LETTER_OR_DIGIT = new boolean[256];
 
-    // A simple record to hold information about a potential word to be replaced.
-    private record WordCandidate(int index, int length) {}
-
-    private static void loadResources() {
-        if (isLoaded) {
-            return;
+    static {
+        for (char c = 0; c < LATIN1_FOLDED.length; c++) {
+            LATIN1_FOLDED[c] = PhraseMatcher.fold(c);
+            LATIN1_LETTER_OR_DIGIT[c] = PhraseMatcher.isLetterOrDigit(c);
         }
-        loadThesaurus();
-        loadEnglishBlocklist();
-        isLoaded = true;
     }
 
-    private static void loadEnglishBlocklist() {
-        try (InputStream is = Rephraser.class.getResourceAsStream("/english_words.txt");
-             BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.startsWith("#") && !line.trim().isEmpty()) {
-                    englishBlocklist.add(line.trim().toLowerCase());
+    /**
+     * Holds the thesaurus, which is loaded by the class loader on the first call of {@link #rephrase(String)}.
+     * Class initialization runs exactly once and publishes the result safely to all threads, so the
+     * immutable {@link Thesaurus} is read without any locking afterwards.
+     */
+    private static final class Dictionary {
+        private static final Thesaurus THESAURUS = loadResources();
+    }
+
+    private static Thesaurus loadResources() {
+        Thesaurus thesaurus = loadThesaurusIndex();
+        return thesaurus != null ? thesaurus : loadThesaurus();
+    }
+
+    /**
+     * @return The loaded thesaurus, for tests.
+     */
+    static Thesaurus thesaurus() {
+        return Dictionary.THESAURUS;
+    }
+
+    /**
+     * Loads the binary index compiled from the thesaurus and the English blocklist at build time
+     * (see {@link ThesaurusCompiler}). The index is memory-mapped if it is a plain file on the class
+     * path, otherwise (e.g. inside a jar) it is read into one buffer.
+     * @return The thesaurus, or {@code null} if the text files must be parsed instead.
+     */
+    private static Thesaurus loadThesaurusIndex() {
+        URL url = Rephraser.class.getResource("/thesaurus.idx");
+        if (url == null) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer;
+            if ("file".equals(url.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            } else {
+                try (InputStream is = url.openStream()) {
+                    buffer = ByteBuffer.wrap(is.readAllBytes());
                 }
             }
-            System.out.println("English blocklist loaded with " + englishBlocklist.size() + " words.");
+            Thesaurus thesaurus = Thesaurus.readIndex(buffer);
+            System.out.println("Thesaurus index loaded with " + thesaurus.size() + " entries in " + thesaurus.synsetCount() + " synsets.");
+            return thesaurus;
         } catch (Exception e) {
-            System.err.println("Failed to load English blocklist file.");
-            // Continue without the blocklist
+            System.err.println("Failed to load thesaurus index, parsing the thesaurus file instead: " + e.getMessage());
+            return null;
         }
     }
 
-    private static void loadThesaurus() {
+    private static Thesaurus loadThesaurus() {
         try (InputStream is = Rephraser.class.getResourceAsStream("/openthesaurus.txt");
              BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("#")) {
-                    continue; // Ignore comments
-                }
-                
-                List<String> potentialSynonyms = Arrays.asList(line.split(";"));
-                List<String> cleanSynonyms = potentialSynonyms.stream()
-                                                     .filter(s -> !s.contains("(") && !s.contains(")") && !s.trim().contains(" "))
-                                                     .collect(Collectors.toList());
-
-                if (cleanSynonyms.size() > 1) {
-                    for (String word : cleanSynonyms) {
-                        List<String> others = new ArrayList<>(cleanSynonyms);
-                        others.remove(word);
-                        thesaurus.put(word.toLowerCase(), others);
-                    }
+            BufferedReader blocklist = openEnglishBlocklist();
+            Thesaurus thesaurus;
+            try {
+                thesaurus = Thesaurus.read(reader, blocklist);
+            } finally {
+                if (blocklist != null) {
+                    blocklist.close();
                 }
             }
-            System.out.println("Thesaurus loaded with " + thesaurus.size() + " entries.");
+            System.out.println("Thesaurus loaded with " + thesaurus.size() + " entries in " + thesaurus.synsetCount() + " synsets.");
+            return thesaurus;
         } catch (Exception e) {
             System.err.println("Failed to load thesaurus file.");
             e.printStackTrace();
+            return Thesaurus.EMPTY;
+        }
+    }
+
+    private static BufferedReader openEnglishBlocklist() {
+        InputStream is = Rephraser.class.getResourceAsStream("/english_words.txt");
+        if (is == null) {
+            System.err.println("Failed to load English blocklist file.");
+            return null; // Continue without the blocklist
         }
+        return new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Loads the thesaurus now instead of on the first call of {@link #rephrase(String)}, and rephrases
+     * a sample sentence so the rephrasing code is compiled. Meant for a background thread at startup.
+     * @return The number of entries of the thesaurus.
+     */
+    public static int warmUp() {
+        rephrase("Die Bearbeitung dieser Aufgabe ist eine gute Arbeit.", new SplittableRandom(0));
+        return Dictionary.THESAURUS.size();
     }
 
+    /**
+     * Rephrases a text by replacing up to two of the longest replaceable words per line with synonyms.
+     * Uses the random number generator of the calling thread, so concurrent calls do not contend.
+     * @param originalText The text to rephrase.
+     * @return The rephrased text, or the original text if it is blank or no thesaurus is available.
+     */
     public static String rephrase(String originalText) {
-        loadResources();
-        if (originalText == null || originalText.trim().isEmpty() || !isLoaded || thesaurus.isEmpty()) {
+        return rephrase(originalText, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Rephrases a text like {@link #rephrase(String)}, drawing the synonyms from the given generator.
+     * With a seeded generator the result is reproducible. The generator is only used by this call;
+     * it must not be shared with other threads at the same time.
+     * @param originalText The text to rephrase.
+     * @param random The random number generator of this call, e.g. a {@link java.util.SplittableRandom}.
+     * @return The rephrased text, or the original text if it is blank or no thesaurus is available.
+     */
+    public static String rephrase(String originalText, RandomGenerator random) {
+        return rephrase(originalText, random, Glossary.EMPTY);
+    }
+
+    /**
+     * Rephrases a text like {@link #rephrase(String, RandomGenerator)}, but leaves the terms of a glossary
+     * unchanged: no word or phrase overlapping a protected term is replaced.
+     * @param originalText The text to rephrase.
+     * @param random The random number generator of this call, e.g. a {@link java.util.SplittableRandom}.
+     * @param glossary The protected terms, e.g. of the exam.
+     * @return The rephrased text, or the original text if it is blank or no thesaurus is available.
+     */
+    public static String rephrase(String originalText, RandomGenerator random, Glossary glossary) {
+        if (originalText == null || originalText.trim().isEmpty()) {
+            return originalText;
+        }
+        Thesaurus thesaurus = Dictionary.THESAURUS;
+        if (thesaurus.size() == 0) {
             return originalText;
         }
 
@@ -96,7 +174,7 @@ public class Rephraser {
 
         for (int i = 0; i < lines.length; i++) {
             String line = lines[i];
-            rephrasedText.append(rephraseLine(line));
+            rephrasedText.append(rephraseLine(line, thesaurus, true, glossary.matcher(), random));
             if (i < lines.length - 1) {
                 rephrasedText.append("\n");
             }
@@ -104,47 +182,331 @@ public class Rephraser {
         return rephrasedText.toString();
     }
 
-    private static String rephraseLine(String line) {
-        String[] words = line.split("(?<=\\W)|(?=\\W)");
-        List<WordCandidate> candidates = new ArrayList<>();
-
-        for (int i = 0; i < words.length; i++) {
-            String word = words[i];
-            String lowerCaseWord = word.toLowerCase();
+    /**
+     * Replaces the two longest replaceable words or phrases of a line, which must not overlap. A single
+     * pass over the chars finds
+     * <ul>
+     *   <li>the words: maximal runs of ASCII word chars ({@code [A-Za-z0-9_]}, like the regex class
+     *       {@code \\w}). A word is replaceable if it consists of more than three letters and is in the
+     *       thesaurus, which is checked case-insensitively on the line itself, without creating strings.
+     *       The hash for the lookup is computed while scanning the word.</li>
+     *   <li>the phrases of the thesaurus ({@link PhraseScan}), which reuses the hashes of the words and
+     *       looks at the chars between them.</li>
+     * </ul>
+     * A second pass, only with a glossary, finds its protected terms with one step of its
+     * {@link PhraseMatcher} per char. Phrases and protected terms only count as whole words.
+     * Candidates overlapping a protected term are dropped. On equal length the earlier candidate wins,
+     * so without phrases and protected terms the result is the same as with words alone.
+     */
+    static String rephraseLine(String line, Thesaurus thesaurus, boolean phrases, PhraseMatcher glossary, RandomGenerator random) {
+        Candidates candidates = new Candidates();
+        PhraseScan phraseScan = phrases ? new PhraseScan(line, thesaurus, candidates) : null;
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (!isWordChar(c)) {
+                if (phraseScan != null) {
+                    phraseScan.step(i, c);
+                }
+                i++;
+                continue;
+            }
+            int start = i;
+            boolean letters = true;
+            int hash = 0;
+            while (i < length && isWordChar(c = line.charAt(i))) {
+                letters &= isLetter(c);
+                hash = 31 * hash + LATIN1_FOLDED[c];
+                i++;
+            }
+            if (i - start > 3 && letters) {
+                int key = thesaurus.find(line, start, i, hash);
+                if (key >= 0) {
+                    candidates.add(start, i, key);
+                }
+            }
+            if (phraseScan == null) {
+                continue;
+            }
+            if (letters) {
+                phraseScan.word(start, i, hash);
+            } else {
+                for (int j = start; j < i; j++) { // Digits and '_', which is no letter or digit
+                    phraseScan.step(j, line.charAt(j));
+                }
+            }
+        }
+        if (phraseScan != null) {
+            phraseScan.step(length, ' ');
+        }
 
-            // A word is a candidate if it's alphabetic, long enough, in the thesaurus, and not on the English blocklist.
-            if (word.length() > 3 && 
-                word.matches("[\\p{L}]+") && 
-                thesaurus.containsKey(lowerCaseWord) && 
-                !englishBlocklist.contains(lowerCaseWord)) {
-                candidates.add(new WordCandidate(i, word.length()));
+        int[] protectedSpans = null; // start, end
+        int protectedCount = 0;
+        if (glossary != PhraseMatcher.EMPTY) { // Most texts are rephrased without a glossary
+            int state = 0;
+            for (int j = 0; j < length; j++) {
+                state = glossary.step(state, line, j);
+                for (int match = glossary.match(state); match >= 0; match = glossary.nextMatch(match)) {
+                    if (PhraseMatcher.endsWord(line, j + 1)) {
+                        protectedSpans = addSpan(protectedSpans, protectedCount++, j + 1 - glossary.length(match), j + 1);
+                    }
+                }
             }
         }
 
-        if (candidates.isEmpty()) {
+        int first = best(candidates, protectedSpans, protectedCount, -1, -1);
+        if (first < 0) {
             return line;
         }
+        int firstStart = candidates.start(first), firstEnd = candidates.end(first);
+        int second = best(candidates, protectedSpans, protectedCount, firstStart, firstEnd);
+        int secondStart = second >= 0 ? candidates.start(second) : -1;
+        int secondEnd = second >= 0 ? candidates.end(second) : -1;
 
-        // Sort candidates by length, longest first.
-        candidates.sort((c1, c2) -> Integer.compare(c2.length(), c1.length()));
-        
-        int replacements = Math.min(2, candidates.size());
+        // Draw the longest candidate first, so a seeded generator gives the same synonyms as before
+        String firstSynonym = synonymFor(line, firstStart, candidates.key(first), thesaurus, random);
+        String secondSynonym = second >= 0 ? synonymFor(line, secondStart, candidates.key(second), thesaurus, random) : null;
+        if (firstSynonym == null && secondSynonym == null) {
+            return line;
+        }
 
-        for (int i = 0; i < replacements; i++) {
-            WordCandidate candidate = candidates.get(i);
-            int indexToReplace = candidate.index();
-            String originalWord = words[indexToReplace];
-            List<String> synonyms = thesaurus.get(originalWord.toLowerCase());
+        StringBuilder result = new StringBuilder(length + 16);
+        int position = 0;
+        if (secondSynonym != null && secondStart < firstStart) {
+            position = replace(result, line, position, secondStart, secondEnd - secondStart, secondSynonym);
+        }
+        if (firstSynonym != null) {
+            position = replace(result, line, position, firstStart, firstEnd - firstStart, firstSynonym);
+        }
+        if (secondSynonym != null && secondStart > firstStart) {
+            position = replace(result, line, position, secondStart, secondEnd - secondStart, secondSynonym);
+        }
+        return result.append(line, position, length).toString();
+    }
 
-            if (synonyms != null && !synonyms.isEmpty()) {
-                String synonym = synonyms.get(random.nextInt(synonyms.size()));
-                // Preserve case
-                if (Character.isUpperCase(originalWord.charAt(0))) {
-                    synonym = Character.toUpperCase(synonym.charAt(0)) + synonym.substring(1);
+    /**
+     * Finds the longest candidate, the earliest on equal length, that overlaps neither a protected
+     * span nor the excluded range.
+     * @return The index of the candidate, or -1 if there is none.
+     */
+    private static int best(Candidates candidates, int[] protectedSpans, int protectedCount, int excludedStart, int excludedEnd) {
+        int best = -1, bestLength = 0, bestStart = 0;
+        for (int c = 0; c < candidates.count; c++) {
+            int start = candidates.start(c), end = candidates.end(c);
+            int candidateLength = end - start;
+            if (candidateLength < bestLength || (candidateLength == bestLength && start > bestStart)) {
+                continue;
+            }
+            if (start < excludedEnd && excludedStart < end) {
+                continue;
+            }
+            boolean isProtected = false;
+            for (int p = 0; p < protectedCount && !isProtected; p++) {
+                isProtected = start < protectedSpans[2 * p + 1] && protectedSpans[2 * p] < end;
+            }
+            if (!isProtected) {
+                best = c;
+                bestLength = candidateLength;
+                bestStart = start;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The replaceable words and phrases of a line, in the order they were found.
+     */
+    private static final class Candidates {
+        private int[] values = new int[3 * 8]; // start, end, key
+        private int count;
+
+        void add(int start, int end, int key) {
+            if (3 * count + 3 > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[3 * count] = start;
+            values[3 * count + 1] = end;
+            values[3 * count + 2] = key;
+            count++;
+        }
+
+        int start(int index) {
+            return values[3 * index];
+        }
+
+        int end(int index) {
+            return values[3 * index + 1];
+        }
+
+        int key(int index) {
+            return values[3 * index + 2];
+        }
+    }
+
+    /**
+     * Finds the phrases of the thesaurus in a line while it is scanned, and adds them to the candidates.
+     * The scan is fed the words of the line with their hashes ({@link #word}) and every other char
+     * ({@link #step}). It keeps the hash of the run of non-whitespace chars so far. A run that may start a
+     * phrase ({@link Thesaurus#phraseFlags(int)}) stays open and is extended by the following runs while
+     * the filter allows it. The hash of an extended range is combined
+     * from the hashes of its runs, so no char is read twice, and only the ranges the filter marks as
+     * possible phrases are looked up in the thesaurus.
+     */
+    private static final class PhraseScan {
+        private final String line;
+        private final Thesaurus thesaurus;
+        private final Candidates candidates;
+        private int tokenStart = -1, tokenHash; // The run of non-whitespace chars so far
+        private int[] prefixes; // start, hash including the space after it
+        private int prefixCount;
+        private boolean previousLetterOrDigit;
+
+        PhraseScan(String line, Thesaurus thesaurus, Candidates candidates) {
+            this.line = line;
+            this.thesaurus = thesaurus;
+            this.candidates = candidates;
+        }
+
+        /**
+         * Continues the scan with a run of ASCII letters, like a {@link #step} for each of them.
+         * @param hash The hash of the run (see {@link Thesaurus#hash(int, char)}).
+         */
+        void word(int start, int end, int hash) {
+            if (tokenStart < 0) {
+                tokenStart = start;
+                tokenHash = hash;
+            } else {
+                if (!previousLetterOrDigit) {
+                    findPhrasesFrom(start);
                 }
-                words[indexToReplace] = synonym;
+                tokenHash = tokenHash * power31(end - start) + hash;
             }
+            previousLetterOrDigit = true;
         }
-        return String.join("", words);
+
+        /**
+         * Continues the scan with one char; after the last char of the line, with a space.
+         */
+        void step(int i, char c) {
+            char folded;
+            boolean letterOrDigit;
+            if (c < LATIN1_FOLDED.length) {
+                folded = LATIN1_FOLDED[c];
+                letterOrDigit = LATIN1_LETTER_OR_DIGIT[c];
+            } else {
+                folded = PhraseMatcher.fold(c);
+                letterOrDigit = PhraseMatcher.isLetterOrDigit(c);
+            }
+            // Lags one char behind: a range ends where the next char is no letter or digit
+            if (prefixCount > 0 && tokenStart >= 0 && !letterOrDigit) {
+                // Look up the open phrase prefixes extended by the run so far; at its end, keep those that continue
+                int power = power31(i - tokenStart);
+                int open = 0;
+                for (int p = 0; p < prefixCount; p++) {
+                    int hash = prefixes[2 * p + 1] * power + tokenHash;
+                    int flags = thesaurus.phraseFlags(hash);
+                    if ((flags & Thesaurus.PHRASE) != 0) {
+                        int key = thesaurus.find(line, prefixes[2 * p], i, hash);
+                        if (key >= 0) {
+                            candidates.add(prefixes[2 * p], i, key);
+                        }
+                    }
+                    if (folded != ' ' || (flags & Thesaurus.PHRASE_PREFIX) != 0) {
+                        prefixes[2 * open] = prefixes[2 * p];
+                        prefixes[2 * open++ + 1] = folded == ' ' ? 31 * hash + ' ' : prefixes[2 * p + 1];
+                    }
+                }
+                prefixCount = open;
+            }
+            if (folded == ' ') {
+                if (tokenStart < 0) {
+                    prefixCount = 0; // Phrases have single spaces
+                } else if ((thesaurus.phraseFlags(tokenHash) & Thesaurus.PHRASE_PREFIX) != 0) {
+                    prefixes = addSpan(prefixes, prefixCount++, tokenStart, 31 * tokenHash + ' ');
+                }
+                tokenStart = -1;
+            } else if (tokenStart < 0) {
+                tokenStart = i;
+                tokenHash = folded;
+            } else {
+                if (!previousLetterOrDigit) {
+                    findPhrasesFrom(i);
+                }
+                tokenHash = 31 * tokenHash + folded;
+            }
+            previousLetterOrDigit = letterOrDigit;
+        }
+
+        /**
+         * Adds the phrases starting at a word inside a run of non-whitespace chars, e.g. after a hyphen
+         * or parenthesis. This is rare, so the chars are simply scanned ahead.
+         */
+        private void findPhrasesFrom(int start) {
+            int hash = 0;
+            boolean spaced = false; // Single words are no phrases, even if the filter says so
+            for (int end = start; end < line.length(); ) {
+                char next = PhraseMatcher.fold(line.charAt(end++));
+                if (next == ' ') {
+                    if ((thesaurus.phraseFlags(hash) & Thesaurus.PHRASE_PREFIX) == 0) {
+                        return;
+                    }
+                    spaced = true;
+                }
+                hash = 31 * hash + next;
+                if (spaced && next != ' ' && PhraseMatcher.endsWord(line, end) && (thesaurus.phraseFlags(hash) & Thesaurus.PHRASE) != 0) {
+                    int key = thesaurus.find(line, start, end, hash);
+                    if (key >= 0) {
+                        candidates.add(start, end, key);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return 31 to the power of n, the factor that appends a range of n chars to a hash.
+         */
+        private static int power31(int n) {
+            int power = 1;
+            for (int base = 31; n > 0; n >>= 1, base *= base) {
+                if ((n & 1) != 0) {
+                    power *= base;
+                }
+            }
+            return power;
+        }
+    }
+
+    private static int[] addSpan(int[] spans, int index, int start, int end) {
+        if (spans == null) {
+            spans = new int[2 * 4];
+        } else if (2 * index + 2 > spans.length) {
+            spans = Arrays.copyOf(spans, spans.length * 2);
+        }
+        spans[2 * index] = start;
+        spans[2 * index + 1] = end;
+        return spans;
+    }
+
+    private static String synonymFor(String line, int start, int key, Thesaurus thesaurus, RandomGenerator random) {
+        String synonym = thesaurus.randomSynonym(key, random);
+        // Preserve case
+        if (synonym != null && Character.isUpperCase(line.charAt(start))) {
+            synonym = Character.toUpperCase(synonym.charAt(0)) + synonym.substring(1);
+        }
+        return synonym;
+    }
+
+    private static int replace(StringBuilder result, String line, int position, int start, int length, String synonym) {
+        result.append(line, position, start).append(synonym);
+        return start + length;
+    }
+
+    private static boolean isWordChar(char c) {
+        return isLetter(c) || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
     }
 }
@@ -0,0 +1,69 @@
+package utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Utility class for measuring the cold start of the application. Two kinds of entries are recorded
+ * and printed to the console:
+ * <ul>
+ *   <li>phases, e.g. loading the FXML, with their own duration ({@link #record(String, long)}), and</li>
+ *   <li>milestones, e.g. the first frame, with the time since the start of the application
+ *       ({@link #milestone(String)}).</li>
+ * </ul>
+ * Phases may be nested, e.g. the controller's {@code initialize} runs while the FXML is loaded.
+ * The entries are kept in the order they were recorded, so the startup can be compared across versions.
+ */
+public class StartupTimer {
+
+    private static long start = System.nanoTime();
+    private static final Map<String, Long> entries = new LinkedHashMap<>();
+
+    /**
+     * Marks the start of the application and forgets all entries. Called first thing in {@code main};
+     * otherwise the time is measured from loading this class.
+     */
+    public static synchronized void start() {
+        start = System.nanoTime();
+        entries.clear();
+    }
+
+    /**
+     * @return The current time, to be passed to {@link #record(String, long)} at the end of a phase.
+     */
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a phase.
+     * @param phase The name of the phase.
+     * @param phaseStart The time the phase started, from {@link #now()}.
+     * @return The duration in milliseconds.
+     */
+    public static synchronized long record(String phase, long phaseStart) {
+        long millis = (System.nanoTime() - phaseStart) / 1_000_000;
+        entries.put(phase, millis);
+        System.out.println("Startup: " + phase + " " + millis + " ms");
+        return millis;
+    }
+
+    /**
+     * Records a milestone of the startup.
+     * @param milestone The name of the milestone.
+     * @return The time since the start of the application in milliseconds.
+     */
+    public static synchronized long milestone(String milestone) {
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        entries.put(milestone, millis);
+        System.out.println("Startup: " + milestone + " nach " + millis + " ms");
+        return millis;
+    }
+
+    /**
+     * @return The recorded phases and milestones in milliseconds, in the order they were recorded.
+     */
+    public static synchronized Map<String, Long> getEntries() {
+        return new LinkedHashMap<>(entries);
+    }
+}
@@ -0,0 +1,628 @@
+package utils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.random.RandomGenerator;
+
+/**
+ * Compact, immutable synonym index built from the OpenThesaurus text format (one synset per line,
+ * members separated by ";").
+ * <p>
+ * Instead of a map from every word to its own list of synonyms, the index stores each distinct
+ * word once in a shared character pool and the synsets as int arrays in compressed rows:
+ * <ul>
+ *   <li>{@code chars}/{@code wordStart}: the interned surface forms, addressed by word id.</li>
+ *   <li>{@code keyOffset}/{@code keyLength}: the lower case lookup keys, also in the pool. A key
+ *       that is spelled like a surface form shares its characters.</li>
+ *   <li>{@code table}: an open addressing hash table from the key hash to the key id.</li>
+ *   <li>{@code keySynsetStart}/{@code keySynsets}: key id → the ids of all synsets containing the key.</li>
+ *   <li>{@code synsetStart}/{@code synsetMembers}: synset id → the word ids of its members.</li>
+ * </ul>
+ * A word that belongs to several synsets keeps all of them. The memory is linear in the size of
+ * the file instead of quadratic in the synset size, and consists of a few large arrays without
+ * any per-word objects. Strings are only created for the synonyms that are returned.
+ * <p>
+ * Members may be phrases of several words ("gute Arbeit leisten"). They are stored like words and
+ * can be chosen as synonyms. They are looked up in {@code table} like words; to find them in a text
+ * without trying every range, the small filter {@code phraseFilter} marks the hashes of the phrase
+ * keys and of their word prefixes ("gute", "gute arbeit"), so a scan stops after the first word that
+ * continues no phrase, and looks up only ranges that may be a phrase (see {@link #phraseFlags(int)}).
+ * <p>
+ * The build compiles the text resources into a binary index ({@code thesaurus.idx}, see
+ * {@link ThesaurusCompiler}), which is loaded by copying the arrays instead of parsing the text.
+ */
+final class Thesaurus {
+
+    /** The first four bytes of a binary index ("ETHS"). */
+    static final int INDEX_MAGIC = 0x45544853;
+
+    /** The version of the binary index format. Indexes of other versions are rejected. */
+    static final int INDEX_VERSION = 3;
+
+    /** Flag of {@link #phraseFlags(int)}: a phrase key continues after the range with a space. */
+    static final int PHRASE_PREFIX = 1;
+
+    /** Flag of {@link #phraseFlags(int)}: the range may be a phrase key. */
+    static final int PHRASE = 2;
+
+    private static final int PHRASE_FLAGS = PHRASE_PREFIX | PHRASE;
+
+    /** A thesaurus without entries. */
+    static final Thesaurus EMPTY = new Builder().build();
+
+    private final char[] chars;
+    private final int[] wordStart;
+    private final int[] wordKey;
+    private final int[] keyOffset;
+    private final int[] keyLength;
+    private final int[] keyHash;
+    private final int[] keySynsetStart;
+    private final int[] keySynsets;
+    private final int[] synsetStart;
+    private final int[] synsetMembers;
+    private final int[] table; // key id + 1, 0 marks an empty slot
+    private final long[] phraseFilter; // 2 bits per slot: the PHRASE_PREFIX and PHRASE flags of the hashes in the slot
+
+    private Thesaurus(char[] chars, int[] wordStart, int[] wordKey, int[] keyOffset, int[] keyLength, int[] keyHash,
+                      int[] keySynsetStart, int[] keySynsets, int[] synsetStart, int[] synsetMembers, int[] table,
+                      long[] phraseFilter) {
+        this.chars = chars;
+        this.wordStart = wordStart;
+        this.wordKey = wordKey;
+        this.keyOffset = keyOffset;
+        this.keyLength = keyLength;
+        this.keyHash = keyHash;
+        this.keySynsetStart = keySynsetStart;
+        this.keySynsets = keySynsets;
+        this.synsetStart = synsetStart;
+        this.synsetMembers = synsetMembers;
+        this.table = table;
+        this.phraseFilter = phraseFilter;
+    }
+
+    /**
+     * Hashes the keys and builds the lookup table and the phrase filter. Blocked keys keep
+     * their id, so they are still recognized as the same word within a synset, but cannot be looked
+     * up or matched.
+     */
+    private static Thesaurus create(char[] chars, int[] wordStart, int[] wordKey, int[] keyOffset, int[] keyLength, boolean[] blocked,
+                                    int[] keySynsetStart, int[] keySynsets, int[] synsetStart, int[] synsetMembers) {
+        int keys = keyOffset.length;
+        int[] keyHash = new int[keys];
+        int[] table = new int[Integer.highestOneBit(Math.max(2, keys * 2 - 1)) << 1];
+        int spaces = 0;
+        for (int key = 0; key < keys; key++) {
+            int hash = 0;
+            for (int i = keyOffset[key]; i < keyOffset[key] + keyLength[key]; i++) {
+                hash = 31 * hash + chars[i]; // Same as String.hashCode()
+                if (chars[i] == ' ' && !blocked[key]) {
+                    spaces++;
+                }
+            }
+            keyHash[key] = hash;
+            if (blocked[key]) {
+                continue;
+            }
+            int slot = slot(hash, table.length);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = key + 1;
+        }
+
+        // A phrase with n spaces has n prefixes; about 4 filter slots of 2 bits per phrase and prefix
+        long[] phraseFilter = new long[Integer.highestOneBit(Math.max(32, spaces / 4)) * 2];
+        for (int key = 0; key < keys; key++) {
+            if (blocked[key] || keyLength[key] == 0) {
+                continue;
+            }
+            int hash = 0;
+            boolean phrase = false;
+            for (int i = keyOffset[key]; i < keyOffset[key] + keyLength[key]; i++) {
+                if (chars[i] == ' ') {
+                    addPhraseFlag(phraseFilter, hash, PHRASE_PREFIX);
+                    phrase = true;
+                }
+                hash = 31 * hash + chars[i];
+            }
+            if (phrase) {
+                addPhraseFlag(phraseFilter, hash, PHRASE);
+            }
+        }
+        return new Thesaurus(chars, wordStart, wordKey, keyOffset, keyLength, keyHash,
+                keySynsetStart, keySynsets, synsetStart, synsetMembers, table, phraseFilter);
+    }
+
+    private static void addPhraseFlag(long[] phraseFilter, int hash, int flag) {
+        int slot = filterSlot(hash, phraseFilter.length);
+        phraseFilter[slot >>> 5] |= (long) flag << ((slot & 31) << 1);
+    }
+
+    /**
+     * @return The slot of a hash in a filter of 32 slots per long; the hash is mixed, since the
+     *         hashes of similar phrases differ little in their low bits.
+     */
+    private static int filterSlot(int hash, int filterLength) {
+        return ((hash * 0x9E3779B9) >>> 7) & (filterLength * 32 - 1);
+    }
+
+    /**
+     * Reads a thesaurus in the OpenThesaurus text format. Comment lines start with "#". Members with
+     * parentheses or "..." placeholders are skipped, and only synsets with at least two remaining
+     * members are kept.
+     * @param reader The reader of the thesaurus file.
+     * @return The thesaurus.
+     * @throws IOException if the file cannot be read.
+     */
+    static Thesaurus read(BufferedReader reader) throws IOException {
+        return read(reader, null);
+    }
+
+    /**
+     * Reads a thesaurus in the OpenThesaurus text format together with a blocklist of words that
+     * must not be replaced (one word per line, comment lines start with "#"). Blocked words can
+     * still be chosen as synonyms of other words.
+     * @param reader The reader of the thesaurus file.
+     * @param blocklistReader The reader of the blocklist, or {@code null} for none.
+     * @return The thesaurus.
+     * @throws IOException if a file cannot be read.
+     */
+    static Thesaurus read(BufferedReader reader, BufferedReader blocklistReader) throws IOException {
+        Builder builder = new Builder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("#")) {
+                continue; // Ignore comments
+            }
+            builder.addSynset(line.split(";"));
+        }
+        if (blocklistReader != null) {
+            while ((line = blocklistReader.readLine()) != null) {
+                if (!line.startsWith("#") && !line.trim().isEmpty()) {
+                    builder.block(line.trim().toLowerCase());
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Writes the thesaurus in the binary index format read by {@link #readIndex(ByteBuffer)}:
+     * a header ({@link #INDEX_MAGIC}, {@link #INDEX_VERSION}) followed by the arrays, each
+     * prefixed with its length. The lookup tables are stored too, so reading the index needs no
+     * hashing.
+     * @param out The output stream.
+     * @throws IOException if the index cannot be written.
+     */
+    void writeIndex(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(INDEX_MAGIC);
+        data.writeInt(INDEX_VERSION);
+        data.writeInt(chars.length);
+        for (char c : chars) {
+            data.writeChar(c);
+        }
+        for (int[] array : new int[][] {wordStart, wordKey, keyOffset, keyLength, keyHash, keySynsetStart, keySynsets, synsetStart, synsetMembers, table}) {
+            data.writeInt(array.length);
+            for (int value : array) {
+                data.writeInt(value);
+            }
+        }
+        data.writeInt(phraseFilter.length);
+        for (long bits : phraseFilter) {
+            data.writeLong(bits);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a thesaurus from the binary index written by {@link #writeIndex(OutputStream)}.
+     * The arrays are copied in bulk, so this costs about as much as copying the buffer.
+     * @param buffer The index, positioned at its start. It may be memory-mapped.
+     * @return The thesaurus.
+     * @throws IOException if the buffer holds no index of this version.
+     */
+    static Thesaurus readIndex(ByteBuffer buffer) throws IOException {
+        try {
+            ByteBuffer data = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+            if (data.getInt() != INDEX_MAGIC || data.getInt() != INDEX_VERSION) {
+                throw new IOException("No thesaurus index of version " + INDEX_VERSION);
+            }
+            char[] chars = new char[data.getInt()];
+            data.asCharBuffer().get(chars);
+            data.position(data.position() + chars.length * Character.BYTES);
+            return new Thesaurus(chars, readInts(data), readInts(data), readInts(data), readInts(data), readInts(data),
+                    readInts(data), readInts(data), readInts(data), readInts(data), readInts(data), readLongs(data));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Thesaurus index is truncated", e);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer data) {
+        int[] array = new int[data.getInt()];
+        data.asIntBuffer().get(array);
+        data.position(data.position() + array.length * Integer.BYTES);
+        return array;
+    }
+
+    private static long[] readLongs(ByteBuffer data) {
+        long[] array = new long[data.getInt()];
+        data.asLongBuffer().get(array);
+        data.position(data.position() + array.length * Long.BYTES);
+        return array;
+    }
+
+    /**
+     * @return The number of distinct lookup keys.
+     */
+    int size() {
+        return keyOffset.length;
+    }
+
+    /**
+     * @return The number of synsets.
+     */
+    int synsetCount() {
+        return synsetStart.length - 1;
+    }
+
+    /**
+     * Extends the hash of a text range, as used by {@link #find(CharSequence, int, int, int)} and
+     * {@link #phraseFlags(int)}, by one char.
+     * @param hash The hash of the range so far; 0 for an empty range.
+     * @param c The next char.
+     * @return The hash of the range including the char.
+     */
+    static int hash(int hash, char c) {
+        return 31 * hash + PhraseMatcher.fold(c);
+    }
+
+    /**
+     * Checks whether a text range may be a phrase key or the first words of one. The filter keeps
+     * two flag bits per slot and no hashes, so a range may have the flags of another one in the same
+     * slot; a phrase is only found by {@link #find(CharSequence, int, int, int)}.
+     * @param hash The hash of the range (see {@link #hash(int, char)}).
+     * @return {@link #PHRASE} if the range may be a phrase key, plus {@link #PHRASE_PREFIX} if a phrase
+     *         key may continue after it with a space; 0 if the range is neither.
+     */
+    int phraseFlags(int hash) {
+        int slot = filterSlot(hash, phraseFilter.length);
+        return (int) (phraseFilter[slot >>> 5] >>> ((slot & 31) << 1)) & PHRASE_FLAGS;
+    }
+
+    /**
+     * @param lowerCaseWord A word or phrase in lower case, with single spaces between the words.
+     * @return {@code true} if the word is in the thesaurus and not blocked.
+     */
+    boolean contains(String lowerCaseWord) {
+        return keyOf(lowerCaseWord) >= 0;
+    }
+
+    /**
+     * Picks a random synonym of a word. Every member of every synset of the word is equally likely,
+     * except the word itself.
+     * @param lowerCaseWord A word in lower case.
+     * @param random The source of randomness.
+     * @return A synonym in its original spelling, or {@code null} if the word has none.
+     */
+    String randomSynonym(String lowerCaseWord, RandomGenerator random) {
+        int key = keyOf(lowerCaseWord);
+        return key < 0 ? null : randomSynonym(key, random);
+    }
+
+    /**
+     * Picks a random synonym of a key found by {@link #find(CharSequence, int, int)}.
+     * @param key The key id.
+     * @param random The source of randomness.
+     * @return A synonym in its original spelling, or {@code null} if the key has none.
+     */
+    String randomSynonym(int key, RandomGenerator random) {
+        int choices = 0;
+        for (int i = keySynsetStart[key]; i < keySynsetStart[key + 1]; i++) {
+            choices += synonymCount(keySynsets[i], key);
+        }
+        if (choices == 0) {
+            return null; // Only spelling variants of the word itself, e.g. "Arbeit;arbeit"
+        }
+        int choice = random.nextInt(choices);
+        for (int i = keySynsetStart[key]; i < keySynsetStart[key + 1]; i++) {
+            int synset = keySynsets[i];
+            for (int m = synsetStart[synset]; m < synsetStart[synset + 1]; m++) {
+                if (wordKey[synsetMembers[m]] != key && choice-- == 0) {
+                    return word(synsetMembers[m]);
+                }
+            }
+        }
+        throw new IllegalStateException("Synonym index out of range for key " + key);
+    }
+
+    /**
+     * Looks up a word or phrase given as a range of a text, ignoring case: every char is compared
+     * {@link PhraseMatcher#fold(char) folded}, i.e. in lower case ({@link Character#toLowerCase(char)},
+     * which matches {@link String#toLowerCase()} for letters without special casing rules) and with
+     * every whitespace char as a space. No string is created for the lookup.
+     * @param text The text containing the word.
+     * @param start The index of the first char of the word.
+     * @param end The index after the last char of the word.
+     * @return The key id, or -1 if the word is not in the thesaurus or blocked.
+     */
+    int find(CharSequence text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = hash(hash, text.charAt(i));
+        }
+        return find(text, start, end, hash);
+    }
+
+    /**
+     * Looks up a word or phrase given as a range of a text like {@link #find(CharSequence, int, int)},
+     * with its hash computed by the caller, e.g. while scanning the text.
+     * @param text The text containing the word.
+     * @param start The index of the first char of the word.
+     * @param end The index after the last char of the word.
+     * @param hash The hash of the range (see {@link #hash(int, char)}).
+     * @return The key id, or -1 if the word is not in the thesaurus or blocked.
+     */
+    int find(CharSequence text, int start, int end, int hash) {
+        int length = end - start;
+        int slot = slot(hash, table.length);
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int key = entry - 1;
+            if (keyHash[key] == hash && keyLength[key] == length && regionEquals(key, text, start, length)) {
+                return key;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return -1;
+    }
+
+    private boolean regionEquals(int key, CharSequence text, int start, int length) {
+        int offset = keyOffset[key];
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != PhraseMatcher.fold(text.charAt(start + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lists the distinct synonyms of a word over all its synsets.
+     * @param lowerCaseWord A word in lower case.
+     * @return The synonyms in their original spelling, in synset order; empty if the word is unknown.
+     */
+    List<String> synonyms(String lowerCaseWord) {
+        int key = keyOf(lowerCaseWord);
+        if (key < 0) {
+            return List.of();
+        }
+        Set<String> synonyms = new LinkedHashSet<>();
+        for (int i = keySynsetStart[key]; i < keySynsetStart[key + 1]; i++) {
+            int synset = keySynsets[i];
+            for (int m = synsetStart[synset]; m < synsetStart[synset + 1]; m++) {
+                if (wordKey[synsetMembers[m]] != key) {
+                    synonyms.add(word(synsetMembers[m]));
+                }
+            }
+        }
+        return List.copyOf(synonyms);
+    }
+
+    private int synonymCount(int synset, int key) {
+        int count = 0;
+        for (int m = synsetStart[synset]; m < synsetStart[synset + 1]; m++) {
+            if (wordKey[synsetMembers[m]] != key) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private String word(int word) {
+        return new String(chars, wordStart[word], wordStart[word + 1] - wordStart[word]);
+    }
+
+    private int keyOf(String lowerCaseWord) {
+        int hash = lowerCaseWord.hashCode();
+        int slot = slot(hash, table.length);
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int key = entry - 1;
+            if (keyHash[key] == hash && keyEquals(key, lowerCaseWord)) {
+                return key;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int key, String word) {
+        if (keyLength[key] != word.length()) {
+            return false;
+        }
+        int offset = keyOffset[key];
+        for (int i = 0; i < word.length(); i++) {
+            if (chars[offset + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int slot(int hash, int tableLength) {
+        return (hash ^ (hash >>> 16)) & (tableLength - 1);
+    }
+
+    /**
+     * Collects synsets and builds the compact index. Words and keys are interned while adding,
+     * so every distinct string is stored once.
+     */
+    static final class Builder {
+        private final Map<String, Integer> wordIds = new HashMap<>();
+        private final Map<String, Integer> keyIds = new HashMap<>();
+        private int[] wordKey = new int[1024];
+        private int[] synsetStart = {0};
+        private int[] synsetMembers = new int[4096];
+        private int memberCount = 0;
+        private int synsetCount = 0;
+        // (key, synset) pairs in insertion order, turned into compressed rows by build()
+        private int[] pairKeys = new int[4096];
+        private int[] pairSynsets = new int[4096];
+        private int pairCount = 0;
+        private int[] lastSynsetOfKey = new int[1024];
+        private final Set<String> blockedKeys = new HashSet<>();
+
+        /**
+         * Blocks a word: it can no longer be looked up, but stays a synonym of other words.
+         * @param lowerCaseWord The word in lower case.
+         * @return This builder.
+         */
+        Builder block(String lowerCaseWord) {
+            blockedKeys.add(lowerCaseWord);
+            return this;
+        }
+
+        /**
+         * Adds a synset. Members with parentheses or "..." placeholders are skipped, and the spaces of
+         * phrases are normalized; a synset with less than two remaining members is ignored.
+         * @param members The members of the synset.
+         * @return This builder.
+         */
+        Builder addSynset(String... members) {
+            int clean = 0;
+            for (String member : members) {
+                if (isClean(member)) {
+                    clean++;
+                }
+            }
+            if (clean < 2) {
+                return this;
+            }
+            int synset = synsetCount++;
+            for (String member : members) {
+                if (!isClean(member)) {
+                    continue;
+                }
+                int word = internWord(isPhrase(member) ? member.trim().replaceAll("\\s+", " ") : member);
+                synsetMembers = ensureCapacity(synsetMembers, memberCount + 1);
+                synsetMembers[memberCount++] = word;
+
+                int key = wordKey[word];
+                if (lastSynsetOfKey[key] != synset + 1) { // A word listed twice in a synset counts once
+                    lastSynsetOfKey[key] = synset + 1;
+                    pairKeys = ensureCapacity(pairKeys, pairCount + 1);
+                    pairSynsets = ensureCapacity(pairSynsets, pairCount + 1);
+                    pairKeys[pairCount] = key;
+                    pairSynsets[pairCount++] = synset;
+                }
+            }
+            synsetStart = ensureCapacity(synsetStart, synsetCount + 1);
+            synsetStart[synsetCount] = memberCount;
+            return this;
+        }
+
+        private static boolean isClean(String member) {
+            return !member.contains("(") && !member.contains(")") && !member.contains("...") && !member.contains("\u2026")
+                    && !member.trim().isEmpty();
+        }
+
+        private static boolean isPhrase(String member) {
+            return member.trim().contains(" ");
+        }
+
+        private int internWord(String word) {
+            Integer id = wordIds.get(word);
+            if (id != null) {
+                return id;
+            }
+            int newId = wordIds.size();
+            wordIds.put(word, newId);
+            wordKey = ensureCapacity(wordKey, newId + 1);
+            wordKey[newId] = internKey(word.toLowerCase());
+            return newId;
+        }
+
+        private int internKey(String key) {
+            Integer id = keyIds.get(key);
+            if (id != null) {
+                return id;
+            }
+            int newId = keyIds.size();
+            keyIds.put(key, newId);
+            lastSynsetOfKey = ensureCapacity(lastSynsetOfKey, newId + 1);
+            return newId;
+        }
+
+        /**
+         * @return The immutable thesaurus.
+         */
+        Thesaurus build() {
+            String[] words = new String[wordIds.size()];
+            wordIds.forEach((word, id) -> words[id] = word);
+            String[] keys = new String[keyIds.size()];
+            keyIds.forEach((key, id) -> keys[id] = key);
+
+            // Pack the surface forms into one character pool; keys spelled like a surface form share its characters
+            StringBuilder pool = new StringBuilder();
+            int[] wordStart = new int[words.length + 1];
+            for (int word = 0; word < words.length; word++) {
+                pool.append(words[word]);
+                wordStart[word + 1] = pool.length();
+            }
+            int[] keyOffset = new int[keys.length];
+            int[] keyLength = new int[keys.length];
+            for (int key = 0; key < keys.length; key++) {
+                Integer word = wordIds.get(keys[key]);
+                if (word != null) {
+                    keyOffset[key] = wordStart[word];
+                } else {
+                    keyOffset[key] = pool.length();
+                    pool.append(keys[key]);
+                }
+                keyLength[key] = keys[key].length();
+            }
+            char[] chars = new char[pool.length()];
+            pool.getChars(0, pool.length(), chars, 0);
+
+            // Counting sort of the (key, synset) pairs by key, keeping the synset order per key
+            int[] keySynsetStart = new int[keys.length + 1];
+            for (int i = 0; i < pairCount; i++) {
+                keySynsetStart[pairKeys[i] + 1]++;
+            }
+            for (int key = 0; key < keys.length; key++) {
+                keySynsetStart[key + 1] += keySynsetStart[key];
+            }
+            int[] keySynsets = new int[pairCount];
+            int[] next = Arrays.copyOf(keySynsetStart, keys.length);
+            for (int i = 0; i < pairCount; i++) {
+                keySynsets[next[pairKeys[i]]++] = pairSynsets[i];
+            }
+
+            boolean[] blocked = new boolean[keys.length];
+            for (int key = 0; key < keys.length; key++) {
+                blocked[key] = blockedKeys.contains(keys[key]);
+            }
+
+            return create(chars, wordStart, Arrays.copyOf(wordKey, words.length), keyOffset, keyLength, blocked,
+                    keySynsetStart, keySynsets, Arrays.copyOf(synsetStart, synsetCount + 1), Arrays.copyOf(synsetMembers, memberCount));
+        }
+
+        private static int[] ensureCapacity(int[] array, int size) {
+            return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+        }
+    }
+}
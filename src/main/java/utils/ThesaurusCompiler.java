@@ -0,0 +1,46 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Build step that compiles {@code openthesaurus.txt} and {@code english_words.txt} into the binary
+ * thesaurus index loaded by {@link Rephraser}. It runs in the {@code process-classes} phase of the
+ * Maven build and writes the index next to the compiled classes, so it is packaged as a resource.
+ * <p>
+ * Usage: {@code ThesaurusCompiler <openthesaurus.txt> <english_words.txt> <thesaurus.idx>}
+ */
+public class ThesaurusCompiler {
+
+    /**
+     * Compiles the thesaurus index.
+     * @param args The thesaurus text file, the blocklist and the index file to write.
+     * @throws IOException if a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: ThesaurusCompiler <openthesaurus.txt> <english_words.txt> <thesaurus.idx>");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        Path index = Paths.get(args[2]);
+        Thesaurus thesaurus;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+             BufferedReader blocklist = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            thesaurus = Thesaurus.read(reader, blocklist);
+        }
+        if (index.getParent() != null) {
+            Files.createDirectories(index.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(index)) {
+            thesaurus.writeIndex(out);
+        }
+        System.out.printf("Thesaurus index with %d entries in %d synsets written to %s (%d KiB, %d ms)%n",
+                thesaurus.size(), thesaurus.synsetCount(), index, Files.size(index) / 1024, (System.nanoTime() - start) / 1_000_000);
+    }
+}
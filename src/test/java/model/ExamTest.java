@@ -98,4 +98,21 @@ class ExamTest {
         exam.setQuestions(questions);
         assertEquals(1, exam.getQuestions().size());
     }
+
+    @Test
+    void testMetadataVersion() {
+        Exam exam = new Exam("Titel", "Autor", "Modul", "WS", "FB", "HS", "keine");
+        long version = exam.getMetadataVersion();
+        exam.setTitle("Titel");
+        exam.setGlossar(new ArrayList<>());
+        exam.addQuestion(new Question());
+        assertEquals(version, exam.getMetadataVersion());
+        assertEquals(version, new Exam(exam).getMetadataVersion());
+
+        exam.setBearbeitungszeit(90);
+        assertTrue(exam.getMetadataVersion() > version);
+        version = exam.getMetadataVersion();
+        exam.setGlossar(List.of("Rekursion"));
+        assertTrue(exam.getMetadataVersion() > version);
+    }
 }
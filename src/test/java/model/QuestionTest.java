@@ -3,6 +3,8 @@ package model;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 class QuestionTest {
@@ -150,4 +152,74 @@ class QuestionTest {
         question.setStartOnNewPage(false);
         assertFalse(question.isStartOnNewPage());
     }
+
+    @Test
+    void testFlagsSetBeforePropertyIsCreated() {
+        Question question = new Question();
+        question.setJustify(true);
+        question.setLargeAnswerBox(true);
+        question.setSelected(false);
+
+        Question copy = new Question(question);
+        assertTrue(copy.isJustify());
+        assertTrue(copy.isLargeAnswerBox());
+        assertFalse(copy.isSelected());
+
+        // The property starts with the value set before and stays in sync afterwards
+        assertTrue(question.justifyProperty().get());
+        question.setJustify(false);
+        assertFalse(question.justifyProperty().get());
+        assertSame(question.justifyProperty(), question.justifyProperty());
+    }
+
+    @Test
+    void testVersions() {
+        Question question = new Question("Title", "Text", 10, "Type", 5);
+        Question sub = new Question("Sub", "Text", 2, "Type", 1);
+        question.addSubQuestion(sub);
+        long version = question.getVersion();
+        long treeVersion = question.getTreeVersion();
+
+        // Setting the same values changes nothing
+        question.setTitle("Title");
+        question.setPoints(10);
+        question.setImage(null);
+        question.setJustify(false);
+        assertEquals(version, question.getVersion());
+
+        Question copy = new Question(question);
+        assertEquals(treeVersion, copy.getTreeVersion());
+
+        sub.setText("Changed");
+        assertEquals(version, question.getVersion());
+        assertTrue(question.getTreeVersion() > treeVersion, "A changed sub-question changes the tree version.");
+        treeVersion = question.getTreeVersion();
+
+        question.justifyProperty().set(true);
+        assertTrue(question.getVersion() > version, "Changes through the properties count, too.");
+        assertTrue(question.getTreeVersion() > treeVersion);
+        treeVersion = question.getTreeVersion();
+
+        question.removeSubQuestion(sub);
+        assertTrue(question.getSubQuestions().isEmpty());
+        assertTrue(question.getTreeVersion() > treeVersion);
+        assertNotEquals(copy.getTreeVersion(), question.getTreeVersion());
+    }
+
+    @Test
+    void testSubQuestionsChangeOnlyThroughTheQuestion() {
+        Question question = new Question("Title", "Text", 10, "Type", 5);
+        Question sub = new Question("Sub", "Text", 2, "Type", 1);
+        question.addSubQuestion(sub);
+        assertThrows(UnsupportedOperationException.class, () -> question.getSubQuestions().add(new Question()));
+        assertThrows(UnsupportedOperationException.class, () -> question.getSubQuestions().remove(0));
+        assertThrows(UnsupportedOperationException.class, () -> question.getSubQuestions().set(0, new Question()));
+
+        List<Question> subQuestions = new ArrayList<>(List.of(sub));
+        question.setSubQuestions(subQuestions);
+        long treeVersion = question.getTreeVersion();
+        subQuestions.add(new Question("Sub 2", "Text", 2, "Type", 1));
+        assertEquals(1, question.getSubQuestions().size(), "The question keeps a copy of the list.");
+        assertEquals(treeVersion, question.getTreeVersion());
+    }
 }
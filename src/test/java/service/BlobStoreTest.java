@@ -0,0 +1,48 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import model.ImageBlob;
+
+class BlobStoreTest {
+
+    @Test
+    void testPutAndGet(@TempDir Path directory) throws IOException {
+        BlobStore store = new BlobStore(directory.resolve("blobs"));
+        ImageBlob image = ImageBlob.of("Bilddaten".getBytes(StandardCharsets.UTF_8));
+
+        ImageBlob stored = store.put(image);
+        assertEquals(image, stored);
+        assertEquals(store.getDirectory().resolve(image.getHash()), stored.getFile());
+        assertArrayEquals(image.getData(), Files.readAllBytes(stored.getFile()));
+        assertSame(stored, store.put(stored), "An image of the store is not written again.");
+        assertEquals(image, store.put(ImageBlob.ofBase64(image.getBase64())));
+
+        ImageBlob loaded = store.get(image.getHash());
+        assertEquals(image.getBase64(), loaded.getBase64());
+        assertFalse(loaded.isEmpty());
+
+        ImageBlob empty = store.put(ImageBlob.of(new byte[0]));
+        Files.delete(empty.getFile());
+        assertTrue(empty.isEmpty(), "Whether a stored image is empty is known without reading it.");
+        try (var files = Files.list(store.getDirectory())) {
+            assertEquals(1, files.count(), "No temporary files are left.");
+        }
+    }
+
+    @Test
+    void testInvalidImages(@TempDir Path directory) {
+        BlobStore store = new BlobStore(directory);
+        assertThrows(IllegalArgumentException.class, () -> store.put(ImageBlob.ofBase64("nicht kanonisch")));
+        assertThrows(IOException.class, () -> store.get("../exam.json"));
+        assertDoesNotThrow(() -> assertNull(store.get("0".repeat(64)), "A missing image is no error."));
+    }
+}
@@ -0,0 +1,138 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import model.Exam;
+import model.ImageBlob;
+import model.Question;
+
+class EditJournalTest {
+
+    private static byte[] image(int bytes, long seed) {
+        byte[] data = new byte[bytes];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static Exam createExam() {
+        Exam exam = new Exam("Klausur", "Prof. Müller", "Programmierung", "WS 2026", "FB 2", "Hochschule", "keine");
+        for (int i = 1; i <= 3; i++) {
+            exam.addQuestion(new Question("Aufgabe " + i, "<p>Text " + i + "</p>", 10, "Offene Frage", 3));
+        }
+        return exam;
+    }
+
+    private static List<String> titles(Exam exam) {
+        return exam.getQuestions().stream().map(Question::getTitle).toList();
+    }
+
+    @Test
+    void testRecoverEdits(@TempDir Path directory) throws IOException {
+        Exam saved = createExam();
+        Exam exam = new Exam(saved);
+        EditJournal journal = new EditJournal(directory.resolve("autosave"));
+        assertFalse(journal.hasEdits());
+
+        Question changed = exam.getQuestions().get(0);
+        changed.setText("<p>Geändert</p>");
+        changed.setImage(ImageBlob.of(image(5_000, 1)));
+        Question sub = new Question("Teil a", "<p>Teil</p>", 2, "Offene Frage", 1);
+        sub.setMusterloesungImage(ImageBlob.of(image(1_000, 2)));
+        changed.addSubQuestion(sub);
+        journal.putQuestion(0, changed);
+        Question added = new Question("Neu", "<p>Neu</p>", 5, "MCQ", 0);
+        exam.getQuestions().add(1, added);
+        journal.putQuestion(1, added);
+        journal.deleteQuestion(exam.getQuestions().remove(3).getId());
+        exam.setAuthor("Prof. Schmidt");
+        exam.getGlossar().add("Rekursion");
+        journal.putMetadata(exam);
+        journal.putQuestion(0, changed); // Appending the same question again changes nothing
+        journal.close();
+
+        EditJournal reopened = new EditJournal(directory.resolve("autosave"));
+        assertTrue(reopened.hasEdits());
+        Exam recovered = reopened.recover(new Exam(saved));
+        assertEquals(List.of("Aufgabe 1", "Neu", "Aufgabe 2"), titles(recovered));
+        assertEquals("Prof. Schmidt", recovered.getAuthor());
+        assertEquals(List.of("Rekursion"), recovered.getGlossar());
+        Question question = recovered.getQuestions().get(0);
+        assertEquals(changed.getId(), question.getId());
+        assertEquals("<p>Geändert</p>", question.getText());
+        assertArrayEquals(image(5_000, 1), question.getImage().getData());
+        assertArrayEquals(image(1_000, 2), question.getSubQuestions().get(0).getMusterloesungImage().getData());
+
+        reopened.discard();
+        assertFalse(reopened.hasEdits());
+        assertFalse(Files.exists(directory.resolve("autosave")));
+    }
+
+    @Test
+    void testTornDeltaIsDropped(@TempDir Path directory) throws IOException {
+        Path autosave = directory.resolve("autosave");
+        Exam exam = createExam();
+        EditJournal journal = new EditJournal(autosave);
+        journal.deleteQuestion(exam.getQuestions().get(0).getId());
+        journal.close();
+        Path file = autosave.resolve("journal");
+        long valid = Files.size(file);
+        // A crash while writing the next delta
+        Files.write(file, new byte[] {0, 0, 0, 100, 1, 2, 3, 4, '{'}, StandardOpenOption.APPEND);
+
+        EditJournal reopened = new EditJournal(autosave);
+        Exam recovered = reopened.recover(new Exam(exam));
+        assertEquals(List.of("Aufgabe 2", "Aufgabe 3"), titles(recovered));
+        assertEquals(valid, Files.size(file));
+
+        // Further deltas follow the valid ones
+        reopened.deleteQuestion(exam.getQuestions().get(1).getId());
+        reopened.close();
+        assertEquals(List.of("Aufgabe 3"), titles(new EditJournal(autosave).recover(new Exam(exam))));
+    }
+
+    @Test
+    void testSnapshot(@TempDir Path directory) throws IOException {
+        Path autosave = directory.resolve("autosave");
+        Exam exam = createExam();
+        EditJournal journal = new EditJournal(autosave);
+        for (int i = 0; i < EditJournal.COMPACT_AFTER_RECORDS; i++) {
+            exam.getQuestions().get(0).setPoints(i);
+            journal.putQuestion(0, exam.getQuestions().get(0));
+        }
+        assertTrue(journal.needsCompaction());
+        exam.getQuestions().get(1).setImage(ImageBlob.of(image(2_000, 3)));
+        journal.snapshot(exam);
+        assertFalse(journal.needsCompaction());
+        exam.getQuestions().remove(2);
+        journal.putMetadata(exam);
+        journal.deleteQuestion(createExam().getQuestions().get(2).getId()); // Unknown IDs are ignored
+        journal.flush();
+        assertTrue(Files.isRegularFile(autosave.resolve("snapshot")));
+        assertTrue(Files.size(autosave.resolve("journal")) < 1_000, "The snapshot starts the journal over.");
+        journal.close();
+
+        // The saved exam is not needed once there is a snapshot
+        Exam recovered = new EditJournal(autosave).recover(new Exam());
+        assertEquals(List.of("Aufgabe 1", "Aufgabe 2", "Aufgabe 3"), titles(recovered));
+        assertEquals(EditJournal.COMPACT_AFTER_RECORDS - 1, recovered.getQuestions().get(0).getPoints());
+        assertArrayEquals(image(2_000, 3), recovered.getQuestions().get(1).getImage().getData());
+    }
+
+    @Test
+    void testLocation(@TempDir Path directory) {
+        File file = directory.resolve("klausur.exam").toFile();
+        assertEquals(directory.resolve(".klausur.exam.autosave"), EditJournal.forExam(file).getDirectory());
+        assertNotEquals(EditJournal.forExam(file).getDirectory(), EditJournal.forExam(null).getDirectory());
+    }
+}
@@ -0,0 +1,87 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import model.Exam;
+import model.Question;
+
+class ExamCodecTest {
+
+    private static final String LEGACY_MCQ = "{\"title\" : \"Alt\", \"type\" : \"MCQ\", \"text\" : \"A) Eins\\n  B) Zwei\\n\"}";
+
+    @Test
+    void testLegacyFileIsMigrated(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("alt.json").toFile();
+        Files.writeString(file.toPath(), "{\"title\" : \"Klausur\", \"questions\" : [ {\"title\" : \"Oben\", \"type\" : \"Offene Frage\","
+                + " \"text\" : \"Zeile 1\\nZeile 2\", \"subQuestions\" : [ " + LEGACY_MCQ + " ]}, " + LEGACY_MCQ + " ]}", StandardCharsets.UTF_8);
+
+        Exam exam = ExamFiles.load(file);
+        assertEquals("Klausur", exam.getTitle());
+        assertEquals("Zeile 1\nZeile 2", exam.getQuestions().get(0).getText(), "Only MCQ options are converted.");
+        assertEquals("<ol><li>A) Eins</li><li>B) Zwei</li></ol>", exam.getQuestions().get(0).getSubQuestions().get(0).getText());
+        assertEquals("<ol><li>A) Eins</li><li>B) Zwei</li></ol>", exam.getQuestions().get(1).getText());
+    }
+
+    @Test
+    void testCurrentFileIsNotMigrated(@TempDir Path directory) throws IOException {
+        Exam exam = new Exam();
+        exam.addQuestion(new Question("MCQ", "Kein\nHTML", 1, "MCQ", 0));
+        File file = directory.resolve("neu.json").toFile();
+        ExamFiles.save(exam, file);
+        assertTrue(Files.readString(file.toPath()).startsWith("{\n  \"" + ExamCodec.SCHEMA_VERSION_FIELD + "\" : " + ExamCodec.SCHEMA_VERSION + ","),
+                "The schema version comes before the questions.");
+
+        assertEquals("Kein\nHTML", ExamFiles.load(file).getQuestions().get(0).getText());
+
+        File container = directory.resolve("neu.exam").toFile();
+        ExamFiles.save(exam, container);
+        assertEquals(ExamCodec.SCHEMA_VERSION, ExamContainer.readManifest(container).schemaVersion());
+        assertEquals("Kein\nHTML", ExamFiles.load(container).getQuestions().get(0).getText());
+    }
+
+    @Test
+    void testLegacyContainerIsMigrated(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("alt.exam").toFile();
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file.toPath()))) {
+            zip.putNextEntry(new ZipEntry(ExamContainer.MANIFEST));
+            zip.write(("{\"formatVersion\" : 1, \"exam\" : {\"title\" : \"Klausur\"}, \"questions\" : [ {\"name\" : \"questions/1.json\"} ]}")
+                    .getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("questions/1.json"));
+            zip.write(LEGACY_MCQ.getBytes(StandardCharsets.UTF_8));
+        }
+
+        ExamContainer.Manifest manifest = ExamContainer.readManifest(file);
+        assertEquals(ExamCodec.LEGACY_SCHEMA_VERSION, manifest.schemaVersion());
+        assertEquals("<ol><li>A) Eins</li><li>B) Zwei</li></ol>", ExamContainer.readQuestion(file, manifest.questions().get(0)).getText());
+    }
+
+    @Test
+    void testNewerSchemaIsRejected(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("zukunft.json").toFile();
+        Files.writeString(file.toPath(), "{\"" + ExamCodec.SCHEMA_VERSION_FIELD + "\" : " + (ExamCodec.SCHEMA_VERSION + 1) + ", \"questions\" : [ ]}");
+        IOException e = assertThrows(IOException.class, () -> ExamFiles.load(file));
+        assertTrue(e.getMessage().contains("neueren Version"));
+    }
+
+    @Test
+    void testMigrationLeavesHtmlAlone() {
+        ObjectNode properties = ExamCodec.MAPPER.createObjectNode();
+        properties.put("type", "MCQ");
+        properties.put("text", "<ol><li>A) Eins</li></ol>");
+        new ExamCodec.McqOptionsAsList().migrateQuestion(properties);
+        assertEquals("<ol><li>A) Eins</li></ol>", properties.path("text").asText());
+    }
+}
@@ -0,0 +1,304 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import model.Exam;
+import model.ImageBlob;
+import model.Question;
+
+class ExamContainerTest {
+
+    private static String image(int bytes, long seed) {
+        byte[] data = new byte[bytes];
+        new Random(seed).nextBytes(data);
+        return Base64.getEncoder().encodeToString(data);
+    }
+
+    private static Exam createExam() {
+        Exam exam = new Exam("Klausur Informatik", "Prof. Müller", "Programmierung", "WS 2026", "FB 2", "Hochschule", "keine");
+        exam.getGlossar().add("Rekursion");
+        for (int i = 1; i <= 3; i++) {
+            Question question = new Question("Aufgabe " + i, "<p>Text " + i + "</p>", 10, "Offene Frage", 3);
+            question.setImageBase64(image(10_000, 1)); // The same image in every question
+            Question sub = new Question("Teil a", "<p>Teil</p>", 2, "Offene Frage", 1);
+            sub.setMusterloesungImageBase64(image(5_000, 1 + i));
+            question.addSubQuestion(sub);
+            exam.addQuestion(question);
+        }
+        exam.getQuestions().get(2).setMusterloesungImageBase64("kein kanonisches Base64");
+        return exam;
+    }
+
+    @Test
+    void testRoundTrip(@TempDir Path directory) throws IOException {
+        Exam exam = createExam();
+        File file = directory.resolve("klausur.exam").toFile();
+        ExamFiles.save(exam, file);
+
+        try (ZipFile zip = new ZipFile(file)) {
+            List<String> names = Collections.list(zip.entries()).stream().map(ZipEntry::getName).toList();
+            assertEquals(ExamContainer.MANIFEST, names.get(0));
+            assertEquals(1 + 3 + 4, names.size(), "Manifest, three parts and four distinct images.");
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (entry.getName().startsWith("images/")) {
+                    assertEquals(ZipEntry.STORED, entry.getMethod());
+                }
+            }
+        }
+        assertFalse(Files.exists(directory.resolve(BlobStore.DIRECTORY_NAME)), "Containers hold their own images.");
+
+        List<Double> progress = new ArrayList<>();
+        Exam loaded = ExamFiles.load(file, progress::add);
+        assertEquals(exam.getTitle(), loaded.getTitle());
+        assertEquals(exam.getGlossar(), loaded.getGlossar());
+        assertEquals(3, loaded.getQuestions().size());
+        for (int i = 0; i < 3; i++) {
+            Question original = exam.getQuestions().get(i);
+            Question question = loaded.getQuestions().get(i);
+            assertEquals(original.getId(), question.getId());
+            assertEquals(original.getText(), question.getText());
+            assertEquals(original.getImageBase64(), question.getImageBase64());
+            assertEquals(original.getMusterloesungImageBase64(), question.getMusterloesungImageBase64());
+            assertEquals(original.getSubQuestions().get(0).getMusterloesungImageBase64(),
+                    question.getSubQuestions().get(0).getMusterloesungImageBase64());
+        }
+        assertEquals(1.0, progress.get(progress.size() - 1));
+    }
+
+    @Test
+    void testManifestAndSingleQuestion(@TempDir Path directory) throws IOException {
+        Exam exam = createExam();
+        File file = directory.resolve("klausur.exam").toFile();
+        ExamContainer.save(exam, file);
+
+        ExamContainer.Manifest manifest = ExamContainer.readManifest(file);
+        assertEquals(ExamContainer.FORMAT_VERSION, manifest.formatVersion());
+        assertEquals("Prof. Müller", manifest.exam().getAuthor());
+        assertTrue(manifest.exam().getQuestions().isEmpty());
+        assertEquals(List.of("Aufgabe 1", "Aufgabe 2", "Aufgabe 3"),
+                manifest.questions().stream().map(ExamContainer.Part::title).toList());
+
+        ExamContainer.Part part = manifest.questions().get(1);
+        assertEquals(exam.getQuestions().get(1).getId(), part.id());
+        Question question = ExamContainer.readQuestion(file, part);
+        assertEquals("<p>Text 2</p>", question.getText());
+        assertEquals(exam.getQuestions().get(1).getImageBase64(), question.getImageBase64());
+    }
+
+    @Test
+    void testSaveOverTheLoadedContainer(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("klausur.exam").toFile();
+        Exam original = createExam();
+        ExamContainer.save(original, file);
+
+        Exam loaded = ExamFiles.load(file);
+        loaded.getQuestions().get(0).setImageBase64(image(2_000, 42));
+        loaded.removeQuestion(loaded.getQuestions().get(2));
+        ExamContainer.save(loaded, file);
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count(), "The temporary file is moved into place.");
+        }
+
+        // The images of the saved exam now come from the new container
+        assertEquals(image(2_000, 42), loaded.getQuestions().get(0).getImageBase64());
+        assertEquals(original.getQuestions().get(1).getImageBase64(), loaded.getQuestions().get(1).getImageBase64());
+
+        Exam reloaded = ExamFiles.load(file);
+        assertEquals(2, reloaded.getQuestions().size());
+        assertEquals(image(2_000, 42), reloaded.getQuestions().get(0).getImageBase64());
+        assertEquals(original.getQuestions().get(1).getSubQuestions().get(0).getMusterloesungImageBase64(),
+                reloaded.getQuestions().get(1).getSubQuestions().get(0).getMusterloesungImageBase64());
+        try (ZipFile zip = new ZipFile(file)) {
+            assertEquals(1 + 2 + 5, zip.size(), "Images that are no longer used stay until the container is written anew.");
+        }
+    }
+
+    @Test
+    void testMissingImage(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("klausur.exam").toFile();
+        ExamContainer.save(createExam(), file);
+        String missing = createExam().getQuestions().get(0).getImage().getHash();
+        File copy = directory.resolve("ohne-bild.exam").toFile();
+        try (ZipFile zip = new ZipFile(file); ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(copy.toPath()))) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (!entry.getName().endsWith(missing)) {
+                    out.putNextEntry(new ZipEntry(entry.getName()));
+                    zip.getInputStream(entry).transferTo(out);
+                }
+            }
+        }
+
+        Set<String> missingImages = new HashSet<>();
+        Exam loaded = ExamFiles.load(copy, progress -> {}, missingImages);
+        assertEquals(Set.of(missing), missingImages);
+        assertNull(loaded.getQuestions().get(0).getImage());
+        assertEquals("<p>Text 1</p>", loaded.getQuestions().get(0).getText());
+        assertNotNull(loaded.getQuestions().get(0).getSubQuestions().get(0).getMusterloesungImage());
+    }
+
+    @Test
+    void testInvalidContainers(@TempDir Path directory) throws IOException {
+        File empty = directory.resolve("leer.exam").toFile();
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(empty.toPath()))) {
+            zip.putNextEntry(new ZipEntry("readme.txt"));
+        }
+        assertThrows(IOException.class, () -> ExamFiles.load(empty));
+
+        File newer = directory.resolve("neu.exam").toFile();
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(newer.toPath()))) {
+            zip.putNextEntry(new ZipEntry(ExamContainer.MANIFEST));
+            zip.write("{\"formatVersion\" : 99, \"exam\" : {}, \"questions\" : []}".getBytes(StandardCharsets.UTF_8));
+        }
+        assertThrows(IOException.class, () -> ExamFiles.load(newer));
+    }
+
+    @Test
+    void testUnchangedPartsAreReused(@TempDir Path directory) throws IOException {
+        Exam exam = createExam();
+        File file = directory.resolve("klausur.exam").toFile();
+        ExamContainer.save(exam, file);
+        List<ExamContainer.Part> before = ExamContainer.readManifest(file).questions();
+
+        long misses = QuestionJsonCache.SHARED.getMisses();
+        exam.getQuestions().get(1).setText("<p>Geändert</p>");
+        ExamContainer.save(exam, file);
+        assertEquals(misses + 1, QuestionJsonCache.SHARED.getMisses(), "Only the changed question is serialized.");
+
+        List<ExamContainer.Part> after = ExamContainer.readManifest(file).questions();
+        assertEquals(before.get(0).hash(), after.get(0).hash());
+        assertNotEquals(before.get(1).hash(), after.get(1).hash());
+        assertEquals("<p>Geändert</p>", ExamContainer.readQuestion(file, after.get(1)).getText());
+        try (ZipFile zip = new ZipFile(file)) {
+            assertEquals(ZipEntry.STORED, zip.getEntry(after.get(0).name()).getMethod());
+        }
+    }
+
+    @Test
+    void testSaveAppendsOnlyTheChangedEntries(@TempDir Path directory) throws IOException {
+        Exam exam = createExam();
+        File file = directory.resolve("klausur.exam").toFile();
+        ExamContainer.save(exam, file);
+        long length = file.length();
+        long modified = file.lastModified();
+        file.setLastModified(modified - 10_000);
+
+        ExamContainer.save(exam, file);
+        assertEquals(length, file.length());
+        assertEquals(modified - 10_000, file.lastModified(), "An unchanged exam is not written.");
+
+        exam.getQuestions().get(1).setText("<p>Geändert</p>");
+        ExamContainer.save(exam, file);
+        assertTrue(file.length() - length < 5_000, "Neither the images nor the other parts are written again.");
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1);
+        assertFalse(content.contains("<p>Text 2</p>"), "The replaced part is overwritten.");
+
+        Exam loaded = ExamFiles.load(file);
+        assertEquals("<p>Geändert</p>", loaded.getQuestions().get(1).getText());
+        assertEquals(image(10_000, 1), loaded.getQuestions().get(0).getImageBase64());
+        try (ZipFile zip = new ZipFile(file)) {
+            assertEquals(ExamContainer.MANIFEST, zip.entries().nextElement().getName());
+            assertEquals(1 + 3 + 4, zip.size());
+        }
+    }
+
+    @Test
+    void testTornSaveIsDropped(@TempDir Path directory) throws IOException {
+        Exam exam = createExam();
+        File file = directory.resolve("klausur.exam").toFile();
+        ExamContainer.save(exam, file);
+        byte[] saved = Files.readAllBytes(file.toPath());
+
+        // A save that crashed after appending an image, before writing the central directory
+        byte[] torn = new byte[saved.length + 100_000]; // Beyond the end records that ZipFile searches for
+        System.arraycopy(saved, 0, torn, 0, saved.length);
+        torn[saved.length] = 'P';
+        torn[saved.length + 1] = 'K';
+        torn[saved.length + 2] = 3;
+        torn[saved.length + 3] = 4;
+        Files.write(file.toPath(), torn);
+
+        Exam loaded = ExamFiles.load(file);
+        assertEquals(3, loaded.getQuestions().size());
+        assertEquals(image(10_000, 1), loaded.getQuestions().get(0).getImageBase64());
+        assertArrayEquals(torn, Files.readAllBytes(file.toPath()), "Loading does not change the file.");
+
+        // Only saving cuts the torn save off
+        loaded.getQuestions().get(0).setText("<p>Nach dem Absturz</p>");
+        ExamContainer.save(loaded, file);
+        assertTrue(file.length() < torn.length);
+        assertEquals("<p>Nach dem Absturz</p>", ExamFiles.load(file).getQuestions().get(0).getText());
+        assertEquals(image(10_000, 1), loaded.getQuestions().get(0).getImageBase64());
+    }
+
+    @Test
+    void testCorruptFileIsNotChangedByLoading(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("kaputt.exam").toFile();
+        // Bytes after the last end record that is no complete save, but an end record signature inside image data
+        byte[] corrupt = new byte[200_000];
+        new Random(5).nextBytes(corrupt);
+        corrupt[1_000] = 'P';
+        corrupt[1_001] = 'K';
+        corrupt[1_002] = 5;
+        corrupt[1_003] = 6;
+        Files.write(file.toPath(), corrupt);
+
+        assertThrows(IOException.class, () -> ExamFiles.load(file));
+        assertArrayEquals(corrupt, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    void testReplacedImageStaysReadable(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("klausur.exam").toFile();
+        ExamContainer.save(createExam(), file);
+        long length = file.length();
+
+        Exam loaded = ExamFiles.load(file);
+        Question subQuestion = loaded.getQuestions().get(1).getSubQuestions().get(0);
+        ImageBlob oldImage = subQuestion.getMusterloesungImage(); // Read from the container lazily
+        subQuestion.setMusterloesungImageBase64(image(5_000, 99));
+        ExamContainer.save(loaded, file);
+        assertTrue(file.length() - length < 10_000, "The change is appended.");
+
+        // E.g. the undo history still refers to the old image
+        assertEquals(image(5_000, 3), oldImage.getBase64());
+        assertEquals(image(5_000, 99), ExamFiles.load(file).getQuestions().get(1).getSubQuestions().get(0).getMusterloesungImageBase64());
+    }
+
+    @Test
+    void testMostlyUnusedContainerIsWrittenAnew(@TempDir Path directory) throws IOException {
+        Exam exam = createExam();
+        File file = directory.resolve("klausur.exam").toFile();
+        ExamContainer.save(exam, file);
+        long length = file.length();
+
+        for (Question question : exam.getQuestions()) {
+            question.setImage(null);
+            question.getSubQuestions().get(0).setMusterloesungImage(null);
+        }
+        ExamContainer.save(exam, file);
+        assertTrue(file.length() < length / 4, "The unused images are dropped from the file.");
+        try (ZipFile zip = new ZipFile(file)) {
+            assertEquals(1 + 3, zip.size());
+        }
+        assertEquals(3, ExamFiles.load(file).getQuestions().size());
+    }
+}
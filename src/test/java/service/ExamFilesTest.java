@@ -0,0 +1,216 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import model.Exam;
+import model.Question;
+
+class ExamFilesTest {
+
+    private static String image(int bytes, long seed) {
+        byte[] data = new byte[bytes];
+        new Random(seed).nextBytes(data);
+        return Base64.getEncoder().encodeToString(data);
+    }
+
+    private static Exam createExam() {
+        Exam exam = new Exam("Klausur \"Informatik\"", "Prof. Müller", "Programmierung", "WS 2026", "FB 2", "Hochschule", "keine");
+        exam.setAllgemeineHinweise("Zeile 1\nZeile 2\t\\ Ende");
+        Question large = new Question("Bild", "<p>Siehe Abbildung</p>", 10, "Offene Frage", 3);
+        large.setImageBase64(image(200_000, 1));
+        large.setMusterloesungImageBase64(image(50_000, 2));
+        Question sub = new Question("Teil a", "<p>Klein</p>", 2, "Offene Frage", 1);
+        sub.setImageBase64(image(100, 3));
+        large.addSubQuestion(sub);
+        exam.addQuestion(large);
+        exam.addQuestion(new Question("Ohne Bild", "<p>Text mit \"Anführungszeichen\" und äöü</p>", 5, "MCQ", 0));
+        return exam;
+    }
+
+    @Test
+    void testRoundTrip(@TempDir Path directory) throws IOException {
+        Exam exam = createExam();
+        File file = directory.resolve("exam.json").toFile();
+        ExamFiles.save(exam, file);
+
+        List<Double> progress = new ArrayList<>();
+        Exam loaded = ExamFiles.load(file, progress::add);
+
+        assertEquals(exam.getTitle(), loaded.getTitle());
+        assertEquals(exam.getAllgemeineHinweise(), loaded.getAllgemeineHinweise());
+        assertEquals(2, loaded.getQuestions().size());
+        Question large = loaded.getQuestions().get(0);
+        assertEquals(exam.getQuestions().get(0).getId(), large.getId());
+        assertEquals(exam.getQuestions().get(0).getImageBase64(), large.getImageBase64());
+        assertEquals(exam.getQuestions().get(0).getMusterloesungImageBase64(), large.getMusterloesungImageBase64());
+        assertEquals(1, large.getSubQuestions().size());
+        assertEquals(exam.getQuestions().get(0).getSubQuestions().get(0).getImageBase64(), large.getSubQuestions().get(0).getImageBase64());
+        assertEquals(exam.getQuestions().get(1).getText(), loaded.getQuestions().get(1).getText());
+        assertNull(loaded.getQuestions().get(1).getImageBase64());
+
+        assertFalse(progress.isEmpty());
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i) >= progress.get(i - 1), "The progress must not go back.");
+        }
+        assertEquals(1.0, progress.get(progress.size() - 1));
+    }
+
+    @Test
+    void testSpilledImagesSurviveOverwritingTheFile(@TempDir Path directory) throws IOException {
+        // Older files embed their images
+        String image = image(200_000, 1);
+        File file = directory.resolve("exam.json").toFile();
+        Files.writeString(file.toPath(), "{\"questions\" : [ {\"title\" : \"Bild\", \"imageBase64\" : \"" + image
+                + "\", \"musterloesungImageBase64\" : \"" + image + "\"} ]}");
+        Exam loaded = ExamFiles.load(file);
+
+        // Saving over the source must not change the images that were not read yet
+        Files.writeString(file.toPath(), "{}");
+        assertEquals(image, loaded.getQuestions().get(0).getImageBase64());
+
+        Question copy = new Question(loaded.getQuestions().get(0));
+        assertEquals(image, copy.getMusterloesungImageBase64());
+        copy.setImageBase64(null);
+        assertNull(copy.getImageBase64());
+
+        // The next save moves the images into the blob store
+        ExamFiles.save(loaded, file);
+        assertFalse(Files.readString(file.toPath()).contains(image));
+        assertEquals(image, ExamFiles.load(file).getQuestions().get(0).getImageBase64());
+    }
+
+    @Test
+    void testCompactAndEscapedJson(@TempDir Path directory) throws IOException {
+        String spilled = "A\\/B\\\"C\\u00e4" + "x".repeat(ExamFiles.SPILL_THRESHOLD);
+        String json = "{\"title\":\"T\",\"unknown\":{\"a\":[1,2]},\"questions\":[null,"
+                + "{\"title\":\"Q\",\"subQuestions\":null,\"imageBase64\":\"" + spilled + "\"},"
+                + "{\"musterloesungImageBase64\" : \"a\\nb\" ,\"imageBase64\":null}]}";
+        File file = directory.resolve("compact.json").toFile();
+        Files.writeString(file.toPath(), json, StandardCharsets.UTF_8);
+
+        Exam loaded = ExamFiles.load(file);
+        assertEquals("T", loaded.getTitle());
+        assertEquals(2, loaded.getQuestions().size());
+        assertEquals("A/B\"Cä" + "x".repeat(ExamFiles.SPILL_THRESHOLD), loaded.getQuestions().get(0).getImageBase64());
+        assertEquals("a\nb", loaded.getQuestions().get(1).getMusterloesungImageBase64());
+        assertNull(loaded.getQuestions().get(1).getImageBase64());
+    }
+
+    @Test
+    void testNoExam(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("list.json").toFile();
+        Files.writeString(file.toPath(), "[]");
+        assertThrows(IOException.class, () -> ExamFiles.load(file));
+    }
+
+    @Test
+    void testImagesAreSavedAsBlobs(@TempDir Path directory) throws IOException {
+        Exam exam = createExam();
+        exam.getQuestions().get(1).setImageBase64(exam.getQuestions().get(0).getImageBase64());
+        exam.getQuestions().get(1).setMusterloesungImageBase64("kein kanonisches Base64");
+        File file = directory.resolve("exam.json").toFile();
+        ExamFiles.save(exam, file);
+
+        String json = Files.readString(file.toPath());
+        String hash = exam.getQuestions().get(0).getImage().getHash();
+        assertTrue(json.contains("\"image\" : \"" + hash + "\""));
+        assertFalse(json.contains(exam.getQuestions().get(0).getImageBase64()), "Stored images are not embedded.");
+        assertTrue(json.contains("\"musterloesungImageBase64\" : \"kein kanonisches Base64\""));
+        try (var files = Files.list(directory.resolve(BlobStore.DIRECTORY_NAME))) {
+            assertEquals(3, files.count(), "The shared image is stored once.");
+        }
+
+        Exam loaded = ExamFiles.load(file);
+        assertEquals(exam.getQuestions().get(0).getImage(), loaded.getQuestions().get(1).getImage());
+        assertEquals(exam.getQuestions().get(0).getImageBase64(), loaded.getQuestions().get(1).getImageBase64());
+        assertEquals("kein kanonisches Base64", loaded.getQuestions().get(1).getMusterloesungImageBase64());
+        assertEquals(exam.getQuestions().get(0).getSubQuestions().get(0).getImageBase64(),
+                loaded.getQuestions().get(0).getSubQuestions().get(0).getImageBase64());
+    }
+
+    @Test
+    void testMissingBlob(@TempDir Path directory) throws IOException {
+        File file = directory.resolve("exam.json").toFile();
+        ExamFiles.save(createExam(), file);
+        try (var files = Files.list(directory.resolve(BlobStore.DIRECTORY_NAME))) {
+            for (Path blob : files.toList()) {
+                Files.delete(blob);
+            }
+        }
+        Set<String> missingImages = new LinkedHashSet<>();
+        Exam loaded = ExamFiles.load(file, progress -> {}, missingImages);
+        assertEquals(3, missingImages.size(), "Every missing image is reported once.");
+        Question large = loaded.getQuestions().get(0);
+        assertNull(large.getImage());
+        assertNull(large.getMusterloesungImage());
+        assertNull(large.getSubQuestions().get(0).getImage());
+        assertEquals("<p>Siehe Abbildung</p>", large.getText(), "The questions are loaded without the images.");
+    }
+
+    @Test
+    void testEmbeddedImages(@TempDir Path directory) throws IOException {
+        Exam exam = createExam();
+        File file = directory.resolve("exam.json").toFile();
+        ExamFiles.save(exam, file, true);
+        assertFalse(Files.exists(directory.resolve(BlobStore.DIRECTORY_NAME)), "The file is self-contained.");
+        assertFalse(Files.readString(file.toPath()).contains("\"image\" :"));
+
+        // The file can be passed on alone
+        File copy = Files.createDirectory(directory.resolve("kopie")).resolve("exam.json").toFile();
+        Files.copy(file.toPath(), copy.toPath());
+        Exam loaded = ExamFiles.load(copy);
+        Question large = loaded.getQuestions().get(0);
+        assertEquals(exam.getQuestions().get(0).getImageBase64(), large.getImageBase64());
+        assertEquals(exam.getQuestions().get(0).getMusterloesungImageBase64(), large.getMusterloesungImageBase64());
+        assertEquals(exam.getQuestions().get(0).getSubQuestions().get(0).getImageBase64(), large.getSubQuestions().get(0).getImageBase64());
+    }
+
+    private static JsonNode readWithoutSchemaVersion(File file) throws IOException {
+        ObjectNode json = (ObjectNode) ExamCodec.MAPPER.readTree(file);
+        assertEquals(ExamCodec.SCHEMA_VERSION, json.remove(ExamCodec.SCHEMA_VERSION_FIELD).asInt());
+        return json;
+    }
+
+    @Test
+    void testOnlyChangedQuestionsAreSerialized(@TempDir Path directory) throws IOException {
+        Exam exam = createExam();
+        for (int i = 0; i < 50; i++) {
+            exam.addQuestion(new Question("Frage " + i, "<p>Text " + i + "</p>", 1, "Offene Frage", 2));
+        }
+        File file = directory.resolve("exam.json").toFile();
+        ExamFiles.save(exam, file);
+        // The file is the same as if the exam had been written in one piece
+        assertEquals(ExamCodec.MAPPER.valueToTree(exam), readWithoutSchemaVersion(file));
+
+        long misses = QuestionJsonCache.SHARED.getMisses();
+        exam.getQuestions().get(0).getSubQuestions().get(0).setText("<p>Geändert</p>");
+        exam.getQuestions().get(10).setTitle(exam.getQuestions().get(10).getTitle()); // Not a change
+        exam.setAuthor("Prof. Schmidt");
+        ExamFiles.save(exam, file);
+        assertEquals(misses + 1, QuestionJsonCache.SHARED.getMisses());
+        assertEquals(ExamCodec.MAPPER.valueToTree(exam), readWithoutSchemaVersion(file));
+
+        Exam loaded = ExamFiles.load(file);
+        assertEquals("Prof. Schmidt", loaded.getAuthor());
+        assertEquals("<p>Geändert</p>", loaded.getQuestions().get(0).getSubQuestions().get(0).getText());
+        assertEquals(52, loaded.getQuestions().size());
+    }
+}
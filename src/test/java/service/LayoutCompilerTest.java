@@ -0,0 +1,154 @@
+package service;
+
+import model.Question;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LayoutCompilerTest {
+
+    @BeforeEach
+    void setUp() {
+        LayoutCompiler.clearCache();
+    }
+
+    @Test
+    void testParagraphsAndRunStyles() {
+        Question question = new Question("Open", "<p>Plain <u>under</u> <strike>struck</strike></p><p><b><i>both</i></b><br>next</p>", 4, "Offene Frage", 3);
+
+        QuestionLayout layout = LayoutCompiler.compile(question, "1");
+
+        assertEquals(QuestionLayout.Kind.OFFENE_FRAGE, layout.kind());
+        assertEquals("1. Open ", layout.heading());
+        assertEquals("(4 Punkte)", layout.points());
+        assertEquals(3, layout.answerLines());
+
+        // The first <p> fills the initial paragraph, the second one opens a new paragraph
+        assertEquals(2, layout.content().size());
+        QuestionLayout.Paragraph first = (QuestionLayout.Paragraph) layout.content().get(0);
+        QuestionLayout.Text under = (QuestionLayout.Text) first.inlines().get(1);
+        assertEquals("under", under.text());
+        assertTrue(under.style().underline());
+        assertFalse(under.style().strikethrough());
+        QuestionLayout.Text struck = (QuestionLayout.Text) first.inlines().get(3);
+        assertTrue(struck.style().strikethrough());
+        assertFalse(struck.style().underline());
+
+        QuestionLayout.Paragraph second = (QuestionLayout.Paragraph) layout.content().get(1);
+        QuestionLayout.Text both = (QuestionLayout.Text) second.inlines().get(0);
+        assertTrue(both.style().bold() && both.style().italic());
+        assertInstanceOf(QuestionLayout.LineBreak.class, second.inlines().get(1));
+        assertEquals(QuestionLayout.Style.PLAIN, ((QuestionLayout.Text) second.inlines().get(2)).style());
+    }
+
+    @Test
+    void testCodeBlockAndLists() {
+        Question question = new Question("Code", "<pre>int x = 1;\nint y = 2;\n</pre><ol><li>one</li></ol><ul><li>dot</li></ul>", 2, "Offene Frage", 0);
+
+        List<QuestionLayout.Block> content = LayoutCompiler.compile(question, "1").content();
+
+        QuestionLayout.CodeBlock code = (QuestionLayout.CodeBlock) content.stream()
+                .filter(b -> b instanceof QuestionLayout.CodeBlock).findFirst().orElseThrow();
+        assertEquals(List.of("int x = 1;", "int y = 2;"), code.lines());
+        assertTrue(content.stream().anyMatch(b -> b instanceof QuestionLayout.Paragraph p
+                && p.listStyle() == QuestionLayout.ListStyle.NUMBER && !p.inlines().isEmpty()));
+        assertTrue(content.stream().anyMatch(b -> b instanceof QuestionLayout.Paragraph p
+                && p.listStyle() == QuestionLayout.ListStyle.BULLET && !p.inlines().isEmpty()));
+    }
+
+    @Test
+    void testMcqOptionsKnowTheirSolution() {
+        Question question = new Question("MCQ", "<ol><li>A) Yes</li><li>B) No</li><li>C) Maybe</li></ol>", 2, "MCQ", 0);
+        question.setMusterloesung("a, c");
+
+        QuestionLayout layout = LayoutCompiler.compile(question, "2");
+
+        List<QuestionLayout.Option> options = layout.content().stream()
+                .filter(b -> b instanceof QuestionLayout.Option)
+                .map(b -> (QuestionLayout.Option) b)
+                .toList();
+        assertEquals(3, options.size());
+        assertEquals("A) Yes", options.get(0).text());
+        assertTrue(options.get(0).correct());
+        assertFalse(options.get(1).correct());
+        assertTrue(options.get(2).correct());
+        // The empty paragraph in front of the options is dropped
+        assertFalse(layout.content().get(0) instanceof QuestionLayout.Paragraph p && p.inlines().isEmpty());
+        assertNull(layout.solutionText());
+        assertEquals(0, layout.answerLines());
+    }
+
+    @Test
+    void testBlanksArePairedWithSolutions() {
+        Question question = new Question("Gap", "A ___ and a______ and___.", 2, "Lückentext", 0);
+        question.setMusterloesung("first ; second");
+
+        QuestionLayout layout = LayoutCompiler.compile(question, "1");
+
+        assertFalse(layout.missingBlankSolutions());
+        List<QuestionLayout.Blank> blanks = ((QuestionLayout.Paragraph) layout.content().get(0)).inlines().stream()
+                .filter(i -> i instanceof QuestionLayout.Blank)
+                .map(i -> (QuestionLayout.Blank) i)
+                .toList();
+        assertEquals(3, blanks.size());
+        assertEquals("first", blanks.get(0).solution());
+        assertFalse(blanks.get(0).spaceBefore());
+        assertFalse(blanks.get(0).spaceAfter());
+        assertEquals("second", blanks.get(1).solution());
+        assertEquals("______", blanks.get(1).placeholder());
+        assertTrue(blanks.get(1).spaceBefore());
+        // More blanks than solutions: the last one stays empty
+        assertEquals("", blanks.get(2).solution());
+        assertTrue(blanks.get(2).spaceAfter());
+    }
+
+    @Test
+    void testLueckentextWithoutSolution() {
+        Question question = new Question("Gap", "A ___ test.", 2, "Lückentext", 0);
+
+        assertTrue(LayoutCompiler.compile(question, "1").missingBlankSolutions());
+    }
+
+    @Test
+    void testRichtigFalschWithSubQuestions() {
+        Question main = new Question("Main", "ignored", 4, "Richtig/Falsch", 0);
+        main.setImageBase64("aWdub3JlZA==");
+        Question statement = new Question("Statement", "", 4, "Richtig/Falsch", 0);
+        statement.setMusterloesung("falsch");
+        statement.setStartOnNewPage(true);
+        main.addSubQuestion(statement);
+
+        QuestionLayout layout = LayoutCompiler.compile(main, "3");
+
+        assertEquals("(4 = 4 Punkte)", layout.points());
+        assertNull(layout.image());
+        assertTrue(layout.content().isEmpty());
+        assertNull(layout.correctStatement());
+
+        QuestionLayout sub = layout.subQuestions().get(0);
+        assertEquals("a. Statement ", sub.heading());
+        assertEquals("(4 Punkte)", sub.points());
+        assertEquals("Falsch", sub.correctStatement());
+        assertTrue(sub.startOnNewPage());
+        assertEquals(0, sub.answerLines());
+    }
+
+    @Test
+    void testCompiledLayoutIsCachedPerQuestionVersion() {
+        Question question = new Question("Open", "<p>Text</p>", 4, "Offene Frage", 3);
+
+        QuestionLayout first = LayoutCompiler.compile(question, "1");
+        assertSame(first, LayoutCompiler.compile(question, "1"));
+        assertEquals(1, LayoutCompiler.cacheSize());
+
+        assertNotSame(first, LayoutCompiler.compile(question, "2"));
+
+        question.setText("<p>Changed</p>");
+        QuestionLayout changed = LayoutCompiler.compile(question, "1");
+        assertNotSame(first, changed);
+        assertEquals("Changed", ((QuestionLayout.Text) ((QuestionLayout.Paragraph) changed.content().get(0)).inlines().get(0)).text());
+    }
+}
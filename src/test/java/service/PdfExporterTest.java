@@ -0,0 +1,152 @@
+package service;
+
+import model.Exam;
+import model.Question;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfExporterTest {
+
+    private static final String DUMMY_IMAGE_BASE64 = "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mNkYAAAAAYAAjCB0C8AAAAASUVORK5CYII="; // 1x1 transparent PNG
+
+    @TempDir
+    Path tempDir;
+    private Exam exam;
+
+    @BeforeEach
+    void setUp() {
+        exam = new Exam("Test Exam", "Test Author", "Test Module", "Test Semester", "Test Fachbereich", "Test Hochschule", "Test Hilfsmittel");
+        exam.setAllgemeineHinweise("Dies sind allgemeine Hinweise für die Prüfung.");
+        exam.setBearbeitungszeit(90);
+    }
+
+    private String readPdfContent(File pdfFile) throws IOException {
+        StringBuilder content = new StringBuilder();
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(pdfFile))) {
+            for (int i = 1; i <= pdf.getNumberOfPages(); i++) {
+                content.append(PdfTextExtractor.getTextFromPage(pdf.getPage(i))).append('\n');
+            }
+        }
+        return content.toString();
+    }
+
+    private int countPages(File pdfFile) throws IOException {
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(pdfFile))) {
+            return pdf.getNumberOfPages();
+        }
+    }
+
+    private int countImageStreams(File pdfFile) throws IOException {
+        int count = 0;
+        try (PdfDocument pdf = new PdfDocument(new PdfReader(pdfFile))) {
+            for (int i = 1; i < pdf.getNumberOfPdfObjects(); i++) {
+                PdfObject object = pdf.getPdfObject(i);
+                if (object instanceof PdfStream stream && PdfName.Image.equals(stream.getAsName(PdfName.Subtype))) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    void testExportBasicExam() throws IOException {
+        Question q1 = new Question("Question 1 Title", "Question 1 Text", 10, "Offene Frage", 5);
+        q1.setMusterloesung("Solution for Q1");
+        exam.addQuestion(q1);
+
+        File outputFile = tempDir.resolve("basic_exam.pdf").toFile();
+        PdfExporter.export(exam, outputFile.getAbsolutePath());
+
+        assertTrue(outputFile.exists());
+        String content = readPdfContent(outputFile);
+        assertTrue(content.contains("Test Hochschule"));
+        assertTrue(content.contains("Dies sind allgemeine Hinweise für die Prüfung."));
+        assertTrue(content.contains("1. Question 1 Title (10 Punkte)"));
+        assertTrue(content.contains("Question 1 Text"));
+        assertTrue(content.contains("Matrikelnummer"));
+        assertFalse(content.contains("Lösung:"));
+        assertEquals(2, countPages(outputFile));
+        assertTrue(content.contains("Seite 2 / 2"), "Total page count missing in the footer");
+    }
+
+    @Test
+    void testExportExamWithSolutions() throws IOException {
+        Question q1 = new Question("Question 1 Title", "Question 1 Text", 10, "Offene Frage", 5);
+        q1.setMusterloesung("Solution for Q1");
+        exam.addQuestion(q1);
+        Question q2 = new Question("Fill-in-the-blank", "This is a ___ test.", 10, "Lückentext", 0);
+        q2.setMusterloesung("simple");
+        exam.addQuestion(q2);
+
+        File outputFile = tempDir.resolve("exam_with_solutions.pdf").toFile();
+        PdfExporter.exportWithSolutions(exam, outputFile.getAbsolutePath());
+
+        String content = readPdfContent(outputFile);
+        assertTrue(content.contains("Lösung: Solution for Q1"));
+        assertTrue(content.contains("This is a simple test."));
+        assertEquals(3, countPages(outputFile));
+    }
+
+    @Test
+    void testExportExamWithMcqAndSubQuestions() throws IOException {
+        Question mcq = new Question("MCQ Question", "<ol><li>Option A</li><li>Option B</li></ol>", 10, "MCQ", 0);
+        mcq.setMusterloesung("A");
+        exam.addQuestion(mcq);
+        Question mainQ = new Question("Main Question", "Main text", 20, "Offene Frage", 0);
+        Question subQ = new Question("Sub Question", "<pre>int x = 1;\n    return x;</pre>", 10, "Offene Frage", 3);
+        subQ.setStartOnNewPage(true);
+        mainQ.addSubQuestion(subQ);
+        exam.addQuestion(mainQ);
+
+        File outputFile = tempDir.resolve("exam_with_mcq.pdf").toFile();
+        PdfExporter.export(exam, outputFile.getAbsolutePath());
+
+        String content = readPdfContent(outputFile);
+        assertTrue(content.contains("Option A"));
+        assertTrue(content.contains("Option B"));
+        assertTrue(content.contains("int x = 1;"));
+        assertTrue(content.contains("Die Aufgabe folgt auf der nächsten Seite bzw. Rückseite."));
+    }
+
+    @Test
+    void testIdenticalImagesAreEmbeddedOnce() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            Question q = new Question("Question " + i, "Text", 10, "Offene Frage", 0);
+            q.setImageBase64(DUMMY_IMAGE_BASE64);
+            q.setMusterloesungImageBase64(DUMMY_IMAGE_BASE64);
+            exam.addQuestion(q);
+        }
+
+        File outputFile = tempDir.resolve("exam_with_images.pdf").toFile();
+        PdfExporter.exportWithSolutions(exam, outputFile.getAbsolutePath());
+
+        // The transparent PNG is stored as image plus soft mask
+        assertEquals(2, countImageStreams(outputFile));
+    }
+
+    @Test
+    void testRepeatedExportsProduceIndependentDocuments() throws IOException {
+        exam.addQuestion(new Question("Question 1 Title", "Question 1 Text", 10, "Offene Frage", 5));
+
+        File first = tempDir.resolve("first.pdf").toFile();
+        File second = tempDir.resolve("second.pdf").toFile();
+        PdfExporter.export(exam, first.getAbsolutePath());
+        PdfExporter.export(exam, second.getAbsolutePath());
+
+        assertEquals(readPdfContent(first), readPdfContent(second));
+    }
+}
@@ -0,0 +1,20 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+class StartupServiceTest {
+
+    @Test
+    void testWarmUpCompletesTheFutures() throws Exception {
+        StartupService.start();
+        StartupService.start(); // Further calls have no effect
+        StartupService.thesaurusReady().get(2, TimeUnit.MINUTES);
+        StartupService.wordExportReady().get(2, TimeUnit.MINUTES);
+        assertTrue(StartupService.thesaurusReady().isDone());
+        assertTrue(StartupService.wordExportReady().isDone());
+        assertFalse(StartupService.wordExportReady().isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,138 @@
+package service;
+
+import model.Exam;
+import model.Question;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingWordExporterTest {
+
+    private static final String DUMMY_IMAGE_BASE64 = "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mNkYAAAAAYAAjCB0C8AAAAASUVORK5CYII="; // 1x1 transparent PNG
+
+    @TempDir
+    Path tempDir;
+    private Exam exam;
+
+    @BeforeEach
+    void setUp() {
+        exam = new Exam("Test Exam", "Test Author", "Test Module", "Test Semester", "Test Fachbereich", "Test Hochschule", "Test Hilfsmittel");
+        exam.setAllgemeineHinweise("Dies sind allgemeine Hinweise für die Prüfung.");
+
+        Question open = new Question("Open", "<p>Some <b>bold</b> and <u>underlined</u> text<br>next line</p><pre>int x = 1;\nint y = 2;\n</pre>", 4, "Offene Frage", 3);
+        open.setMusterloesung("Solution text");
+        open.setImageBase64(DUMMY_IMAGE_BASE64);
+        open.setMusterloesungImageBase64(DUMMY_IMAGE_BASE64);
+        exam.addQuestion(open);
+
+        Question mcq = new Question("MCQ", "<ol><li>A) Yes</li><li>B) No</li><li>C) Maybe</li></ol>", 2, "MCQ", 0);
+        mcq.setMusterloesung("A, C");
+        exam.addQuestion(mcq);
+
+        Question gap = new Question("Gap", "This is a ___ test with ___ blanks.", 2, "Lückentext", 0);
+        gap.setMusterloesung("simple; two");
+        exam.addQuestion(gap);
+
+        Question trueFalse = new Question("Statement", "", 1, "Richtig/Falsch", 0);
+        trueFalse.setMusterloesung("Falsch");
+        exam.addQuestion(trueFalse);
+
+        Question main = new Question("Main", "<ul><li>first</li><li>second</li></ul>", 6, "Offene Frage", 0);
+        Question subA = new Question("Sub A", "Sub text A", 3, "Offene Frage", 2);
+        subA.setStartOnNewPage(true);
+        subA.setLargeAnswerBox(true);
+        Question subB = new Question("Sub B", "", 3, "Richtig/Falsch", 0);
+        subB.setMusterloesung("Richtig");
+        main.addSubQuestion(subA);
+        main.addSubQuestion(subB);
+        main.setStartOnNewPage(true);
+        exam.addQuestion(main);
+    }
+
+    private String readDocxContent(File docxFile) throws IOException {
+        try (FileInputStream fis = new FileInputStream(docxFile);
+             XWPFDocument document = new XWPFDocument(fis);
+             XWPFWordExtractor extractor = new XWPFWordExtractor(document)) {
+            return extractor.getText();
+        }
+    }
+
+    @Test
+    void testStreamingExportMatchesWordExporterText() throws IOException {
+        File expected = tempDir.resolve("expected.docx").toFile();
+        File streamed = tempDir.resolve("streamed.docx").toFile();
+
+        WordExporter.export(exam, expected.getAbsolutePath());
+        StreamingWordExporter.export(exam, streamed.getAbsolutePath());
+
+        assertEquals(readDocxContent(expected), readDocxContent(streamed));
+    }
+
+    @Test
+    void testStreamingExportWithSolutionsMatchesWordExporterText() throws IOException {
+        File expected = tempDir.resolve("expected_solutions.docx").toFile();
+        File streamed = tempDir.resolve("streamed_solutions.docx").toFile();
+
+        WordExporter.exportWithSolutions(exam, expected.getAbsolutePath());
+        StreamingWordExporter.exportWithSolutions(exam, streamed.getAbsolutePath());
+
+        String content = readDocxContent(streamed);
+        assertEquals(readDocxContent(expected), content);
+        assertTrue(content.contains("☑ A) Yes"));
+        assertTrue(content.contains("Lösung: Solution text"));
+    }
+
+    @Test
+    void testStreamingExportProducesSameStructure() throws IOException {
+        File expected = tempDir.resolve("expected_structure.docx").toFile();
+        File streamed = tempDir.resolve("streamed_structure.docx").toFile();
+
+        WordExporter.exportWithSolutions(exam, expected.getAbsolutePath());
+        StreamingWordExporter.exportWithSolutions(exam, streamed.getAbsolutePath());
+
+        try (XWPFDocument expectedDocument = new XWPFDocument(new FileInputStream(expected));
+             XWPFDocument streamedDocument = new XWPFDocument(new FileInputStream(streamed))) {
+            assertEquals(expectedDocument.getBodyElements().size(), streamedDocument.getBodyElements().size());
+            assertEquals(expectedDocument.getTables().size(), streamedDocument.getTables().size());
+            assertEquals(pageBreakCount(expectedDocument), pageBreakCount(streamedDocument));
+            assertEquals(expectedDocument.getHeaderList().size(), streamedDocument.getHeaderList().size());
+            assertEquals(expectedDocument.getFooterList().size(), streamedDocument.getFooterList().size());
+        }
+    }
+
+    @Test
+    void testStreamingExportEmbedsImages() throws IOException {
+        File student = tempDir.resolve("streamed_student.docx").toFile();
+        File answerKey = tempDir.resolve("streamed_answer_key.docx").toFile();
+
+        StreamingWordExporter.export(exam, student.getAbsolutePath());
+        StreamingWordExporter.exportWithSolutions(exam, answerKey.getAbsolutePath());
+
+        try (XWPFDocument document = new XWPFDocument(new FileInputStream(student))) {
+            assertEquals(1, document.getAllPictures().size());
+        }
+        try (XWPFDocument document = new XWPFDocument(new FileInputStream(answerKey))) {
+            long embedded = document.getParagraphs().stream()
+                    .flatMap(p -> p.getRuns().stream())
+                    .mapToLong(r -> r.getEmbeddedPictures().size())
+                    .sum();
+            assertEquals(2, embedded);
+            // Question and solution show the same payload, which is stored only once
+            assertEquals(1, document.getAllPackagePictures().size());
+        }
+    }
+
+    private long pageBreakCount(XWPFDocument document) {
+        return document.getParagraphs().stream().filter(XWPFParagraph::isPageBreak).count();
+    }
+}
@@ -0,0 +1,258 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import model.Exam;
+import model.Question;
+import model.QuestionVariant;
+import model.VariantPool;
+import utils.Glossary;
+
+class VariantEngineTest {
+
+    private static Exam createExam() {
+        Exam exam = new Exam("Klausur Informatik", "Prof. Muster", "Programmierung", "WS 2026", "FB 2", "Hochschule", "keine");
+        for (int i = 1; i <= 5; i++) {
+            Question question = new Question("Aufgabe " + i + ": Gute Arbeit",
+                    "<p>Die Bearbeitung dieser Aufgabe ist eine gute Arbeit.</p><pre>Die Bearbeitung bleibt</pre>", 10, "Offene Frage", 3);
+            for (int j = 1; j <= 6; j++) {
+                question.addSubQuestion(new Question("Teil " + j, "<p>Das ist ein Beispiel für eine Aufgabe.</p>", 2, "Offene Frage", 1));
+            }
+            exam.addQuestion(question);
+        }
+        return exam;
+    }
+
+    /**
+     * Flattens titles, texts and the order of the sub-questions for comparisons.
+     */
+    private static String describe(Exam exam) {
+        StringBuilder sb = new StringBuilder();
+        for (Question question : exam.getQuestions()) {
+            describe(question, sb);
+        }
+        return sb.toString();
+    }
+
+    private static void describe(Question question, StringBuilder sb) {
+        sb.append(question.getId()).append('|').append(question.getTitle()).append('|').append(question.getText()).append('\n');
+        if (question.getSubQuestions() != null) {
+            for (Question subQuestion : question.getSubQuestions()) {
+                describe(subQuestion, sb);
+            }
+        }
+    }
+
+    @Test
+    void testSameSeedGivesSameVariant() {
+        Exam exam = createExam();
+        long seed = VariantEngine.seedFor(VariantEngine.examId(exam), "123456");
+        assertEquals(describe(VariantEngine.createVariant(exam, seed)), describe(VariantEngine.createVariant(exam, seed)));
+    }
+
+    @Test
+    void testDifferentStudentsGetDifferentVariants() {
+        Exam exam = createExam();
+        String examId = VariantEngine.examId(exam);
+        long first = VariantEngine.seedFor(examId, "123456");
+        long second = VariantEngine.seedFor(examId, "654321");
+        assertNotEquals(first, second);
+        assertNotEquals(describe(VariantEngine.createVariant(exam, first)), describe(VariantEngine.createVariant(exam, second)));
+    }
+
+    @Test
+    void testSeedIsStable() {
+        // The seed must not change between releases, otherwise handed out variants can no longer be reproduced.
+        assertEquals(VariantEngine.seedFor("Klausur|Modul|WS", "123456"), VariantEngine.seedFor("Klausur|Modul|WS", " 123456 "));
+        assertNotEquals(VariantEngine.seedFor("Klausur|Modul|WS", "123456"), VariantEngine.seedFor("Klausur|Modul|SS", "123456"));
+        assertEquals(4695919631437595251L, VariantEngine.seedFor("Klausur|Modul|WS", "123456"));
+    }
+
+    @Test
+    void testParallelGenerationMatchesSequential() throws Exception {
+        Exam exam = createExam();
+        List<String> expected = new ArrayList<>();
+        for (int student = 0; student < 16; student++) {
+            expected.add(describe(VariantEngine.createVariant(exam, VariantEngine.seedFor(VariantEngine.examId(exam), "S" + student))));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int student = 0; student < 16; student++) {
+                String matriculationNumber = "S" + student;
+                futures.add(pool.submit(() -> describe(VariantEngine.createVariant(exam, VariantEngine.seedFor(VariantEngine.examId(exam), matriculationNumber)))));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(expected.get(i), futures.get(i).get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testQuestionVariantDoesNotDependOnOtherQuestions() {
+        Exam exam = createExam();
+        Question last = exam.getQuestions().get(exam.getQuestions().size() - 1);
+        Exam variant = VariantEngine.createVariant(exam, 42L);
+        StringBuilder whole = new StringBuilder();
+        describe(variant.getQuestions().get(variant.getQuestions().size() - 1), whole);
+        StringBuilder single = new StringBuilder();
+        describe(VariantEngine.createVariant(last, 42L), single);
+        assertEquals(whole.toString(), single.toString());
+    }
+
+    @Test
+    void testPageBreakPreventsShuffle() {
+        Exam exam = createExam();
+        for (Question question : exam.getQuestions()) {
+            question.getSubQuestions().get(2).setStartOnNewPage(true);
+        }
+        for (long seed = 0; seed < 10; seed++) {
+            Exam variant = VariantEngine.createVariant(exam, seed);
+            for (int i = 0; i < exam.getQuestions().size(); i++) {
+                assertEquals(exam.getQuestions().get(i).getSubQuestions(), variant.getQuestions().get(i).getSubQuestions());
+            }
+        }
+    }
+
+    @Test
+    void testSubQuestionsAreShuffled() {
+        Exam exam = createExam();
+        boolean shuffled = false;
+        for (long seed = 0; seed < 10 && !shuffled; seed++) {
+            Exam variant = VariantEngine.createVariant(exam, seed);
+            shuffled = !exam.getQuestions().get(0).getSubQuestions().equals(variant.getQuestions().get(0).getSubQuestions());
+        }
+        assertTrue(shuffled, "Sub-questions should be shuffled for at least one seed.");
+    }
+
+    @Test
+    void testPreformattedTextIsNotRephrased() {
+        Exam exam = createExam();
+        for (long seed = 0; seed < 10; seed++) {
+            Exam variant = VariantEngine.createVariant(exam, seed);
+            assertTrue(variant.getQuestions().get(0).getText().contains("<pre>Die Bearbeitung bleibt</pre>"));
+        }
+    }
+
+    @Test
+    void testOriginalExamIsNotModified() {
+        Exam exam = createExam();
+        String before = describe(exam);
+        VariantEngine.createVariant(exam, 7L);
+        assertEquals(before, describe(exam));
+    }
+
+    @Test
+    void testPooledVariantsAreAssembledFromThePool() {
+        Exam exam = createExam();
+        exam.setVariantCount(4);
+        Map<UUID, VariantPool> pools = VariantEngine.createPools(exam);
+        assertEquals(35, VariantEngine.applyPools(exam, pools));
+
+        for (long seed = 0; seed < 10; seed++) {
+            Exam variant = VariantEngine.createVariant(exam, seed);
+            assertEquals(describe(variant), describe(VariantEngine.createVariant(exam, seed)));
+            for (int i = 0; i < exam.getQuestions().size(); i++) {
+                Question original = exam.getQuestions().get(i);
+                Question varied = variant.getQuestions().get(i);
+                assertTrue(original.getVariantPool().getVariants().stream().anyMatch(v -> v.getText().equals(varied.getText())));
+                assertNull(varied.getVariantPool());
+                for (Question subQuestion : varied.getSubQuestions()) {
+                    Question originalSubQuestion = original.getSubQuestions().get(original.getSubQuestions().indexOf(subQuestion));
+                    assertTrue(originalSubQuestion.getVariantPool().getVariants().stream().anyMatch(v -> v.getText().equals(subQuestion.getText())));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testPoolVersionsMatchLiveVariants() {
+        Exam exam = createExam();
+        Question question = exam.getQuestions().get(0);
+        exam.setVariantCount(3);
+        VariantEngine.applyPools(exam, VariantEngine.createPools(exam));
+        List<QuestionVariant> variants = question.getVariantPool().getVariants();
+        assertEquals(3, variants.size());
+        for (QuestionVariant variant : variants) {
+            question.setVariantPool(null);
+            Question live = VariantEngine.createVariant(question, variant.getSeed());
+            assertEquals(live.getTitle(), variant.getTitle());
+            assertEquals(live.getText(), variant.getText());
+        }
+    }
+
+    @Test
+    void testStalePoolIsIgnored() {
+        Exam exam = createExam();
+        exam.setVariantCount(4);
+        Map<UUID, VariantPool> pools = VariantEngine.createPools(exam);
+        Question changed = exam.getQuestions().get(0);
+        changed.setText("<p>Eine ganz neue Aufgabe.</p>");
+        assertEquals(34, VariantEngine.applyPools(exam, pools), "The pool of the changed question is not stored.");
+
+        String live = VariantEngine.createVariant(exam, 5L).getQuestions().get(0).getText();
+        changed.setVariantPool(pools.get(changed.getId()));
+        assertEquals(live, VariantEngine.createVariant(exam, 5L).getQuestions().get(0).getText(), "A stale pool must not be used.");
+
+        assertTrue(VariantEngine.isPoolCurrent(exam.getQuestions().get(1), Glossary.of(exam.getGlossar())));
+        exam.getGlossar().add("Aufgabe");
+        assertFalse(VariantEngine.isPoolCurrent(exam.getQuestions().get(1), Glossary.of(exam.getGlossar())),
+                "Changing the glossary invalidates all pools.");
+    }
+
+    @Test
+    void testPoolIsSavedWithTheExam(@TempDir Path directory) throws Exception {
+        Exam exam = createExam();
+        exam.setVariantCount(2);
+        VariantEngine.applyPools(exam, VariantEngine.createPools(exam));
+        File file = directory.resolve("exam.json").toFile();
+        ExamFiles.save(exam, file);
+        Exam loaded = ExamFiles.load(file);
+
+        assertNotNull(loaded.getQuestions().get(0).getVariantPool());
+        assertEquals(2, loaded.getVariantCount());
+        assertEquals(describe(VariantEngine.createVariant(exam, 11L)), describe(VariantEngine.createVariant(loaded, 11L)));
+    }
+
+    @Test
+    void testPoolDoesNotChangeTheVariant() {
+        Exam exam = createExam();
+        exam.setVariantCount(4);
+        List<Long> seeds = new ArrayList<>();
+        List<String> live = new ArrayList<>();
+        for (int student = 0; student < 10; student++) {
+            long seed = VariantEngine.seedFor(VariantEngine.examId(exam), "S" + student); // Far outside 0 to 3
+            seeds.add(seed);
+            live.add(describe(VariantEngine.createVariant(exam, seed)));
+        }
+
+        VariantEngine.applyPools(exam, VariantEngine.createPools(exam));
+        for (int student = 0; student < seeds.size(); student++) {
+            assertEquals(live.get(student), describe(VariantEngine.createVariant(exam, seeds.get(student))),
+                    "The pool only saves the rephrasing.");
+        }
+
+        // Without a variant count, every seed is rephrased on its own and pools play no part
+        exam.setVariantCount(0);
+        String unlimited = describe(VariantEngine.createVariant(exam, seeds.get(0)));
+        for (Question question : exam.getQuestions()) {
+            question.setVariantPool(null);
+        }
+        assertEquals(unlimited, describe(VariantEngine.createVariant(exam, seeds.get(0))));
+    }
+}
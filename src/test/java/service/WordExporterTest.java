@@ -2,7 +2,10 @@ package service;
 
 import model.Exam;
 import model.Question;
+import org.apache.poi.util.Units;
+import org.apache.poi.xwpf.usermodel.UnderlinePatterns;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
 import org.apache.poi.xwpf.usermodel.XWPFTable;
 import org.apache.poi.xwpf.usermodel.XWPFTableRow;
 import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
@@ -10,11 +13,16 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import javax.imageio.ImageIO;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -130,6 +138,40 @@ class WordExporterTest {
         assertTrue(content.contains("This is a simple test.")); // Should contain the filled solution
     }
 
+    @Test
+    void testUnderlineAndStrikethroughAreNotSwapped() throws IOException {
+        Question q1 = new Question("Formatting", "<p><u>underlined</u> <strike>struck</strike></p>", 2, "Offene Frage", 0);
+        exam.addQuestion(q1);
+
+        File outputFile = tempDir.resolve("exam_with_formatting.docx").toFile();
+        WordExporter.export(exam, outputFile.getAbsolutePath());
+
+        try (XWPFDocument document = new XWPFDocument(new FileInputStream(outputFile))) {
+            List<XWPFRun> runs = document.getParagraphs().stream()
+                    .flatMap(p -> p.getRuns().stream())
+                    .toList();
+            XWPFRun underlined = runs.stream().filter(r -> "underlined".equals(r.text())).findFirst().orElseThrow();
+            assertEquals(UnderlinePatterns.SINGLE, underlined.getUnderline());
+            assertFalse(underlined.isStrikeThrough());
+            XWPFRun struck = runs.stream().filter(r -> "struck".equals(r.text())).findFirst().orElseThrow();
+            assertTrue(struck.isStrikeThrough());
+            assertEquals(UnderlinePatterns.NONE, struck.getUnderline());
+        }
+    }
+
+    @Test
+    void testLueckentextWithoutSolutionShowsError() throws IOException {
+        Question q1 = new Question("Fill-in-the-blank", "This is a ___ test.", 10, "Lückentext", 0);
+        exam.addQuestion(q1);
+
+        File outputFile = tempDir.resolve("exam_with_lueckentext_error.docx").toFile();
+        WordExporter.exportWithSolutions(exam, outputFile.getAbsolutePath());
+
+        String content = readDocxContent(outputFile);
+        assertTrue(content.contains("This is a ___ test."));
+        assertTrue(content.contains("FEHLER: Für diesen Lückentext wurde keine Musterlösung angegeben."));
+    }
+
     @Test
     void testExportExamWithRichtigFalschAndSolutions() throws IOException {
         Question q1 = new Question("Statement is true", "", 5, "Richtig/Falsch", 0);
@@ -235,4 +277,201 @@ class WordExporterTest {
 
         assertTrue(outputFile.exists());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testIdenticalImagesShareOnePackagePart() throws IOException {
+        String dummyImageBase64 = "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mNkYAAAAAYAAjCB0C8AAAAASUVORK5CYII="; // 1x1 transparent PNG
+
+        for (int i = 0; i < 3; i++) {
+            Question q = new Question("Question " + i, "Text", 10, "Offene Frage", 0);
+            q.setImageBase64(dummyImageBase64);
+            q.setMusterloesungImageBase64(dummyImageBase64);
+            exam.addQuestion(q);
+        }
+
+        File outputFile = tempDir.resolve("exam_with_shared_images.docx").toFile();
+        WordExporter.exportWithSolutions(exam, outputFile.getAbsolutePath());
+
+        assertEquals(1, countImages(outputFile));
+        try (FileInputStream fis = new FileInputStream(outputFile);
+             XWPFDocument document = new XWPFDocument(fis)) {
+            long embedded = document.getParagraphs().stream()
+                    .flatMap(p -> p.getRuns().stream())
+                    .mapToLong(r -> r.getEmbeddedPictures().size())
+                    .sum();
+            assertEquals(6, embedded);
+        }
+    }
+
+    @Test
+    void testJpegImageKeepsItsPictureType() throws IOException {
+        BufferedImage image = new BufferedImage(800, 200, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", jpeg);
+
+        Question q1 = new Question("Question with JPEG", "Text", 10, "Offene Frage", 0);
+        q1.setImageBase64(Base64.getEncoder().encodeToString(jpeg.toByteArray()));
+        exam.addQuestion(q1);
+
+        File outputFile = tempDir.resolve("exam_with_jpeg.docx").toFile();
+        WordExporter.export(exam, outputFile.getAbsolutePath());
+
+        try (FileInputStream fis = new FileInputStream(outputFile);
+             XWPFDocument document = new XWPFDocument(fis)) {
+            assertEquals(1, document.getAllPictures().size());
+            assertEquals(XWPFDocument.PICTURE_TYPE_JPEG, document.getAllPictures().get(0).getPictureType());
+            // 800 px wide images are scaled down to 400 points
+            long width = document.getParagraphs().stream()
+                    .flatMap(p -> p.getRuns().stream())
+                    .flatMap(r -> r.getEmbeddedPictures().stream())
+                    .mapToLong(p -> (long) (p.getWidth() * Units.EMU_PER_POINT))
+                    .findFirst().orElse(0);
+            assertEquals(400L * Units.EMU_PER_POINT, width);
+        }
+    }
+
+    @Test
+    void testRepeatedExportReusesCachedQuestionFragments() throws IOException {
+        String dummyImageBase64 = "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mNkYAAAAAYAAjCB0C8AAAAASUVORK5CYII=";
+        Question q1 = new Question("Cached Question", "<p>Some <b>bold</b> text</p><pre>int x = 1;</pre>", 10, "Offene Frage", 3);
+        q1.setImageBase64(dummyImageBase64);
+        exam.addQuestion(q1);
+
+        File firstFile = tempDir.resolve("first_export.docx").toFile();
+        WordExporter.export(exam, firstFile.getAbsolutePath());
+        assertNotNull(WordExporter.getRenderCache().get(QuestionRenderCache.keyFor(q1, "1", false)));
+
+        File secondFile = tempDir.resolve("second_export.docx").toFile();
+        WordExporter.export(exam, secondFile.getAbsolutePath());
+
+        assertEquals(readDocxContent(firstFile), readDocxContent(secondFile));
+        assertEquals(1, countImages(secondFile));
+    }
+
+    @Test
+    void testRenderCacheKeyChangesWithContentAndMode() {
+        Question q1 = new Question("Title", "Text", 10, "Offene Frage", 3);
+        String key = QuestionRenderCache.keyFor(q1, "1", false);
+
+        assertEquals(key, QuestionRenderCache.keyFor(new Question(q1), "1", false));
+        assertNotEquals(key, QuestionRenderCache.keyFor(q1, "2", false));
+        assertNotEquals(key, QuestionRenderCache.keyFor(q1, "1", true));
+        q1.setText("Changed text");
+        assertNotEquals(key, QuestionRenderCache.keyFor(q1, "1", false));
+    }
+
+    @Test
+    void testRenderCachePersistsFragmentsOnDisk() throws IOException {
+        Question q1 = new Question("Persisted Question", "Persisted text", 5, "Offene Frage", 2);
+        exam.addQuestion(q1);
+        WordExporter.export(exam, tempDir.resolve("persisted.docx").toFile().getAbsolutePath());
+        String key = QuestionRenderCache.keyFor(q1, "1", false);
+        RenderedFragment fragment = WordExporter.getRenderCache().get(key);
+        assertNotNull(fragment);
+
+        Path cacheDir = tempDir.resolve("render-cache");
+        new QuestionRenderCache(1024 * 1024, cacheDir).put(key, fragment);
+
+        QuestionRenderCache reopened = new QuestionRenderCache(1024 * 1024, cacheDir);
+        RenderedFragment restored = reopened.get(key);
+        assertNotNull(restored);
+        assertEquals(fragment.getWeight(), restored.getWeight());
+    }
+
+    private String readBodyXml(File docxFile) throws IOException {
+        try (FileInputStream fis = new FileInputStream(docxFile);
+             XWPFDocument document = new XWPFDocument(fis)) {
+            return document.getDocument().getBody().xmlText();
+        }
+    }
+
+    @Test
+    void testParallelRenderingProducesSameDocument() throws IOException {
+        for (int i = 1; i <= 6; i++) {
+            Question q = new Question("Question " + i, "<p>Text <i>" + i + "</i></p>", i, i % 2 == 0 ? "MCQ" : "Offene Frage", 2);
+            if (i % 2 == 0) {
+                q.setText("<ol><li>A) Yes</li><li>B) No</li></ol>");
+            }
+            q.setStartOnNewPage(i == 3);
+            Question sub = new Question("Sub " + i, "Sub text", 1, "Offene Frage", 1);
+            sub.setStartOnNewPage(i == 5);
+            q.addSubQuestion(sub);
+            q.addSubQuestion(new Question("Second sub " + i, "More text", 1, "Offene Frage", 1));
+            exam.addQuestion(q);
+        }
+
+        File sequentialFile = tempDir.resolve("sequential.docx").toFile();
+        File parallelFile = tempDir.resolve("parallel.docx").toFile();
+        WordExporter.getRenderCache().clear();
+        WordExporter.exportWithSolutions(exam, sequentialFile.getAbsolutePath(), false);
+        WordExporter.getRenderCache().clear();
+        WordExporter.exportWithSolutions(exam, parallelFile.getAbsolutePath(), true);
+
+        assertEquals(readBodyXml(sequentialFile), readBodyXml(parallelFile));
+    }
+
+    private void addMixedQuestions() {
+        String dummyImageBase64 = "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mNkYAAAAAYAAjCB0C8AAAAASUVORK5CYII="; // 1x1 transparent PNG
+
+        Question open = new Question("Open", "<p>Some <b>bold</b> text</p>", 4, "Offene Frage", 3);
+        open.setMusterloesung("Solution text");
+        open.setImageBase64(dummyImageBase64);
+        open.setMusterloesungImageBase64(dummyImageBase64);
+        exam.addQuestion(open);
+
+        Question mcq = new Question("MCQ", "<ol><li>A) Yes</li><li>B) No</li></ol>", 2, "MCQ", 0);
+        mcq.setMusterloesung("A");
+        exam.addQuestion(mcq);
+
+        Question gap = new Question("Gap", "This is a ___ test.", 2, "Lückentext", 0);
+        gap.setMusterloesung("simple");
+        exam.addQuestion(gap);
+
+        Question main = new Question("Main", "Main text", 2, "Offene Frage", 0);
+        Question trueFalse = new Question("Statement", "", 2, "Richtig/Falsch", 0);
+        trueFalse.setMusterloesung("Richtig");
+        trueFalse.setStartOnNewPage(true);
+        main.addSubQuestion(trueFalse);
+        exam.addQuestion(main);
+    }
+
+    @Test
+    void testExportBothMatchesSeparateExports() throws IOException {
+        addMixedQuestions();
+
+        File expectedStudent = tempDir.resolve("expected_student.docx").toFile();
+        File expectedAnswerKey = tempDir.resolve("expected_answer_key.docx").toFile();
+        File student = tempDir.resolve("student.docx").toFile();
+        File answerKey = tempDir.resolve("answer_key.docx").toFile();
+
+        WordExporter.getRenderCache().clear();
+        WordExporter.export(exam, expectedStudent.getAbsolutePath());
+        WordExporter.exportWithSolutions(exam, expectedAnswerKey.getAbsolutePath());
+        WordExporter.getRenderCache().clear();
+        WordExporter.exportBoth(exam, student.getAbsolutePath(), answerKey.getAbsolutePath());
+
+        assertEquals(readBodyXml(expectedStudent), readBodyXml(student));
+        assertEquals(readBodyXml(expectedAnswerKey), readBodyXml(answerKey));
+        assertTrue(readDocxContent(answerKey).contains("Lösung: Solution text"));
+        assertFalse(readDocxContent(student).contains("Lösung: Solution text"));
+        assertEquals(1, countImages(student));
+        assertEquals(1, countImages(answerKey));
+    }
+
+    @Test
+    void testExportBothWithParallelRendering() throws IOException {
+        addMixedQuestions();
+
+        File expectedAnswerKey = tempDir.resolve("expected_answer_key.docx").toFile();
+        File student = tempDir.resolve("student.docx").toFile();
+        File answerKey = tempDir.resolve("answer_key.docx").toFile();
+
+        WordExporter.getRenderCache().clear();
+        WordExporter.exportWithSolutions(exam, expectedAnswerKey.getAbsolutePath(), false);
+        WordExporter.getRenderCache().clear();
+        WordExporter.exportBoth(exam, student.getAbsolutePath(), answerKey.getAbsolutePath(), true);
+
+        assertEquals(readBodyXml(expectedAnswerKey), readBodyXml(answerKey));
+        assertTrue(readDocxContent(student).contains("1. Open (4 Punkte)"));
+    }
+}
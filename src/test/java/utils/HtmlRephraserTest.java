@@ -0,0 +1,60 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+class HtmlRephraserTest {
+
+    private static final String SENTENCE = "Die Bearbeitung dieser Aufgabe ist eine gute Arbeit.";
+
+    @Test
+    void testNullOrEmptyHtml() {
+        assertNull(HtmlRephraser.rephrase(null, new SplittableRandom(1)));
+        assertEquals("", HtmlRephraser.rephrase("", new SplittableRandom(1)));
+    }
+
+    @Test
+    void testCodeAndPreformattedTextAreKept() {
+        String html = "<p>" + SENTENCE + "</p><pre>" + SENTENCE + " <b>" + SENTENCE + "</b></pre><p><code>" + SENTENCE + "</code></p>";
+        boolean changed = false;
+        for (long seed = 0; seed < 20; seed++) {
+            String rephrased = HtmlRephraser.rephrase(html, new SplittableRandom(seed));
+            assertTrue(rephrased.contains("<pre>" + SENTENCE + " <b>" + SENTENCE + "</b></pre>"), rephrased);
+            assertTrue(rephrased.contains("<code>" + SENTENCE + "</code>"), rephrased);
+            changed |= !rephrased.startsWith("<p>" + SENTENCE + "</p>");
+        }
+        assertTrue(changed, "Text outside of code should be rephrased for at least one seed.");
+    }
+
+    @Test
+    void testTextAfterCodeIsRephrased() {
+        String html = "<p><code>x = 1</code> " + SENTENCE + "</p>";
+        boolean changed = false;
+        for (long seed = 0; seed < 20 && !changed; seed++) {
+            String rephrased = HtmlRephraser.rephrase(html, new SplittableRandom(seed));
+            assertTrue(rephrased.contains("<code>x = 1</code>"));
+            changed = !rephrased.contains(SENTENCE);
+        }
+        assertTrue(changed, "The code flag must be reset after the code element.");
+    }
+
+    @Test
+    void testSameSeedGivesSameResult() {
+        String html = "<p>" + SENTENCE + " <i>Das ist ein Beispiel.</i> Gute Arbeit.</p><ul><li>" + SENTENCE + "</li></ul>";
+        for (long seed = 0; seed < 10; seed++) {
+            assertEquals(HtmlRephraser.rephrase(html, new SplittableRandom(seed)), HtmlRephraser.rephrase(html, new SplittableRandom(seed)));
+        }
+    }
+
+    @Test
+    void testGlossaryTermsAreProtected() {
+        Glossary glossary = Glossary.of(List.of("Bearbeitung", "Aufgabe", "gute Arbeit"));
+        for (long seed = 0; seed < 20; seed++) {
+            String rephrased = HtmlRephraser.rephrase("<p>" + SENTENCE + "</p>", new SplittableRandom(seed), glossary);
+            assertTrue(rephrased.contains("Die Bearbeitung ") && rephrased.contains(" Aufgabe ist eine gute Arbeit."), rephrased);
+        }
+    }
+}
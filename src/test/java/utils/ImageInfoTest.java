@@ -0,0 +1,60 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+import javax.imageio.ImageIO;
+
+class ImageInfoTest {
+
+    private static byte[] createImage(int width, int height, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void testProbePng() throws IOException {
+        byte[] png = Base64.getDecoder().decode("iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mNkYAAAAAYAAjCB0C8AAAAASUVORK5CYII=");
+        ImageInfo info = ImageInfo.probe(png);
+        assertNotNull(info);
+        assertEquals(1, info.getWidth());
+        assertEquals(1, info.getHeight());
+        assertEquals("png", info.getFormat());
+    }
+
+    @Test
+    void testProbeJpegAndGif() throws IOException {
+        ImageInfo jpeg = ImageInfo.probe(createImage(640, 480, "jpg"));
+        assertEquals(640, jpeg.getWidth());
+        assertEquals(480, jpeg.getHeight());
+        assertEquals("jpeg", jpeg.getFormat());
+
+        ImageInfo gif = ImageInfo.probe(createImage(30, 20, "gif"));
+        assertEquals(30, gif.getWidth());
+        assertEquals(20, gif.getHeight());
+        assertEquals("gif", gif.getFormat());
+    }
+
+    @Test
+    void testProbeUnknownDataReturnsNull() throws IOException {
+        assertNull(ImageInfo.probe("not an image".getBytes()));
+        assertNull(ImageInfo.probe(new byte[0]));
+    }
+
+    @Test
+    void testContentHashIdentifiesIdenticalPayloads() throws IOException {
+        byte[] first = createImage(10, 10, "png");
+        byte[] copy = first.clone();
+        byte[] other = createImage(11, 10, "png");
+        assertEquals(ImageInfo.contentHash(first), ImageInfo.contentHash(copy));
+        assertNotEquals(ImageInfo.contentHash(first), ImageInfo.contentHash(other));
+        assertEquals(64, ImageInfo.contentHash(first).length());
+    }
+}
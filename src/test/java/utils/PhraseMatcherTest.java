@@ -0,0 +1,111 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+class PhraseMatcherTest {
+
+    /**
+     * Collects all matches as "start-end:value".
+     */
+    private static Set<String> matches(PhraseMatcher matcher, String text) {
+        Set<String> found = new TreeSet<>();
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = matcher.step(state, text, i);
+            for (int match = matcher.match(state); match >= 0; match = matcher.nextMatch(match)) {
+                found.add((i + 1 - matcher.length(match)) + "-" + (i + 1) + ":" + matcher.value(match));
+            }
+        }
+        return found;
+    }
+
+    @Test
+    void testOverlappingPhrases() {
+        PhraseMatcher matcher = PhraseMatcher.build(new String[] {"gute Arbeit", "Arbeit", "gute Arbeit leisten", "Arbeit leisten"}, new int[] {1, 2, 3, 4});
+
+        assertEquals(4, matcher.size());
+        assertEquals(Set.of("0-11:1", "5-11:2", "0-19:3", "5-19:4"), matches(matcher, "Gute Arbeit leisten"));
+        assertEquals(Set.of("5-16:1", "10-16:2"), matches(matcher, "gute gute arbeit"), "A failed match continues at the next word.");
+    }
+
+    @Test
+    void testPhrasesOnlyStartAtWordStarts() {
+        PhraseMatcher matcher = PhraseMatcher.build(new String[] {"Arbeit", "z. B."}, new int[] {1, 2});
+
+        assertEquals(Set.of(), matches(matcher, "Mitarbeit leisten"));
+        assertEquals(Set.of("4-10:1"), matches(matcher, "(2) Arbeiten"), "The end of a word is checked by the caller.");
+        assertEquals(Set.of("1-6:2"), matches(matcher, "(z. B.)"));
+        assertTrue(PhraseMatcher.endsWord("(z. B.)", 6));
+        assertFalse(PhraseMatcher.endsWord("(2) Arbeiten", 10));
+    }
+
+    @Test
+    void testWhitespaceAndCaseAreFolded() {
+        PhraseMatcher matcher = PhraseMatcher.build(new String[] {"  Kritischer \t Pfad "}, new int[] {7});
+
+        assertEquals(Set.of("4-19:7"), matches(matcher, "Der KRITISCHER pfad ist lang."));
+        assertEquals(Set.of(), matches(matcher, "Der kritischer  Pfad"), "Runs of spaces in the text are not collapsed.");
+    }
+
+    @Test
+    void testDuplicatePhrasesKeepTheFirstValue() {
+        PhraseMatcher matcher = PhraseMatcher.build(new String[] {"gute Arbeit", "GUTE ARBEIT", " ", null}, new int[] {1, 2, 3, 4});
+
+        assertEquals(1, matcher.size());
+        assertEquals(Set.of("0-11:1"), matches(matcher, "gute arbeit"));
+    }
+
+    @Test
+    void testEmptyMatcher() {
+        assertEquals(0, PhraseMatcher.EMPTY.size());
+        assertEquals(Set.of(), matches(PhraseMatcher.EMPTY, "irgendein Text"));
+    }
+
+    @Test
+    void testMatchesBruteForceSearch() {
+        Random random = new Random(42);
+        String alphabet = "ab c";
+        for (int round = 0; round < 50; round++) {
+            List<String> phrases = new ArrayList<>();
+            for (int p = 0; p < 20; p++) {
+                phrases.add(randomString(random, alphabet, 1 + random.nextInt(5)));
+            }
+            int[] values = new int[phrases.size()];
+            for (int p = 0; p < values.length; p++) {
+                values[p] = p;
+            }
+            PhraseMatcher matcher = PhraseMatcher.build(phrases.toArray(new String[0]), values);
+            String text = randomString(random, alphabet, 200);
+
+            Set<String> expected = new TreeSet<>();
+            Set<String> seen = new TreeSet<>();
+            for (int p = 0; p < phrases.size(); p++) {
+                String phrase = phrases.get(p).trim().replaceAll("\\s+", " ");
+                if (phrase.isEmpty() || !seen.add(phrase)) {
+                    continue;
+                }
+                for (int start = text.indexOf(phrase); start >= 0; start = text.indexOf(phrase, start + 1)) {
+                    if (PhraseMatcher.isWordStart(text, start)) {
+                        expected.add(start + "-" + (start + phrase.length()) + ":" + p);
+                    }
+                }
+            }
+            assertEquals(expected, matches(matcher, text), "Round " + round);
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+}
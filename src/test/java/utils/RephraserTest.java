@@ -1,27 +1,19 @@
 package utils;
 
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
-import java.lang.reflect.Field;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 class RephraserTest {
 
-    // Reset the thesaurus before each test to ensure isolation
-    @BeforeEach
-    void setUp() throws NoSuchFieldException, IllegalAccessException {
-        Field isLoadedField = Rephraser.class.getDeclaredField("isLoaded");
-        isLoadedField.setAccessible(true);
-        isLoadedField.set(null, false); // Set isLoaded to false
-
-        Field thesaurusField = Rephraser.class.getDeclaredField("thesaurus");
-        thesaurusField.setAccessible(true);
-        ((Map<?, ?>) thesaurusField.get(null)).clear(); // Clear the thesaurus map
-    }
-
     @Test
     void testRephraseWithNullOrEmptyText() {
         assertNull(Rephraser.rephrase(null));
@@ -117,20 +109,130 @@ class RephraserTest {
 
     @Test
     void testThesaurusFiltering() {
-        // Trigger thesaurus loading by calling the method under test
-        Rephraser.rephrase("dummy");
+        // Assert conditions that should be true for the real openthesaurus.txt
+        Thesaurus thesaurus = Rephraser.thesaurus();
+        assertFalse(thesaurus.contains("(ignore)"), "Words with parentheses should be ignored.");
+        assertFalse(thesaurus.contains("multi word entry"), "Multi-word entries should be ignored (this is a heuristic).");
+        assertTrue(thesaurus.contains("arbeit"), "A common German word like 'arbeit' should be included.");
+    }
+
+    @Test
+    void testSameSeedGivesSameResult() {
+        String original = "Die Bearbeitung dieser Aufgabe ist eine gute Arbeit.\nDas ist ein wichtiges Beispiel.";
+        String first = Rephraser.rephrase(original, new SplittableRandom(7));
+        String second = Rephraser.rephrase(original, new SplittableRandom(7));
+        assertEquals(first, second);
+    }
+
+    @Test
+    void testConcurrentCallsMatchSequentialResults() throws Exception {
+        String original = "Die Bearbeitung dieser Aufgabe ist eine gute Arbeit.\nDas ist ein wichtiges Beispiel.";
+        int calls = 200;
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            expected.add(Rephraser.rephrase(original, new SplittableRandom(i)));
+        }
 
+        ExecutorService pool = Executors.newFixedThreadPool(8);
         try {
-            Field thesaurusField = Rephraser.class.getDeclaredField("thesaurus");
-            thesaurusField.setAccessible(true);
-            Map<String, List<String>> thesaurus = (Map<String, List<String>>) thesaurusField.get(null);
-
-            // Assert conditions that should be true for the real openthesaurus.txt
-            assertFalse(thesaurus.containsKey("(ignore)"), "Words with parentheses should be ignored.");
-            assertFalse(thesaurus.containsKey("multi word entry"), "Multi-word entries should be ignored (this is a heuristic).");
-            assertTrue(thesaurus.containsKey("arbeit"), "A common German word like 'arbeit' should be included.");
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            fail("Failed to access thesaurus field for testing: " + e.getMessage());
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                long seed = i;
+                results.add(pool.submit(() -> Rephraser.rephrase(original, new SplittableRandom(seed))));
+            }
+            for (int i = 0; i < calls; i++) {
+                assertEquals(expected.get(i), results.get(i).get());
+            }
+        } finally {
+            pool.shutdown();
         }
     }
+
+    /**
+     * The former regex tokenizer of {@code Rephraser.rephraseLine}, kept as the reference for the scanner.
+     */
+    private static String referenceRephraseLine(String line, Thesaurus thesaurus, SplittableRandom random) {
+        String[] words = line.split("(?<=\\W)|(?=\\W)");
+        List<int[]> candidates = new ArrayList<>();
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            if (word.length() > 3 && word.matches("[\\p{L}]+") && thesaurus.contains(word.toLowerCase())) {
+                candidates.add(new int[] {i, word.length()});
+            }
+        }
+        candidates.sort((c1, c2) -> Integer.compare(c2[1], c1[1]));
+        for (int i = 0; i < Math.min(2, candidates.size()); i++) {
+            String originalWord = words[candidates.get(i)[0]];
+            String synonym = thesaurus.randomSynonym(originalWord.toLowerCase(), random);
+            if (synonym != null) {
+                if (Character.isUpperCase(originalWord.charAt(0))) {
+                    synonym = Character.toUpperCase(synonym.charAt(0)) + synonym.substring(1);
+                }
+                words[candidates.get(i)[0]] = synonym;
+            }
+        }
+        return String.join("", words);
+    }
+
+    @Test
+    void testScannerMatchesRegexTokenizer() {
+        String[] lines = {
+                "Die Bearbeitung dieser Aufgabe ist eine gute Arbeit.",
+                "Gute Arbeit!",
+                "Prüfung, Übung und Lösung: schreiben_Sie (bitte) 3 Beispiele...",
+                "Hello, this is a test sentence with many words to rephrase.",
+                "  Arbeit\tArbeit  Beispiel-Aufgabe ARBEIT arbeit2 x_arbeit ",
+                "Emoji \uD83D\uDE00 Wort Aufgabe",
+                "",
+                "Die Methode berechnet das Ergebnis schnell und einfach."};
+        Thesaurus thesaurus = Rephraser.thesaurus();
+        for (String line : lines) {
+            for (long seed = 0; seed < 20; seed++) {
+                // Without phrases and protected terms, the scanner must pick the same words as the regex tokenizer
+                assertEquals(referenceRephraseLine(line, thesaurus, new SplittableRandom(seed)),
+                        Rephraser.rephraseLine(line, thesaurus, false, PhraseMatcher.EMPTY, new SplittableRandom(seed)), line);
+            }
+        }
+    }
+
+    @Test
+    void testPhraseIsReplacedAsAWhole() throws Exception {
+        Thesaurus thesaurus = Thesaurus.read(new BufferedReader(new StringReader("Kritischer Pfad;längster Weg\nWeg;Pfad;Strecke\n")));
+        for (long seed = 0; seed < 20; seed++) {
+            String rephrased = Rephraser.rephraseLine("Der kritische Kritischer Pfad bestimmt die Dauer.", thesaurus,
+                    true, PhraseMatcher.EMPTY, new SplittableRandom(seed));
+            assertEquals("Der kritische Längster Weg bestimmt die Dauer.", rephrased);
+        }
+    }
+
+    @Test
+    void testPhraseIsFoundAtWordBoundariesOnly() throws Exception {
+        Thesaurus thesaurus = Thesaurus.read(new BufferedReader(new StringReader("Kritischer Pfad;längster Weg\nz. B.;zum Beispiel\n")));
+        assertEquals("(Längster Weg).", Rephraser.rephraseLine("(Kritischer\u00A0Pfad).", thesaurus, true, PhraseMatcher.EMPTY, new SplittableRandom(1)));
+        assertEquals("Zum Beispiel: Test", Rephraser.rephraseLine("Z. B.: Test", thesaurus, true, PhraseMatcher.EMPTY, new SplittableRandom(1)));
+        assertEquals("Unkritischer Pfade", Rephraser.rephraseLine("Unkritischer Pfade", thesaurus, true, PhraseMatcher.EMPTY, new SplittableRandom(1)));
+        assertEquals("Kritischer  Pfad", Rephraser.rephraseLine("Kritischer  Pfad", thesaurus, true, PhraseMatcher.EMPTY, new SplittableRandom(1)),
+                "Runs of spaces are not collapsed.");
+    }
+
+    @Test
+    void testGlossaryTermsAreProtected() throws Exception {
+        Thesaurus thesaurus = Thesaurus.read(new BufferedReader(new StringReader("Kritischer Pfad;längster Weg\nWeg;Pfad;Strecke\nDauer;Zeitspanne\n")));
+        Glossary glossary = Glossary.of(List.of("kritischer  pfad", " "));
+        assertEquals(List.of("kritischer  pfad"), glossary.getTerms());
+        for (long seed = 0; seed < 20; seed++) {
+            String rephrased = Rephraser.rephraseLine("Der Kritischer Pfad bestimmt die Dauer, der Pfad nicht.", thesaurus,
+                    true, glossary.matcher(), new SplittableRandom(seed));
+            assertTrue(rephrased.startsWith("Der Kritischer Pfad bestimmt die Zeitspanne, der "), rephrased);
+            assertFalse(rephrased.endsWith("der Pfad nicht."), "Words outside the protected term are still replaced: " + rephrased);
+        }
+    }
+
+    @Test
+    void testGlossaryTermsOnlyMatchWholeWords() throws Exception {
+        Thesaurus thesaurus = Thesaurus.read(new BufferedReader(new StringReader("Pfade;Wege\nPfad;Weg\n")));
+        Glossary glossary = Glossary.of(List.of("Pfad"));
+        assertEquals("Wege und Pfad", Rephraser.rephraseLine("Pfade und Pfad", thesaurus, true, glossary.matcher(), new SplittableRandom(1)));
+        assertEquals("Der Pfad", Rephraser.rephrase("Der Pfad", new SplittableRandom(1), glossary));
+    }
 }
@@ -0,0 +1,28 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+
+class StartupTimerTest {
+
+    @Test
+    void testPhasesAndMilestonesAreRecordedInOrder() throws Exception {
+        StartupTimer.start();
+        long phaseStart = StartupTimer.now();
+        Thread.sleep(20);
+        long phase = StartupTimer.record("Phase", phaseStart);
+        long milestone = StartupTimer.milestone("Meilenstein");
+
+        assertTrue(phase >= 20, "The phase lasted at least 20 ms: " + phase);
+        assertTrue(milestone >= phase, "A milestone is measured from the start.");
+        Map<String, Long> entries = StartupTimer.getEntries();
+        assertEquals(List.of("Phase", "Meilenstein"), List.copyOf(entries.keySet()));
+        assertEquals(phase, entries.get("Phase"));
+
+        StartupTimer.start();
+        assertTrue(StartupTimer.getEntries().isEmpty());
+    }
+}
@@ -0,0 +1,161 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+class ThesaurusTest {
+
+    private static Thesaurus read(String content) throws IOException {
+        return Thesaurus.read(new BufferedReader(new StringReader(content)));
+    }
+
+    @Test
+    void testSynonymsExcludeTheWordItself() throws IOException {
+        Thesaurus thesaurus = read("# comment\nArbeit;Tätigkeit;Beschäftigung\n");
+
+        assertEquals(3, thesaurus.size());
+        assertEquals(1, thesaurus.synsetCount());
+        assertEquals(List.of("Tätigkeit", "Beschäftigung"), thesaurus.synonyms("arbeit"));
+        assertFalse(thesaurus.contains("Arbeit"), "Lookup keys are lower case.");
+    }
+
+    @Test
+    void testPolysemousWordKeepsAllSynsets() throws IOException {
+        Thesaurus thesaurus = read("Bank;Sitzbank\nBank;Geldinstitut;Kreditinstitut\n");
+
+        assertEquals(List.of("Sitzbank", "Geldinstitut", "Kreditinstitut"), thesaurus.synonyms("bank"));
+        assertEquals(List.of("Bank"), thesaurus.synonyms("sitzbank"));
+
+        Set<String> picked = new TreeSet<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            picked.add(thesaurus.randomSynonym("bank", random));
+        }
+        assertEquals(Set.of("Sitzbank", "Geldinstitut", "Kreditinstitut"), picked);
+    }
+
+    @Test
+    void testFilteredMembersAndSmallSynsets() throws IOException {
+        Thesaurus thesaurus = read("Haus;(ugs.) Hütte;jemandem ... geben\nAuto;Wagen;Kraftfahrzeug (Amtssprache)\n");
+
+        assertFalse(thesaurus.contains("haus"), "A synset with less than two clean members is ignored.");
+        assertFalse(thesaurus.contains("(ugs.) hütte"));
+        assertFalse(thesaurus.contains("jemandem ... geben"), "Members with placeholders are skipped.");
+        assertEquals(List.of("Wagen"), thesaurus.synonyms("auto"));
+        assertNull(thesaurus.randomSynonym("unbekannt", new Random()));
+    }
+
+    @Test
+    void testPhrasesAreKeptAndMatched() throws IOException {
+        Thesaurus thesaurus = read("gute Arbeit leisten;seine  Sache gut machen;glänzen\n");
+
+        assertTrue(thesaurus.contains("gute arbeit leisten"));
+        assertTrue(thesaurus.contains("seine sache gut machen"), "Spaces of phrases are normalized.");
+        assertEquals(List.of("gute Arbeit leisten", "seine Sache gut machen"), thesaurus.synonyms("glänzen"));
+
+        String text = "Sie wird Gute\u00A0Arbeit leisten.";
+        int start = text.indexOf("Gute");
+        assertEquals(Thesaurus.PHRASE_PREFIX, thesaurus.phraseFlags(hash(text, start, start + 4)));
+        assertEquals(Thesaurus.PHRASE_PREFIX, thesaurus.phraseFlags(hash("Seine Sache gut", 0, 15)));
+        assertEquals(0, thesaurus.phraseFlags(hash(text, 0, 3)), "No phrase starts with \"sie\".");
+        assertEquals(0, thesaurus.phraseFlags(hash("glänzen", 0, 7)), "Single words are no phrases.");
+        assertEquals(Thesaurus.PHRASE, thesaurus.phraseFlags(hash(text, start, text.indexOf('.'))), "Whitespace in the text is folded to a space.");
+        int found = thesaurus.find(text, start, text.indexOf('.'));
+        assertTrue(found >= 0);
+        assertEquals(List.of("seine Sache gut machen", "glänzen"), thesaurus.synonyms("gute arbeit leisten"));
+        assertEquals(thesaurus.randomSynonym(found, new Random(1)),
+                thesaurus.randomSynonym("gute arbeit leisten", new Random(1)));
+    }
+
+    @Test
+    void testSpellingVariantsOnlyHaveNoSynonym() throws IOException {
+        Thesaurus thesaurus = read("Arbeit;arbeit\n");
+
+        assertTrue(thesaurus.contains("arbeit"));
+        assertNull(thesaurus.randomSynonym("arbeit", new Random()));
+        assertTrue(thesaurus.synonyms("arbeit").isEmpty());
+    }
+
+    @Test
+    void testEmptyThesaurus() {
+        assertEquals(0, Thesaurus.EMPTY.size());
+        assertFalse(Thesaurus.EMPTY.contains("arbeit"));
+    }
+
+    @Test
+    void testBlockedWordsCannotBeLookedUpButStaySynonyms() throws IOException {
+        Thesaurus thesaurus = Thesaurus.read(new BufferedReader(new StringReader("Test;Prüfung;Klausur\n")),
+                new BufferedReader(new StringReader("# English\ntest\n")));
+
+        assertFalse(thesaurus.contains("test"));
+        assertNull(thesaurus.randomSynonym("test", new Random()));
+        assertEquals(List.of("Test", "Klausur"), thesaurus.synonyms("prüfung"));
+    }
+
+    @Test
+    void testIndexRoundTrip() throws IOException {
+        Thesaurus original = Thesaurus.read(new BufferedReader(new StringReader("Bank;Sitzbank\nBank;Geldinstitut;Kreditinstitut\nTest;Prüfung;schriftliche Prüfung\n")),
+                new BufferedReader(new StringReader("test\n")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        original.writeIndex(out);
+
+        Thesaurus copy = Thesaurus.readIndex(ByteBuffer.wrap(out.toByteArray()));
+        assertEquals(original.size(), copy.size());
+        assertEquals(original.synsetCount(), copy.synsetCount());
+        for (String word : new String[] {"bank", "sitzbank", "geldinstitut", "prüfung", "schriftliche prüfung", "test", "unbekannt"}) {
+            assertEquals(original.contains(word), copy.contains(word), word);
+            assertEquals(original.synonyms(word), copy.synonyms(word), word);
+        }
+        assertEquals(Thesaurus.PHRASE_PREFIX, original.phraseFlags(hash("schriftliche", 0, 12)));
+        assertEquals(Thesaurus.PHRASE_PREFIX, copy.phraseFlags(hash("schriftliche", 0, 12)));
+        assertEquals(Thesaurus.PHRASE, copy.phraseFlags(hash("schriftliche prüfung", 0, 20)));
+    }
+
+    @Test
+    void testIndexWithWrongHeaderIsRejected() {
+        assertThrows(IOException.class, () -> Thesaurus.readIndex(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7, 8})));
+        assertThrows(IOException.class, () -> Thesaurus.readIndex(ByteBuffer.wrap(new byte[] {0x45, 0x54, 0x48, 0x53, 0, 0, 0, 1, 0, 0})));
+    }
+
+    @Test
+    void testBuiltIndexMatchesTextResources() throws IOException {
+        Thesaurus parsed;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Thesaurus.class.getResourceAsStream("/openthesaurus.txt"), StandardCharsets.UTF_8));
+             BufferedReader blocklist = new BufferedReader(new InputStreamReader(Thesaurus.class.getResourceAsStream("/english_words.txt"), StandardCharsets.UTF_8))) {
+            parsed = Thesaurus.read(reader, blocklist);
+        }
+        Thesaurus indexed;
+        try (InputStream in = Thesaurus.class.getResourceAsStream("/thesaurus.idx")) {
+            assertNotNull(in, "The build should compile thesaurus.idx into the classes directory.");
+            indexed = Thesaurus.readIndex(ByteBuffer.wrap(in.readAllBytes()));
+        }
+
+        assertEquals(parsed.size(), indexed.size());
+        assertEquals(parsed.synsetCount(), indexed.synsetCount());
+        for (String word : new String[] {"arbeit", "aufgabe", "beispiel", "the", "test"}) {
+            assertEquals(parsed.contains(word), indexed.contains(word), word);
+            assertEquals(parsed.synonyms(word), indexed.synonyms(word), word);
+        }
+    }
+
+    private static int hash(String text, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = Thesaurus.hash(hash, text.charAt(i));
+        }
+        return hash;
+    }
+}